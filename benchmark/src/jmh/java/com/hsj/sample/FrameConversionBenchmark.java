@@ -0,0 +1,135 @@
+package com.hsj.sample;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author:Hsj
+ * @Date:2026/10/18
+ * @Class:FrameConversionBenchmark
+ * @Desc:V4L2VideoRecorder 每帧执行的 Java 代码，一次调用 = 一帧
+ *       -prof gc 的 gc.alloc.rate.norm 为每帧分配的字节数
+ *       writeFrameXxx 为 writeFrame 中编码器之前的部分：ByteBuffer 拷贝 -> 格式判断 -> 转换
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FrameConversionBenchmark {
+
+    @Param({"1280x720", "1920x1080", "3840x2160"})
+    public String resolution;
+
+    private int width;
+    private int height;
+    //帧回调的 direct ByteBuffer（native 内存）
+    private ByteBuffer yuyvFrame;
+    private ByteBuffer i422Frame;
+    private byte[] yuyv;
+    private byte[] i422;
+    private int[] argb;
+    private byte[] yuv420;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String[] size = resolution.split("x");
+        width = Integer.parseInt(size[0]);
+        height = Integer.parseInt(size[1]);
+        Random random = new Random(width * 31L + height);
+
+        //YUYV: Y 渐变 + 噪声，UV 接近 128
+        yuyv = new byte[width * height * 2];
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                int index = (row * width + col) * 2;
+                yuyv[index] = (byte) (16 + col * 120 / width + random.nextInt(16));
+                yuyv[index + 1] = (byte) (120 + random.nextInt(16));
+            }
+        }
+        //I422: 同一画面的平面格式
+        i422 = new byte[width * height * 2];
+        int ySize = width * height;
+        int chromaSize = ySize / 2;
+        for (int p = 0; p < ySize; p++) {
+            i422[p] = yuyv[p * 2];
+        }
+        for (int c = 0; c < chromaSize; c++) {
+            i422[ySize + c] = yuyv[c * 4 + 1];
+            i422[ySize + chromaSize + c] = yuyv[c * 4 + 3];
+        }
+        //ARGB（Bitmap 路径）
+        argb = new int[width * height];
+        for (int p = 0; p < argb.length; p++) {
+            argb[p] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        yuv420 = new byte[width * height * 3 / 2];
+
+        yuyvFrame = ByteBuffer.allocateDirect(yuyv.length);
+        yuyvFrame.put(yuyv).flip();
+        i422Frame = ByteBuffer.allocateDirect(i422.length);
+        i422Frame.put(i422).flip();
+    }
+
+    @Benchmark
+    public byte[] handoff() {
+        return YuvUtils.toByteArray(yuyvFrame);
+    }
+
+    @Benchmark
+    public int detectFormatYuyv() {
+        return YuvUtils.detectFormat(yuyv, width, height);
+    }
+
+    @Benchmark
+    public int detectFormatI422() {
+        return YuvUtils.detectFormat(i422, width, height);
+    }
+
+    @Benchmark
+    public byte[] yuyvToNV12() {
+        return YuvUtils.yuyvToYUV420(yuyv, width, height, true);
+    }
+
+    @Benchmark
+    public byte[] yuyvToI420() {
+        return YuvUtils.yuyvToYUV420(yuyv, width, height, false);
+    }
+
+    @Benchmark
+    public byte[] i422ToNV12() {
+        return YuvUtils.i422ToNV12(i422, width, height);
+    }
+
+    @Benchmark
+    public byte[] encodeYUV420SP() {
+        YuvUtils.encodeYUV420SP(yuv420, argb, width, height);
+        return yuv420;
+    }
+
+    @Benchmark
+    public void writeFrameYuyv(Blackhole blackhole) {
+        byte[] frame = YuvUtils.toByteArray(yuyvFrame);
+        if (YuvUtils.detectFormat(frame, width, height) == YuvUtils.FORMAT_YUYV) {
+            blackhole.consume(YuvUtils.yuyvToYUV420(frame, width, height, true));
+        }
+    }
+
+    @Benchmark
+    public void writeFrameI422(Blackhole blackhole) {
+        byte[] frame = YuvUtils.toByteArray(i422Frame);
+        if (YuvUtils.detectFormat(frame, width, height) == YuvUtils.FORMAT_I422) {
+            blackhole.consume(YuvUtils.i422ToNV12(frame, width, height));
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.hsj.sample;
+
+import java.util.Locale;
+
+/**
+ * @Author:Hsj
+ * @Date:2026/10/18
+ * @Class:AdaptiveBitrateController
+ * @Desc:录制自适应码率控制器
+ *       根据编码器背压（输入 buffer 获取失败导致的丢帧、编码器内待输出帧数）和实际输出码率，
+ *       按时间窗口决定是否降低/恢复码率，码率降到下限后仍拥塞则降低送帧频率（隔帧丢弃）
+ *       由 V4L2VideoRecorder 创建和驱动，对外只公开回调接口与统计信息
+ */
+public final class AdaptiveBitrateController {
+
+    /**
+     * 每次调整后回调，用于上层展示或上报统计
+     */
+    public interface OnAdaptationListener {
+        void onAdaptation(Stats stats);
+    }
+
+    /**
+     * 单次调整的统计信息
+     */
+    public static final class Stats {
+        public final String reason;
+        public final int oldBitRate;
+        public final int newBitRate;
+        public final int oldFrameStep;
+        public final int newFrameStep;
+        public final float dropRatio;
+        public final float avgQueueDepth;
+        public final int measuredBitRate;
+        public final int adaptationCount;
+
+        Stats(String reason, int oldBitRate, int newBitRate, int oldFrameStep, int newFrameStep,
+              float dropRatio, float avgQueueDepth, int measuredBitRate, int adaptationCount) {
+            this.reason = reason;
+            this.oldBitRate = oldBitRate;
+            this.newBitRate = newBitRate;
+            this.oldFrameStep = oldFrameStep;
+            this.newFrameStep = newFrameStep;
+            this.dropRatio = dropRatio;
+            this.avgQueueDepth = avgQueueDepth;
+            this.measuredBitRate = measuredBitRate;
+            this.adaptationCount = adaptationCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "#%d %s: bitrate %d->%d, frameStep %d->%d, drop=%.1f%%, queue=%.2f, out=%dbps",
+                    adaptationCount, reason, oldBitRate, newBitRate, oldFrameStep, newFrameStep,
+                    dropRatio * 100f, avgQueueDepth, measuredBitRate);
+        }
+    }
+
+    // ========== 控制参数 ==========
+    private static final long WINDOW_NS = 1_000_000_000L;   // 统计窗口 1s
+    private static final float DROP_RATIO_HIGH = 0.05f;     // 丢帧率超过 5% 视为拥塞
+    private static final float QUEUE_DEPTH_HIGH = 3.0f;     // 编码器内平均积压超过 3 帧视为拥塞
+    private static final float QUEUE_DEPTH_LOW = 1.0f;      // 平均积压不超过 1 帧视为空闲
+    private static final int HEALTHY_WINDOWS_TO_RAISE = 3;  // 连续空闲窗口数达到后才恢复，避免抖动
+    private static final float STEP_DOWN = 0.75f;           // 每次降码率比例
+    private static final float STEP_UP = 1.15f;             // 每次升码率比例
+    private static final int MIN_BIT_RATE_DIVISOR = 4;      // 最低码率 = 初始码率 / 4
+    private static final int MAX_FRAME_STEP = 3;            // 最多每 3 帧编码 1 帧
+
+    private final int maxBitRate;
+    private final int minBitRate;
+
+    private int bitRate;
+    private int frameStep = 1;
+    private int healthyWindows;
+    private int adaptationCount;
+
+    // 当前窗口统计
+    private long windowStartNs;
+    private int windowQueued;
+    private int windowDropped;
+    private long windowOutputBytes;
+    private long windowQueueDepthSum;
+    // 编码器内待输出帧数 = 已送入 - 已输出
+    private long totalQueued;
+    private long totalOutput;
+
+    AdaptiveBitrateController(int initialBitRate) {
+        this.maxBitRate = initialBitRate;
+        this.minBitRate = initialBitRate / MIN_BIT_RATE_DIVISOR;
+        this.bitRate = initialBitRate;
+    }
+
+    int getBitRate() {
+        return bitRate;
+    }
+
+    int getFrameStep() {
+        return frameStep;
+    }
+
+    /**
+     * 根据当前降帧档位判断该帧是否直接跳过（不转换、不送编码器）
+     */
+    boolean shouldSkipFrame(long frameIndex) {
+        return frameStep > 1 && frameIndex % frameStep != 0;
+    }
+
+    void onInputQueued() {
+        totalQueued++;
+        windowQueued++;
+        windowQueueDepthSum += totalQueued - totalOutput;
+    }
+
+    void onInputDropped() {
+        windowDropped++;
+    }
+
+    void onOutputSample(int size) {
+        totalOutput++;
+        windowOutputBytes += size;
+    }
+
+    /**
+     * 窗口结束时评估是否需要调整
+     *
+     * @return 发生调整时返回统计信息，否则返回 null
+     */
+    Stats evaluate(long nowNs) {
+        if (windowStartNs == 0) {
+            windowStartNs = nowNs;
+            return null;
+        }
+        long elapsedNs = nowNs - windowStartNs;
+        if (elapsedNs < WINDOW_NS) return null;
+
+        int attempts = windowQueued + windowDropped;
+        float dropRatio = attempts == 0 ? 0f : (float) windowDropped / attempts;
+        float avgQueueDepth = windowQueued == 0 ? 0f : (float) windowQueueDepthSum / windowQueued;
+        int measuredBitRate = (int) (windowOutputBytes * 8L * 1_000_000_000L / elapsedNs);
+        resetWindow(nowNs);
+
+        int oldBitRate = bitRate;
+        int oldFrameStep = frameStep;
+        String reason = null;
+
+        if (dropRatio > DROP_RATIO_HIGH || avgQueueDepth > QUEUE_DEPTH_HIGH) {
+            healthyWindows = 0;
+            if (bitRate > minBitRate) {
+                bitRate = Math.max(minBitRate, (int) (bitRate * STEP_DOWN));
+                reason = "congested, lower bitrate";
+            } else if (frameStep < MAX_FRAME_STEP) {
+                frameStep++;
+                reason = "congested at min bitrate, skip frames";
+            }
+        } else if (dropRatio == 0f && avgQueueDepth <= QUEUE_DEPTH_LOW) {
+            if (++healthyWindows >= HEALTHY_WINDOWS_TO_RAISE) {
+                healthyWindows = 0;
+                // 先恢复帧率，再恢复码率
+                if (frameStep > 1) {
+                    frameStep--;
+                    reason = "recovered, restore frames";
+                } else if (bitRate < maxBitRate) {
+                    bitRate = Math.min(maxBitRate, (int) (bitRate * STEP_UP));
+                    reason = "recovered, raise bitrate";
+                }
+            }
+        } else {
+            healthyWindows = 0;
+        }
+
+        if (reason == null) return null;
+        adaptationCount++;
+        return new Stats(reason, oldBitRate, bitRate, oldFrameStep, frameStep,
+                dropRatio, avgQueueDepth, measuredBitRate, adaptationCount);
+    }
+
+    private void resetWindow(long nowNs) {
+        windowStartNs = nowNs;
+        windowQueued = 0;
+        windowDropped = 0;
+        windowOutputBytes = 0;
+        windowQueueDepthSum = 0;
+    }
+}
@@ -1,8 +1,11 @@
 package com.hsj.sample;
 
+import android.Manifest;
 import android.content.Context;
+import android.content.pm.PackageManager;
 import android.hardware.usb.UsbDevice;
 import android.hardware.usb.UsbManager;
+import android.media.AudioManager;
 import android.os.Bundle;
 import android.text.TextUtils;
 import android.util.Log;
@@ -17,13 +20,16 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.app.ActivityCompat;
+import androidx.core.content.ContextCompat;
 import androidx.core.util.Pair;
 
 import com.hsj.camera.CameraAPI;
 import com.hsj.camera.CameraView;
-import com.hsj.camera.IFrameCallback;
+import com.hsj.camera.IFrameTimestampCallback;
 import com.hsj.camera.IRender;
 import com.hsj.camera.ISurfaceCallback;
+import com.hsj.camera.StreamMuxer;
 
 import java.io.DataOutputStream;
 import java.io.File;
@@ -45,6 +51,8 @@ import java.util.Locale;
 public final class MainActivity extends AppCompatActivity implements ISurfaceCallback {
 
     private static final String TAG = "MainActivity";
+    // true: 帧数据直接上传为 YUV 纹理，由 GPU 转换颜色；false: native 转 RGBA 后绘制到 Surface
+    private static final boolean GL_YUV_PREVIEW = true;
     // Usb device: productId
     private int pid;
     // Usb device: vendorId
@@ -60,10 +68,13 @@ public final class MainActivity extends AppCompatActivity implements ISurfaceCal
 
     // Video Recording
     private V4L2VideoRecorder videoRecorder;
+    // H.264/HEVC 相机：码流直接复用，不经过 V4L2VideoRecorder 重新编码
+    private StreamMuxer streamMuxer;
     private Button btnStartRecord;
     private Button btnStopRecord;
     private int videoWidth;
     private int videoHeight;
+    private int pixelFormat;
 
 //    yuv格式优先使用720*576
     private int frameFormat = CameraAPI.FRAME_FORMAT_YUYV;  // 使用 YUYV 格式（设备不支持 MJPEG）
@@ -99,6 +110,11 @@ public final class MainActivity extends AppCompatActivity implements ISurfaceCal
         // 初始化保存调试帧按钮
         findViewById(R.id.btn_save_frame).setOnClickListener(v -> saveDebugFrame());
 
+        // MJPEG：后台预热 1080P 硬解，首次打开相机不再等待 MediaCodec 创建
+        if (frameFormat == CameraAPI.FRAME_FORMAT_MJPEG) {
+            new Thread(() -> CameraAPI.prewarmDecoder(1920, 1080), "PrewarmDecoder").start();
+        }
+
         //Request permission: /dev/video*
         requestPermissionV1();
     }
@@ -260,7 +276,11 @@ public final class MainActivity extends AppCompatActivity implements ISurfaceCal
 
     private void start() {
         if (this.camera != null) {
-            if (surface != null) this.camera.setPreview(surface);
+            if (GL_YUV_PREVIEW) {
+                this.pixelFormat = this.camera.getPixelFormat();
+            } else if (surface != null) {
+                this.camera.setPreview(surface);
+            }
             this.camera.setFrameCallback(frameCallback);
             this.camera.start();
         } else {
@@ -268,10 +288,23 @@ public final class MainActivity extends AppCompatActivity implements ISurfaceCal
         }
     }
 
-    private final IFrameCallback frameCallback = frame -> {
-        // 如果正在录制，将帧数据传递给 VideoRecorder
-        if (videoRecorder != null && videoRecorder.isRecording()) {
-            videoRecorder.writeFrame(frame);
+    private final IFrameTimestampCallback frameCallback = new IFrameTimestampCallback() {
+        @Override
+        public void onFrame(ByteBuffer frame) {
+            // 不带时间戳的回调（native 找不到带时间戳的方法时才会走到这里）
+            if (GL_YUV_PREVIEW) render.updateFrame(frame, pixelFormat, videoWidth, videoHeight);
+            if (videoRecorder != null && videoRecorder.isRecording()) {
+                videoRecorder.writeFrame(frame);
+            }
+        }
+
+        @Override
+        public void onFrame(ByteBuffer frame, long timestampUs) {
+            if (GL_YUV_PREVIEW) render.updateFrame(frame, pixelFormat, videoWidth, videoHeight);
+            // 如果正在录制，将帧数据和采集时间戳传递给 VideoRecorder，用于音视频同步
+            if (videoRecorder != null && videoRecorder.isRecording()) {
+                videoRecorder.writeFrame(frame, timestampUs);
+            }
         }
     };
 
@@ -286,6 +319,11 @@ public final class MainActivity extends AppCompatActivity implements ISurfaceCal
             this.camera.destroy();
             this.camera = null;
         }
+        // 相机销毁后不再回调，结束 MP4（写入 moov）
+        if (streamMuxer != null) {
+            streamMuxer.stop();
+            streamMuxer = null;
+        }
     }
 
 //=============================================Other================================================
@@ -428,7 +466,7 @@ public final class MainActivity extends AppCompatActivity implements ISurfaceCal
             return;
         }
 
-        if (videoRecorder != null && videoRecorder.isRecording()) {
+        if ((videoRecorder != null && videoRecorder.isRecording()) || streamMuxer != null) {
             showToast("Already recording");
             return;
         }
@@ -436,8 +474,34 @@ public final class MainActivity extends AppCompatActivity implements ISurfaceCal
         // 业务层生成输出文件路径
         String outputPath = generateOutputPath();
 
+        // 压缩码流：直接写入 MP4（不录音频）
+        if (frameFormat == CameraAPI.FRAME_FORMAT_H264 || frameFormat == CameraAPI.FRAME_FORMAT_HEVC) {
+            streamMuxer = new StreamMuxer(outputPath);
+            if (camera.setStreamCallback(streamMuxer)) {
+                btnStartRecord.setEnabled(false);
+                btnStopRecord.setEnabled(true);
+                showToast("Recording started: " + outputPath);
+                Log.d(TAG, "Stream recording started: " + outputPath);
+            } else {
+                streamMuxer = null;
+                showToast("Failed to start recording");
+            }
+            return;
+        }
+
+        // 有录音权限时同时录制音频，否则先申请权限，本次只录制视频
+        AudioManager audioManager = null;
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.RECORD_AUDIO)
+                == PackageManager.PERMISSION_GRANTED) {
+            audioManager = (AudioManager) getSystemService(Context.AUDIO_SERVICE);
+        } else {
+            ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.RECORD_AUDIO}, 1);
+            showToast("No RECORD_AUDIO permission, recording video only");
+        }
+
         // 创建 V4L2VideoRecorder，传入路径
-        videoRecorder = new V4L2VideoRecorder(videoWidth, videoHeight, outputPath);
+        videoRecorder = new V4L2VideoRecorder(videoWidth, videoHeight, camera.getFrameRate(), outputPath, audioManager);
+        videoRecorder.setPixelFormat(camera.getPixelFormat());
 
         // 开始录制
         if (videoRecorder.start()) {
@@ -455,6 +519,16 @@ public final class MainActivity extends AppCompatActivity implements ISurfaceCal
      * 停止录制视频
      */
     private void stopRecording() {
+        if (streamMuxer != null) {
+            if (camera != null) camera.setStreamCallback(null);
+            int frames = streamMuxer.stop();
+            streamMuxer = null;
+            btnStartRecord.setEnabled(true);
+            btnStopRecord.setEnabled(false);
+            showToast("Recording stopped, " + frames + " frames");
+            Log.d(TAG, "Stream recording stopped: " + frames + " frames");
+            return;
+        }
         if (videoRecorder == null || !videoRecorder.isRecording()) {
             showToast("Not recording");
             return;
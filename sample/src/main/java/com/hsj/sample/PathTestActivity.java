@@ -400,7 +400,8 @@ public class PathTestActivity extends AppCompatActivity implements ISurfaceCallb
             String outputPath = new File(getExternalFilesDir(null),
                 "path_test_" + timestamp + ".mp4").getAbsolutePath();
 
-            videoRecorder = new V4L2VideoRecorder(videoWidth, videoHeight, outputPath);
+            videoRecorder = new V4L2VideoRecorder(videoWidth, videoHeight, camera.getFrameRate(), outputPath, null);
+            videoRecorder.setPixelFormat(camera.getPixelFormat());
 
             if (videoRecorder.start()) {
                 btnStartRecord.setEnabled(false);
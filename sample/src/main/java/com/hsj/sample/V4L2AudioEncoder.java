@@ -0,0 +1,226 @@
+package com.hsj.sample;
+
+import android.media.AudioDeviceInfo;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioRecord;
+import android.media.AudioTimestamp;
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.media.MediaRecorder;
+import android.os.Build;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @Author:Hsj
+ * @Date:2026/10/18
+ * @Class:V4L2AudioEncoder
+ * @Desc:录制音频采集 + AAC 编码，运行在独立线程
+ *       优先使用 USB 音频输入（UVC 相机自带的 UAC 麦克风），否则使用默认麦克风
+ *       输出时间戳为 CLOCK_MONOTONIC 微秒，与 V4L2 帧时间戳同一时钟，由 V4L2VideoRecorder 统一对齐
+ */
+final class V4L2AudioEncoder {
+
+    private static final String TAG = "V4L2AudioEncoder";
+    private static final String MIME_TYPE = MediaFormat.MIMETYPE_AUDIO_AAC;
+    private static final int SAMPLE_RATE = 44100;
+    private static final int CHANNEL_COUNT = 1;
+    private static final int BIT_RATE = 64000;
+    private static final int BYTES_PER_FRAME = 2 * CHANNEL_COUNT; // PCM 16bit
+    private static final int TIMEOUT_USEC = 10000;
+
+    /**
+     * 编码输出回调（在音频线程中调用）
+     */
+    public interface Callback {
+        void onAudioFormat(MediaFormat format);
+
+        void onAudioSample(ByteBuffer data, MediaCodec.BufferInfo info);
+    }
+
+    private final AudioManager audioManager;
+    private final Callback callback;
+    private AudioRecord audioRecord;
+    private MediaCodec mediaCodec;
+    private Thread thread;
+    private volatile boolean running;
+
+    // 时间戳锚点：第 anchorFrame 个采样对应 anchorTimeNs（单调时钟）
+    private long anchorFrame = -1;
+    private long anchorTimeNs;
+    private long totalFrames;
+
+    V4L2AudioEncoder(AudioManager audioManager, Callback callback) {
+        this.audioManager = audioManager;
+        this.callback = callback;
+    }
+
+    synchronized boolean start() {
+        if (running) return false;
+        try {
+            int minBufferSize = AudioRecord.getMinBufferSize(SAMPLE_RATE,
+                    AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT);
+            audioRecord = new AudioRecord(MediaRecorder.AudioSource.MIC, SAMPLE_RATE,
+                    AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT, minBufferSize * 4);
+            if (audioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
+                Log.e(TAG, "AudioRecord init failed");
+                release();
+                return false;
+            }
+            selectUsbInput();
+
+            MediaFormat format = MediaFormat.createAudioFormat(MIME_TYPE, SAMPLE_RATE, CHANNEL_COUNT);
+            format.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC);
+            format.setInteger(MediaFormat.KEY_BIT_RATE, BIT_RATE);
+            format.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, minBufferSize * 2);
+            mediaCodec = MediaCodec.createEncoderByType(MIME_TYPE);
+            mediaCodec.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            mediaCodec.start();
+
+            audioRecord.startRecording();
+            anchorFrame = -1;
+            totalFrames = 0;
+            running = true;
+            thread = new Thread(this::loop, TAG);
+            thread.start();
+            Log.d(TAG, "Audio started: " + SAMPLE_RATE + "Hz, channels=" + CHANNEL_COUNT + ", AAC " + BIT_RATE);
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to start audio", e);
+            release();
+            return false;
+        }
+    }
+
+    /**
+     * 停止采集：送入 EOS 并等待编码器输出完毕后返回
+     */
+    synchronized void stop() {
+        if (!running) return;
+        running = false;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+        release();
+        Log.d(TAG, "Audio stopped, frames=" + totalFrames);
+    }
+
+    /**
+     * UVC 相机通常同时提供 UAC 麦克风，优先使用它作为输入
+     */
+    private void selectUsbInput() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M || audioManager == null) return;
+        for (AudioDeviceInfo device : audioManager.getDevices(AudioManager.GET_DEVICES_INPUTS)) {
+            if (device.getType() == AudioDeviceInfo.TYPE_USB_DEVICE) {
+                boolean ret = audioRecord.setPreferredDevice(device);
+                Log.d(TAG, "Use USB audio input: " + device.getProductName() + ", " + ret);
+                return;
+            }
+        }
+    }
+
+    private void loop() {
+        MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+        boolean inputDone = false;
+        while (true) {
+            if (!inputDone) {
+                int index = mediaCodec.dequeueInputBuffer(TIMEOUT_USEC);
+                if (index >= 0) {
+                    if (running) {
+                        ByteBuffer buffer = mediaCodec.getInputBuffer(index);
+                        buffer.clear();
+                        int read = audioRecord.read(buffer, buffer.capacity());
+                        if (read > 0) {
+                            long ptsUs = presentationTimeUs(read / BYTES_PER_FRAME);
+                            mediaCodec.queueInputBuffer(index, 0, read, ptsUs, 0);
+                        } else {
+                            mediaCodec.queueInputBuffer(index, 0, 0, 0, 0);
+                        }
+                    } else {
+                        mediaCodec.queueInputBuffer(index, 0, 0, presentationTimeUs(0),
+                                MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                        inputDone = true;
+                    }
+                }
+            }
+            if (drain(info)) break;
+        }
+    }
+
+    /**
+     * @return true: 已输出 EOS
+     */
+    private boolean drain(MediaCodec.BufferInfo info) {
+        while (true) {
+            int index = mediaCodec.dequeueOutputBuffer(info, running ? 0 : TIMEOUT_USEC);
+            if (index == MediaCodec.INFO_TRY_AGAIN_LATER) {
+                return false;
+            } else if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                callback.onAudioFormat(mediaCodec.getOutputFormat());
+            } else if (index >= 0) {
+                ByteBuffer data = mediaCodec.getOutputBuffer(index);
+                if ((info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0) {
+                    info.size = 0;
+                }
+                if (info.size != 0 && data != null) {
+                    data.position(info.offset);
+                    data.limit(info.offset + info.size);
+                    callback.onAudioSample(data, info);
+                }
+                mediaCodec.releaseOutputBuffer(index, false);
+                if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * 计算本次读取的第一个采样的单调时钟时间戳
+     * 以采样计数推算而不是每次取系统时间，避免线程调度带来的抖动
+     */
+    private long presentationTimeUs(int readFrames) {
+        long firstFrame = totalFrames;
+        totalFrames += readFrames;
+        if (anchorFrame < 0) {
+            AudioTimestamp timestamp = new AudioTimestamp();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+                    && audioRecord.getTimestamp(timestamp, AudioTimestamp.TIMEBASE_MONOTONIC) == AudioRecord.SUCCESS) {
+                anchorFrame = timestamp.framePosition;
+                anchorTimeNs = timestamp.nanoTime;
+            } else {
+                // 本次读取的最后一个采样大约在此刻被采集
+                anchorFrame = totalFrames;
+                anchorTimeNs = System.nanoTime();
+            }
+        }
+        return (anchorTimeNs + (firstFrame - anchorFrame) * 1_000_000_000L / SAMPLE_RATE) / 1000;
+    }
+
+    private void release() {
+        if (audioRecord != null) {
+            try {
+                audioRecord.stop();
+            } catch (Exception ignored) {
+                // 未开始录音时 stop 会抛异常
+            }
+            audioRecord.release();
+            audioRecord = null;
+        }
+        if (mediaCodec != null) {
+            try {
+                mediaCodec.stop();
+                mediaCodec.release();
+            } catch (Exception e) {
+                Log.e(TAG, "Error releasing codec", e);
+            }
+            mediaCodec = null;
+        }
+    }
+}
@@ -5,17 +5,24 @@ import android.graphics.BitmapFactory;
 import android.graphics.ImageFormat;
 import android.graphics.Rect;
 import android.graphics.YuvImage;
+import android.media.AudioManager;
 import android.media.MediaCodec;
 import android.media.MediaCodecInfo;
 import android.media.MediaCodecList;
 import android.media.MediaFormat;
 import android.media.MediaMuxer;
+import android.os.Bundle;
+import android.os.Trace;
 import android.util.Log;
 
+import com.hsj.camera.CameraAPI;
+
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 // libyuv库（用于性能对比测试，复用 Buffer 优化）
 import io.github.crow_misia.libyuv.Yuy2Buffer;
@@ -34,7 +41,7 @@ public class V4L2VideoRecorder {
 
     private static final String TAG = "V4L2VideoRecorder";
     private static final String MIME_TYPE = "video/avc"; // H.264
-    private static final int FRAME_RATE = 30; // 编码器帧率配置
+    private static final int DEFAULT_FRAME_RATE = 30; // 相机未回报帧率时的编码器帧率
     private static final int I_FRAME_INTERVAL = 2; // I帧间隔（秒）
     private static final int BIT_RATE = 2000000; // 2Mbps
 
@@ -45,19 +52,24 @@ public class V4L2VideoRecorder {
     // ========== 性能测试开关 ==========
     // 设置为 false 使用手动Java转换
     private static final boolean USE_LIBYUV = true;
+    // 设置为 false 关闭自适应码率（固定 BIT_RATE）
+    private static final boolean ADAPTIVE_BITRATE = true;
 
     private MediaCodec mediaCodec;
     private MediaMuxer mediaMuxer;
     private int videoTrackIndex = -1;
-    private boolean muxerStarted = false;
+    private int audioTrackIndex = -1;
+    private volatile boolean muxerStarted = false;
     private boolean isRecording = false;
 
     private int width;
     private int height;
+    private final int frameRate;
     private String outputPath;
+    //相机像素格式（CameraAPI.PIXEL_FORMAT_*），NV16 无法按长度与 YUYV/I422 区分
+    private volatile int pixelFormat = CameraAPI.PIXEL_FORMAT_ERROR;
 
     private long frameIndex = 0;
-    private long startTime = 0;
     private int colorFormat = -1;
 
     // 性能统计
@@ -79,10 +91,73 @@ public class V4L2VideoRecorder {
     // ========== 编码器复用对象（避免每帧分配） ==========
     private MediaCodec.BufferInfo reusableBufferInfo;  // 复用的 BufferInfo
 
+    // ========== 自适应码率 ==========
+    private AdaptiveBitrateController bitrateController;
+    private AdaptiveBitrateController.OnAdaptationListener adaptationListener;
+
+    // ========== 音频轨道 / 音视频同步 ==========
+    // 视频、音频时间戳均为 CLOCK_MONOTONIC 微秒，以第一帧视频的采集时间为 0 点
+    private static final int MAX_PENDING_VIDEO_SAMPLES = 60;  // muxer 启动前最多缓存的视频帧
+    private static final long AUDIO_FORMAT_TIMEOUT_NS = 1_000_000_000L;  // 视频格式就绪后等待音频格式的最长时间
+    private final Object muxerLock = new Object();  // 视频线程与音频线程共用 muxer
+    private final AudioManager audioManager;
+    private final boolean enableAudio;
+    private V4L2AudioEncoder audioEncoder;
+    private MediaFormat videoFormat;
+    private MediaFormat audioFormat;
+    private long videoFormatTimeNs;
+    private boolean audioTimedOut;  // 音频格式等待超时（麦克风被占用/无权限/拔出），只录视频
+    private final List<PendingSample> pendingVideoSamples = new ArrayList<>();
+    private volatile long baseTimestampUs = -1;
+    private long frameTimestampUs;
+
+    /**
+     * muxer 启动前（音频格式还未就绪）编码输出的视频帧
+     */
+    private static final class PendingSample {
+        final ByteBuffer data;
+        final MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+
+        PendingSample(ByteBuffer src, MediaCodec.BufferInfo srcInfo) {
+            data = ByteBuffer.allocateDirect(srcInfo.size);
+            data.put(src).flip();
+            info.set(0, srcInfo.size, srcInfo.presentationTimeUs, srcInfo.flags);
+        }
+    }
+
     public V4L2VideoRecorder(int width, int height, String outputPath) {
+        this(width, height, 0, outputPath, null);
+    }
+
+    public V4L2VideoRecorder(int width, int height, String outputPath, AudioManager audioManager) {
+        this(width, height, 0, outputPath, audioManager);
+    }
+
+    /**
+     * @param frameRate    编码器帧率，传相机实际帧率（CameraAPI.getFrameRate()），0 按 30
+     * @param audioManager 不为 null 时同时录制音频（AAC），需要 RECORD_AUDIO 权限
+     */
+    public V4L2VideoRecorder(int width, int height, int frameRate, String outputPath, AudioManager audioManager) {
         this.width = width;
         this.height = height;
+        this.frameRate = frameRate > 0 ? frameRate : DEFAULT_FRAME_RATE;
         this.outputPath = outputPath;
+        this.audioManager = audioManager;
+        this.enableAudio = audioManager != null;
+    }
+
+    /**
+     * 指定输入帧的像素格式（CameraAPI.getPixelFormat()），未指定时按数据长度和内容判断
+     */
+    public void setPixelFormat(int pixelFormat) {
+        this.pixelFormat = pixelFormat;
+    }
+
+    /**
+     * 设置自适应码率调整回调（每次调整码率/降帧时回调统计信息）
+     */
+    public void setOnAdaptationListener(AdaptiveBitrateController.OnAdaptationListener listener) {
+        this.adaptationListener = listener;
     }
 
     /**
@@ -113,7 +188,7 @@ public class V4L2VideoRecorder {
             MediaFormat format = MediaFormat.createVideoFormat(MIME_TYPE, width, height);
             format.setInteger(MediaFormat.KEY_COLOR_FORMAT, colorFormat);
             format.setInteger(MediaFormat.KEY_BIT_RATE, BIT_RATE);
-            format.setInteger(MediaFormat.KEY_FRAME_RATE, FRAME_RATE);
+            format.setInteger(MediaFormat.KEY_FRAME_RATE, frameRate);
             format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, I_FRAME_INTERVAL);
 
             // ========== 硬件编码器性能优化 ==========
@@ -144,16 +219,26 @@ public class V4L2VideoRecorder {
 
             isRecording = true;
             frameIndex = 0;
-            startTime = System.nanoTime();
+            baseTimestampUs = -1;
 
             // 初始化复用对象（避免每帧分配）
             reusableBufferInfo = new MediaCodec.BufferInfo();
             if (USE_LIBYUV) {
                 initReusableBuffers();
             }
+            if (ADAPTIVE_BITRATE) {
+                bitrateController = new AdaptiveBitrateController(BIT_RATE);
+            }
+            if (enableAudio) {
+                audioEncoder = new V4L2AudioEncoder(audioManager, audioCallback);
+                if (!audioEncoder.start()) {
+                    Log.w(TAG, "Audio unavailable, recording video only");
+                    audioEncoder = null;
+                }
+            }
 
             Log.d(TAG, "Recording started: " + outputPath);
-            Log.d(TAG, "Video format: " + width + "x" + height + " @ " + FRAME_RATE + "fps");
+            Log.d(TAG, "Video format: " + width + "x" + height + " @ " + frameRate + "fps");
             return true;
 
         } catch (Exception e) {
@@ -163,20 +248,40 @@ public class V4L2VideoRecorder {
         }
     }
 
+    /**
+     * 写入一帧数据（支持 YUYV 或 MJPEG），以当前时间作为采集时间
+     */
+    public void writeFrame(ByteBuffer frameData) {
+        writeFrame(frameData, System.nanoTime() / 1000);
+    }
+
     /**
      * 写入一帧数据（支持 YUYV 或 MJPEG）
+     *
+     * @param timestampUs 帧采集时间（CLOCK_MONOTONIC 微秒），见 IFrameTimestampCallback
      */
-    public synchronized void writeFrame(ByteBuffer frameData) {
+    public synchronized void writeFrame(ByteBuffer frameData, long timestampUs) {
         if (!isRecording || mediaCodec == null) {
             Log.w(TAG, "writeFrame called but not recording or codec is null");
             return;
         }
+        if (baseTimestampUs < 0) {
+            baseTimestampUs = timestampUs;
+        }
+        frameTimestampUs = timestampUs;
+
+        // 自适应码率：码率已降到下限仍拥塞时隔帧丢弃，省去转换和编码
+        if (bitrateController != null && bitrateController.shouldSkipFrame(frameIndex)) {
+            frameIndex++;
+            return;
+        }
 
+        // ATrace：与 native 的 v4l2_frame 区段对齐，查看编码耗时
+        final boolean tracing = CameraAPI.isTraceEnabled();
+        if (tracing) Trace.beginSection("recorder_encode");
         try {
             // 将 ByteBuffer 转换为字节数组
-            frameData.rewind();
-            byte[] frameBytes = new byte[frameData.remaining()];
-            frameData.get(frameBytes);
+            byte[] frameBytes = YuvUtils.toByteArray(frameData);
 
             // 第一帧：输出详细信息并检测格式
             if (frameIndex == 0) {
@@ -198,38 +303,35 @@ public class V4L2VideoRecorder {
             }
 
             // 判断数据格式：NV12（MJPEG解码后）、YUYV 或 I422
-            int expectedNV12Size = width * height * 3 / 2;
-            int expectedYUYVSize = width * height * 2;
-
-            if (frameBytes.length == expectedNV12Size) {
+            // YUYV: Y U Y V 交织，前4字节应该是 Y U Y V
+            // I422: 平面分离，前面都是 Y 值
+            int format = pixelFormat == CameraAPI.PIXEL_FORMAT_NV16 ? YuvUtils.FORMAT_NV16
+                    : YuvUtils.detectFormat(frameBytes, width, height);
+            if (format == YuvUtils.FORMAT_NV12) {
                 // NV12 格式（MJPEG 硬件解码后）- 直接传给编码器
                 if (frameIndex == 0) {
                     Log.d(TAG, "✅ Format: NV12 (MJPEG hardware decoded, ready for encoder)");
                 }
                 encodeNV12Frame(frameBytes);
-            } else if (frameBytes.length == expectedYUYVSize) {
-                // YUYV 或 I422 格式 - 检测具体是哪种
-                // YUYV: Y U Y V 交织，前4字节应该是 Y U Y V
-                // I422: 平面分离，前面都是 Y 值
-                boolean isYUYV = isYUYVFormat(frameBytes);
-
+            } else if (format == YuvUtils.FORMAT_NV16) {
                 if (frameIndex == 0) {
-                    if (isYUYV) {
-                        Log.d(TAG, "✅ Format: YUYV (packed, converting to NV12)");
-                    } else {
-                        Log.d(TAG, "✅ Format: I422 (planar YUV422 from MJPEG software decoder, converting to NV12)");
-                    }
+                    Log.d(TAG, "✅ Format: NV16 (ISP semi-planar 4:2:2, dropping odd UV rows to NV12)");
                 }
-
-                if (isYUYV) {
-                    encodeYUYVFrame(frameBytes);
-                } else {
-                    encodeI422Frame(frameBytes);
+                encodeNV12Frame(YuvUtils.nv16ToNV12(frameBytes, width, height));
+            } else if (format == YuvUtils.FORMAT_YUYV) {
+                if (frameIndex == 0) {
+                    Log.d(TAG, "✅ Format: YUYV (packed, converting to NV12)");
+                }
+                encodeYUYVFrame(frameBytes);
+            } else if (format == YuvUtils.FORMAT_I422) {
+                if (frameIndex == 0) {
+                    Log.d(TAG, "✅ Format: I422 (planar YUV422 from MJPEG software decoder, converting to NV12)");
                 }
+                encodeI422Frame(frameBytes);
             } else {
                 // 未知格式
                 Log.e(TAG, "❌ Unknown format: size=" + frameBytes.length +
-                    " (expected NV12=" + expectedNV12Size + " or YUYV/I422=" + expectedYUYVSize + ")");
+                    " (expected NV12=" + (width * height * 3 / 2) + " or YUYV/I422=" + (width * height * 2) + ")");
                 frameIndex++;
                 return;
             }
@@ -241,9 +343,13 @@ public class V4L2VideoRecorder {
                 Log.d(TAG, "Processed frame: " + frameIndex);
             }
 
+            adaptBitrate();
+
         } catch (Exception e) {
             Log.e(TAG, "!!! Error writing frame " + frameIndex, e);
             e.printStackTrace();
+        } finally {
+            if (tracing) Trace.endSection();
         }
     }
 
@@ -284,9 +390,10 @@ public class V4L2VideoRecorder {
                     long encodingStart = System.nanoTime();
 
                     // 提交到编码器
-                    long presentationTimeUs = (System.nanoTime() - startTime) / 1000;
+                    long presentationTimeUs = frameTimestampUs - baseTimestampUs;
                     mediaCodec.queueInputBuffer(inputBufferIndex, 0, yuv420Data.length,
                             presentationTimeUs, 0);
+                    if (bitrateController != null) bitrateController.onInputQueued();
 
                     if (frameIndex == 0) {
                         Log.d(TAG, "First YUYV frame queued to encoder, pts=" + presentationTimeUs);
@@ -302,6 +409,7 @@ public class V4L2VideoRecorder {
                 }
             } else {
                 Log.w(TAG, "!!! No input buffer available, index=" + inputBufferIndex);
+                if (bitrateController != null) bitrateController.onInputDropped();
                 return;
             }
 
@@ -316,45 +424,6 @@ public class V4L2VideoRecorder {
         updatePerformanceStats(conversionTime, encodingTime, frameTime);
     }
 
-    /**
-     * 检测数据是 YUYV（打包）还是 I422（平面）格式
-     * YUYV: Y0 U0 Y1 V0 交织，偶数位置是 Y，奇数位置是 U/V
-     * I422: YYYY... UUUU... VVVV... 平面分离
-     */
-    private boolean isYUYVFormat(byte[] data) {
-        // 检查前几行数据
-        // YUYV：偶数位置（0,2,4...）的值应该与奇数位置（1,3,5...）的值分布不同
-        // I422：前 width*height 字节都是 Y 值，应该连续变化
-
-        // 简单检测：检查第一行数据的方差
-        // YUYV 的奇偶位置方差应该很大（Y vs UV）
-        // I422 的所有值都是 Y，方差应该相对平滑
-
-        int checkLength = Math.min(1920 * 2, data.length); // 检查第一行
-        long sumEven = 0, sumOdd = 0;
-        int countEven = 0, countOdd = 0;
-
-        for (int i = 0; i < checkLength; i++) {
-            int val = data[i] & 0xFF;
-            if (i % 2 == 0) {
-                sumEven += val;
-                countEven++;
-            } else {
-                sumOdd += val;
-                countOdd++;
-            }
-        }
-
-        double avgEven = (double) sumEven / countEven;
-        double avgOdd = (double) sumOdd / countOdd;
-        double diff = Math.abs(avgEven - avgOdd);
-
-        // YUYV: Y 平均值通常在 64-192 范围，UV 平均值接近 128
-        // I422: 全是 Y 值，奇偶平均值应该很接近
-        // 如果差异小于 5，认为是 I422（平面）
-        return diff >= 5.0;
-    }
-
     /**
      * 编码 I422 格式的帧（MJPEG 软件解码后的 YUV422 平面格式）
      * I422 格式: YYYY...UUUU...VVVV... (平面分离)
@@ -398,9 +467,10 @@ public class V4L2VideoRecorder {
                     long encodingStart = System.nanoTime();
 
                     // 提交到编码器
-                    long presentationTimeUs = (System.nanoTime() - startTime) / 1000;
+                    long presentationTimeUs = frameTimestampUs - baseTimestampUs;
                     mediaCodec.queueInputBuffer(inputBufferIndex, 0, nv12Data.length,
                             presentationTimeUs, 0);
+                    if (bitrateController != null) bitrateController.onInputQueued();
 
                     if (frameIndex == 0) {
                         Log.d(TAG, "First I422 frame queued to encoder, pts=" + presentationTimeUs);
@@ -416,6 +486,7 @@ public class V4L2VideoRecorder {
                 }
             } else {
                 Log.w(TAG, "!!! No input buffer available, index=" + inputBufferIndex);
+                if (bitrateController != null) bitrateController.onInputDropped();
                 return;
             }
 
@@ -431,49 +502,18 @@ public class V4L2VideoRecorder {
     }
 
     /**
-     * 将 I422 格式转换为 NV12 格式
-     * I422 (planar YUV422): Y(W*H) + U(W/2*H) + V(W/2*H) = W*H*2
-     * NV12 (semi-planar 4:2:0): Y(W*H) + UV_interleaved(W*H/2)
+     * 将 I422 格式转换为 NV12 格式（纯 Java，见 YuvUtils），第一帧输出平面布局
      */
     private byte[] i422ToNV12(byte[] i422, int width, int height) {
-        int ySize = width * height;
-        int chromaWidth = width / 2;  // 4:2:2 水平减半
-        int chromaHeight422 = height; // 4:2:2 垂直不变
-        int chromaHeight420 = height / 2; // 4:2:0 垂直减半
-
-        byte[] nv12 = new byte[ySize + ySize / 2];
-
-        // 1. 复制 Y 平面
-        System.arraycopy(i422, 0, nv12, 0, ySize);
-
-        // 2. I422 的 U/V 平面位置
-        int i422UOffset = ySize;
-        int i422VOffset = ySize + chromaWidth * chromaHeight422;
-
-        // 3. NV12 的 UV 平面起始位置
-        int nv12UVOffset = ySize;
-
-        // 4. 转换：垂直每两行取一行，交织 U/V
-        // 注意：先尝试 UV 顺序，如果颜色还是不对，换成 VU
-        int outputIdx = 0;
-        for (int y = 0; y < chromaHeight422; y += 2) {
-            for (int x = 0; x < chromaWidth; x++) {
-                int srcIdx = y * chromaWidth + x;
-
-                // UV 交织
-                nv12[nv12UVOffset + outputIdx * 2] = i422[i422UOffset + srcIdx];     // U
-                nv12[nv12UVOffset + outputIdx * 2 + 1] = i422[i422VOffset + srcIdx]; // V
-                outputIdx++;
-            }
-        }
-
+        byte[] nv12 = YuvUtils.i422ToNV12(i422, width, height);
         if (frameIndex == 0) {
+            int ySize = width * height;
+            int chromaWidth = width / 2;
             Log.d(TAG, String.format("I422→NV12: ySize=%d, chromaWidth=%d, chromaHeight422=%d, chromaHeight420=%d",
-                ySize, chromaWidth, chromaHeight422, chromaHeight420));
-            Log.d(TAG, String.format("  I422 U offset=%d, V offset=%d", i422UOffset, i422VOffset));
-            Log.d(TAG, String.format("  NV12 UV offset=%d, total size=%d", nv12UVOffset, nv12.length));
+                ySize, chromaWidth, height, height / 2));
+            Log.d(TAG, String.format("  I422 U offset=%d, V offset=%d", ySize, ySize + chromaWidth * height));
+            Log.d(TAG, String.format("  NV12 UV offset=%d, total size=%d", ySize, nv12.length));
         }
-
         return nv12;
     }
 
@@ -607,9 +647,10 @@ public class V4L2VideoRecorder {
                     long encodingStart = System.nanoTime();
 
                     // 提交到编码器
-                    long presentationTimeUs = (System.nanoTime() - startTime) / 1000;
+                    long presentationTimeUs = frameTimestampUs - baseTimestampUs;
                     mediaCodec.queueInputBuffer(inputBufferIndex, 0, nv12Data.length,
                             presentationTimeUs, 0);
+                    if (bitrateController != null) bitrateController.onInputQueued();
 
                     if (frameIndex == 0) {
                         Log.d(TAG, "First NV12 frame queued to encoder, pts=" + presentationTimeUs);
@@ -625,6 +666,7 @@ public class V4L2VideoRecorder {
                 }
             } else {
                 Log.w(TAG, "!!! No input buffer available, index=" + inputBufferIndex);
+                if (bitrateController != null) bitrateController.onInputDropped();
                 return;
             }
 
@@ -639,6 +681,32 @@ public class V4L2VideoRecorder {
         updatePerformanceStats(0, encodingTime, frameTime);
     }
 
+    /**
+     * 自适应码率：按窗口评估编码器背压，必要时通过 setParameters 动态调整码率并请求关键帧
+     */
+    private void adaptBitrate() {
+        if (bitrateController == null) return;
+        AdaptiveBitrateController.Stats stats = bitrateController.evaluate(System.nanoTime());
+        if (stats == null) return;
+
+        try {
+            Bundle params = new Bundle();
+            if (stats.newBitRate != stats.oldBitRate) {
+                params.putInt(MediaCodec.PARAMETER_KEY_VIDEO_BITRATE, stats.newBitRate);
+            }
+            // 调整后立即请求关键帧，让新码率尽快生效且不拖累后续 GOP
+            params.putInt(MediaCodec.PARAMETER_KEY_REQUEST_SYNC_FRAME, 0);
+            mediaCodec.setParameters(params);
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Failed to apply adaptive bitrate: " + e.getMessage());
+        }
+
+        Log.i(TAG, "⚙ Adaptive bitrate " + stats);
+        if (adaptationListener != null) {
+            adaptationListener.onAdaptation(stats);
+        }
+    }
+
     /**
      * 更新性能统计并定期输出
      */
@@ -844,73 +912,23 @@ public class V4L2VideoRecorder {
      *   - UV平面：水平每2像素取一对，垂直平均相邻两行的UV值
      */
     private byte[] yuyvToYUV420Fallback(byte[] yuyv, int width, int height, int colorFormat) {
-        int frameSize = width * height;
-        byte[] yuv420 = new byte[frameSize * 3 / 2];
-        final int yuyvLineStride = width * 2;  // YUYV每行字节数 = width × 2
-
-        // ========== Y 平面提取 ==========
-        // YUYV格式：Y0 U0 Y1 V0 Y2 U1 Y3 V1 ...
-        // Y值在偶数位置 (0, 2, 4, ...)
-        int yIndex = 0;
-        for (int j = 0; j < height; j++) {
-            int lineStart = j * yuyvLineStride;
-            for (int i = 0; i < width; i++) {
-                // YUYV格式：Y在偶数位置 (0, 2, 4, ...)
-                yuv420[yIndex++] = yuyv[lineStart + i * 2];
-            }
-        }
-
-        // ========== UV 平面提取 ==========
-        // YUYV格式：Y0 U0 Y1 V0 Y2 U1 Y3 V1 ...
-        // U在位置1,5,9... V在位置3,7,11...
-        if (colorFormat == MediaCodecInfo.CodecCapabilities.COLOR_FormatYUV420SemiPlanar ||
-            colorFormat == MediaCodecInfo.CodecCapabilities.COLOR_FormatYUV420PackedSemiPlanar) {
-            // NV12格式：UVUV...
-            int uvIndex = frameSize;
-            for (int j = 0; j < height; j += 2) {  // 每2行采样一次（垂直下采样）
-                int lineStart = j * yuyvLineStride;
-
-                for (int i = 0; i < width; i += 2) {  // 每2列采样一次（水平下采样）
-                    int col = i * 2;  // YUYV中的列位置
-
-                    // YUYV格式: Y0 U0 Y1 V0，U在+1，V在+3
-                    byte u = yuyv[lineStart + col + 1];  // U在位置1
-                    byte v = yuyv[lineStart + col + 3];  // V在位置3
-
-                    yuv420[uvIndex++] = u;  // U
-                    yuv420[uvIndex++] = v;  // V
-                }
-            }
+        boolean semiPlanar = colorFormat == MediaCodecInfo.CodecCapabilities.COLOR_FormatYUV420SemiPlanar ||
+            colorFormat == MediaCodecInfo.CodecCapabilities.COLOR_FormatYUV420PackedSemiPlanar;
+        byte[] yuv420 = YuvUtils.yuyvToYUV420(yuyv, width, height, semiPlanar);
 
-            // 调试：输出第一帧的前几个UV值
-            if (frameIndex == 0) {
-                Log.d(TAG, String.format("Fallback UV first 16 bytes (YUYV→NV12): " +
-                    "%02X %02X %02X %02X %02X %02X %02X %02X %02X %02X %02X %02X %02X %02X %02X %02X",
-                    yuv420[frameSize] & 0xFF, yuv420[frameSize+1] & 0xFF,
-                    yuv420[frameSize+2] & 0xFF, yuv420[frameSize+3] & 0xFF,
-                    yuv420[frameSize+4] & 0xFF, yuv420[frameSize+5] & 0xFF,
-                    yuv420[frameSize+6] & 0xFF, yuv420[frameSize+7] & 0xFF,
-                    yuv420[frameSize+8] & 0xFF, yuv420[frameSize+9] & 0xFF,
-                    yuv420[frameSize+10] & 0xFF, yuv420[frameSize+11] & 0xFF,
-                    yuv420[frameSize+12] & 0xFF, yuv420[frameSize+13] & 0xFF,
-                    yuv420[frameSize+14] & 0xFF, yuv420[frameSize+15] & 0xFF));
-            }
-
-        } else {
-            // I420格式：U和V分别存储（UUU...VVV...）
-            int uIndex = frameSize;
-            int vIndex = frameSize + frameSize / 4;
-
-            for (int j = 0; j < height; j += 2) {
-                int lineStart = j * yuyvLineStride;
-
-                for (int i = 0; i < width; i += 2) {
-                    int col = i * 2;
-
-                    yuv420[uIndex++] = yuyv[lineStart + col + 1];  // YUYV: U在位置1
-                    yuv420[vIndex++] = yuyv[lineStart + col + 3];  // YUYV: V在位置3
-                }
-            }
+        // 调试：输出第一帧的前几个UV值
+        if (semiPlanar && frameIndex == 0) {
+            int frameSize = width * height;
+            Log.d(TAG, String.format("Fallback UV first 16 bytes (YUYV→NV12): " +
+                "%02X %02X %02X %02X %02X %02X %02X %02X %02X %02X %02X %02X %02X %02X %02X %02X",
+                yuv420[frameSize] & 0xFF, yuv420[frameSize+1] & 0xFF,
+                yuv420[frameSize+2] & 0xFF, yuv420[frameSize+3] & 0xFF,
+                yuv420[frameSize+4] & 0xFF, yuv420[frameSize+5] & 0xFF,
+                yuv420[frameSize+6] & 0xFF, yuv420[frameSize+7] & 0xFF,
+                yuv420[frameSize+8] & 0xFF, yuv420[frameSize+9] & 0xFF,
+                yuv420[frameSize+10] & 0xFF, yuv420[frameSize+11] & 0xFF,
+                yuv420[frameSize+12] & 0xFF, yuv420[frameSize+13] & 0xFF,
+                yuv420[frameSize+14] & 0xFF, yuv420[frameSize+15] & 0xFF));
         }
 
         Log.d(TAG, "✅ Using YUYV→YUV420 fallback conversion");
@@ -1041,7 +1059,7 @@ public class V4L2VideoRecorder {
                     inputBuffer.put(yuvData);
 
                     // 提交到编码器
-                    long presentationTimeUs = (System.nanoTime() - startTime) / 1000;
+                    long presentationTimeUs = frameTimestampUs - baseTimestampUs;
                     mediaCodec.queueInputBuffer(inputBufferIndex, 0, yuvData.length,
                             presentationTimeUs, 0);
 
@@ -1068,6 +1086,19 @@ public class V4L2VideoRecorder {
      * 从编码器中取出编码后的数据
      */
     private void drainEncoder(boolean endOfStream) {
+        if (!CameraAPI.isTraceEnabled()) {
+            drainEncoderOutput(endOfStream);
+            return;
+        }
+        Trace.beginSection("recorder_drain");
+        try {
+            drainEncoderOutput(endOfStream);
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    private void drainEncoderOutput(boolean endOfStream) {
         if (endOfStream && mediaCodec != null) {
             try {
                 int inputBufferIndex = mediaCodec.dequeueInputBuffer(INPUT_TIMEOUT_USEC);
@@ -1097,10 +1128,11 @@ public class V4L2VideoRecorder {
                 }
                 MediaFormat newFormat = mediaCodec.getOutputFormat();
                 Log.d(TAG, "Output format changed: " + newFormat);
-                videoTrackIndex = mediaMuxer.addTrack(newFormat);
-                mediaMuxer.start();
-                muxerStarted = true;
-                Log.d(TAG, "Muxer started with track: " + videoTrackIndex);
+                synchronized (muxerLock) {
+                    videoFormat = newFormat;
+                    videoFormatTimeNs = System.nanoTime();
+                    startMuxerIfReady();
+                }
             } else if (outputBufferIndex < 0) {
                 // 忽略
             } else {
@@ -1115,13 +1147,12 @@ public class V4L2VideoRecorder {
                 }
 
                 if (bufferInfo.size != 0) {
-                    if (!muxerStarted) {
+                    outputBuffer.position(bufferInfo.offset);
+                    outputBuffer.limit(bufferInfo.offset + bufferInfo.size);
+                    if (!writeVideoSample(outputBuffer, bufferInfo)) {
                         Log.w(TAG, "Muxer hasn't started, dropping frame");
                     } else {
-                        outputBuffer.position(bufferInfo.offset);
-                        outputBuffer.limit(bufferInfo.offset + bufferInfo.size);
-
-                        mediaMuxer.writeSampleData(videoTrackIndex, outputBuffer, bufferInfo);
+                        if (bitrateController != null) bitrateController.onOutputSample(bufferInfo.size);
 
                         if (frameIndex % 30 == 0) {
                             Log.d(TAG, "Wrote sample: size=" + bufferInfo.size +
@@ -1139,6 +1170,81 @@ public class V4L2VideoRecorder {
         }
     }
 
+    /**
+     * 音频格式和视频格式都就绪后才能添加轨道并启动 muxer（调用方持有 muxerLock）
+     * 音频格式等待超时或音频已停止时只添加视频轨道
+     */
+    private void startMuxerIfReady() {
+        if (muxerStarted || videoFormat == null) return;
+        if (audioEncoder != null && audioFormat == null && !audioTimedOut) {
+            Log.d(TAG, "Waiting for audio format before starting muxer");
+            return;
+        }
+        videoTrackIndex = mediaMuxer.addTrack(videoFormat);
+        if (audioFormat != null) {
+            audioTrackIndex = mediaMuxer.addTrack(audioFormat);
+        }
+        mediaMuxer.start();
+        muxerStarted = true;
+        Log.d(TAG, "Muxer started with video track: " + videoTrackIndex + ", audio track: " + audioTrackIndex);
+
+        for (PendingSample sample : pendingVideoSamples) {
+            mediaMuxer.writeSampleData(videoTrackIndex, sample.data, sample.info);
+        }
+        pendingVideoSamples.clear();
+    }
+
+    /**
+     * @return false: muxer 未启动且缓存已满，帧被丢弃
+     */
+    private boolean writeVideoSample(ByteBuffer data, MediaCodec.BufferInfo info) {
+        synchronized (muxerLock) {
+            if (!muxerStarted && videoFormat != null && audioFormat == null && !audioTimedOut
+                    && (pendingVideoSamples.size() >= MAX_PENDING_VIDEO_SAMPLES
+                    || System.nanoTime() - videoFormatTimeNs >= AUDIO_FORMAT_TIMEOUT_NS)) {
+                audioTimedOut = true;
+                Log.w(TAG, "Audio format not ready after " + pendingVideoSamples.size()
+                        + " video samples, recording video only");
+                startMuxerIfReady();
+            }
+            if (muxerStarted) {
+                mediaMuxer.writeSampleData(videoTrackIndex, data, info);
+                return true;
+            }
+            if (videoFormat == null || pendingVideoSamples.size() >= MAX_PENDING_VIDEO_SAMPLES) {
+                return false;
+            }
+            pendingVideoSamples.add(new PendingSample(data, info));
+            return true;
+        }
+    }
+
+    /**
+     * 音频编码输出（音频线程），时间戳换算到以第一帧视频为 0 点，早于第一帧视频的音频丢弃
+     */
+    private final V4L2AudioEncoder.Callback audioCallback = new V4L2AudioEncoder.Callback() {
+        @Override
+        public void onAudioFormat(MediaFormat format) {
+            Log.d(TAG, "Audio format changed: " + format);
+            synchronized (muxerLock) {
+                audioFormat = format;
+                if (mediaMuxer != null) startMuxerIfReady();
+            }
+        }
+
+        @Override
+        public void onAudioSample(ByteBuffer data, MediaCodec.BufferInfo info) {
+            long baseUs = baseTimestampUs;
+            if (baseUs < 0 || info.presentationTimeUs < baseUs) return;
+            info.presentationTimeUs -= baseUs;
+            synchronized (muxerLock) {
+                if (muxerStarted && audioTrackIndex >= 0) {
+                    mediaMuxer.writeSampleData(audioTrackIndex, data, info);
+                }
+            }
+        }
+    };
+
     /**
      * 停止录制
      */
@@ -1150,6 +1256,16 @@ public class V4L2VideoRecorder {
 
         isRecording = false;
 
+        // 先停止音频（等待 AAC 编码器输出完毕），之后 muxer 只剩视频线程访问
+        if (audioEncoder != null) {
+            audioEncoder.stop();
+            audioEncoder = null;
+        }
+        // 音频一直没有输出格式时，muxer 仍未启动：只用视频轨道启动，写出缓存的视频帧
+        synchronized (muxerLock) {
+            if (mediaMuxer != null) startMuxerIfReady();
+        }
+
         try {
             if (mediaCodec != null) {
                 Log.d(TAG, "Draining encoder...");
@@ -1168,6 +1284,10 @@ public class V4L2VideoRecorder {
      * 释放资源
      */
     private void release() {
+        if (audioEncoder != null) {
+            audioEncoder.stop();
+            audioEncoder = null;
+        }
         if (mediaCodec != null) {
             try {
                 mediaCodec.stop();
@@ -1194,9 +1314,15 @@ public class V4L2VideoRecorder {
 
         // 释放 libyuv 复用 buffer
         releaseReusableBuffers();
+        bitrateController = null;
 
         muxerStarted = false;
         videoTrackIndex = -1;
+        audioTrackIndex = -1;
+        videoFormat = null;
+        audioFormat = null;
+        audioTimedOut = false;
+        pendingVideoSamples.clear();
     }
 
     /**
@@ -1281,93 +1407,18 @@ public class V4L2VideoRecorder {
             colorFormat == MediaCodecInfo.CodecCapabilities.COLOR_FormatYUV420PackedSemiPlanar) {
             // NV12 or NV21
             yuv = new byte[w * h * 3 / 2];
-            encodeYUV420SP(yuv, argb, w, h);
+            YuvUtils.encodeYUV420SP(yuv, argb, w, h);
         } else if (colorFormat == MediaCodecInfo.CodecCapabilities.COLOR_FormatYUV420Planar) {
             // I420
             yuv = new byte[w * h * 3 / 2];
-            encodeYUV420P(yuv, argb, w, h);
+            YuvUtils.encodeYUV420P(yuv, argb, w, h);
         } else {
             // Flexible - 默认使用 NV12
             yuv = new byte[w * h * 3 / 2];
-            encodeYUV420SP(yuv, argb, w, h);
+            YuvUtils.encodeYUV420SP(yuv, argb, w, h);
         }
 
         return yuv;
     }
 
-    /**
-     * RGB 转 YUV420SP (NV12/NV21)
-     */
-    private void encodeYUV420SP(byte[] yuv420sp, int[] argb, int width, int height) {
-        final int frameSize = width * height;
-
-        int yIndex = 0;
-        int uvIndex = frameSize;
-
-        int R, G, B, Y, U, V;
-        int index = 0;
-
-        for (int j = 0; j < height; j++) {
-            for (int i = 0; i < width; i++) {
-                R = (argb[index] & 0xff0000) >> 16;
-                G = (argb[index] & 0xff00) >> 8;
-                B = (argb[index] & 0xff);
-
-                // RGB to YUV (BT.601)
-                Y = ((66 * R + 129 * G + 25 * B + 128) >> 8) + 16;
-                U = ((-38 * R - 74 * G + 112 * B + 128) >> 8) + 128;
-                V = ((112 * R - 94 * G - 18 * B + 128) >> 8) + 128;
-
-                yuv420sp[yIndex++] = (byte) ((Y < 0) ? 0 : ((Y > 255) ? 255 : Y));
-
-                if (j % 2 == 0 && index % 2 == 0 && uvIndex < yuv420sp.length - 1) {
-                    yuv420sp[uvIndex++] = (byte) ((U < 0) ? 0 : ((U > 255) ? 255 : U));
-                    yuv420sp[uvIndex++] = (byte) ((V < 0) ? 0 : ((V > 255) ? 255 : V));
-                }
-
-                index++;
-            }
-        }
-    }
-
-    /**
-     * RGB 转 YUV420P (I420)
-     */
-    private void encodeYUV420P(byte[] yuv420p, int[] argb, int width, int height) {
-        final int frameSize = width * height;
-        final int uvSize = frameSize / 4;
-
-        int yIndex = 0;
-        int uIndex = frameSize;
-        int vIndex = frameSize + uvSize;
-
-        int R, G, B, Y, U, V;
-        int index = 0;
-
-        for (int j = 0; j < height; j++) {
-            for (int i = 0; i < width; i++) {
-                R = (argb[index] & 0xff0000) >> 16;
-                G = (argb[index] & 0xff00) >> 8;
-                B = (argb[index] & 0xff);
-
-                // RGB to YUV (BT.601)
-                Y = ((66 * R + 129 * G + 25 * B + 128) >> 8) + 16;
-                U = ((-38 * R - 74 * G + 112 * B + 128) >> 8) + 128;
-                V = ((112 * R - 94 * G - 18 * B + 128) >> 8) + 128;
-
-                yuv420p[yIndex++] = (byte) ((Y < 0) ? 0 : ((Y > 255) ? 255 : Y));
-
-                if (j % 2 == 0 && index % 2 == 0) {
-                    if (uIndex < frameSize + uvSize) {
-                        yuv420p[uIndex++] = (byte) ((U < 0) ? 0 : ((U > 255) ? 255 : U));
-                    }
-                    if (vIndex < yuv420p.length) {
-                        yuv420p[vIndex++] = (byte) ((V < 0) ? 0 : ((V > 255) ? 255 : V));
-                    }
-                }
-
-                index++;
-            }
-        }
-    }
 }
@@ -0,0 +1,271 @@
+package com.hsj.sample;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @Author:Hsj
+ * @Date:2026/10/18
+ * @Class:YuvUtils
+ * @Desc:V4L2VideoRecorder 的纯 Java 帧处理（格式判断、YUV 转换），不依赖 Android API，
+ *       benchmark 模块（JMH）直接编译本文件在主机 JVM 上测量耗时与每帧分配
+ */
+final class YuvUtils {
+
+    static final int FORMAT_UNKNOWN = 0;
+    static final int FORMAT_NV12 = 1;   //MJPEG 硬解
+    static final int FORMAT_YUYV = 2;   //YUYV 打包
+    static final int FORMAT_I422 = 3;   //MJPEG 软解（平面）
+    static final int FORMAT_NV16 = 4;   //ISP 半平面 4:2:2（长度与 YUYV 相同，需由相机像素格式指定）
+
+    private YuvUtils() {
+    }
+
+    /**
+     * 帧回调 ByteBuffer -> byte[]（仅在回调内有效的 buffer 需要拷贝）
+     */
+    static byte[] toByteArray(ByteBuffer frameData) {
+        frameData.rewind();
+        byte[] frameBytes = new byte[frameData.remaining()];
+        frameData.get(frameBytes);
+        return frameBytes;
+    }
+
+    /**
+     * 按数据长度和内容判断帧格式
+     */
+    static int detectFormat(byte[] data, int width, int height) {
+        if (data.length == width * height * 3 / 2) {
+            return FORMAT_NV12;
+        } else if (data.length == width * height * 2) {
+            return isYUYVFormat(data) ? FORMAT_YUYV : FORMAT_I422;
+        } else {
+            return FORMAT_UNKNOWN;
+        }
+    }
+
+    /**
+     * 检测数据是 YUYV（打包）还是 I422（平面）格式
+     * YUYV: Y0 U0 Y1 V0 交织，偶数位置是 Y，奇数位置是 U/V
+     * I422: YYYY... UUUU... VVVV... 平面分离
+     */
+    static boolean isYUYVFormat(byte[] data) {
+        // 检查前几行数据
+        // YUYV：偶数位置（0,2,4...）的值应该与奇数位置（1,3,5...）的值分布不同
+        // I422：前 width*height 字节都是 Y 值，应该连续变化
+
+        // 简单检测：检查第一行数据的方差
+        // YUYV 的奇偶位置方差应该很大（Y vs UV）
+        // I422 的所有值都是 Y，方差应该相对平滑
+
+        int checkLength = Math.min(1920 * 2, data.length); // 检查第一行
+        long sumEven = 0, sumOdd = 0;
+        int countEven = 0, countOdd = 0;
+
+        for (int i = 0; i < checkLength; i++) {
+            int val = data[i] & 0xFF;
+            if (i % 2 == 0) {
+                sumEven += val;
+                countEven++;
+            } else {
+                sumOdd += val;
+                countOdd++;
+            }
+        }
+
+        double avgEven = (double) sumEven / countEven;
+        double avgOdd = (double) sumOdd / countOdd;
+        double diff = Math.abs(avgEven - avgOdd);
+
+        // YUYV: Y 平均值通常在 64-192 范围，UV 平均值接近 128
+        // I422: 全是 Y 值，奇偶平均值应该很接近
+        // 如果差异小于 5，认为是 I422（平面）
+        return diff >= 5.0;
+    }
+
+    /**
+     * NV16 -> NV12：Y 原样，UV 行隔行取一行（UV 已交织，无需拆分）
+     */
+    static byte[] nv16ToNV12(byte[] nv16, int width, int height) {
+        int ySize = width * height;
+        byte[] nv12 = new byte[ySize + ySize / 2];
+        System.arraycopy(nv16, 0, nv12, 0, ySize);
+        for (int y = 0; y < height / 2; y++) {
+            System.arraycopy(nv16, ySize + y * 2 * width, nv12, ySize + y * width, width);
+        }
+        return nv12;
+    }
+
+    /**
+     * 将 I422 格式转换为 NV12 格式
+     * I422 (planar YUV422): Y(W*H) + U(W/2*H) + V(W/2*H) = W*H*2
+     * NV12 (semi-planar 4:2:0): Y(W*H) + UV_interleaved(W*H/2)
+     */
+    static byte[] i422ToNV12(byte[] i422, int width, int height) {
+        int ySize = width * height;
+        int chromaWidth = width / 2;  // 4:2:2 水平减半
+        int chromaHeight422 = height; // 4:2:2 垂直不变
+
+        byte[] nv12 = new byte[ySize + ySize / 2];
+
+        // 1. 复制 Y 平面
+        System.arraycopy(i422, 0, nv12, 0, ySize);
+
+        // 2. I422 的 U/V 平面位置
+        int i422UOffset = ySize;
+        int i422VOffset = ySize + chromaWidth * chromaHeight422;
+
+        // 3. NV12 的 UV 平面起始位置
+        int nv12UVOffset = ySize;
+
+        // 4. 转换：垂直每两行取一行，交织 U/V
+        int outputIdx = 0;
+        for (int y = 0; y < chromaHeight422; y += 2) {
+            for (int x = 0; x < chromaWidth; x++) {
+                int srcIdx = y * chromaWidth + x;
+
+                // UV 交织
+                nv12[nv12UVOffset + outputIdx * 2] = i422[i422UOffset + srcIdx];     // U
+                nv12[nv12UVOffset + outputIdx * 2 + 1] = i422[i422VOffset + srcIdx]; // V
+                outputIdx++;
+            }
+        }
+        return nv12;
+    }
+
+    /**
+     * 手动 YUYV 到 YUV420 转换
+     *
+     * YUYV格式 (4:2:2): Y0 U0 Y1 V0 Y2 U1 Y3 V1 ...
+     *   - 每2个像素共享一对UV（水平2:1采样）
+     *   - 每行都有完整的UV数据
+     *
+     * YUV420 (4:2:0):
+     *   - Y平面: width × height
+     *   - UV平面: (width/2) × (height/2)，每4个像素（2×2块）共享一对UV
+     *
+     * 转换策略：
+     *   - Y平面：直接复制所有Y值
+     *   - UV平面：水平每2像素取一对，垂直取偶数行
+     *
+     * @param semiPlanar true: NV12（UVUV...），false: I420（UUU...VVV...）
+     */
+    static byte[] yuyvToYUV420(byte[] yuyv, int width, int height, boolean semiPlanar) {
+        int frameSize = width * height;
+        byte[] yuv420 = new byte[frameSize * 3 / 2];
+        final int yuyvLineStride = width * 2;  // YUYV每行字节数 = width × 2
+
+        // ========== Y 平面提取 ==========
+        // Y值在偶数位置 (0, 2, 4, ...)
+        int yIndex = 0;
+        for (int j = 0; j < height; j++) {
+            int lineStart = j * yuyvLineStride;
+            for (int i = 0; i < width; i++) {
+                yuv420[yIndex++] = yuyv[lineStart + i * 2];
+            }
+        }
+
+        // ========== UV 平面提取 ==========
+        // U在位置1,5,9... V在位置3,7,11...
+        if (semiPlanar) {
+            // NV12格式：UVUV...
+            int uvIndex = frameSize;
+            for (int j = 0; j < height; j += 2) {  // 每2行采样一次（垂直下采样）
+                int lineStart = j * yuyvLineStride;
+                for (int i = 0; i < width; i += 2) {  // 每2列采样一次（水平下采样）
+                    int col = i * 2;  // YUYV中的列位置
+                    yuv420[uvIndex++] = yuyv[lineStart + col + 1];  // U在位置1
+                    yuv420[uvIndex++] = yuyv[lineStart + col + 3];  // V在位置3
+                }
+            }
+        } else {
+            // I420格式：U和V分别存储（UUU...VVV...）
+            int uIndex = frameSize;
+            int vIndex = frameSize + frameSize / 4;
+            for (int j = 0; j < height; j += 2) {
+                int lineStart = j * yuyvLineStride;
+                for (int i = 0; i < width; i += 2) {
+                    int col = i * 2;
+                    yuv420[uIndex++] = yuyv[lineStart + col + 1];  // YUYV: U在位置1
+                    yuv420[vIndex++] = yuyv[lineStart + col + 3];  // YUYV: V在位置3
+                }
+            }
+        }
+        return yuv420;
+    }
+
+    /**
+     * RGB 转 YUV420SP (NV12/NV21)
+     */
+    static void encodeYUV420SP(byte[] yuv420sp, int[] argb, int width, int height) {
+        final int frameSize = width * height;
+
+        int yIndex = 0;
+        int uvIndex = frameSize;
+
+        int R, G, B, Y, U, V;
+        int index = 0;
+
+        for (int j = 0; j < height; j++) {
+            for (int i = 0; i < width; i++) {
+                R = (argb[index] & 0xff0000) >> 16;
+                G = (argb[index] & 0xff00) >> 8;
+                B = (argb[index] & 0xff);
+
+                // RGB to YUV (BT.601)
+                Y = ((66 * R + 129 * G + 25 * B + 128) >> 8) + 16;
+                U = ((-38 * R - 74 * G + 112 * B + 128) >> 8) + 128;
+                V = ((112 * R - 94 * G - 18 * B + 128) >> 8) + 128;
+
+                yuv420sp[yIndex++] = (byte) ((Y < 0) ? 0 : ((Y > 255) ? 255 : Y));
+
+                if (j % 2 == 0 && index % 2 == 0 && uvIndex < yuv420sp.length - 1) {
+                    yuv420sp[uvIndex++] = (byte) ((U < 0) ? 0 : ((U > 255) ? 255 : U));
+                    yuv420sp[uvIndex++] = (byte) ((V < 0) ? 0 : ((V > 255) ? 255 : V));
+                }
+
+                index++;
+            }
+        }
+    }
+
+    /**
+     * RGB 转 YUV420P (I420)
+     */
+    static void encodeYUV420P(byte[] yuv420p, int[] argb, int width, int height) {
+        final int frameSize = width * height;
+        final int uvSize = frameSize / 4;
+
+        int yIndex = 0;
+        int uIndex = frameSize;
+        int vIndex = frameSize + uvSize;
+
+        int R, G, B, Y, U, V;
+        int index = 0;
+
+        for (int j = 0; j < height; j++) {
+            for (int i = 0; i < width; i++) {
+                R = (argb[index] & 0xff0000) >> 16;
+                G = (argb[index] & 0xff00) >> 8;
+                B = (argb[index] & 0xff);
+
+                // RGB to YUV (BT.601)
+                Y = ((66 * R + 129 * G + 25 * B + 128) >> 8) + 16;
+                U = ((-38 * R - 74 * G + 112 * B + 128) >> 8) + 128;
+                V = ((112 * R - 94 * G - 18 * B + 128) >> 8) + 128;
+
+                yuv420p[yIndex++] = (byte) ((Y < 0) ? 0 : ((Y > 255) ? 255 : Y));
+
+                if (j % 2 == 0 && index % 2 == 0) {
+                    if (uIndex < frameSize + uvSize) {
+                        yuv420p[uIndex++] = (byte) ((U < 0) ? 0 : ((U > 255) ? 255 : U));
+                    }
+                    if (vIndex < yuv420p.length) {
+                        yuv420p[vIndex++] = (byte) ((V < 0) ? 0 : ((V > 255) ? 255 : V));
+                    }
+                }
+
+                index++;
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.hsj.sample;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @Author:Hsj
+ * @Date:2026/10/18
+ * @Class:AdaptiveBitrateControllerTest
+ * @Desc:自适应码率控制器的窗口统计、降码率/降帧步进与恢复迟滞
+ */
+public class AdaptiveBitrateControllerTest {
+
+    private static final long WINDOW_NS = 1_000_000_000L;
+    private static final int INITIAL_BIT_RATE = 8_000_000;
+
+    private AdaptiveBitrateController controller;
+    private long nowNs;
+
+    @Before
+    public void setUp() {
+        controller = new AdaptiveBitrateController(INITIAL_BIT_RATE);
+        nowNs = 5 * WINDOW_NS;
+        //第一次调用只开始窗口
+        assertNull(controller.evaluate(nowNs));
+    }
+
+    @Test
+    public void waitsForFullWindow() {
+        congest();
+        assertNull(controller.evaluate(nowNs + WINDOW_NS / 2));
+        assertNotNull(controller.evaluate(nowNs + WINDOW_NS));
+    }
+
+    @Test
+    public void lowersBitRateOnDrops() {
+        AdaptiveBitrateController.Stats stats = congestedWindow();
+        assertNotNull(stats);
+        assertEquals(INITIAL_BIT_RATE, stats.oldBitRate);
+        assertEquals((int) (INITIAL_BIT_RATE * 0.75f), stats.newBitRate);
+        assertEquals(1, stats.newFrameStep);
+        assertEquals(1, stats.adaptationCount);
+        assertEquals(stats.newBitRate, controller.getBitRate());
+    }
+
+    @Test
+    public void lowersBitRateOnEncoderBacklog() {
+        //只送不出：积压持续增加，没有丢帧
+        for (int i = 0; i < 10; i++) {
+            controller.onInputQueued();
+        }
+        AdaptiveBitrateController.Stats stats = nextWindow();
+        assertNotNull(stats);
+        assertEquals(0f, stats.dropRatio, 0f);
+        assertTrue(stats.avgQueueDepth > 3f);
+        assertTrue(controller.getBitRate() < INITIAL_BIT_RATE);
+    }
+
+    @Test
+    public void skipsFramesOnlyAtMinBitRate() {
+        final int minBitRate = INITIAL_BIT_RATE / 4;
+        int windows = 0;
+        while (controller.getBitRate() > minBitRate) {
+            assertEquals(1, controller.getFrameStep());
+            assertNotNull(congestedWindow());
+            assertTrue(++windows < 20);
+        }
+        assertEquals(minBitRate, controller.getBitRate());
+
+        //码率到下限后逐级降帧，最多每 3 帧编码 1 帧
+        assertEquals(2, congestedWindow().newFrameStep);
+        assertEquals(3, congestedWindow().newFrameStep);
+        assertNull(congestedWindow());
+        assertEquals(3, controller.getFrameStep());
+        assertEquals(minBitRate, controller.getBitRate());
+
+        assertFalse(controller.shouldSkipFrame(0));
+        assertTrue(controller.shouldSkipFrame(1));
+        assertTrue(controller.shouldSkipFrame(2));
+        assertFalse(controller.shouldSkipFrame(3));
+    }
+
+    @Test
+    public void recoversAfterThreeHealthyWindows() {
+        congestedWindow();
+        final int lowered = controller.getBitRate();
+        assertNull(healthyWindow());
+        assertNull(healthyWindow());
+        AdaptiveBitrateController.Stats stats = healthyWindow();
+        assertNotNull(stats);
+        assertEquals(lowered, stats.oldBitRate);
+        assertEquals((int) (lowered * 1.15f), stats.newBitRate);
+        //恢复后重新计数
+        assertNull(healthyWindow());
+    }
+
+    @Test
+    public void restoresFramesBeforeBitRate() {
+        while (controller.getFrameStep() < 2) {
+            congestedWindow();
+        }
+        final int bitRate = controller.getBitRate();
+        healthyWindow();
+        healthyWindow();
+        AdaptiveBitrateController.Stats stats = healthyWindow();
+        assertEquals(2, stats.oldFrameStep);
+        assertEquals(1, stats.newFrameStep);
+        assertEquals(bitRate, stats.newBitRate);
+        assertFalse(controller.shouldSkipFrame(1));
+    }
+
+    @Test
+    public void neverRaisesAboveInitialBitRate() {
+        congestedWindow();
+        for (int i = 0; i < 30; i++) {
+            healthyWindow();
+        }
+        assertEquals(INITIAL_BIT_RATE, controller.getBitRate());
+        assertNull(healthyWindow());
+        assertNull(healthyWindow());
+        assertNull(healthyWindow());
+    }
+
+    @Test
+    public void moderateBacklogResetsHysteresis() {
+        congestedWindow();
+        final int lowered = controller.getBitRate();
+        healthyWindow();
+        healthyWindow();
+        //没有丢帧，但积压在 1~3 帧之间：不调整，空闲计数清零
+        for (int i = 0; i < 10; i++) {
+            controller.onInputQueued();
+            controller.onInputQueued();
+            controller.onOutputSample(1000);
+            controller.onOutputSample(1000);
+        }
+        assertNull(nextWindow());
+        assertEquals(lowered, controller.getBitRate());
+        assertNull(healthyWindow());
+        assertNull(healthyWindow());
+        assertNotNull(healthyWindow());
+    }
+
+    @Test
+    public void measuresOutputBitRate() {
+        for (int i = 0; i < 30; i++) {
+            controller.onInputQueued();
+            controller.onOutputSample(1000);
+        }
+        for (int i = 0; i < 3; i++) {
+            controller.onInputDropped();
+        }
+        AdaptiveBitrateController.Stats stats = nextWindow();
+        assertNotNull(stats);
+        assertEquals(30 * 1000 * 8, stats.measuredBitRate);
+        assertEquals(3f / 33f, stats.dropRatio, 1e-6f);
+    }
+
+//==================================================================================================
+
+    //丢帧率 1/11 > 5%
+    private void congest() {
+        for (int i = 0; i < 10; i++) {
+            controller.onInputQueued();
+            controller.onOutputSample(1000);
+        }
+        controller.onInputDropped();
+    }
+
+    private AdaptiveBitrateController.Stats congestedWindow() {
+        congest();
+        return nextWindow();
+    }
+
+    //没有丢帧，每帧送入后立即输出：平均积压 1 帧
+    private AdaptiveBitrateController.Stats healthyWindow() {
+        for (int i = 0; i < 10; i++) {
+            controller.onInputQueued();
+            controller.onOutputSample(1000);
+        }
+        return nextWindow();
+    }
+
+    private AdaptiveBitrateController.Stats nextWindow() {
+        nowNs += WINDOW_NS;
+        return controller.evaluate(nowNs);
+    }
+}
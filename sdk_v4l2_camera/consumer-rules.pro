@@ -0,0 +1,12 @@
+# native 通过 RegisterNatives 按类名/方法名注册，通过 GetFieldID/GetMethodID 访问字段和回调
+-keepclasseswithmembernames,includedescriptorclasses class com.hsj.camera.** {
+    native <methods>;
+}
+-keepclassmembers class com.hsj.camera.CameraAPI {
+    long nativeObj;
+}
+-keep class com.hsj.camera.IFrameCallback { *; }
+-keep class com.hsj.camera.IFrameTimestampCallback { *; }
+-keep class com.hsj.camera.IRoiCallback { *; }
+-keep class com.hsj.camera.IStreamCallback { *; }
+-keep class com.hsj.camera.IDeviceCallback { *; }
@@ -0,0 +1,28 @@
+precision mediump float;
+varying vec2 texCoord;
+//上一个 pass 的结果（低分辨率 FBO）
+uniform sampler2D vTexture;
+//采样方向与步长: 水平 (1/w, 0)，竖直 (0, 1/h)
+uniform vec2 texelOffset;
+//颜色相似度因子，越大保边越强
+const float distanceNormalizationFactor = 5.0;
+
+//一维双边滤波，RADIUS 由 FilterBeauty 按质量档位定义
+void main() {
+    vec4 central = texture2D(vTexture, texCoord);
+    vec4 sum = central;
+    float weightTotal = 1.0;
+    for (int i = 1; i <= RADIUS; i++) {
+        //空间权重随距离线性衰减
+        float spatial = 1.0 - float(i) / float(RADIUS + 1);
+        vec2 offset = texelOffset * float(i);
+        vec4 sample1 = texture2D(vTexture, texCoord + offset);
+        vec4 sample2 = texture2D(vTexture, texCoord - offset);
+        //相似度权重: 颜色差越大权重越小
+        float weight1 = spatial * (1.0 - min(distance(central.rgb, sample1.rgb) * distanceNormalizationFactor, 1.0));
+        float weight2 = spatial * (1.0 - min(distance(central.rgb, sample2.rgb) * distanceNormalizationFactor, 1.0));
+        sum += sample1 * weight1 + sample2 * weight2;
+        weightTotal += weight1 + weight2;
+    }
+    gl_FragColor = sum / weightTotal;
+}
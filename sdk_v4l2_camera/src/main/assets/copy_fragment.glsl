@@ -0,0 +1,7 @@
+precision mediump float;
+varying vec2 texCoord;
+uniform SAMPLER vTexture;
+
+void main() {
+    gl_FragColor = texture2D(vTexture, texCoord);
+}
@@ -0,0 +1,24 @@
+precision mediump float;
+varying vec2 texCoord;
+//输入纹理（灰度深度图，取 r 分量）
+uniform SAMPLER vTexture;
+//映射范围 0~1
+uniform float minValue;
+uniform float maxValue;
+
+//jet 伪彩色: 近蓝远红
+vec3 jet(float v) {
+    return clamp(vec3(1.5) - abs(4.0 * v - vec3(3.0, 2.0, 1.0)), 0.0, 1.0);
+}
+
+void main() {
+    vec4 color = texture2D(vTexture, texCoord);
+    float depth = color.r;
+    //0 为无效深度，显示黑色
+    if (depth <= 0.0) {
+        gl_FragColor = vec4(0.0, 0.0, 0.0, color.a);
+    } else {
+        float v = clamp((depth - minValue) / max(maxValue - minValue, 0.001), 0.0, 1.0);
+        gl_FragColor = vec4(jet(v), color.a);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,25 @@
+precision mediump float;
+varying vec2 texCoord;
+//输入纹理
+uniform SAMPLER vTexture;
+//512x512 LUT 图: 8x8 个 64x64 格子, 蓝色分量选格子, 红绿分量为格内坐标
+uniform sampler2D lutTexture;
+//强度 0~1
+uniform float intensity;
+
+void main() {
+    vec4 color = texture2D(vTexture, texCoord);
+    float blue = color.b * 63.0;
+
+    vec2 quad1;
+    quad1.y = floor(floor(blue) / 8.0);
+    quad1.x = floor(blue) - quad1.y * 8.0;
+    vec2 quad2;
+    quad2.y = floor(ceil(blue) / 8.0);
+    quad2.x = ceil(blue) - quad2.y * 8.0;
+
+    vec2 pos1 = quad1 * 0.125 + 0.5 / 512.0 + (0.125 - 1.0 / 512.0) * color.rg;
+    vec2 pos2 = quad2 * 0.125 + 0.5 / 512.0 + (0.125 - 1.0 / 512.0) * color.rg;
+    vec4 lut = mix(texture2D(lutTexture, pos1), texture2D(lutTexture, pos2), fract(blue));
+    gl_FragColor = mix(color, vec4(lut.rgb, color.a), intensity);
+}
\ No newline at end of file
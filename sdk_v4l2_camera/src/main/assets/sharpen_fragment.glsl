@@ -0,0 +1,20 @@
+precision mediump float;
+varying vec2 texCoord;
+//输入纹理
+uniform SAMPLER vTexture;
+//纹理像素大小 (1/width, 1/height)
+uniform vec2 texelSize;
+//锐化强度
+uniform float strength;
+
+void main() {
+    vec4 center = texture2D(vTexture, texCoord);
+    //上下左右四邻域
+    vec3 sum = texture2D(vTexture, texCoord + vec2(texelSize.x, 0.0)).rgb
+             + texture2D(vTexture, texCoord - vec2(texelSize.x, 0.0)).rgb
+             + texture2D(vTexture, texCoord + vec2(0.0, texelSize.y)).rgb
+             + texture2D(vTexture, texCoord - vec2(0.0, texelSize.y)).rgb;
+    //拉普拉斯锐化: center + strength * (4 * center - sum)
+    vec3 color = center.rgb * (1.0 + 4.0 * strength) - sum * strength;
+    gl_FragColor = vec4(clamp(color, 0.0, 1.0), center.a);
+}
\ No newline at end of file
@@ -0,0 +1,52 @@
+precision mediump float;
+varying vec2 texCoord;
+//NV12/NV16: Y(LUMINANCE) + UV(LUMINANCE_ALPHA)，NV16 的 UV 纹理为全高
+//YUV422: Y + U + V(LUMINANCE)
+//YUYV: yTexture 为 RGBA，宽度为帧宽一半，一个纹素 = Y0 U Y1 V
+//DEPTH/Y10/Y16: yTexture 为 LUMINANCE_ALPHA，uint16 小端 (低字节, 高字节)
+//GREY: yTexture 为 LUMINANCE，全范围灰度
+uniform sampler2D yTexture;
+uniform sampler2D uTexture;
+uniform sampler2D vTexture;
+//帧宽（YUYV 用于区分奇偶像素）
+uniform float frameWidth;
+//深度显示范围（毫米）
+const float depthMax = 8000.0;
+
+//BT.601 limited range，与 CameraView 中 libyuv *ToABGR 一致
+vec3 yuv2rgb(float y, float u, float v) {
+    y = 1.164 * (y - 0.0625);
+    u -= 0.5;
+    v -= 0.5;
+    return clamp(vec3(y + 1.596 * v, y - 0.391 * u - 0.813 * v, y + 2.018 * u), 0.0, 1.0);
+}
+
+void main() {
+#if defined(FORMAT_NV12)
+    vec2 uv = texture2D(uTexture, texCoord).ra;
+    gl_FragColor = vec4(yuv2rgb(texture2D(yTexture, texCoord).r, uv.x, uv.y), 1.0);
+#elif defined(FORMAT_YUV422)
+    gl_FragColor = vec4(yuv2rgb(texture2D(yTexture, texCoord).r,
+            texture2D(uTexture, texCoord).r, texture2D(vTexture, texCoord).r), 1.0);
+#elif defined(FORMAT_YUYV)
+    vec4 yuyv = texture2D(yTexture, texCoord);
+    float odd = step(0.5, fract(texCoord.x * frameWidth * 0.5));
+    gl_FragColor = vec4(yuv2rgb(mix(yuyv.r, yuyv.b, odd), yuyv.g, yuyv.a), 1.0);
+#elif defined(FORMAT_GREY)
+    gl_FragColor = vec4(vec3(texture2D(yTexture, texCoord).r), 1.0);
+#elif defined(FORMAT_Y10) || defined(FORMAT_Y16)
+    //全位深线性显示（自动窗口映射在 native 预览），与 DEPTH 相同拆开计算避免 mediump 溢出
+#if defined(FORMAT_Y10)
+    const float wordMax = 1023.0;
+#else
+    const float wordMax = 65535.0;
+#endif
+    vec2 word = texture2D(yTexture, texCoord).ra;
+    gl_FragColor = vec4(vec3(clamp((word.x / 256.0 + word.y) * (65280.0 / wordMax), 0.0, 1.0)), 1.0);
+#else
+    //(低字节 + 高字节 * 256) * 255 / depthMax，拆开计算避免 mediump 溢出
+    vec2 depth = texture2D(yTexture, texCoord).ra;
+    float gray = clamp((depth.x / 256.0 + depth.y) * (65280.0 / depthMax), 0.0, 1.0);
+    gl_FragColor = vec4(vec3(gray), 1.0);
+#endif
+}
@@ -0,0 +1,476 @@
+//
+// Created by Hsj on 2026/10/18.
+//
+// 帧处理各阶段的主机基准测试（Linux x86_64/aarch64，无需 Android）
+// 阶段与 CameraAPI::loopFrame/CameraView 使用同一份代码：DecoderFactory(软解)、FrameConverter、libyuv
+// 输入：--fixtures 目录下录制的帧（CameraAPI::saveFrameToFile 导出的 frame_WxH_*.raw 等），
+//      未录制的格式/分辨率使用合成帧（MJPEG 由 turbojpeg 按 4:2:2 编码，与 UVC 相机一致）
+// 输出：JSON，每个阶段的吞吐（fps、MB/s）与延迟百分位（us）
+//
+
+#include <cstdio>
+#include <cstdlib>
+#include <cstring>
+#include <ctime>
+#include <string>
+#include <vector>
+#include <algorithm>
+#include <dirent.h>
+#include <sys/utsname.h>
+#include <turbojpeg.h>
+#include <libyuv.h>
+#include "Common.h"
+#include "DecoderFactory.h"
+#include "FrameConverter.h"
+
+#define TAG "FrameBenchmark"
+
+#define FORMAT_MJPEG "MJPEG"
+#define FORMAT_YUYV  "YUYV"
+#define FORMAT_DEPTH "DEPTH"
+
+typedef std::vector<uint8_t> Frame;
+
+struct Fixture {
+    std::string format;
+    int width;
+    int height;
+    //recorded / synthetic
+    std::string source;
+    std::vector<Frame> frames;
+};
+
+struct StageResult {
+    std::string stage;
+    const Fixture *fixture;
+    size_t inputBytes;
+    size_t outputBytes;
+    std::vector<double> latencyUs;
+};
+
+struct Options {
+    const char *fixtureDir = nullptr;
+    const char *output = nullptr;
+    std::vector<std::pair<int, int>> sizes;
+    int iterations = 300;
+    int warmup = 30;
+    int frames = 8;
+};
+
+static uint64_t timeNs() {
+    struct timespec time;
+    clock_gettime(CLOCK_MONOTONIC, &time);
+    return (uint64_t) time.tv_sec * 1000000000ULL + time.tv_nsec;
+}
+
+//========================================Fixtures==================================================
+
+static bool readFile(const std::string &path, Frame &out) {
+    FILE *file = fopen(path.c_str(), "rb");
+    if (!file) return false;
+    fseek(file, 0, SEEK_END);
+    long size = ftell(file);
+    fseek(file, 0, SEEK_SET);
+    out.resize(size > 0 ? size : 0);
+    bool ok = size > 0 && fread(out.data(), 1, size, file) == (size_t) size;
+    fclose(file);
+    return ok;
+}
+
+//文件名中的 "<w>x<h>"
+static bool parseSize(const char *name, int *width, int *height) {
+    for (const char *p = name; *p; ++p) {
+        if (*p >= '1' && *p <= '9' && (p == name || p[-1] < '0' || p[-1] > '9')) {
+            int w = 0, h = 0, n = 0;
+            if (sscanf(p, "%dx%d%n", &w, &h, &n) == 2 && n > 0 && w > 0 && h > 0) {
+                *width = w;
+                *height = h;
+                return true;
+            }
+        }
+    }
+    return false;
+}
+
+//一个文件可包含多帧：MJPEG 按 SOI/EOI 切分，其余按帧大小切分
+static void splitFrames(const Frame &data, Fixture &fixture) {
+    if (fixture.format == FORMAT_MJPEG) {
+        size_t start = SIZE_MAX;
+        for (size_t i = 0; i + 1 < data.size(); ++i) {
+            if (data[i] != 0xFF) continue;
+            if (data[i + 1] == 0xD8 && start == SIZE_MAX) {
+                start = i;
+            } else if (data[i + 1] == 0xD9 && start != SIZE_MAX) {
+                fixture.frames.emplace_back(data.begin() + start, data.begin() + i + 2);
+                start = SIZE_MAX;
+            }
+        }
+    } else {
+        size_t frameSize = (size_t) fixture.width * fixture.height * 2;
+        for (size_t offset = 0; offset + frameSize <= data.size(); offset += frameSize) {
+            fixture.frames.emplace_back(data.begin() + offset, data.begin() + offset + frameSize);
+        }
+    }
+}
+
+static void loadRecorded(const char *dir, std::vector<Fixture> &fixtures) {
+    DIR *d = opendir(dir);
+    if (!d) {
+        LOGE(TAG, "open fixtures failed: %s", dir);
+        return;
+    }
+    struct dirent *entry;
+    while ((entry = readdir(d)) != nullptr) {
+        const char *name = entry->d_name;
+        Fixture fixture;
+        if (strstr(name, "mjpeg") || strstr(name, "MJPEG")) {
+            fixture.format = FORMAT_MJPEG;
+        } else if (strstr(name, "yuyv") || strstr(name, "YUYV")) {
+            fixture.format = FORMAT_YUYV;
+        } else if (strstr(name, "depth") || strstr(name, "DEPTH")) {
+            fixture.format = FORMAT_DEPTH;
+        } else {
+            continue;
+        }
+        if (!parseSize(name, &fixture.width, &fixture.height)) continue;
+        Frame data;
+        if (!readFile(std::string(dir) + "/" + name, data)) continue;
+        fixture.source = "recorded";
+        splitFrames(data, fixture);
+        if (fixture.frames.empty()) {
+            LOGW(TAG, "no frame in fixture: %s", name);
+            continue;
+        }
+        //同格式同分辨率的多个文件合并
+        bool merged = false;
+        for (Fixture &exist : fixtures) {
+            if (exist.format == fixture.format && exist.width == fixture.width && exist.height == fixture.height) {
+                exist.frames.insert(exist.frames.end(), fixture.frames.begin(), fixture.frames.end());
+                merged = true;
+                break;
+            }
+        }
+        if (!merged) fixtures.push_back(fixture);
+    }
+    closedir(d);
+}
+
+static bool hasFixture(const std::vector<Fixture> &fixtures, const char *format, int width, int height) {
+    for (const Fixture &fixture : fixtures) {
+        if (fixture.format == format && fixture.width == width && fixture.height == height) return true;
+    }
+    return false;
+}
+
+//合成 I422：渐变 + 移动的圆 + 噪声（噪声使 JPEG 码率接近真实画面）
+static void synthesizeI422(Frame &i422, int width, int height, int index, uint32_t *seed) {
+    i422.resize((size_t) width * height * 2);
+    uint8_t *y = i422.data();
+    uint8_t *u = y + width * height;
+    uint8_t *v = u + width * height / 2;
+    const int cx = width / 4 + index * width / 16;
+    const int cy = height / 2;
+    const int r2 = (height / 4) * (height / 4);
+    for (int row = 0; row < height; ++row) {
+        for (int col = 0; col < width; ++col) {
+            *seed = *seed * 1664525u + 1013904223u;
+            int value = 16 + (col * 160 / width) + (row * 60 / height) + (int) ((*seed >> 24) & 0x0F) - 8;
+            int dx = col - cx, dy = row - cy;
+            if (dx * dx + dy * dy < r2) value += 40;
+            y[row * width + col] = (uint8_t) std::min(235, std::max(16, value));
+        }
+        for (int col = 0; col < width / 2; ++col) {
+            u[row * width / 2 + col] = (uint8_t) (128 + (col * 2 * 64 / width) - 32);
+            v[row * width / 2 + col] = (uint8_t) (128 + (row * 64 / height) - 32);
+        }
+    }
+}
+
+static void synthesize(std::vector<Fixture> &fixtures, int width, int height, int count) {
+    uint32_t seed = (uint32_t) (width * 31 + height);
+    Fixture mjpeg = {FORMAT_MJPEG, width, height, "synthetic", {}};
+    Fixture yuyv = {FORMAT_YUYV, width, height, "synthetic", {}};
+    Fixture depth = {FORMAT_DEPTH, width, height, "synthetic", {}};
+    tjhandle handle = tjInitCompress();
+    Frame i422;
+    for (int i = 0; i < count; ++i) {
+        synthesizeI422(i422, width, height, i, &seed);
+        //MJPEG 4:2:2
+        const unsigned char *planes[3] = {i422.data(), i422.data() + width * height,
+                                          i422.data() + width * height * 3 / 2};
+        int strides[3] = {width, width / 2, width / 2};
+        unsigned char *jpeg = nullptr;
+        unsigned long jpegSize = 0;
+        if (handle && 0 == tjCompressFromYUVPlanes(handle, planes, width, strides, height,
+                TJSAMP_422, &jpeg, &jpegSize, 80, 0)) {
+            mjpeg.frames.emplace_back(jpeg, jpeg + jpegSize);
+        } else {
+            LOGE(TAG, "synthesize mjpeg failed: %s", tjGetErrorStr2(handle));
+        }
+        tjFree(jpeg);
+        //YUYV
+        Frame packed((size_t) width * height * 2);
+        libyuv::I422ToYUY2(planes[0], strides[0], planes[1], strides[1], planes[2], strides[2],
+                           packed.data(), width * 2, width, height);
+        yuyv.frames.push_back(packed);
+        //DEPTH16: 400~4000mm 斜面 + 5% 无效点
+        Frame raw((size_t) width * height * 2);
+        auto *mm = (uint16_t *) raw.data();
+        for (int p = 0; p < width * height; ++p) {
+            seed = seed * 1664525u + 1013904223u;
+            int col = p % width, row = p / width;
+            mm[p] = ((seed >> 16) % 100) < 5 ? 0 : (uint16_t) (400 + (col + row + i * 8) * 3600 / (width + height));
+        }
+        depth.frames.push_back(raw);
+    }
+    if (handle) tjDestroy(handle);
+    if (!mjpeg.frames.empty() && !hasFixture(fixtures, FORMAT_MJPEG, width, height)) fixtures.push_back(mjpeg);
+    if (!hasFixture(fixtures, FORMAT_YUYV, width, height)) fixtures.push_back(yuyv);
+    if (!hasFixture(fixtures, FORMAT_DEPTH, width, height)) fixtures.push_back(depth);
+}
+
+//========================================Stages====================================================
+
+template<typename Func>
+static void measure(StageResult &result, const Options &options, size_t frameCount, Func func) {
+    for (int i = 0; i < options.warmup; ++i) {
+        func(i % frameCount);
+    }
+    result.latencyUs.reserve(options.iterations);
+    for (int i = 0; i < options.iterations; ++i) {
+        uint64_t start = timeNs();
+        func(i % frameCount);
+        result.latencyUs.push_back((timeNs() - start) / 1000.0);
+    }
+}
+
+static size_t averageSize(const Fixture &fixture) {
+    size_t total = 0;
+    for (const Frame &frame : fixture.frames) total += frame.size();
+    return total / fixture.frames.size();
+}
+
+static void runMjpeg(const Fixture &fixture, const Options &options, std::vector<StageResult> &results) {
+    DecoderFactory decoder;
+    if (0 != decoder.init(fixture.width, fixture.height)) {
+        LOGE(TAG, "decoder init failed: %dx%d", fixture.width, fixture.height);
+        return;
+    }
+    const size_t yuvSize = (size_t) fixture.width * fixture.height * 2;
+    const int stride = fixture.width * 4;
+    Frame rgba((size_t) stride * fixture.height);
+    FrameConverter converter(fixture.width, fixture.height, decoder.getPixelFormat());
+    const size_t count = fixture.frames.size();
+
+    //1-MJPEG -> YUV422 (DecoderSw)
+    StageResult decode = {"mjpeg_decode", &fixture, averageSize(fixture), yuvSize, {}};
+    measure(decode, options, count, [&](size_t i) {
+        decoder.convert2YUV((void *) fixture.frames[i].data(), fixture.frames[i].size());
+    });
+    results.push_back(decode);
+
+    //2-YUV422 -> RGBA（解码结果）
+    std::vector<Frame> decoded;
+    for (const Frame &frame : fixture.frames) {
+        uint8_t *yuv = decoder.convert2YUV((void *) frame.data(), frame.size());
+        if (yuv) decoded.emplace_back(yuv, yuv + yuvSize);
+    }
+    if (decoded.empty()) return;
+    StageResult convert = {"yuv422_to_rgba", &fixture, yuvSize, rgba.size(), {}};
+    measure(convert, options, decoded.size(), [&](size_t i) {
+        converter.toRGBA(decoded[i].data(), rgba.data(), stride);
+    });
+    results.push_back(convert);
+
+    //3-整条预览链路 MJPEG -> RGBA
+    StageResult pipeline = {"mjpeg_to_rgba", &fixture, averageSize(fixture), rgba.size(), {}};
+    measure(pipeline, options, count, [&](size_t i) {
+        uint8_t *yuv = decoder.convert2YUV((void *) fixture.frames[i].data(), fixture.frames[i].size());
+        if (yuv) converter.toRGBA(yuv, rgba.data(), stride);
+    });
+    results.push_back(pipeline);
+}
+
+static void runYuyv(const Fixture &fixture, const Options &options, std::vector<StageResult> &results) {
+    const int width = fixture.width, height = fixture.height;
+    const size_t frameSize = (size_t) width * height * 2;
+    const int stride = width * 4;
+    Frame rgba((size_t) stride * height);
+    Frame copy(frameSize);
+    const size_t count = fixture.frames.size();
+
+    //1-loopFrame 拷贝到 out_buffer
+    StageResult memcopy = {"yuyv_copy", &fixture, frameSize, frameSize, {}};
+    measure(memcopy, options, count, [&](size_t i) {
+        memcpy(copy.data(), fixture.frames[i].data(), frameSize);
+    });
+    results.push_back(memcopy);
+
+    //2-YUYV -> I422 -> RGBA
+    FrameConverter converter(width, height, PIXEL_FORMAT_YUYV);
+    StageResult convert = {"yuyv_to_rgba", &fixture, frameSize, rgba.size(), {}};
+    measure(convert, options, count, [&](size_t i) {
+        converter.toRGBA(fixture.frames[i].data(), rgba.data(), stride);
+    });
+    results.push_back(convert);
+
+    //3-NV12 -> RGBA（硬解输出格式，由同一画面转换得到）
+    std::vector<Frame> nv12;
+    for (const Frame &frame : fixture.frames) {
+        Frame out((size_t) width * height * 3 / 2);
+        libyuv::YUY2ToNV12(frame.data(), width * 2, out.data(), width,
+                           out.data() + width * height, width, width, height);
+        nv12.push_back(out);
+    }
+    FrameConverter nv12Converter(width, height, PIXEL_FORMAT_NV12);
+    StageResult nv12Convert = {"nv12_to_rgba", &fixture, nv12[0].size(), rgba.size(), {}};
+    measure(nv12Convert, options, count, [&](size_t i) {
+        nv12Converter.toRGBA(nv12[i].data(), rgba.data(), stride);
+    });
+    results.push_back(nv12Convert);
+}
+
+static void runDepth(const Fixture &fixture, const Options &options, std::vector<StageResult> &results) {
+    const size_t frameSize = (size_t) fixture.width * fixture.height * 2;
+    const int stride = fixture.width * 4;
+    Frame rgba((size_t) stride * fixture.height);
+    FrameConverter converter(fixture.width, fixture.height, PIXEL_FORMAT_DEPTH);
+    StageResult convert = {"depth_to_rgba", &fixture, frameSize, rgba.size(), {}};
+    measure(convert, options, fixture.frames.size(), [&](size_t i) {
+        converter.toRGBA(fixture.frames[i].data(), rgba.data(), stride);
+    });
+    results.push_back(convert);
+}
+
+//========================================Report====================================================
+
+//nearest-rank
+static double percentile(const std::vector<double> &sorted, double p) {
+    size_t rank = (size_t) (p / 100.0 * sorted.size() + 0.999999);
+    rank = std::min(std::max(rank, (size_t) 1), sorted.size());
+    return sorted[rank - 1];
+}
+
+static std::string cpuFlags() {
+    std::string flags;
+#if defined(__x86_64__) || defined(__i386__)
+    if (libyuv::TestCpuFlag(libyuv::kCpuHasSSSE3)) flags += "ssse3 ";
+    if (libyuv::TestCpuFlag(libyuv::kCpuHasAVX2)) flags += "avx2 ";
+#endif
+#if defined(__aarch64__) || defined(__arm__)
+    if (libyuv::TestCpuFlag(libyuv::kCpuHasNEON)) flags += "neon ";
+#endif
+    if (!flags.empty()) flags.pop_back();
+    return flags;
+}
+
+static void report(FILE *out, const Options &options, const std::vector<StageResult> &results) {
+    struct utsname name = {};
+    uname(&name);
+    fprintf(out, "{\n");
+    fprintf(out, "  \"schema\": 1,\n");
+    fprintf(out, "  \"host\": {\"machine\": \"%s\", \"system\": \"%s %s\", \"compiler\": \"%s\", \"libyuv_simd\": \"%s\"},\n",
+            name.machine, name.sysname, name.release, __VERSION__, cpuFlags().c_str());
+    fprintf(out, "  \"iterations\": %d,\n", options.iterations);
+    fprintf(out, "  \"warmup\": %d,\n", options.warmup);
+    fprintf(out, "  \"results\": [");
+    for (size_t i = 0; i < results.size(); ++i) {
+        const StageResult &result = results[i];
+        std::vector<double> sorted = result.latencyUs;
+        std::sort(sorted.begin(), sorted.end());
+        double sum = 0;
+        for (double value : sorted) sum += value;
+        const double mean = sum / sorted.size();
+        fprintf(out, "%s\n    {\"stage\": \"%s\", \"format\": \"%s\", \"width\": %d, \"height\": %d, "
+                     "\"source\": \"%s\", \"frames\": %zu, \"input_bytes\": %zu, \"output_bytes\": %zu, "
+                     "\"fps\": %.1f, \"input_mbps\": %.1f, "
+                     "\"latency_us\": {\"min\": %.1f, \"mean\": %.1f, \"p50\": %.1f, \"p90\": %.1f, \"p99\": %.1f, \"max\": %.1f}}",
+                i == 0 ? "" : ",",
+                result.stage.c_str(), result.fixture->format.c_str(), result.fixture->width, result.fixture->height,
+                result.fixture->source.c_str(), result.fixture->frames.size(), result.inputBytes, result.outputBytes,
+                1000000.0 / mean, result.inputBytes / mean,
+                sorted.front(), mean, percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99), sorted.back());
+    }
+    fprintf(out, "\n  ]\n}\n");
+}
+
+//========================================Main======================================================
+
+static void usage(const char *name) {
+    fprintf(stderr, "Usage: %s [--fixtures DIR] [--sizes 640x480,1280x720,1920x1080] [--iterations N] "
+                    "[--warmup N] [--frames N] [--output FILE]\n", name);
+}
+
+static bool parseSizes(const char *arg, std::vector<std::pair<int, int>> &sizes) {
+    sizes.clear();
+    const char *p = arg;
+    while (*p) {
+        int w = 0, h = 0, n = 0;
+        if (sscanf(p, "%dx%d%n", &w, &h, &n) != 2 || w <= 0 || h <= 0 || (w & 1)) return false;
+        sizes.emplace_back(w, h);
+        p += n;
+        if (*p == ',') ++p;
+    }
+    return !sizes.empty();
+}
+
+int main(int argc, char **argv) {
+    Options options;
+    options.sizes = {{640, 480}, {1280, 720}, {1920, 1080}};
+    for (int i = 1; i < argc; ++i) {
+        const char *arg = argv[i];
+        const char *value = i + 1 < argc ? argv[i + 1] : nullptr;
+        bool ok = value != nullptr;
+        if (0 == strcmp(arg, "--fixtures") && ok) {
+            options.fixtureDir = value;
+        } else if (0 == strcmp(arg, "--output") && ok) {
+            options.output = value;
+        } else if (0 == strcmp(arg, "--sizes") && ok) {
+            ok = parseSizes(value, options.sizes);
+        } else if (0 == strcmp(arg, "--iterations") && ok) {
+            options.iterations = atoi(value);
+            ok = options.iterations > 0;
+        } else if (0 == strcmp(arg, "--warmup") && ok) {
+            options.warmup = atoi(value);
+            ok = options.warmup >= 0;
+        } else if (0 == strcmp(arg, "--frames") && ok) {
+            options.frames = atoi(value);
+            ok = options.frames > 0;
+        } else {
+            ok = false;
+        }
+        if (!ok) {
+            usage(argv[0]);
+            return 1;
+        }
+        ++i;
+    }
+
+    std::vector<Fixture> fixtures;
+    if (options.fixtureDir) loadRecorded(options.fixtureDir, fixtures);
+    for (const auto &size : options.sizes) {
+        synthesize(fixtures, size.first, size.second, options.frames);
+    }
+
+    std::vector<StageResult> results;
+    for (const Fixture &fixture : fixtures) {
+        fprintf(stderr, "%s %dx%d (%s, %zu frames)\n", fixture.format.c_str(),
+                fixture.width, fixture.height, fixture.source.c_str(), fixture.frames.size());
+        if (fixture.format == FORMAT_MJPEG) {
+            runMjpeg(fixture, options, results);
+        } else if (fixture.format == FORMAT_YUYV) {
+            runYuyv(fixture, options, results);
+        } else {
+            runDepth(fixture, options, results);
+        }
+    }
+
+    FILE *out = options.output ? fopen(options.output, "w") : stdout;
+    if (!out) {
+        fprintf(stderr, "open output failed: %s\n", options.output);
+        return 1;
+    }
+    report(out, options, results);
+    if (out != stdout) fclose(out);
+    return 0;
+}
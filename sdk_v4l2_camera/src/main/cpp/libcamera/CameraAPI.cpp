@@ -4,149 +4,107 @@
 
 #include "CameraAPI.h"
 #include "Common.h"
+#include "V4L2FrameSource.h"
+#include "ReplayFrameSource.h"
+#include "LogRing.h"
+#include "Trace.h"
+#include "DeviceRegistry.h"
+#include "CapabilityCache.h"
 #include <malloc.h>
-#include <sstream>
-#include <fstream>
 #include <cstring>
 #include <cstdio>
+#include <cerrno>
+#include <ctime>
 #include <cassert>
 #include <fcntl.h>
 #include <unistd.h>
 #include <sys/stat.h>
-#include <sys/mman.h>
-#include <sys/ioctl.h>
 #include <linux/videodev2.h>
+#include <libyuv.h>
 
 #ifdef __cplusplus
 extern "C" {
 #endif
 
 #define TAG "CameraAPI"
-#define MAX_BUFFER_COUNT 4
-#define MAX_DEV_VIDEO_INDEX 99
-
-// 兼容性定义：确保 V4L2 多平面 API 支持
-#ifndef V4L2_CAP_VIDEO_CAPTURE_MPLANE
-#define V4L2_CAP_VIDEO_CAPTURE_MPLANE 0x00001000
-#endif
-
-#ifndef V4L2_CAP_DEVICE_CAPS
-#define V4L2_CAP_DEVICE_CAPS 0x80000000
-#endif
-
-#ifndef V4L2_BUF_TYPE_VIDEO_CAPTURE_MPLANE
-#define V4L2_BUF_TYPE_VIDEO_CAPTURE_MPLANE 9
-#endif
+#define FRAME_TIMEOUT_MS 1000
+#define CAPTURE_BUFFER_MIN (32 * 1024 * 1024)
+#define CAPTURE_BUFFER_FRAMES 8
+//采集线程取帧最长阻塞 FRAME_TIMEOUT_MS，超过时撤回重配请求
+#define RECONFIG_TIMEOUT_MS 2000
+
+//调试帧文件名后缀，与 ReplayFrameSource::parseFileName 对应
+static const char *frameFormatName(int frameFormat) {
+    switch (frameFormat) {
+        case FRAME_FORMAT_NV12:
+            return "nv12";
+        case FRAME_FORMAT_NV16:
+            return "nv16";
+        case FRAME_FORMAT_GREY:
+            return "grey";
+        case FRAME_FORMAT_Y10:
+            return "y10";
+        case FRAME_FORMAT_Y16:
+            return "y16";
+        case FRAME_FORMAT_Z16:
+            return "z16";
+        default:
+            return "raw";
+    }
+}
 
 CameraAPI::CameraAPI() :
-        fd(0),
         pixelBytes(0),
         frameWidth(0),
         frameHeight(0),
         frameFormat(0),
-        useMultiplanar(false),
         thread_camera(0),
         status(STATUS_CREATE),
         preview(NULL),
         decoder(NULL),
-        buffers(NULL),
+        source(NULL),
         out_buffer(NULL),
+        streamWriter(NULL),
+        nalParser(NULL),
+        streamDecoder(NULL),
+        streamCallback(NULL),
+        streamCallback_onStreamFormat(NULL),
+        streamCallback_onStreamFrame(NULL),
+        streamFormatPending(false),
+        roiDecoder(new RoiDecoder()),
+        roiCallback(NULL),
+        roiCallback_onRoiFrame(NULL),
         frameCallback(NULL),
         frameCallback_onFrame(NULL),
+        frameCallback_onFrameTimestamp(NULL),
+        warmStandby(false),
+        reconfigState(RECONFIG_IDLE),
+        reconfigWidth(0),
+        reconfigHeight(0),
+        reconfigFormat(0),
+        reconfigFps(0),
+        reconfigResult(ACTION_SUCCESS),
+        reconfigRequestUs(0),
+        formatLost(false),
         saveFrameRequested(false) {
     memset(debugSavePath, 0, sizeof(debugSavePath));
+    pthread_mutex_init(&captureLock, NULL);
+    pthread_mutex_init(&reconfigLock, NULL);
+    pthread_cond_init(&reconfigCond, NULL);
 }
 
 CameraAPI::~CameraAPI() {
     destroy();
+    SAFE_DELETE(roiDecoder)
+    pthread_mutex_destroy(&captureLock);
+    pthread_cond_destroy(&reconfigCond);
+    pthread_mutex_destroy(&reconfigLock);
 }
 
 //=======================================Private====================================================
 
 inline const StatusInfo CameraAPI::getStatus() const { return status; }
 
-ActionInfo CameraAPI::prepareBuffer() {
-    // 根据设备类型选择正确的缓冲区类型
-    enum v4l2_buf_type buf_type = static_cast<v4l2_buf_type>(
-        useMultiplanar ? V4L2_BUF_TYPE_VIDEO_CAPTURE_MPLANE : V4L2_BUF_TYPE_VIDEO_CAPTURE);
-
-    //1-request buffers
-    struct v4l2_requestbuffers buffer1;
-    memset(&buffer1, 0, sizeof(buffer1));
-    buffer1.count = MAX_BUFFER_COUNT;
-    buffer1.type = buf_type;
-    buffer1.memory = V4L2_MEMORY_MMAP;
-    if (0 > ioctl(fd, VIDIOC_REQBUFS, &buffer1)) {
-        LOGE(TAG, "prepareBuffer: ioctl VIDIOC_REQBUFS failed: %s", strerror(errno));
-        return ACTION_ERROR_START;
-    }
-
-    //2-query memory
-    buffers = (struct VideoBuffer *) calloc(MAX_BUFFER_COUNT, sizeof(*buffers));
-    for (unsigned int i = 0; i < MAX_BUFFER_COUNT; ++i) {
-        struct v4l2_buffer buffer2;
-        struct v4l2_plane planes[1];
-        memset(&buffer2, 0, sizeof(buffer2));
-        memset(planes, 0, sizeof(planes));
-
-        buffer2.type = buf_type;
-        buffer2.memory = V4L2_MEMORY_MMAP;
-        buffer2.index = i;
-
-        if (useMultiplanar) {
-            buffer2.m.planes = planes;
-            buffer2.length = 1;
-        }
-
-        if (0 > ioctl(fd, VIDIOC_QUERYBUF, &buffer2)) {
-            LOGE(TAG, "prepareBuffer: ioctl VIDIOC_QUERYBUF failed: %s", strerror(errno));
-            return ACTION_ERROR_START;
-        }
-
-        if (useMultiplanar) {
-            buffers[i].length = buffer2.m.planes[0].length;
-            buffers[i].start = mmap(NULL, buffer2.m.planes[0].length,
-                                   PROT_READ | PROT_WRITE, MAP_SHARED, fd,
-                                   buffer2.m.planes[0].m.mem_offset);
-        } else {
-            buffers[i].length = buffer2.length;
-            buffers[i].start = mmap(NULL, buffer2.length,
-                                   PROT_READ | PROT_WRITE, MAP_SHARED, fd,
-                                   buffer2.m.offset);
-        }
-
-        if (MAP_FAILED == buffers[i].start) {
-            LOGE(TAG, "prepareBuffer: mmap failed");
-            return ACTION_ERROR_START;
-        }
-    }
-
-    //3-queue buffers
-    for (unsigned int i = 0; i < MAX_BUFFER_COUNT; ++i) {
-        struct v4l2_buffer buffer3;
-        struct v4l2_plane planes[1];
-        memset(&buffer3, 0, sizeof(buffer3));
-        memset(planes, 0, sizeof(planes));
-
-        buffer3.type = buf_type;
-        buffer3.memory = V4L2_MEMORY_MMAP;
-        buffer3.index = i;
-
-        if (useMultiplanar) {
-            buffer3.m.planes = planes;
-            buffer3.length = 1;
-        }
-
-        if (0 > ioctl(fd, VIDIOC_QBUF, &buffer3)) {
-            LOGE(TAG, "prepareBuffer: ioctl VIDIOC_QBUF failed: %s", strerror(errno));
-            return ACTION_ERROR_START;
-        }
-    }
-
-    LOGD(TAG, "prepareBuffer: success (%s)", useMultiplanar ? "multiplanar" : "single-planar");
-    return ACTION_SUCCESS;
-}
-
 void* CameraAPI::loopThread(void *args) {
     auto *camera = reinterpret_cast<CameraAPI *>(args);
     if (LIKELY(camera)) {
@@ -166,62 +124,104 @@ void* CameraAPI::loopThread(void *args) {
 //uint64_t time1 = 0;
 
 void CameraAPI::loopFrame(JNIEnv *env, CameraAPI *camera) {
-    fd_set fds;
-    struct timeval tv;
-    struct v4l2_buffer buffer;
-    struct v4l2_plane planes[1];
-
-    memset(&buffer, 0, sizeof(buffer));
-    memset(planes, 0, sizeof(planes));
-
-    buffer.type = camera->useMultiplanar ? V4L2_BUF_TYPE_VIDEO_CAPTURE_MPLANE : V4L2_BUF_TYPE_VIDEO_CAPTURE;
-    buffer.memory = V4L2_MEMORY_MMAP;
-
-    if (camera->useMultiplanar) {
-        buffer.m.planes = planes;
-        buffer.length = 1;
-    }
-
-    const int fd_count = camera->fd + 1;
+    SourceFrame frame;
+    memset(&frame, 0, sizeof(frame));
     int frame_count = 0;
-    LOGD(TAG, "loopFrame: started (fd=%d, multiplanar=%s)", camera->fd, camera->useMultiplanar ? "YES" : "NO");
+    //重配请求时刻，收到第一帧新格式时打印耗时
+    uint64_t reconfigUs = 0;
+    LOGD(TAG, "loopFrame: started");
 
     while (STATUS_RUN == camera->getStatus()) {
-        tv.tv_sec = 1;
-        tv.tv_usec = 0;
-        FD_ZERO (&fds);
-        FD_SET (camera->fd, &fds);
-
-        int ret = select(fd_count, &fds, NULL, NULL, &tv);
-        if (ret < 0) {
-            LOGE(TAG, "Loop frame: select failed: %s", strerror(errno));
-            continue;
-        } else if (ret == 0) {
-            LOGW(TAG, "Loop frame: select timeout (no data for 1 second)");
-            continue;
+        if (UNLIKELY(RECONFIG_POSTED == camera->reconfigState.load(std::memory_order_relaxed))
+            && !camera->handleReconfigure(reconfigUs)) {
+            break;
         }
-
-        // 有数据可读
-        if (0 > ioctl(camera->fd, VIDIOC_DQBUF, &buffer)) {
-            LOGE(TAG, "Loop frame: VIDIOC_DQBUF failed: %s", strerror(errno));
+        FrameReadResult ret = camera->source->acquire(frame, FRAME_TIMEOUT_MS);
+        if (ret == FRAME_READ_TIMEOUT) {
+            continue;
+        } else if (ret == FRAME_READ_END) {
+            LOGD(TAG, "Loop frame: source end");
             break;
+        } else if (ret != FRAME_READ_SUCCESS) {
+            break;
+        }
+        if (UNLIKELY(reconfigUs > 0)) {
+            LOGD(TAG, "reconfigure: first %dx%d frame %llu us after request", camera->frameWidth,
+                 camera->frameHeight, (unsigned long long) (timeMonotonicUs() - reconfigUs));
+            reconfigUs = 0;
         }
 
+        const uint64_t timestampUs = frame.timestampUs;
         frame_count++;
-        if (frame_count % 30 * 10 == 1) {  // 每 30 帧打印一次
-            LOGD(TAG, "Loop frame: received frame #%d, index=%d", frame_count, buffer.index);
+        const bool tracing = Trace::isEnabled();
+        if (tracing) {
+            Trace::setCounter(TRACE_SEQUENCE, frame.sequence);
+            Trace::beginAsyncSection(TRACE_FRAME, (int32_t) frame.sequence);
         }
+        //帧日志采样配置每帧只读一次，未设慢帧阈值时不取时间
+        const uint64_t logConfig = LogControl::load();
+        const uint64_t beginUs = LogControl::slowFrameUs(logConfig) > 0 ? timeMonotonicUs() : 0;
+
+        //NV12/NV16、GREY/Y10/Y16/Z16：行对齐或多平面时去掉填充合成紧凑帧，流录制与帧回调共用，只在需要时生成
+        //YUYV/DEPTH：每帧都要拷贝到 out_buffer，bytesperline 大于 width * 2 时在这里去掉行尾填充
+        const bool planar = isSemiPlanar(camera->frameFormat) || isMonochrome(camera->frameFormat);
+        const bool interleaved = FRAME_FORMAT_YUYV == camera->frameFormat || FRAME_FORMAT_DEPTH == camera->frameFormat;
+        uint8_t *packed = NULL;
+        if (interleaved || (planar && (camera->streamWriter || camera->frameCallback_onFrame
+                                       || camera->saveFrameRequested))) {
+            packed = camera->packFrame(frame);
+        }
+
+        //流录制：只拷贝到写缓冲区，落盘在写线程
+        if (camera->streamWriter && (!planar || packed)) {
+            TRACE_SCOPE("capture");
+            pthread_mutex_lock(&camera->captureLock);
+            if (camera->streamWriter) {
+                if (packed) {
+                    camera->streamWriter->write(packed, camera->pixelBytes, frame.sequence, timestampUs);
+                } else {
+                    camera->streamWriter->write(frame.data, frame.bytes, frame.sequence, timestampUs);
+                }
+            }
+            pthread_mutex_unlock(&camera->captureLock);
+        }
+
+        if (camera->nalParser) {
+            //H.264/HEVC：解析参数集与关键帧，码流原样交给复用器，预览由 MediaCodec 直接输出到 Surface
+            bool configChanged = false;
+            const bool keyFrame = camera->nalParser->parse((const uint8_t *) frame.data, frame.bytes, configChanged);
+            if (camera->saveFrameRequested) {
+                camera->saveFrameRequested = false;
+                camera->saveFrameToFile((const uint8_t *) frame.data, frame.bytes,
+                                        camera->frameFormat == FRAME_FORMAT_HEVC ? "hevc" : "h264");
+            }
+
+            //Stream->Java
+            if (camera->streamCallback) {
+                pthread_mutex_lock(&camera->captureLock);
+                camera->sendStreamFrame(env, frame, keyFrame, configChanged);
+                pthread_mutex_unlock(&camera->captureLock);
+            }
 
-        if (camera->frameFormat == FRAME_FORMAT_MJPEG) {
+            //Decode->Surface
+            if (camera->streamDecoder) {
+                TRACE_SCOPE("decode");
+                camera->streamDecoder->decode(frame.data, frame.bytes, timestampUs, keyFrame, configChanged,
+                                              *camera->nalParser);
+            }
+        } else if (camera->frameFormat == FRAME_FORMAT_MJPEG) {
             //MJPEG->NV12/YUV422
-            uint32_t bytesused = camera->useMultiplanar ? buffer.m.planes[0].bytesused : buffer.bytesused;
-            uint8_t *data = camera->decoder->convert2YUV(camera->buffers[buffer.index].start, bytesused);
+            uint8_t *data;
+            {
+                TRACE_SCOPE("decode");
+                data = camera->decoder->convert2YUV(frame.data, frame.bytes);
+            }
 
             // 调试：保存帧数据
             if (camera->saveFrameRequested) {
                 camera->saveFrameRequested = false;
                 // 保存原始 MJPEG 数据
-                camera->saveFrameToFile((const uint8_t*)camera->buffers[buffer.index].start, bytesused, "mjpeg");
+                camera->saveFrameToFile((const uint8_t*)frame.data, frame.bytes, "mjpeg");
                 // 保存解码后的 YUV 数据
                 camera->saveFrameToFile(data, camera->pixelBytes, "yuv_decoded");
             }
@@ -230,10 +230,31 @@ void CameraAPI::loopFrame(JNIEnv *env, CameraAPI *camera) {
             renderFrame(data);
 
             //Data->Java
-            sendFrame(env, data);
+            sendFrame(env, data, timestampUs);
+
+            //ROI->Java
+            if (camera->roiCallback_onRoiFrame && camera->roiDecoder->isEnabled()) {
+                camera->sendRoiFrame(env, frame.data, frame.bytes, timestampUs);
+            }
+        } else if (planar) {
+            //不解码：预览直接读 V4L2 平面（灰度/深度在此做色调映射），帧回调在紧凑时零拷贝、数据原样不变
+            if (camera->saveFrameRequested && packed) {
+                camera->saveFrameRequested = false;
+                camera->saveFrameToFile(packed, camera->pixelBytes, frameFormatName(camera->frameFormat));
+            }
+
+            //Render->RGBA
+            renderPlanes(frame);
+
+            //Raw->Java
+            sendFrame(env, packed, timestampUs);
         } else {
-            //YUYV
-            memcpy(out_buffer, camera->buffers[buffer.index].start, camera->pixelBytes);
+            //YUYV：已紧凑时从 V4L2 缓冲区拷贝，残帧按原样拷贝可用部分
+            if (packed == NULL) {
+                memcpy(out_buffer, frame.data, frame.bytes < camera->pixelBytes ? frame.bytes : camera->pixelBytes);
+            } else if (packed != out_buffer) {
+                memcpy(out_buffer, packed, camera->pixelBytes);
+            }
 
             // 调试：保存帧数据
             if (camera->saveFrameRequested) {
@@ -260,37 +281,139 @@ void CameraAPI::loopFrame(JNIEnv *env, CameraAPI *camera) {
             renderFrame(out_buffer);
 
             //YUYV->Java
-            sendFrame(env, out_buffer);
+            sendFrame(env, out_buffer, timestampUs);
         }
 
-        if (0 > ioctl(camera->fd, VIDIOC_QBUF, &buffer)) {
-            LOGW(TAG, "Loop frame: ioctl VIDIOC_QBUF %s", strerror(errno));
-            continue;
+        camera->source->release(frame);
+        if (tracing) {
+            Trace::endAsyncSection(TRACE_FRAME, (int32_t) frame.sequence);
         }
+
+        const uint64_t costUs = beginUs > 0 ? timeMonotonicUs() - beginUs : 0;
+        if (LogControl::sampleFrame(logConfig, (uint32_t) (frame_count - 1), costUs)) {
+            logRingPush(LOG_LEVEL_DEBUG, TAG, "Loop frame: received frame #%d, index=%d, sequence=%u, bytes=%zu, cost=%lluus",
+                        frame_count, frame.index, frame.sequence, frame.bytes, (unsigned long long) costUs);
+        }
+    }
+
+    //线程退出时还没取走的重配请求直接失败
+    pthread_mutex_lock(&camera->reconfigLock);
+    if (RECONFIG_POSTED == camera->reconfigState) {
+        camera->reconfigState = RECONFIG_DONE;
+        camera->reconfigResult = ACTION_ERROR_SET_W_H;
+        pthread_cond_broadcast(&camera->reconfigCond);
     }
+    pthread_mutex_unlock(&camera->reconfigLock);
 
     LOGD(TAG, "loopFrame: stopped (total frames: %d)", frame_count);
 }
 
 void CameraAPI::renderFrame(uint8_t *data) {
+    TRACE_SCOPE("render");
     static int render_call_count = 0;
     render_call_count++;
     if (render_call_count <= 3 || render_call_count % 1000 == 0) {
-        LOGD(TAG, "renderFrame: call #%d, preview=%p, data=%p", render_call_count, preview, data);
+        LOGTD(TAG, "renderFrame: call #%d, preview=%p, data=%p", render_call_count, preview, data);
     }
     if (LIKELY(preview && data)) {
         preview->render(data);
     } else {
         if (render_call_count <= 3) {
-            LOGW(TAG, "renderFrame: skipped - preview=%p, data=%p", preview, data);
+            LOGTW(TAG, "renderFrame: skipped - preview=%p, data=%p", preview, data);
         }
     }
 }
 
-void CameraAPI::sendFrame(JNIEnv *env, uint8_t *data) {
+void CameraAPI::renderPlanes(const SourceFrame &frame) {
+    TRACE_SCOPE("render");
+    if (UNLIKELY(!preview)) return;
+    if (frame.planeCount >= 2) {
+        preview->render(frame.planes[0].data, frame.planes[0].stride, frame.planes[1].data, frame.planes[1].stride);
+    } else if (frame.planeCount == 1 && isMonochrome(frameFormat)) {
+        preview->render(frame.planes[0].data, frame.planes[0].stride, NULL, 0);
+    }
+}
+
+uint8_t *CameraAPI::packFrame(const SourceFrame &frame) {
+    const FramePlane &y = frame.planes[0];
+    if (!isSemiPlanar(frameFormat)) {
+        //单平面（GREY/Y10/Y16/Z16、YUYV/DEPTH）：16 位格式每行 width * 2 字节
+        const int rowBytes = frameWidth * planeBytesPerPixel(frameFormat);
+        if (frame.planeCount < 1 || y.bytes < (size_t) y.stride * (frameHeight - 1) + rowBytes) {
+            return NULL;
+        }
+        if (y.stride == (uint32_t) rowBytes) return y.data;
+        TRACE_SCOPE("pack");
+        libyuv::CopyPlane(y.data, y.stride, out_buffer, rowBytes, rowBytes, frameHeight);
+        return out_buffer;
+    }
+    const FramePlane &uv = frame.planes[1];
+    const int uvHeight = frameFormat == FRAME_FORMAT_NV12 ? (frameHeight + 1) / 2 : frameHeight;
+    const size_t ySize = (size_t) frameWidth * frameHeight;
+    //残帧（bytesused 不足）丢弃，避免越界读取
+    if (frame.planeCount < 2 || y.bytes < (size_t) y.stride * (frameHeight - 1) + frameWidth
+        || uv.bytes < (size_t) uv.stride * (uvHeight - 1) + frameWidth) {
+        return NULL;
+    }
+    //ISP 输出已是紧凑排列：直接使用 V4L2 缓冲区（仅在回调期间有效，与解码输出缓冲区一致）
+    if (y.stride == (uint32_t) frameWidth && uv.stride == (uint32_t) frameWidth && uv.data == y.data + ySize) {
+        return y.data;
+    }
+    TRACE_SCOPE("pack");
+    libyuv::CopyPlane(y.data, y.stride, out_buffer, frameWidth, frameWidth, frameHeight);
+    libyuv::CopyPlane(uv.data, uv.stride, out_buffer + ySize, frameWidth, frameWidth, uvHeight);
+    return out_buffer;
+}
+
+void CameraAPI::sendRoiFrame(JNIEnv *env, void *jpeg, size_t jpegBytes, uint64_t timestampUs) {
+    TRACE_SCOPE("roi_decode");
+    RoiRect rect;
+    size_t bytes = 0;
+    uint8_t *data = roiDecoder->decode(jpeg, jpegBytes, rect, bytes);
+    if (LIKELY(data)) {
+        jobject frame = env->NewDirectByteBuffer(data, bytes);
+        env->CallVoidMethod(roiCallback, roiCallback_onRoiFrame, frame, rect.x, rect.y,
+                            rect.width, rect.height, (jlong) timestampUs);
+        env->DeleteLocalRef(frame);
+        env->ExceptionClear();
+    }
+}
+
+void CameraAPI::sendStreamFrame(JNIEnv *env, const SourceFrame &frame, bool keyFrame, bool configChanged) {
+    TRACE_SCOPE("jni_callback");
+    if (!streamCallback) return;
+    //1-参数集：首次、变化或新设置回调时先回调格式，复用器据此创建轨道
+    if ((configChanged || streamFormatPending) && nalParser->hasConfig()) {
+        std::vector<uint8_t> csd0, csd1;
+        nalParser->getConfig(csd0, csd1);
+        jobject buffer0 = env->NewDirectByteBuffer(csd0.data(), csd0.size());
+        jobject buffer1 = csd1.empty() ? NULL : env->NewDirectByteBuffer(csd1.data(), csd1.size());
+        env->CallVoidMethod(streamCallback, streamCallback_onStreamFormat, frameFormat, frameWidth, frameHeight,
+                            buffer0, buffer1);
+        env->DeleteLocalRef(buffer0);
+        if (buffer1) env->DeleteLocalRef(buffer1);
+        env->ExceptionClear();
+        streamFormatPending = false;
+    }
+    //2-访问单元：V4L2 缓冲区直接包装，仅在回调期间有效
+    if (!streamFormatPending) {
+        jobject data = env->NewDirectByteBuffer(frame.data, frame.bytes);
+        env->CallVoidMethod(streamCallback, streamCallback_onStreamFrame, data, (jlong) frame.timestampUs,
+                            (jboolean) keyFrame);
+        env->DeleteLocalRef(data);
+        env->ExceptionClear();
+    }
+}
+
+void CameraAPI::sendFrame(JNIEnv *env, uint8_t *data, uint64_t timestampUs) {
+    TRACE_SCOPE("jni_callback");
     if (frameCallback_onFrame && LIKELY(data)) {
         jobject frame = env->NewDirectByteBuffer(data, pixelBytes);
-        env->CallVoidMethod(frameCallback, frameCallback_onFrame, frame);
+        if (frameCallback_onFrameTimestamp) {
+            env->CallVoidMethod(frameCallback, frameCallback_onFrameTimestamp, frame, (jlong) timestampUs);
+        } else {
+            env->CallVoidMethod(frameCallback, frameCallback_onFrame, frame);
+        }
         env->DeleteLocalRef(frame);
         env->ExceptionClear();
     }
@@ -326,62 +449,22 @@ bool CameraAPI::validateDevicePath(const char* devicePath) {
     return true;
 }
 
-ActionInfo CameraAPI::openDevice(const char* devicePath) {
+ActionInfo CameraAPI::openSource(IFrameSource* frameSource, const char* path) {
     if (STATUS_CREATE != getStatus()) {
-        LOGW(TAG, "openDevice: error status, %d", getStatus());
+        LOGW(TAG, "openSource: error status, %d", getStatus());
+        delete frameSource;
         return ACTION_ERROR_CREATE_HAD;
     }
-
-    // 打开设备文件
-    fd = open(devicePath, O_RDWR | O_NONBLOCK);
-    if (0 > fd) {
-        LOGE(TAG, "openDevice: %s failed, %s", devicePath, strerror(errno));
-        if (errno == EACCES || errno == EPERM) {
-            return ACTION_ERROR_DEVICE_ACCESS;
-        }
-        return ACTION_ERROR_OPEN_FAIL;
-    }
-
-    // 查询设备能力
-    struct v4l2_capability cap;
-    memset(&cap, 0, sizeof(cap));
-    if (0 > ioctl(fd, VIDIOC_QUERYCAP, &cap)) {
-        LOGE(TAG, "openDevice: ioctl VIDIOC_QUERYCAP failed, %s", strerror(errno));
-        ::close(fd);
-        fd = 0;
-        return ACTION_ERROR_START;
-    }
-
-    // 打印设备能力信息（用于调试）
-    LOGD(TAG, "openDevice: device capabilities:");
-    LOGD(TAG, "  driver: %s", cap.driver);
-    LOGD(TAG, "  card: %s", cap.card);
-    LOGD(TAG, "  bus_info: %s", cap.bus_info);
-    LOGD(TAG, "  version: %u.%u.%u", (cap.version >> 16) & 0xFF, (cap.version >> 8) & 0xFF, cap.version & 0xFF);
-    LOGD(TAG, "  capabilities: 0x%08X", cap.capabilities);
-    LOGD(TAG, "  device_caps: 0x%08X", cap.device_caps);
-
-    // 检查是否支持视频捕获（支持单平面或多平面API）
-    uint32_t caps = (cap.capabilities & V4L2_CAP_DEVICE_CAPS) ? cap.device_caps : cap.capabilities;
-    bool supportsCapture = (caps & V4L2_CAP_VIDEO_CAPTURE) || (caps & V4L2_CAP_VIDEO_CAPTURE_MPLANE);
-
-    if (!supportsCapture) {
-        LOGE(TAG, "openDevice: device does not support video capture");
-        LOGE(TAG, "  V4L2_CAP_VIDEO_CAPTURE: %s", (caps & V4L2_CAP_VIDEO_CAPTURE) ? "YES" : "NO");
-        LOGE(TAG, "  V4L2_CAP_VIDEO_CAPTURE_MPLANE: %s", (caps & V4L2_CAP_VIDEO_CAPTURE_MPLANE) ? "YES" : "NO");
-        ::close(fd);
-        fd = 0;
-        return ACTION_ERROR_START;
+    ActionInfo action = frameSource->open(path);
+    if (ACTION_SUCCESS == action) {
+        source = frameSource;
+        source->setWarmStandby(warmStandby);
+        capabilityKey = CapabilityCache::keyOf(path);
+        status = STATUS_OPEN;
+    } else {
+        delete frameSource;
     }
-
-    // 设置多平面标志
-    useMultiplanar = (caps & V4L2_CAP_VIDEO_CAPTURE_MPLANE) != 0;
-    LOGD(TAG, "openDevice: video capture supported (capabilities=0x%08X, multiplanar=%s)",
-         caps, useMultiplanar ? "YES" : "NO");
-
-    LOGD(TAG, "openDevice: %s succeed", devicePath);
-    status = STATUS_OPEN;
-    return ACTION_SUCCESS;
+    return action;
 }
 
 //=======================================Public=====================================================
@@ -389,36 +472,14 @@ ActionInfo CameraAPI::openDevice(const char* devicePath) {
 ActionInfo CameraAPI::connect(unsigned int target_pid, unsigned int target_vid) {
     ActionInfo action = ACTION_SUCCESS;
     if (STATUS_CREATE == getStatus()) {
-        std::string modalias;
+        //设备表常驻并随插拔增量更新，命中时不再逐个读取 /sys/class/video4linux/videoN/device/modalias
         std::string dev_video_name;
-        for (int i = 0; i <= MAX_DEV_VIDEO_INDEX; ++i) {
-            int vid = 0, pid = 0;
-            dev_video_name.append("video").append(std::to_string(i));
-            if (!(std::ifstream("/sys/class/video4linux/" + dev_video_name + "/device/modalias") >> modalias)) {
-                LOGD(TAG, "dev/%s : read modalias failed", dev_video_name.c_str());
-            } else if (modalias.size() < 14 || modalias.substr(0, 5) != "usb:v" || modalias[9] != 'p') {
-                LOGD(TAG, "dev/%s : format is not a usb of modalias", dev_video_name.c_str());
-            } else if (!(std::istringstream(modalias.substr(5, 4)) >> std::hex >> vid)) {
-                LOGD(TAG, "dev/%s : read vid failed", dev_video_name.c_str());
-            } else if (!(std::istringstream(modalias.substr(10, 4)) >> std::hex >> pid)) {
-                LOGD(TAG, "dev/%s : read pid failed", dev_video_name.c_str());
-            } else {
-                LOGD(TAG, "dev/%s : vid=%d, pid=%d", dev_video_name.c_str(), vid, pid);
-            }
-            if (target_pid == pid && target_vid == vid) {
-                dev_video_name.insert(0, "/dev/");
-                break;
-            } else {
-                modalias.clear();
-                dev_video_name.clear();
-            }
-        }
-        if (dev_video_name.empty()) {
+        if (target_vid > 0xFFFF || target_pid > 0xFFFF
+            || !DeviceRegistry::instance().find(target_vid, target_pid, dev_video_name)) {
             LOGW(TAG, "connect: no target device");
             action = ACTION_ERROR_NO_DEVICE;
         } else {
-            // 使用统一的设备打开方法
-            action = openDevice(dev_video_name.data());
+            action = openSource(new V4L2FrameSource(), dev_video_name.data());
         }
     } else {
         LOGW(TAG, "open: error status, %d", getStatus());
@@ -436,20 +497,23 @@ ActionInfo CameraAPI::connectByPath(const char* devicePath) {
         return ACTION_ERROR_INVALID_PATH;
     }
 
-    // 使用统一的设备打开方法
-    action = openDevice(devicePath);
+    action = openSource(new V4L2FrameSource(), devicePath);
 
     return action;
 }
 
+ActionInfo CameraAPI::connectByReplay(const char* filePath, bool realtime, bool loop) {
+    if (!filePath || strlen(filePath) == 0 || access(filePath, R_OK) != 0) {
+        LOGW(TAG, "connectByReplay: invalid file path: %s", filePath ? filePath : "null");
+        return ACTION_ERROR_INVALID_PATH;
+    }
+    return openSource(new ReplayFrameSource(realtime, loop), filePath);
+}
+
 ActionInfo CameraAPI::autoExposure(bool isAuto) {
     if (STATUS_OPEN <= getStatus()) {
-        struct v4l2_control ctrl;
-        //SAFE_CLEAR(ctrl)
-        ctrl.id = V4L2_CID_EXPOSURE_AUTO;
-        ctrl.value = isAuto ? V4L2_EXPOSURE_AUTO : V4L2_EXPOSURE_MANUAL;
-        if (0 > ioctl(fd, VIDIOC_S_CTRL, &ctrl)) {
-            LOGW(TAG, "autoExposure: ioctl VIDIOC_S_CTRL failed, %s", strerror(errno));
+        int value = isAuto ? V4L2_EXPOSURE_AUTO : V4L2_EXPOSURE_MANUAL;
+        if (!source->setControl(V4L2_CID_EXPOSURE_AUTO, value)) {
             return ACTION_ERROR_AUTO_EXPOSURE;
         } else {
             LOGD(TAG, "autoExposure: success");
@@ -463,12 +527,7 @@ ActionInfo CameraAPI::autoExposure(bool isAuto) {
 
 ActionInfo CameraAPI::updateExposure(unsigned int level) {
     if (STATUS_OPEN <= getStatus()) {
-        struct v4l2_control ctrl;
-        //SAFE_CLEAR(ctrl)
-        ctrl.id = V4L2_CID_EXPOSURE_ABSOLUTE;
-        ctrl.value = level;
-        if (0 > ioctl(fd, VIDIOC_S_CTRL, &ctrl)) {
-            LOGE(TAG, "updateExposure: ioctl failed, %s", strerror(errno));
+        if (!source->setControl(V4L2_CID_EXPOSURE_ABSOLUTE, level)) {
             return ACTION_ERROR_SET_EXPOSURE;
         } else {
             LOGD(TAG, "updateExposure: success");
@@ -480,201 +539,306 @@ ActionInfo CameraAPI::updateExposure(unsigned int level) {
     }
 }
 
-ActionInfo CameraAPI::getSupportSize(std::vector<std::pair<int, int>> &sizes) {
+ActionInfo CameraAPI::getCapabilities(std::vector<FrameCapability> &capabilities) {
     if (STATUS_OPEN <= getStatus()) {
-        struct v4l2_frmsizeenum frmsize;
-        struct v4l2_fmtdesc fmtdesc;
-        memset(&fmtdesc, 0, sizeof(fmtdesc));
-        memset(&frmsize, 0, sizeof(frmsize));
-
-        // 根据设备类型选择正确的缓冲区类型
-        fmtdesc.type = useMultiplanar ? V4L2_BUF_TYPE_VIDEO_CAPTURE_MPLANE : V4L2_BUF_TYPE_VIDEO_CAPTURE;
-        fmtdesc.index = 0;
-
-        LOGD(TAG, "getSupportSize: using %s API", useMultiplanar ? "multiplanar" : "single-planar");
-
-        while (ioctl(fd, VIDIOC_ENUM_FMT, &fmtdesc) == 0) {
-            // 打印格式信息
-            char fourcc[5] = {0};
-            fourcc[0] = fmtdesc.pixelformat & 0xFF;
-            fourcc[1] = (fmtdesc.pixelformat >> 8) & 0xFF;
-            fourcc[2] = (fmtdesc.pixelformat >> 16) & 0xFF;
-            fourcc[3] = (fmtdesc.pixelformat >> 24) & 0xFF;
-            LOGD(TAG, "  Format[%d]: %s (%s), flags=0x%08X",
-                 fmtdesc.index, fmtdesc.description, fourcc, fmtdesc.flags);
-
-            frmsize.pixel_format = fmtdesc.pixelformat;
-            frmsize.index = 0;
-
-            while (ioctl(fd, VIDIOC_ENUM_FRAMESIZES, &frmsize) == 0) {
-                if (frmsize.type == V4L2_FRMSIZE_TYPE_DISCRETE) {
-                    // 对于压缩格式（如 MJPEG），添加到列表
-                    if (fmtdesc.flags & V4L2_FMT_FLAG_COMPRESSED) {
-                        sizes.emplace_back(frmsize.discrete.width, frmsize.discrete.height);
-                        LOGD(TAG, "    Size[%d]: %dx%d (compressed)",
-                             frmsize.index, frmsize.discrete.width, frmsize.discrete.height);
-                    } else {
-                        // 对于非压缩格式，也添加到列表（修改之前的行为）
-                        sizes.emplace_back(frmsize.discrete.width, frmsize.discrete.height);
-                        LOGD(TAG, "    Size[%d]: %dx%d (uncompressed)",
-                             frmsize.index, frmsize.discrete.width, frmsize.discrete.height);
-                    }
-                } else if (frmsize.type == V4L2_FRMSIZE_TYPE_STEPWISE || frmsize.type == V4L2_FRMSIZE_TYPE_CONTINUOUS) {
-                    LOGD(TAG, "    Size[%d]: %dx%d to %dx%d (step: %dx%d)",
-                         frmsize.index,
-                         frmsize.stepwise.min_width, frmsize.stepwise.min_height,
-                         frmsize.stepwise.max_width, frmsize.stepwise.max_height,
-                         frmsize.stepwise.step_width, frmsize.stepwise.step_height);
-                    // 添加一些常见分辨率
-                    if (frmsize.stepwise.max_width >= 1920 && frmsize.stepwise.max_height >= 1080) {
-                        sizes.emplace_back(1920, 1080);
-                    }
-                    if (frmsize.stepwise.max_width >= 1280 && frmsize.stepwise.max_height >= 720) {
-                        sizes.emplace_back(1280, 720);
-                    }
-                    if (frmsize.stepwise.max_width >= 640 && frmsize.stepwise.max_height >= 480) {
-                        sizes.emplace_back(640, 480);
-                    }
-                } else {
-                    LOGW(TAG, "    Size[%d]: unknown type=%d", frmsize.index, frmsize.type);
-                }
-                frmsize.index++;
-            }
-            fmtdesc.index++;
+        if (CapabilityCache::load(capabilityKey, capabilities)) {
+            return ACTION_SUCCESS;
         }
-
-        LOGD(TAG, "getSupportSize: found %zu resolutions", sizes.size());
-        return ACTION_SUCCESS;
+        ActionInfo action = source->getCapabilities(capabilities);
+        if (ACTION_SUCCESS == action) {
+            CapabilityCache::store(capabilityKey, capabilities);
+        }
+        return action;
     } else {
-        LOGW(TAG, "getSupportSize: error status, %d", getStatus());
+        LOGW(TAG, "getCapabilities: error status, %d", getStatus());
         return ACTION_ERROR_GET_W_H;
     }
 }
 
-ActionInfo CameraAPI::setFrameSize(int width, int height, int frame_format) {
-    if (STATUS_OPEN == getStatus()) {
-        //1-set frame width and height
-        struct v4l2_format format;
-        memset(&format, 0, sizeof(format));
-
-        // 根据设备类型选择正确的缓冲区类型
-        format.type = useMultiplanar ? V4L2_BUF_TYPE_VIDEO_CAPTURE_MPLANE : V4L2_BUF_TYPE_VIDEO_CAPTURE;
-
-        if (useMultiplanar) {
-            // 多平面 API
-            format.fmt.pix_mp.width = width;
-            format.fmt.pix_mp.height = height;
-            format.fmt.pix_mp.field = V4L2_FIELD_ANY;
-            format.fmt.pix_mp.pixelformat = frame_format ? V4L2_PIX_FMT_YUYV : V4L2_PIX_FMT_MJPEG;
-            format.fmt.pix_mp.num_planes = 1;  // YUYV 和 MJPEG 都是单平面的打包格式
-
-            // 设置色彩空间和量化范围（重要！）
-            // 使用 ITU-R BT.709 色彩空间（适用于 HD 视频）
-            format.fmt.pix_mp.colorspace = V4L2_COLORSPACE_REC709;
-            format.fmt.pix_mp.ycbcr_enc = V4L2_YCBCR_ENC_709;
-            // 使用全范围量化（0-255），而不是有限范围（16-235）
-            format.fmt.pix_mp.quantization = V4L2_QUANTIZATION_FULL_RANGE;
-            format.fmt.pix_mp.xfer_func = V4L2_XFER_FUNC_709;
-
-            LOGD(TAG, "setFrameSize: multiplanar mode, %dx%d, format=%s, quantization=FULL_RANGE",
-                 width, height, frame_format ? "YUYV" : "MJPEG");
+ActionInfo CameraAPI::getSupportSize(std::vector<std::pair<int, int>> &sizes) {
+    std::vector<FrameCapability> capabilities;
+    ActionInfo action = getCapabilities(capabilities);
+    if (ACTION_SUCCESS != action) {
+        return action;
+    }
+    //兼容旧接口：只返回宽高，stepwise 尺寸取范围内的常见分辨率
+    static const int COMMON_SIZES[][2] = {{1920, 1080}, {1280, 720}, {640, 480}};
+    for (const FrameCapability &capability : capabilities) {
+        if (capability.sizeType == FRAME_SIZE_DISCRETE) {
+            sizes.emplace_back(capability.width, capability.height);
         } else {
-            // 单平面 API
-            format.fmt.pix.width = width;
-            format.fmt.pix.height = height;
-            format.fmt.pix.field = V4L2_FIELD_ANY;
-            format.fmt.pix.pixelformat = frame_format ? V4L2_PIX_FMT_YUYV : V4L2_PIX_FMT_MJPEG;
-
-            // 设置色彩空间和量化范围
-            format.fmt.pix.colorspace = V4L2_COLORSPACE_REC709;
-            format.fmt.pix.ycbcr_enc = V4L2_YCBCR_ENC_709;
-            format.fmt.pix.quantization = V4L2_QUANTIZATION_FULL_RANGE;
-            format.fmt.pix.xfer_func = V4L2_XFER_FUNC_709;
+            for (const int *size : COMMON_SIZES) {
+                if (capability.width >= (uint32_t) size[0] && capability.height >= (uint32_t) size[1]) {
+                    sizes.emplace_back(size[0], size[1]);
+                }
+            }
+        }
+    }
+    return ACTION_SUCCESS;
+}
 
-            LOGD(TAG, "setFrameSize: single-planar mode, %dx%d, format=%s, quantization=FULL_RANGE",
-                 width, height, frame_format ? "YUYV" : "MJPEG");
+ActionInfo CameraAPI::setFrameSize(int width, int height, int frame_format, DecodeType decodeType) {
+    if (STATUS_OPEN == getStatus()) {
+        //1-set frame width, height and fps
+        ActionInfo action = source->setFormat(width, height, frame_format);
+        if (ACTION_SUCCESS != action) {
+            return action;
         }
 
-        if (0 > ioctl(fd, VIDIOC_S_FMT, &format)) {
-            LOGE(TAG, "setFrameSize: ioctl set format failed, %s", strerror(errno));
-            return ACTION_ERROR_SET_W_H;
+        //2-prepare decoder or buffer
+        action = prepareFormat(width, height, frame_format, decodeType, false);
+        if (ACTION_SUCCESS != action) {
+            return action;
         }
 
-        // 读取实际设置的格式
-        if (useMultiplanar) {
-            LOGD(TAG, "setFrameSize: actual format: %dx%d",
-                 format.fmt.pix_mp.width, format.fmt.pix_mp.height);
-            LOGD(TAG, "  colorspace=%d, ycbcr_enc=%d, quantization=%d, xfer_func=%d",
-                 format.fmt.pix_mp.colorspace, format.fmt.pix_mp.ycbcr_enc,
-                 format.fmt.pix_mp.quantization, format.fmt.pix_mp.xfer_func);
+        frameWidth = width;
+        frameHeight = height;
+        frameFormat = frame_format;
+        //重配失败后重新设置格式：沿用已有预览
+        if (preview) preview->resize(width, height, getPixelFormat());
+        if (streamDecoder && nalParser) {
+            streamDecoder->resize(nalParser->isHevc(), width, height, source->getFrameRate());
         } else {
-            LOGD(TAG, "setFrameSize: actual format: %dx%d",
-                 format.fmt.pix.width, format.fmt.pix.height);
-            LOGD(TAG, "  colorspace=%d, ycbcr_enc=%d, quantization=%d, xfer_func=%d",
-                 format.fmt.pix.colorspace, format.fmt.pix.ycbcr_enc,
-                 format.fmt.pix.quantization, format.fmt.pix.xfer_func);
+            SAFE_DELETE(streamDecoder)
         }
+        status = STATUS_INIT;
+        return ACTION_SUCCESS;
+    } else {
+        LOGW(TAG, "setFrameSize: error status, %d", getStatus());
+        return ACTION_ERROR_SET_W_H;
+    }
+}
 
-        if (frame_format) { // YUYV
-            pixelBytes = width * height * 2;
-            out_buffer = (uint8_t *) calloc(1, pixelBytes);
-        } else { // MJPEG
+ActionInfo CameraAPI::prepareFormat(int width, int height, int frame_format, DecodeType decodeType,
+                                     bool rateChanged) {
+    SAFE_DELETE(nalParser)
+    SAFE_FREE(out_buffer)
+    if (isCompressedStream(frame_format)) { // H.264/HEVC：码流不解码，没有帧回调数据
+        SAFE_DELETE(decoder)
+        pixelBytes = 0;
+        nalParser = new NalParser(frame_format == FRAME_FORMAT_HEVC);
+    } else if (isSemiPlanar(frame_format) || isMonochrome(frame_format)) {
+        // NV12/NV16、GREY/Y10/Y16/Z16：不解码，行对齐/多平面时拷贝成紧凑帧
+        SAFE_DELETE(decoder)
+        pixelBytes = packedFrameBytes(frame_format, width, height);
+        out_buffer = (uint8_t *) calloc(1, pixelBytes);
+    } else if (frame_format) { // YUYV
+        SAFE_DELETE(decoder)
+        pixelBytes = width * height * 2;
+        out_buffer = (uint8_t *) calloc(1, pixelBytes);
+    } else { // MJPEG
+        //重配时尺寸不变保留解码器，只有硬解需要按新帧率重新配置；指定了其它解码方式时重新初始化
+        if (decoder && FRAME_FORMAT_MJPEG == frameFormat && width == frameWidth && height == frameHeight
+            && !(rateChanged && DECODE_HW == decoder->getDecodeType())
+            && (DECODE_UNKNOWN == decodeType || decodeType == decoder->getDecodeType())) {
+            return ACTION_SUCCESS;
+        }
+        if (decoder == NULL) {
             decoder = new DecoderFactory();
-            if (0 != decoder->init(width, height)){
-                SAFE_DELETE(decoder);
-                LOGE(TAG, "DecoderFactory init failed");
-                return ACTION_ERROR_DECODER;
-            } else if (PIXEL_FORMAT_NV12 == decoder->getPixelFormat()) {
-                pixelBytes = width * height * 3 / 2;
-            } else {
-                pixelBytes = width * height * 2;
-            }
+        } else if (DECODE_UNKNOWN == decodeType) {
+            //沿用当前解码方式，尺寸变化时硬解从 DecoderCache 取回或重新配置 MediaCodec
+            decodeType = decoder->getDecodeType();
         }
-
-        //2-set frame fps
-        struct v4l2_streamparm parm;
-        memset(&parm, 0, sizeof(parm));
-        parm.type = useMultiplanar ? V4L2_BUF_TYPE_VIDEO_CAPTURE_MPLANE : V4L2_BUF_TYPE_VIDEO_CAPTURE;
-        parm.parm.capture.timeperframe.numerator = 1;
-        parm.parm.capture.timeperframe.denominator = 30;
-
-        if (0 > ioctl(fd, VIDIOC_S_PARM, &parm)) {
-            LOGW(TAG, "setFrameSize: ioctl set fps failed, %s", strerror(errno));
+        if (0 != decoder->init(width, height, decodeType, source->getFrameRate())){
+            SAFE_DELETE(decoder);
+            LOGE(TAG, "DecoderFactory init failed");
+            return ACTION_ERROR_DECODER;
+        } else if (PIXEL_FORMAT_NV12 == decoder->getPixelFormat()) {
+            pixelBytes = width * height * 3 / 2;
         } else {
-            LOGD(TAG, "setFrameSize: fps set to 30");
+            pixelBytes = width * height * 2;
         }
+    }
+    return ACTION_SUCCESS;
+}
 
-        //3-what function ?
-        int min;
-        if (useMultiplanar) {
-            min = format.fmt.pix_mp.width * 2;
-            if (format.fmt.pix_mp.plane_fmt[0].bytesperline < min) {
-                format.fmt.pix_mp.plane_fmt[0].bytesperline = min;
-            }
-            min = format.fmt.pix_mp.plane_fmt[0].bytesperline * format.fmt.pix_mp.height;
-            if (format.fmt.pix_mp.plane_fmt[0].sizeimage < min) {
-                format.fmt.pix_mp.plane_fmt[0].sizeimage = min;
-            }
-        } else {
-            min = format.fmt.pix.width * 2;
-            if (format.fmt.pix.bytesperline < min) {
-                format.fmt.pix.bytesperline = min;
-            }
-            min = format.fmt.pix.bytesperline * format.fmt.pix.height;
-            if (format.fmt.pix.sizeimage < min) {
-                format.fmt.pix.sizeimage = min;
-            }
+ActionInfo CameraAPI::applyFormat(int width, int height, int frame_format, int fps) {
+    const bool formatChanged = width != frameWidth || height != frameHeight || frame_format != frameFormat;
+    const int oldFps = source->getFrameRate();
+    //1-先记录请求帧率，格式变化时 setFormat 按新格式重新应用
+    if (fps > 0 && ACTION_SUCCESS != source->setFrameRate(fps)) {
+        LOGW(TAG, "applyFormat: set fps %d failed", fps);
+    }
+    if (formatChanged) {
+        ActionInfo action = source->setFormat(width, height, frame_format);
+        if (ACTION_SUCCESS != action) {
+            return action;
         }
-
-        frameWidth = width;
-        frameHeight = height;
-        frameFormat = frame_format;
-        status = STATUS_INIT;
+    }
+    const bool rateChanged = source->getFrameRate() != oldFps;
+    if (!formatChanged && !rateChanged) {
         return ACTION_SUCCESS;
-    } else {
-        LOGW(TAG, "setFrameSize: error status, %d", getStatus());
+    }
+    //2-只重建变化的部分
+    return rebuildFormat(width, height, frame_format, formatChanged, rateChanged);
+}
+
+ActionInfo CameraAPI::rebuildFormat(int width, int height, int frame_format, bool formatChanged, bool rateChanged) {
+    const PixelFormat oldPixelFormat = getPixelFormat();
+    //1-缓冲区、解码器、码流解析
+    ActionInfo action = prepareFormat(width, height, frame_format, DECODE_UNKNOWN, rateChanged);
+    if (ACTION_SUCCESS != action) {
+        return action;
+    }
+    frameWidth = width;
+    frameHeight = height;
+    frameFormat = frame_format;
+
+    //2-预览：保留窗口，只重建转换器/解码器；MJPEG 硬解退回软解时像素格式也会改变
+    const PixelFormat pixelFormat = getPixelFormat();
+    if (preview && (formatChanged || pixelFormat != oldPixelFormat)) {
+        preview->resize(width, height, pixelFormat);
+    }
+    if (streamDecoder && nalParser) {
+        streamDecoder->resize(nalParser->isHevc(), width, height, source->getFrameRate());
+    }
+    return ACTION_SUCCESS;
+}
+
+bool CameraAPI::restoreFormat(int fps) {
+    //frameWidth/frameHeight/frameFormat 只在成功后更新，仍为原格式
+    if (fps > 0) source->setFrameRate(fps);
+    if (ACTION_SUCCESS != source->setFormat(frameWidth, frameHeight, frameFormat)
+        || ACTION_SUCCESS != prepareFormat(frameWidth, frameHeight, frameFormat, DECODE_UNKNOWN, false)) {
+        LOGE(TAG, "restoreFormat: %dx%d format=%d failed", frameWidth, frameHeight, frameFormat);
+        return false;
+    }
+    LOGD(TAG, "restoreFormat: %dx%d format=%d", frameWidth, frameHeight, frameFormat);
+    return true;
+}
+
+bool CameraAPI::handleReconfigure(uint64_t &requestUs) {
+    pthread_mutex_lock(&reconfigLock);
+    if (RECONFIG_POSTED != reconfigState) {
+        pthread_mutex_unlock(&reconfigLock);
+        return true;
+    }
+    reconfigState = RECONFIG_APPLYING;
+    const int width = reconfigWidth;
+    const int height = reconfigHeight;
+    const int frame_format = reconfigFormat;
+    const int fps = reconfigFps;
+    requestUs = reconfigRequestUs;
+    pthread_mutex_unlock(&reconfigLock);
+
+    //请求方检查之后可能已开始流录制，文件头记录了格式和尺寸
+    if (isStreamCapturing()) {
+        LOGW(TAG, "reconfigure: stop stream capture first");
+        pthread_mutex_lock(&reconfigLock);
+        reconfigResult = ACTION_ERROR_CAPTURE;
+        reconfigState = RECONFIG_DONE;
+        pthread_cond_broadcast(&reconfigCond);
+        pthread_mutex_unlock(&reconfigLock);
+        requestUs = 0;
+        return true;
+    }
+
+    TRACE_SCOPE("reconfigure");
+    const uint64_t beginUs = timeMonotonicUs();
+    const int oldFps = source->getFrameRate();
+    bool running = true;
+    //1-STREAMOFF：未出队的旧帧随之丢弃，热备保留的缓冲区由 setFormat 释放
+    source->streamOff();
+    //2-S_FMT + 重建变化部分，失败时恢复原格式继续采集
+    ActionInfo action = applyFormat(width, height, frame_format, fps);
+    if (ACTION_SUCCESS != action && !restoreFormat(oldFps)) {
+        formatLost = true;
+        running = false;
+    }
+    //3-STREAMON：按当前格式重新分配缓冲区
+    if (running && ACTION_SUCCESS != source->streamOn()) {
+        LOGE(TAG, "reconfigure: stream on failed");
+        if (ACTION_SUCCESS == action) action = ACTION_ERROR_START;
+        running = false;
+    }
+    LOGD(TAG, "reconfigure: %dx%d format=%d fps=%d -> %d, applied in %llu us", width, height, frame_format,
+         source->getFrameRate(), action, (unsigned long long) (timeMonotonicUs() - beginUs));
+    if (!running) requestUs = 0;
+
+    pthread_mutex_lock(&reconfigLock);
+    reconfigResult = action;
+    reconfigState = RECONFIG_DONE;
+    pthread_cond_broadcast(&reconfigCond);
+    pthread_mutex_unlock(&reconfigLock);
+    return running;
+}
+
+bool CameraAPI::isStreamCapturing() {
+    pthread_mutex_lock(&captureLock);
+    const bool capturing = streamWriter != NULL;
+    pthread_mutex_unlock(&captureLock);
+    return capturing;
+}
+
+ActionInfo CameraAPI::setFrameSizeAuto(int width, int height, int fps, FormatSelection &selection) {
+    if (STATUS_OPEN != getStatus()) {
+        LOGW(TAG, "setFrameSizeAuto: error status, %d", getStatus());
         return ACTION_ERROR_SET_W_H;
     }
+    std::vector<FrameCapability> capabilities;
+    ActionInfo action = getCapabilities(capabilities);
+    if (ACTION_SUCCESS != action) {
+        return action;
+    }
+    if (!FormatSelector::select(capabilityKey, capabilities, width, height, fps, selection)) {
+        return ACTION_ERROR_SET_W_H;
+    }
+    //先记录请求帧率，setFormat 之后按新格式重新应用
+    source->setFrameRate(selection.fps);
+    action = setFrameSize(width, height, selection.frameFormat, selection.decodeType);
+    if (ACTION_SUCCESS == action) {
+        //硬解初始化失败时 DecoderFactory 会退回软解；帧率以驱动回填为准
+        if (decoder) selection.decodeType = decoder->getDecodeType();
+        if (source->getFrameRate() > 0) selection.fps = source->getFrameRate();
+    }
+    return action;
+}
+
+ActionInfo CameraAPI::setFrameRate(int fps) {
+    if (STATUS_OPEN != getStatus() && STATUS_INIT != getStatus()) {
+        LOGW(TAG, "setFrameRate: error status, %d", getStatus());
+        return ACTION_ERROR_SET_FPS;
+    }
+    const int oldFps = source->getFrameRate();
+    ActionInfo action = source->setFrameRate(fps);
+    if (STATUS_INIT == getStatus() && source->getFrameRate() != oldFps) {
+        //与 reconfigure 相同路径：硬解按新帧率重新配置，像素格式变化时重建预览转换器
+        ActionInfo rebuild = rebuildFormat(frameWidth, frameHeight, frameFormat, false, true);
+        if (ACTION_SUCCESS != rebuild && !restoreFormat(oldFps)) {
+            status = STATUS_OPEN;
+        }
+        if (ACTION_SUCCESS == action) action = rebuild;
+    }
+    LOGD(TAG, "setFrameRate: request %d, actual %d", fps, source->getFrameRate());
+    return action;
+}
+
+int CameraAPI::getFrameRate() {
+    return STATUS_OPEN <= getStatus() ? source->getFrameRate() : 0;
+}
+
+ActionInfo CameraAPI::getFrameCapability(FrameCapability &capability) {
+    if (STATUS_INIT > getStatus()) {
+        LOGW(TAG, "getFrameCapability: error status, %d", getStatus());
+        return ACTION_ERROR_GET_W_H;
+    }
+    std::vector<FrameCapability> capabilities;
+    ActionInfo action = getCapabilities(capabilities);
+    if (ACTION_SUCCESS != action) {
+        return action;
+    }
+    //深度帧按 YUYV 采集；NV12/NV16 同时匹配多平面变体
+    const int captureFormat = frameFormat == FRAME_FORMAT_DEPTH ? FRAME_FORMAT_YUYV : frameFormat;
+    for (const FrameCapability &item : capabilities) {
+        if (frameFormatOf(item.pixelFormat) != captureFormat) continue;
+        if (item.sizeType == FRAME_SIZE_DISCRETE ? (item.width == (uint32_t) frameWidth && item.height == (uint32_t) frameHeight)
+                : ((uint32_t) frameWidth >= item.minWidth && (uint32_t) frameWidth <= item.width
+                   && (uint32_t) frameHeight >= item.minHeight && (uint32_t) frameHeight <= item.height)) {
+            capability = item;
+            return ACTION_SUCCESS;
+        }
+    }
+    return ACTION_ERROR_GET_W_H;
 }
 
 void CameraAPI::getActualFrameSize(int &width, int &height) {
@@ -682,6 +846,28 @@ void CameraAPI::getActualFrameSize(int &width, int &height) {
     height = frameHeight;
 }
 
+PixelFormat CameraAPI::getPixelFormat() {
+    // 帧回调/预览数据的像素格式: MJPEG 取决于解码器(NV12/YUV422), 其余为原始数据, H.264/HEVC 没有像素数据
+    if (decoder != NULL) {
+        return decoder->getPixelFormat();
+    } else if (frameFormat == FRAME_FORMAT_NV12) {
+        return PIXEL_FORMAT_NV12;
+    } else if (frameFormat == FRAME_FORMAT_NV16) {
+        return PIXEL_FORMAT_NV16;
+    } else if (frameFormat == FRAME_FORMAT_YUYV) {
+        return PIXEL_FORMAT_YUYV;
+    } else if (frameFormat == FRAME_FORMAT_DEPTH || frameFormat == FRAME_FORMAT_Z16) {
+        return PIXEL_FORMAT_DEPTH;
+    } else if (frameFormat == FRAME_FORMAT_GREY) {
+        return PIXEL_FORMAT_GREY;
+    } else if (frameFormat == FRAME_FORMAT_Y10) {
+        return PIXEL_FORMAT_Y10;
+    } else if (frameFormat == FRAME_FORMAT_Y16) {
+        return PIXEL_FORMAT_Y16;
+    }
+    return PIXEL_FORMAT_ERROR;
+}
+
 ActionInfo CameraAPI::setFrameCallback(JNIEnv *env, jobject frame_callback) {
     if (STATUS_INIT == getStatus()) {
         if (!env->IsSameObject(frameCallback, frame_callback)) {
@@ -693,12 +879,17 @@ ActionInfo CameraAPI::setFrameCallback(JNIEnv *env, jobject frame_callback) {
                 if (LIKELY(clazz)) {
                     frameCallback = frame_callback;
                     frameCallback_onFrame = env->GetMethodID(clazz, "onFrame","(Ljava/nio/ByteBuffer;)V");
+                    env->ExceptionClear();
+                    // IFrameTimestampCallback: 额外带采集时间戳
+                    frameCallback_onFrameTimestamp = env->GetMethodID(clazz, "onFrame","(Ljava/nio/ByteBuffer;J)V");
+                    env->DeleteLocalRef(clazz);
                 }
                 env->ExceptionClear();
                 if (!frameCallback_onFrame) {
                     env->DeleteGlobalRef(frameCallback);
                     frameCallback = NULL;
                     frameCallback_onFrame = NULL;
+                    frameCallback_onFrameTimestamp = NULL;
                 }
             }
         }
@@ -709,6 +900,80 @@ ActionInfo CameraAPI::setFrameCallback(JNIEnv *env, jobject frame_callback) {
     }
 }
 
+ActionInfo CameraAPI::setRoiCallback(JNIEnv *env, jobject roi_callback) {
+    if (STATUS_INIT != getStatus()) {
+        LOGW(TAG, "setRoiCallback: error status, %d", getStatus());
+        return ACTION_ERROR_CALLBACK;
+    } else if (roi_callback && frameFormat != FRAME_FORMAT_MJPEG) {
+        LOGW(TAG, "setRoiCallback: only support MJPEG, frameFormat=%d", frameFormat);
+        return ACTION_ERROR_CALLBACK;
+    }
+    if (env->IsSameObject(roiCallback, roi_callback)) {
+        //同一对象：释放 NativeAPI 新建的全局引用
+        if (roi_callback) env->DeleteGlobalRef(roi_callback);
+        return ACTION_SUCCESS;
+    }
+    jmethodID onRoiFrame = NULL;
+    if (roi_callback) {
+        jclass clazz = env->GetObjectClass(roi_callback);
+        if (LIKELY(clazz)) {
+            onRoiFrame = env->GetMethodID(clazz, "onRoiFrame", "(Ljava/nio/ByteBuffer;IIIIJ)V");
+            env->DeleteLocalRef(clazz);
+        }
+        env->ExceptionClear();
+        if (!onRoiFrame) return ACTION_ERROR_CALLBACK;
+    }
+    if (roiCallback) {
+        env->DeleteGlobalRef(roiCallback);
+    }
+    roiCallback = roi_callback;
+    roiCallback_onRoiFrame = onRoiFrame;
+    return ACTION_SUCCESS;
+}
+
+ActionInfo CameraAPI::setStreamCallback(JNIEnv *env, jobject stream_callback) {
+    if (STATUS_INIT != getStatus() && STATUS_RUN != getStatus()) {
+        LOGW(TAG, "setStreamCallback: error status, %d", getStatus());
+        return ACTION_ERROR_CALLBACK;
+    } else if (stream_callback && !isCompressedStream(frameFormat)) {
+        LOGW(TAG, "setStreamCallback: only support H.264/HEVC, frameFormat=%d", frameFormat);
+        return ACTION_ERROR_CALLBACK;
+    }
+    jmethodID onStreamFormat = NULL, onStreamFrame = NULL;
+    if (stream_callback) {
+        jclass clazz = env->GetObjectClass(stream_callback);
+        if (LIKELY(clazz)) {
+            onStreamFormat = env->GetMethodID(clazz, "onStreamFormat",
+                                              "(IIILjava/nio/ByteBuffer;Ljava/nio/ByteBuffer;)V");
+            onStreamFrame = env->GetMethodID(clazz, "onStreamFrame", "(Ljava/nio/ByteBuffer;JZ)V");
+            env->DeleteLocalRef(clazz);
+        }
+        env->ExceptionClear();
+        if (!onStreamFormat || !onStreamFrame) return ACTION_ERROR_CALLBACK;
+    }
+    //采集线程在 captureLock 内回调，换下的旧回调在锁外释放
+    pthread_mutex_lock(&captureLock);
+    jobject old = streamCallback;
+    streamCallback = stream_callback;
+    streamCallback_onStreamFormat = onStreamFormat;
+    streamCallback_onStreamFrame = onStreamFrame;
+    streamFormatPending = stream_callback != NULL;
+    pthread_mutex_unlock(&captureLock);
+    if (old) env->DeleteGlobalRef(old);
+    LOGD(TAG, "setStreamCallback: %p", stream_callback);
+    return ACTION_SUCCESS;
+}
+
+ActionInfo CameraAPI::setRoi(int x, int y, int width, int height) {
+    if (STATUS_CREATE == getStatus()) {
+        LOGW(TAG, "setRoi: error status, %d", getStatus());
+        return ACTION_ERROR_CALLBACK;
+    }
+    roiDecoder->setRoi(x, y, width, height);
+    LOGD(TAG, "setRoi: (%d, %d) %dx%d", x, y, width, height);
+    return ACTION_SUCCESS;
+}
+
 ActionInfo CameraAPI::setPreview(ANativeWindow *window) {
     LOGD(TAG, "setPreview: window=%p, status=%d, frameFormat=%d, frameSize=%dx%d",
          window, getStatus(), frameFormat, frameWidth, frameHeight);
@@ -717,18 +982,15 @@ ActionInfo CameraAPI::setPreview(ANativeWindow *window) {
             preview->destroy();
             SAFE_DELETE(preview);
         }
-        if (LIKELY(window != NULL)) {
-            PixelFormat pixelFormat = PIXEL_FORMAT_ERROR;
-            if (decoder != NULL) {
-                pixelFormat = decoder->getPixelFormat();
-                LOGD(TAG, "setPreview: using decoder pixelFormat=%d", pixelFormat);
-            } else if (frameFormat == FRAME_FORMAT_YUYV) {
-                pixelFormat = PIXEL_FORMAT_YUYV;
-                LOGD(TAG, "setPreview: using YUYV pixelFormat=%d", pixelFormat);
-            } else if (frameFormat == FRAME_FORMAT_DEPTH) {
-                pixelFormat = PIXEL_FORMAT_DEPTH;
-                LOGD(TAG, "setPreview: using DEPTH pixelFormat=%d", pixelFormat);
-            }
+        SAFE_DELETE(streamDecoder)
+        if (LIKELY(window != NULL) && nalParser) {
+            //H.264/HEVC：有预览才创建解码器，窗口由 StreamDecoder 释放
+            streamDecoder = new StreamDecoder(nalParser->isHevc(), frameWidth, frameHeight,
+                                              source->getFrameRate(), window);
+            LOGD(TAG, "setPreview: created StreamDecoder, hevc=%d", nalParser->isHevc());
+        } else if (LIKELY(window != NULL)) {
+            PixelFormat pixelFormat = getPixelFormat();
+            LOGD(TAG, "setPreview: using pixelFormat=%d", pixelFormat);
             preview = new CameraView(frameWidth, frameHeight, pixelFormat, window);
             LOGD(TAG, "setPreview: created CameraView, preview=%p", preview);
         } else {
@@ -744,24 +1006,22 @@ ActionInfo CameraAPI::setPreview(ANativeWindow *window) {
 ActionInfo CameraAPI::start() {
     ActionInfo action = ACTION_ERROR_START;
     if (STATUS_INIT == getStatus()) {
-        if (ACTION_SUCCESS == prepareBuffer()) {
-            //1-start stream
-            enum v4l2_buf_type type = static_cast<v4l2_buf_type>(
-                useMultiplanar ? V4L2_BUF_TYPE_VIDEO_CAPTURE_MPLANE : V4L2_BUF_TYPE_VIDEO_CAPTURE);
-            if (0 > ioctl(fd, VIDIOC_STREAMON, &type)) {
-                LOGE(TAG, "start: ioctl VIDIOC_STREAMON failed, %s", strerror(errno));
+        //H.264/HEVC：重新开始时丢弃解码器中的旧帧，从下一个关键帧开始
+        if (streamDecoder) streamDecoder->reset();
+        //1-start stream
+        if (ACTION_SUCCESS != source->streamOn()) {
+            LOGE(TAG, "start: error stream on, %d", getStatus());
+        } else {
+            status = STATUS_RUN;
+            //2-start thread loop frame
+            if (0 == pthread_create(&thread_camera, NULL, loopThread, (void *) this)) {
+                LOGD(TAG, "start: success");
+                action = ACTION_SUCCESS;
             } else {
-                status = STATUS_RUN;
-                //3-start thread loop frame
-                if (0 == pthread_create(&thread_camera, NULL, loopThread, (void *) this)) {
-                    LOGD(TAG, "start: success");
-                    action = ACTION_SUCCESS;
-                } else {
-                    LOGE(TAG, "start: pthread_create failed");
-                }
+                LOGE(TAG, "start: pthread_create failed");
+                status = STATUS_INIT;
+                source->streamOff();
             }
-        } else {
-            LOGE(TAG, "start: error prepare buffer, %d", getStatus());
         }
     } else {
         LOGW(TAG, "start: error status, %d", getStatus());
@@ -769,6 +1029,84 @@ ActionInfo CameraAPI::start() {
     return action;
 }
 
+void CameraAPI::setWarmStandby(bool enable) {
+    warmStandby = enable;
+    //运行中只改标志，stop 时生效
+    if (source) source->setWarmStandby(enable);
+    LOGD(TAG, "setWarmStandby: %d", enable);
+}
+
+ActionInfo CameraAPI::reconfigure(int width, int height, int frame_format, int fps) {
+    const StatusInfo current = getStatus();
+    if (STATUS_INIT != current && STATUS_RUN != current) {
+        LOGW(TAG, "reconfigure: error status, %d", current);
+        return ACTION_ERROR_SET_W_H;
+    }
+    //流文件头记录了格式和尺寸
+    if (isStreamCapturing()) {
+        LOGW(TAG, "reconfigure: stop stream capture first");
+        return ACTION_ERROR_CAPTURE;
+    }
+    if (STATUS_INIT == current) {
+        //预览窗口的生产者不同（MediaCodec / CPU），不能在码流与像素格式之间切换
+        if (isCompressedStream(frame_format) != isCompressedStream(frameFormat)) {
+            LOGW(TAG, "reconfigure: can't switch format %d -> %d", frameFormat, frame_format);
+            return ACTION_ERROR_SET_W_H;
+        }
+        const int oldFps = source->getFrameRate();
+        ActionInfo action = applyFormat(width, height, frame_format, fps);
+        if (ACTION_SUCCESS != action && !restoreFormat(oldFps)) {
+            status = STATUS_OPEN;
+        }
+        LOGD(TAG, "reconfigure: %dx%d format=%d fps=%d -> %d", width, height, frame_format, fps, action);
+        return action;
+    }
+
+    //采集中：交给采集线程在两帧之间执行，等待结果
+    pthread_mutex_lock(&reconfigLock);
+    //同时只有一个请求：等前一个请求完成并取走结果
+    while (RECONFIG_IDLE != reconfigState) {
+        pthread_cond_wait(&reconfigCond, &reconfigLock);
+    }
+    //IDLE 时采集线程没有在修改格式，此时读 frameFormat 不会与重配并发
+    if (isCompressedStream(frame_format) != isCompressedStream(frameFormat)) {
+        LOGW(TAG, "reconfigure: can't switch format %d -> %d", frameFormat, frame_format);
+        pthread_mutex_unlock(&reconfigLock);
+        return ACTION_ERROR_SET_W_H;
+    }
+    reconfigWidth = width;
+    reconfigHeight = height;
+    reconfigFormat = frame_format;
+    reconfigFps = fps;
+    reconfigRequestUs = timeMonotonicUs();
+    reconfigState = RECONFIG_POSTED;
+    struct timespec deadline;
+    clock_gettime(CLOCK_REALTIME, &deadline);
+    deadline.tv_sec += RECONFIG_TIMEOUT_MS / 1000;
+    deadline.tv_nsec += (RECONFIG_TIMEOUT_MS % 1000) * 1000000L;
+    if (deadline.tv_nsec >= 1000000000L) {
+        deadline.tv_sec++;
+        deadline.tv_nsec -= 1000000000L;
+    }
+    while (RECONFIG_DONE != reconfigState) {
+        if (RECONFIG_APPLYING == reconfigState) {
+            //已开始执行，等待完成
+            pthread_cond_wait(&reconfigCond, &reconfigLock);
+        } else if (ETIMEDOUT == pthread_cond_timedwait(&reconfigCond, &reconfigLock, &deadline)
+                   && RECONFIG_POSTED == reconfigState) {
+            //采集线程一直没有取走：撤回请求
+            LOGW(TAG, "reconfigure: timeout");
+            reconfigState = RECONFIG_DONE;
+            reconfigResult = ACTION_ERROR_SET_W_H;
+        }
+    }
+    const ActionInfo action = reconfigResult;
+    reconfigState = RECONFIG_IDLE;
+    pthread_cond_broadcast(&reconfigCond);
+    pthread_mutex_unlock(&reconfigLock);
+    return action;
+}
+
 ActionInfo CameraAPI::stop() {
     ActionInfo action = ACTION_SUCCESS;
     if (STATUS_RUN == getStatus()) {
@@ -782,20 +1120,14 @@ ActionInfo CameraAPI::stop() {
         }
         //3-stop preview
         if (preview) preview->pause();
-        //4-stop stream
-        enum v4l2_buf_type type = static_cast<v4l2_buf_type>(
-            useMultiplanar ? V4L2_BUF_TYPE_VIDEO_CAPTURE_MPLANE : V4L2_BUF_TYPE_VIDEO_CAPTURE);
-        if (0 > ioctl(fd, VIDIOC_STREAMOFF, &type)) {
-            LOGE(TAG, "stop: ioctl failed: %s", strerror(errno));
+        //4-stop stream and release buffer
+        if (ACTION_SUCCESS != source->streamOff()) {
             action = ACTION_ERROR_STOP;
-        } else {
-            LOGD(TAG, "stop: ioctl VIDIOC_STREAMOFF success");
         }
-        //5-release buffer
-        for (int i = 0; i < MAX_BUFFER_COUNT; ++i) {
-            if (0 != munmap(buffers[i].start, buffers[i].length)) {
-                LOGW(TAG, "stop: munmap failed");
-            }
+        //5-重配失败且没能恢复原格式：需要重新 setFrameSize
+        if (formatLost) {
+            formatLost = false;
+            status = STATUS_OPEN;
         }
     } else {
         LOGW(TAG, "stop: error status, %d", getStatus());
@@ -808,15 +1140,11 @@ ActionInfo CameraAPI::close() {
     ActionInfo action = ACTION_SUCCESS;
     if (STATUS_INIT == getStatus()) {
         status = STATUS_CREATE;
-        //1-close fd
-        if (0 > ::close(fd)) {
-            LOGE(TAG, "close: failed, %s", strerror(errno));
-            action = ACTION_ERROR_CLOSE;
-        } else {
-            LOGD(TAG, "close: success");
-        }
+        stopStreamCapture();
+        //1-close source
+        action = source->close();
+        SAFE_DELETE(source)
         //2-release buffer
-        SAFE_FREE(buffers)
         SAFE_FREE(out_buffer)
         //3-destroy decoder
         SAFE_DELETE(decoder)
@@ -825,13 +1153,30 @@ ActionInfo CameraAPI::close() {
             preview->destroy();
             SAFE_DELETE(preview);
         }
+        SAFE_DELETE(streamDecoder)
+        SAFE_DELETE(nalParser)
         //5-release frameCallback
         JNIEnv *env = getEnv();
         if (env && frameCallback_onFrame) {
             env->DeleteGlobalRef(frameCallback);
             frameCallback_onFrame = NULL;
+            frameCallback_onFrameTimestamp = NULL;
             frameCallback = NULL;
         }
+        //6-release roiCallback
+        if (env && roiCallback) {
+            env->DeleteGlobalRef(roiCallback);
+            roiCallback = NULL;
+            roiCallback_onRoiFrame = NULL;
+        }
+        roiDecoder->setRoi(0, 0, 0, 0);
+        //7-release streamCallback
+        if (env && streamCallback) {
+            env->DeleteGlobalRef(streamCallback);
+        }
+        streamCallback = NULL;
+        streamCallback_onStreamFormat = NULL;
+        streamCallback_onStreamFrame = NULL;
     } else {
         LOGW(TAG, "close: error status, %d", getStatus());
     }
@@ -847,19 +1192,32 @@ ActionInfo CameraAPI::destroy() {
         preview->destroy();
         SAFE_DELETE(preview);
     }
-    fd = 0;
+    SAFE_DELETE(streamDecoder)
+    SAFE_DELETE(nalParser)
+    stopStreamCapture();
+    if (source) {
+        source->close();
+        SAFE_DELETE(source)
+    }
     pixelBytes = 0;
     frameWidth = 0;
     frameHeight = 0;
     frameFormat = 0;
-    useMultiplanar = false;
     thread_camera = 0;
     status = STATUS_CREATE;
     frameCallback = NULL;
     frameCallback_onFrame = NULL;
+    frameCallback_onFrameTimestamp = NULL;
+    roiCallback = NULL;
+    roiCallback_onRoiFrame = NULL;
+    roiDecoder->setRoi(0, 0, 0, 0);
+    streamCallback = NULL;
+    streamCallback_onStreamFormat = NULL;
+    streamCallback_onStreamFrame = NULL;
+    reconfigState = RECONFIG_IDLE;
+    formatLost = false;
     saveFrameRequested = false;
     memset(debugSavePath, 0, sizeof(debugSavePath));
-    SAFE_FREE(buffers)
     SAFE_FREE(out_buffer)
     SAFE_DELETE(decoder)
     LOGD(TAG, "destroy");
@@ -926,6 +1284,52 @@ void CameraAPI::requestSaveFrame(const char* savePath) {
     }
 }
 
+ActionInfo CameraAPI::startStreamCapture(const char* filePath) {
+    if (STATUS_INIT > getStatus()) {
+        LOGW(TAG, "startStreamCapture: error status, %d", getStatus());
+        return ACTION_ERROR_CAPTURE;
+    }
+    if (!filePath || strlen(filePath) == 0) {
+        LOGE(TAG, "startStreamCapture: invalid file path");
+        return ACTION_ERROR_INVALID_PATH;
+    }
+    //写缓冲区至少容纳 CAPTURE_BUFFER_FRAMES 帧未压缩数据，吸收存储抖动
+    size_t frameBytes = (size_t) frameWidth * frameHeight * 2;
+    size_t bufferBytes = frameBytes * CAPTURE_BUFFER_FRAMES;
+    if (bufferBytes < CAPTURE_BUFFER_MIN) bufferBytes = CAPTURE_BUFFER_MIN;
+    auto *writer = new StreamWriter();
+    ActionInfo action = writer->open(filePath, frameFormat, frameWidth, frameHeight,
+                                     source->getFrameRate(), bufferBytes);
+    if (ACTION_SUCCESS != action) {
+        SAFE_DELETE(writer)
+        return action;
+    }
+    pthread_mutex_lock(&captureLock);
+    StreamWriter* old = streamWriter;
+    streamWriter = writer;
+    pthread_mutex_unlock(&captureLock);
+    if (old) {
+        old->close();
+        delete old;
+    }
+    LOGD(TAG, "startStreamCapture: %s", filePath);
+    return ACTION_SUCCESS;
+}
+
+ActionInfo CameraAPI::stopStreamCapture() {
+    pthread_mutex_lock(&captureLock);
+    StreamWriter* writer = streamWriter;
+    streamWriter = NULL;
+    pthread_mutex_unlock(&captureLock);
+    ActionInfo action = ACTION_SUCCESS;
+    if (writer) {
+        action = writer->close();
+        delete writer;
+        LOGD(TAG, "stopStreamCapture: %d", action);
+    }
+    return action;
+}
+
 #ifdef __cplusplus
 }  // extern "C"
 #endif
\ No newline at end of file
@@ -5,11 +5,19 @@
 #ifndef ANDROID_CAMERA_V4L2_CAMERAAPI_H
 #define ANDROID_CAMERA_V4L2_CAMERAAPI_H
 
+#include <string>
 #include <vector>
 #include <pthread.h>
+#include <atomic>
 #include "NativeAPI.h"
 #include "CameraView.h"
 #include "DecoderFactory.h"
+#include "FrameSource.h"
+#include "FormatSelector.h"
+#include "StreamWriter.h"
+#include "RoiDecoder.h"
+#include "NalParser.h"
+#include "StreamDecoder.h"
 
 #ifdef __cplusplus
 extern "C" {
@@ -23,49 +31,93 @@ typedef enum {
 }StatusInfo;
 
 typedef enum {
-    FRAME_FORMAT_MJPEG = 0,
-    FRAME_FORMAT_YUYV  = 1,
-    FRAME_FORMAT_DEPTH = 2,
-} FrameFormat;
-
-struct VideoBuffer {
-    void *start;
-    size_t length;
-};
+    RECONFIG_IDLE       = 0,
+    RECONFIG_POSTED     = 1,
+    RECONFIG_APPLYING   = 2,
+    RECONFIG_DONE       = 3,    //结果待请求方取走，之后回到 IDLE
+}ReconfigState;
 
 class CameraAPI {
 private:
-    int fd;
     int frameWidth;
     int frameHeight;
     int frameFormat;
-    bool useMultiplanar;  // 是否使用多平面 API
 
     size_t pixelBytes;
     uint8_t* out_buffer;
-    VideoBuffer* buffers;
+    IFrameSource* source;
     DecoderFactory* decoder;
 
     CameraView *preview;
     jobject frameCallback;
     jmethodID frameCallback_onFrame;
+    jmethodID frameCallback_onFrameTimestamp;
+
+    // ROI 解码：MJPEG 帧额外裁剪解码感兴趣区域，单独回调
+    RoiDecoder* roiDecoder;
+    jobject roiCallback;
+    jmethodID roiCallback_onRoiFrame;
+
+    // 流录制：采集线程写入，Java 线程启停
+    StreamWriter* streamWriter;
+    pthread_mutex_t captureLock;
+
+    // H.264/HEVC：码流直接回调给复用器，只有设置了预览才用 MediaCodec 解码到 Surface
+    NalParser* nalParser;
+    StreamDecoder* streamDecoder;
+    jobject streamCallback;
+    jmethodID streamCallback_onStreamFormat;
+    jmethodID streamCallback_onStreamFrame;
+    // 新回调需要先收到参数集，受 captureLock 保护
+    bool streamFormatPending;
 
     pthread_t thread_camera;
     volatile StatusInfo status;
+    // 热备：stop 后保留 V4L2 缓冲区映射和解码器，start 只需入队 + STREAMON
+    bool warmStandby;
+    // 能力缓存键（vid/pid/bcdDevice/节点序号），回放为空
+    std::string capabilityKey;
     inline const StatusInfo getStatus() const;
 
+    // 快速重配：采集中由采集线程在两帧之间执行，调用线程等待结果
+    // reconfigState 的修改都在 reconfigLock 内，采集线程每帧先无锁读一次
+    pthread_mutex_t reconfigLock;
+    pthread_cond_t reconfigCond;
+    std::atomic<ReconfigState> reconfigState;
+    int reconfigWidth;
+    int reconfigHeight;
+    int reconfigFormat;
+    int reconfigFps;
+    ActionInfo reconfigResult;
+    uint64_t reconfigRequestUs;
+    // 重配失败且无法恢复原格式，stop 后回到 STATUS_OPEN 重新 setFrameSize
+    bool formatLost;
+
     // 调试功能：保存单帧数据
     volatile bool saveFrameRequested;
     char debugSavePath[256];
 
-    ActionInfo prepareBuffer();
     static void* loopThread(void *args);
     void loopFrame(JNIEnv *env, CameraAPI *camera);
-    void sendFrame(JNIEnv *env, uint8_t *data);
+    void sendFrame(JNIEnv *env, uint8_t *data, uint64_t timestampUs);
     void renderFrame(uint8_t *data);
-
-    // 设备打开和验证
-    ActionInfo openDevice(const char* devicePath);
+    void renderPlanes(const SourceFrame &frame);
+    uint8_t *packFrame(const SourceFrame &frame);
+    void sendRoiFrame(JNIEnv *env, void *jpeg, size_t jpegBytes, uint64_t timestampUs);
+    void sendStreamFrame(JNIEnv *env, const SourceFrame &frame, bool keyFrame, bool configChanged);
+
+    // 按格式准备解码器/缓冲区/码流解析，已有且未变化的部分保留
+    ActionInfo prepareFormat(int width, int height, int frame_format, DecodeType decodeType, bool rateChanged);
+    // 停流状态下切换格式：S_FMT + 只重建变化部分（含预览），失败时由 restoreFormat 恢复
+    ActionInfo applyFormat(int width, int height, int frame_format, int fps);
+    // 格式或帧率变化后重建解码器/缓冲区/预览，applyFormat 与 setFrameRate 共用
+    ActionInfo rebuildFormat(int width, int height, int frame_format, bool formatChanged, bool rateChanged);
+    bool restoreFormat(int fps);
+    bool handleReconfigure(uint64_t &requestUs);
+    bool isStreamCapturing();
+
+    // 帧源打开和设备路径验证
+    ActionInfo openSource(IFrameSource* frameSource, const char* path);
     bool validateDevicePath(const char* devicePath);
 
     // 调试：保存帧数据到文件
@@ -76,20 +128,44 @@ public:
     ~CameraAPI();
     ActionInfo connect(unsigned int pid, unsigned int vid);
     ActionInfo connectByPath(const char* devicePath);
+    ActionInfo connectByReplay(const char* filePath, bool realtime, bool loop);
     ActionInfo autoExposure(bool isAuto);
     ActionInfo updateExposure(unsigned int level);
+    ActionInfo getCapabilities(std::vector<FrameCapability> &capabilities);
     ActionInfo getSupportSize(std::vector<std::pair<int, int>> &sizes);
-    ActionInfo setFrameSize(int width, int height, int frame_format);
+    ActionInfo setFrameSize(int width, int height, int frame_format, DecodeType decodeType = DECODE_UNKNOWN);
+    // 自动选择格式/帧率/解码器（FormatSelector），结果通过 selection 返回
+    ActionInfo setFrameSizeAuto(int width, int height, int fps, FormatSelection &selection);
+    // 帧率：OPEN/INIT 状态设置，实际值以驱动回填为准，解码器随之重新配置
+    ActionInfo setFrameRate(int fps);
+    int getFrameRate();
+    // 当前格式与尺寸对应的能力（含可选帧率），STATUS_INIT 之后可用
+    ActionInfo getFrameCapability(FrameCapability &capability);
     void getActualFrameSize(int &width, int &height);
+    PixelFormat getPixelFormat();
     ActionInfo setFrameCallback(JNIEnv *env, jobject frame_callback);
     ActionInfo setPreview(ANativeWindow *window);
     ActionInfo start();
     ActionInfo stop();
+    void setWarmStandby(bool enable);
+    // 快速切换分辨率/格式/帧率：INIT 直接设置，RUN 在采集线程 STREAMOFF -> S_FMT -> 重建变化部分 -> STREAMON
+    ActionInfo reconfigure(int width, int height, int frame_format, int fps);
     ActionInfo close();
     ActionInfo destroy();
 
+    // ROI 解码：回调在 STATUS_INIT 设置，区域可在采集中随时修改
+    ActionInfo setRoiCallback(JNIEnv *env, jobject roi_callback);
+    ActionInfo setRoi(int x, int y, int width, int height);
+
+    // H.264/HEVC 码流回调：STATUS_INIT/RUN 均可设置，回调在采集线程，不能在回调内再次设置
+    ActionInfo setStreamCallback(JNIEnv *env, jobject stream_callback);
+
     // 调试接口：请求保存下一帧
     void requestSaveFrame(const char* savePath);
+
+    // 流录制：每个出队的原始帧追加到流文件（StreamFile.h）
+    ActionInfo startStreamCapture(const char* filePath);
+    ActionInfo stopStreamCapture();
 };
 
 #ifdef __cplusplus
@@ -7,6 +7,7 @@
 
 #include "Common.h"
 #include "DecoderFactory.h"
+#include "FrameConverter.h"
 #include <android/native_window_jni.h>
 
 #ifdef __cplusplus
@@ -17,24 +18,21 @@ class CameraView {
 private:
     int pixelWidth;
     int pixelHeight;
-    int pixelFormat;
-    int stride_width;
-    int stride_uv;
-    int start_uv;
-    int start_u;
-    int start_v;
-    uint8_t *yuv422;
-    size_t frameSize;
+    FrameConverter *converter;
     ANativeWindow *window;
-    void renderNV12(const uint8_t *data);
-    void renderYUV422(const uint8_t *data);
-    void renderYUYV(const uint8_t *data);
-    void renderDepth(const uint8_t *data);
 
 public:
     CameraView(int pixelWidth, int pixelHeight, PixelFormat pixelFormat, ANativeWindow *window);
     ~CameraView();
     void render(uint8_t *data);
+    /**
+     * 半平面（NV12/NV16）、灰度/深度（GREY/Y10/Y16/DEPTH）直接从 V4L2 缓冲区的平面渲染，不做紧凑拷贝
+     */
+    void render(const uint8_t *y, int strideY, const uint8_t *uv, int strideUV);
+    /**
+     * 重配分辨率/像素格式：保留窗口，只重建转换器并修改窗口缓冲区尺寸
+     */
+    void resize(int pixelWidth, int pixelHeight, PixelFormat pixelFormat);
     void pause();
     void destroy();
 };
@@ -0,0 +1,181 @@
+//
+// Created by Hsj on 2026/10/18.
+//
+
+#include "CapabilityCache.h"
+#include "DeviceRegistry.h"
+#include <map>
+#include <mutex>
+#include <cstdio>
+#include <cstring>
+#include <cerrno>
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+#define TAG "CapabilityCache"
+#define MAX_FILE_SIZE (1 << 20)
+
+static std::mutex cacheLock;
+static std::string cacheDirectory;
+static std::map<std::string, std::vector<FrameCapability>> memoryCache;
+
+static std::string filePath(const std::string &key) {
+    return cacheDirectory + "/capabilities_" + key + ".bin";
+}
+
+static bool parseFile(const std::vector<uint8_t> &data, std::vector<FrameCapability> &capabilities) {
+    CapabilityFileHeader header;
+    if (data.size() < sizeof(header)) return false;
+    memcpy(&header, data.data(), sizeof(header));
+    if (0 != memcmp(header.magic, CAPABILITY_FILE_MAGIC, sizeof(header.magic))
+        || header.version != CAPABILITY_FILE_VERSION) {
+        return false;
+    }
+    //count 来自文件，先按剩余字节数校验再分配，损坏的文件不能触发超大分配
+    if (header.count > (data.size() - sizeof(header)) / sizeof(CapabilityRecord)) return false;
+    size_t offset = sizeof(header);
+    std::vector<FrameCapability> result;
+    result.reserve(header.count);
+    for (uint32_t i = 0; i < header.count; ++i) {
+        CapabilityRecord record;
+        if (offset + sizeof(record) > data.size()) return false;
+        memcpy(&record, data.data() + offset, sizeof(record));
+        offset += sizeof(record);
+        const size_t intervalBytes = (size_t) record.intervalCount * sizeof(FrameInterval);
+        if (offset + intervalBytes > data.size()) return false;
+        FrameCapability capability{};
+        capability.pixelFormat = record.pixelFormat;
+        capability.flags = record.flags;
+        capability.sizeType = record.sizeType;
+        capability.width = record.width;
+        capability.height = record.height;
+        capability.minWidth = record.minWidth;
+        capability.minHeight = record.minHeight;
+        capability.stepWidth = record.stepWidth;
+        capability.stepHeight = record.stepHeight;
+        capability.intervalType = record.intervalType;
+        capability.intervals.resize(record.intervalCount);
+        memcpy(capability.intervals.data(), data.data() + offset, intervalBytes);
+        offset += intervalBytes;
+        result.push_back(std::move(capability));
+    }
+    capabilities.swap(result);
+    return true;
+}
+
+static bool readFile(const std::string &path, std::vector<FrameCapability> &capabilities) {
+    FILE *file = fopen(path.c_str(), "rb");
+    if (file == NULL) return false;
+    std::vector<uint8_t> data;
+    uint8_t buffer[4096];
+    size_t length;
+    while ((length = fread(buffer, 1, sizeof(buffer), file)) > 0 && data.size() < MAX_FILE_SIZE) {
+        data.insert(data.end(), buffer, buffer + length);
+    }
+    fclose(file);
+
+    if (!parseFile(data, capabilities)) {
+        //删除损坏/截断的文件，下次打开重新枚举设备后再写入
+        LOGW(TAG, "readFile: %s is not a valid capability file, removed", path.c_str());
+        remove(path.c_str());
+        return false;
+    }
+    return true;
+}
+
+static bool writeFile(const std::string &path, const std::vector<FrameCapability> &capabilities) {
+    //先写临时文件再 rename，进程中途退出不会留下半个文件
+    const std::string temp = path + ".tmp";
+    FILE *file = fopen(temp.c_str(), "wb");
+    if (file == NULL) {
+        LOGW(TAG, "writeFile: open %s failed, %s", temp.c_str(), strerror(errno));
+        return false;
+    }
+    CapabilityFileHeader header;
+    memcpy(header.magic, CAPABILITY_FILE_MAGIC, sizeof(header.magic));
+    header.version = CAPABILITY_FILE_VERSION;
+    header.count = (uint32_t) capabilities.size();
+    bool ret = 1 == fwrite(&header, sizeof(header), 1, file);
+    for (size_t i = 0; ret && i < capabilities.size(); ++i) {
+        const FrameCapability &capability = capabilities[i];
+        CapabilityRecord record = {capability.pixelFormat, capability.flags, capability.sizeType,
+                                   capability.width, capability.height, capability.minWidth, capability.minHeight,
+                                   capability.stepWidth, capability.stepHeight, capability.intervalType,
+                                   (uint32_t) capability.intervals.size()};
+        ret = 1 == fwrite(&record, sizeof(record), 1, file);
+        if (ret && !capability.intervals.empty()) {
+            ret = capability.intervals.size() == fwrite(capability.intervals.data(), sizeof(FrameInterval),
+                                                        capability.intervals.size(), file);
+        }
+    }
+    ret = (0 == fclose(file)) && ret;
+    if (ret && 0 != rename(temp.c_str(), path.c_str())) {
+        LOGW(TAG, "writeFile: rename %s failed, %s", path.c_str(), strerror(errno));
+        ret = false;
+    }
+    if (!ret) remove(temp.c_str());
+    return ret;
+}
+
+void CapabilityCache::setDirectory(const char *directory) {
+    std::lock_guard<std::mutex> guard(cacheLock);
+    cacheDirectory = directory ? directory : "";
+    while (cacheDirectory.size() > 1 && cacheDirectory.back() == '/') cacheDirectory.pop_back();
+}
+
+std::string CapabilityCache::directory() {
+    std::lock_guard<std::mutex> guard(cacheLock);
+    return cacheDirectory;
+}
+
+std::string CapabilityCache::keyOf(const char *devicePath) {
+    int index = -1, consumed = 0;
+    DeviceNode node;
+    if (devicePath == NULL || 1 != sscanf(devicePath, "/dev/video%d%n", &index, &consumed)
+        || devicePath[consumed] != '\0' || !DeviceRegistry::readNode(index, node)) {
+        return std::string();
+    }
+    //同一 UVC 接口下的采集节点与元数据节点 vid/pid 相同，用 sysfs index 区分
+    char path[64];
+    snprintf(path, sizeof(path), "/sys/class/video4linux/video%d/index", index);
+    int nodeIndex = 0;
+    FILE *file = fopen(path, "r");
+    if (file) {
+        if (1 != fscanf(file, "%d", &nodeIndex)) nodeIndex = 0;
+        fclose(file);
+    }
+    char key[24];
+    snprintf(key, sizeof(key), "%04x_%04x_%04x_%d", node.vid, node.pid, node.bcd, nodeIndex);
+    return std::string(key);
+}
+
+bool CapabilityCache::load(const std::string &key, std::vector<FrameCapability> &capabilities) {
+    if (key.empty()) return false;
+    std::lock_guard<std::mutex> guard(cacheLock);
+    auto it = memoryCache.find(key);
+    if (it != memoryCache.end()) {
+        capabilities = it->second;
+        return true;
+    }
+    if (cacheDirectory.empty() || !readFile(filePath(key), capabilities) || capabilities.empty()) return false;
+    memoryCache[key] = capabilities;
+    LOGD(TAG, "load: %s from disk, %zu", key.c_str(), capabilities.size());
+    return true;
+}
+
+void CapabilityCache::store(const std::string &key, const std::vector<FrameCapability> &capabilities) {
+    //空结果可能是打开了非采集节点（如 UVC 元数据节点），不缓存
+    if (key.empty() || capabilities.empty()) return;
+    std::lock_guard<std::mutex> guard(cacheLock);
+    memoryCache[key] = capabilities;
+    if (!cacheDirectory.empty()) {
+        bool ret = writeFile(filePath(key), capabilities);
+        LOGD(TAG, "store: %s, %zu, disk=%d", key.c_str(), capabilities.size(), ret);
+    }
+}
+
+#ifdef __cplusplus
+}  // extern "C"
+#endif
@@ -0,0 +1,61 @@
+//
+// Created by Hsj on 2026/10/18.
+//
+
+#ifndef ANDROID_CAMERA_V4L2_CAPABILITYCACHE_H
+#define ANDROID_CAMERA_V4L2_CAPABILITYCACHE_H
+
+#include <string>
+#include <vector>
+#include "FrameSource.h"
+
+/*
+ * 相机能力（格式 x 尺寸 x 帧间隔）缓存，按 vid/pid/bcdDevice 区分设备与固件：
+ *   1、进程内存缓存，同一设备重复 open 不再枚举
+ *   2、设置目录后同时写入磁盘（capabilities_{vid}_{pid}_{bcd}_{index}.bin），下次启动直接读取，跳过慢速 USB 相机的逐项 ioctl
+ * 文件格式：CapabilityFileHeader + count * (CapabilityRecord + intervalCount * FrameInterval)，小端
+ */
+
+#define CAPABILITY_FILE_MAGIC "V4L2CAPS"
+#define CAPABILITY_FILE_VERSION 1
+
+struct CapabilityFileHeader {
+    char magic[8];
+    uint32_t version;
+    uint32_t count;
+};
+
+struct CapabilityRecord {
+    uint32_t pixelFormat;
+    uint32_t flags;
+    uint32_t sizeType;
+    uint32_t width;
+    uint32_t height;
+    uint32_t minWidth;
+    uint32_t minHeight;
+    uint32_t stepWidth;
+    uint32_t stepHeight;
+    uint32_t intervalType;
+    uint32_t intervalCount;
+};
+
+class CapabilityCache {
+public:
+    /**
+     * 磁盘缓存目录，空则只做内存缓存
+     */
+    static void setDirectory(const char *directory);
+
+    static std::string directory();
+
+    /**
+     * /dev/videoN -> "{vid}_{pid}_{bcd}_{index}"（index 为同一 USB 接口下的节点序号），不是 usb 相机节点（如回放文件）返回空串
+     */
+    static std::string keyOf(const char *devicePath);
+
+    static bool load(const std::string &key, std::vector<FrameCapability> &capabilities);
+
+    static void store(const std::string &key, const std::vector<FrameCapability> &capabilities);
+};
+
+#endif //ANDROID_CAMERA_V4L2_CAPABILITYCACHE_H
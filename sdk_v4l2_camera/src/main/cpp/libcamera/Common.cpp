@@ -4,13 +4,12 @@
 
 #include "Common.h"
 #include <ctime>
+#include <sys/time.h>
 
 #ifdef __cplusplus
 extern "C" {
 #endif
 
-static JavaVM *jvm;
-
 uint64_t timeMs() {
     struct timeval time;
     gettimeofday(&time, NULL);
@@ -23,6 +22,16 @@ uint64_t timeUs() {
     return (uint64_t) time.tv_sec * 1000000 + time.tv_usec;
 }
 
+uint64_t timeMonotonicUs() {
+    struct timespec time;
+    clock_gettime(CLOCK_MONOTONIC, &time);
+    return (uint64_t) time.tv_sec * 1000000 + time.tv_nsec / 1000;
+}
+
+#ifdef __ANDROID__
+
+static JavaVM *jvm;
+
 void setVM(JavaVM *vm) {
     jvm = vm;
 }
@@ -42,6 +51,8 @@ JNIEnv *getEnv() {
     }
 }
 
+#endif //__ANDROID__
+
 #ifdef __cplusplus
 }  // extern "C"
 #endif
\ No newline at end of file
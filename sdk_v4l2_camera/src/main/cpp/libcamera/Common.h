@@ -5,15 +5,28 @@
 #ifndef ANDROID_CAMERA_V4L2_COMMON_H
 #define ANDROID_CAMERA_V4L2_COMMON_H
 
+#include <stdint.h>
+#ifdef __ANDROID__
 #include <jni.h>
 #include <android/log.h>
+#else
+//主机构建（benchmark）：无 JNI，日志输出到 stderr
+#include <stdio.h>
+#endif
 
 #ifdef __cplusplus
 extern "C" {
 #endif
 
 //定义JNI日志
-#ifdef LOG_SWITCH
+#if defined(LOG_SWITCH) && !defined(__ANDROID__)
+    #define LOGI(TAG,...) (fprintf(stderr, "I/%s: ", TAG), fprintf(stderr, __VA_ARGS__), fputc('\n', stderr))
+    #define LOGD(TAG,...) (fprintf(stderr, "D/%s: ", TAG), fprintf(stderr, __VA_ARGS__), fputc('\n', stderr))
+    #define LOGW(TAG,...) (fprintf(stderr, "W/%s: ", TAG), fprintf(stderr, __VA_ARGS__), fputc('\n', stderr))
+    #define LOGE(TAG,...) (fprintf(stderr, "E/%s: ", TAG), fprintf(stderr, __VA_ARGS__), fputc('\n', stderr))
+    #define START(TAG) LOGD(TAG, "start");
+    #define END(TAG) LOGD(TAG, "end");
+#elif defined(LOG_SWITCH)
     #define LOGI(TAG,...) __android_log_print(ANDROID_LOG_INFO, TAG, __VA_ARGS__)
     #define LOGD(TAG,...) __android_log_print(ANDROID_LOG_DEBUG, TAG, __VA_ARGS__)
     #define LOGW(TAG,...) __android_log_print(ANDROID_LOG_WARN, TAG, __VA_ARGS__)
@@ -47,11 +60,14 @@ extern "C" {
 #define SAFE_FREE(x) {if(x != NULL){free(x); x = NULL;}}
 #define SAFE_DELETE(p) {if (p) { delete (p); (p) = NULL;}}
 
+#ifdef __ANDROID__
 void setVM(JavaVM *);
 JavaVM *getVM();
 JNIEnv *getEnv();
+#endif
 uint64_t timeMs();
 uint64_t timeUs();
+uint64_t timeMonotonicUs();
 
 #ifdef __cplusplus
 }  // extern "C"
@@ -0,0 +1,163 @@
+//
+// Created by Hsj on 2026/10/18.
+//
+
+#include "DecoderCache.h"
+#include <mutex>
+#include <list>
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+#define TAG "DecoderCache"
+#define MIME_TYPE "video/mjpeg"
+#define DEFAULT_FRAME_RATE 30
+//硬件解码实例有限，预览 + 拍照两种分辨率
+#define MAX_CACHED_DECODERS 2
+
+struct CachedDecoder {
+    AMediaCodec *codec;
+    int width;
+    int height;
+    int frameRate;
+};
+
+static std::mutex cacheLock;
+//空闲解码器，末尾为最近归还
+static std::list<CachedDecoder> idleDecoders;
+
+static inline int rateOf(int frameRate) {
+    return frameRate > 0 ? frameRate : DEFAULT_FRAME_RATE;
+}
+
+static void destroyCodec(AMediaCodec *codec) {
+    AMediaCodec_stop(codec);
+    AMediaCodec_delete(codec);
+}
+
+static bool configureCodec(AMediaCodec *codec, int width, int height, int frameRate) {
+    AMediaFormat *mediaFormat = AMediaFormat_new();
+    AMediaFormat_setString(mediaFormat, AMEDIAFORMAT_KEY_MIME, MIME_TYPE);
+    AMediaFormat_setInt32(mediaFormat, AMEDIAFORMAT_KEY_WIDTH, width);
+    AMediaFormat_setInt32(mediaFormat, AMEDIAFORMAT_KEY_HEIGHT, height);
+    AMediaFormat_setInt32(mediaFormat, AMEDIAFORMAT_KEY_FRAME_RATE, rateOf(frameRate));
+    AMediaFormat_setInt32(mediaFormat, AMEDIAFORMAT_KEY_COLOR_FORMAT, 21);
+    AMediaFormat_setInt32(mediaFormat, AMEDIAFORMAT_KEY_I_FRAME_INTERVAL, 1);
+    AMediaFormat_setInt32(mediaFormat, AMEDIAFORMAT_KEY_BIT_RATE, width * height);
+    media_status_t status = AMediaCodec_configure(codec, mediaFormat, NULL, NULL, 0);
+    if (AMEDIA_OK == status) status = AMediaCodec_start(codec);
+    AMediaFormat_delete(mediaFormat);
+    return AMEDIA_OK == status;
+}
+
+static AMediaCodec *createCodec(int width, int height, int frameRate) {
+    AMediaCodec *codec = AMediaCodec_createDecoderByType(MIME_TYPE);
+    if (codec && !configureCodec(codec, width, height, frameRate)) {
+        AMediaCodec_delete(codec);
+        codec = NULL;
+    }
+    return codec;
+}
+
+AMediaCodec *DecoderCache::acquire(int width, int height, int frameRate) {
+    const uint64_t startUs = timeMonotonicUs();
+    const int rate = rateOf(frameRate);
+    CachedDecoder reuse = {NULL, 0, 0, 0};
+    {
+        std::lock_guard<std::mutex> guard(cacheLock);
+        //1-同尺寸同帧率：归还时已 flush，直接使用（取最近归还的）
+        for (auto it = idleDecoders.rbegin(); it != idleDecoders.rend(); ++it) {
+            if (it->width == width && it->height == height && it->frameRate == rate) {
+                AMediaCodec *codec = it->codec;
+                idleDecoders.erase(std::next(it).base());
+                LOGD(TAG, "acquire: hit %dx%d@%d", width, height, rate);
+                return codec;
+            }
+        }
+        //2-同尺寸其它帧率优先，否则取最久未用的，重新配置
+        auto candidate = idleDecoders.begin();
+        for (auto it = idleDecoders.begin(); it != idleDecoders.end(); ++it) {
+            if (it->width == width && it->height == height) {
+                candidate = it;
+                break;
+            }
+        }
+        if (candidate != idleDecoders.end()) {
+            reuse = *candidate;
+            idleDecoders.erase(candidate);
+        }
+    }
+    if (reuse.codec) {
+        //stop 回到未配置状态，组件保留
+        if (AMEDIA_OK == AMediaCodec_stop(reuse.codec) && configureCodec(reuse.codec, width, height, rate)) {
+            LOGD(TAG, "acquire: reconfigure %dx%d@%d -> %dx%d@%d, %llu us", reuse.width, reuse.height,
+                 reuse.frameRate, width, height, rate, (unsigned long long) (timeMonotonicUs() - startUs));
+            return reuse.codec;
+        }
+        LOGW(TAG, "acquire: reconfigure %dx%d -> %dx%d failed", reuse.width, reuse.height, width, height);
+        AMediaCodec_delete(reuse.codec);
+    }
+    //3-新建
+    AMediaCodec *codec = createCodec(width, height, frameRate);
+    LOGD(TAG, "acquire: create %dx%d %s, %llu us", width, height, codec ? "success" : "failed",
+         (unsigned long long) (timeMonotonicUs() - startUs));
+    return codec;
+}
+
+void DecoderCache::release(AMediaCodec *codec, int width, int height, int frameRate) {
+    if (codec == NULL) return;
+    //丢弃未取出的输入/输出，下次取用时从新帧开始
+    if (AMEDIA_OK != AMediaCodec_flush(codec)) {
+        LOGW(TAG, "release: flush %dx%d failed", width, height);
+        destroyCodec(codec);
+        return;
+    }
+    AMediaCodec *evicted = NULL;
+    {
+        std::lock_guard<std::mutex> guard(cacheLock);
+        idleDecoders.push_back({codec, width, height, rateOf(frameRate)});
+        if (idleDecoders.size() > MAX_CACHED_DECODERS) {
+            evicted = idleDecoders.front().codec;
+            idleDecoders.pop_front();
+        }
+    }
+    if (evicted) destroyCodec(evicted);
+    LOGD(TAG, "release: %dx%d@%d cached, evicted=%d", width, height, rateOf(frameRate), evicted != NULL);
+}
+
+int DecoderCache::prewarm(int width, int height, int frameRate) {
+    if (width <= 0 || height <= 0) return -9;
+    {
+        std::lock_guard<std::mutex> guard(cacheLock);
+        for (const CachedDecoder &item : idleDecoders) {
+            if (item.width == width && item.height == height && item.frameRate == rateOf(frameRate)) return 0;
+        }
+    }
+    //新建后归还，不重配已有的空闲解码器；缓存已满时按 LRU 淘汰最久未用的一个
+    const uint64_t startUs = timeMonotonicUs();
+    AMediaCodec *codec = createCodec(width, height, frameRate);
+    if (codec == NULL) {
+        LOGW(TAG, "prewarm: %dx%d failed", width, height);
+        return -1;
+    }
+    LOGD(TAG, "prewarm: %dx%d, %llu us", width, height, (unsigned long long) (timeMonotonicUs() - startUs));
+    release(codec, width, height, frameRate);
+    return 0;
+}
+
+void DecoderCache::clear() {
+    std::list<CachedDecoder> decoders;
+    {
+        std::lock_guard<std::mutex> guard(cacheLock);
+        decoders.swap(idleDecoders);
+    }
+    for (const CachedDecoder &item : decoders) {
+        destroyCodec(item.codec);
+    }
+    LOGD(TAG, "clear: %zu", decoders.size());
+}
+
+#ifdef __cplusplus
+}  // extern "C"
+#endif
@@ -0,0 +1,44 @@
+//
+// Created by Hsj on 2026/10/18.
+//
+
+#ifndef ANDROID_CAMERA_V4L2_DECODERCACHE_H
+#define ANDROID_CAMERA_V4L2_DECODERCACHE_H
+
+#include <media/NdkMediaCodec.h>
+#include "Common.h"
+
+/*
+ * MJPEG 硬解（AMediaCodec）进程内缓存，创建 + 配置 + 启动一个解码器在部分 SoC 上需要 50~150ms：
+ *   1、DecoderHw 析构时不销毁解码器，flush 后按 宽 x 高 x 帧率 放回缓存（最多 MAX_CACHED_DECODERS 个，超出淘汰最久未用）
+ *   2、acquire 优先取同尺寸同帧率的空闲解码器（只需 flush）；没有时取同尺寸或最久未用的空闲解码器
+ *      stop + configure + start（省去组件创建）；都没有才新建
+ *   3、prewarm 在应用启动时提前创建，切换预览/拍照分辨率时不再重建；预热也占缓存名额，满了同样淘汰最久未用的
+ * 只在 Android 构建，主机 benchmark 没有硬解
+ */
+class DecoderCache {
+public:
+    /**
+     * @param frameRate 配置用的帧率（KEY_FRAME_RATE），0 按 30；尺寸相同帧率不同时重新配置
+     * @return 已启动的解码器，失败返回 NULL；用完交给 release
+     */
+    static AMediaCodec *acquire(int width, int height, int frameRate);
+
+    /**
+     * 归还解码器：flush 后放回缓存，flush 失败直接销毁
+     */
+    static void release(AMediaCodec *codec, int width, int height, int frameRate);
+
+    /**
+     * 预创建一个该尺寸的解码器放入缓存，已有同尺寸同帧率空闲解码器时直接返回
+     * @return 0 成功
+     */
+    static int prewarm(int width, int height, int frameRate);
+
+    /**
+     * 销毁全部空闲解码器（内存紧张或不再使用相机时）
+     */
+    static void clear();
+};
+
+#endif //ANDROID_CAMERA_V4L2_DECODERCACHE_H
@@ -6,6 +6,9 @@
 #include <cstdlib>
 #include <exception>
 #include "DecoderFactory.h"
+#ifdef __ANDROID__
+#include "LogRing.h"
+#endif
 
 #ifdef __cplusplus
 extern "C" {
@@ -15,51 +18,38 @@ extern "C" {
 
 //======================================DecoderHw.cpp=============================================//
 
+//AMediaCodec 仅 Android 可用，主机构建（benchmark）只有软解
+#ifdef __ANDROID__
+
 #include <media/NdkMediaCodec.h>
-#define MIME_TYPE "video/mjpeg"
+#include "DecoderCache.h"
 #define TIME_OUT_US 3000
 
 class DecoderHw : public IDecoder {
 private:
     AMediaCodec* mediaCodec;
+    uint16_t frameRate;
 public:
-    DecoderHw():mediaCodec(NULL){}
+    DecoderHw():mediaCodec(NULL),frameRate(0){}
 
     ~DecoderHw() override {
+        //不销毁：flush 后放回 DecoderCache，切换分辨率/帧率时复用
         if (mediaCodec) {
-            AMediaCodec_stop(mediaCodec);
-            AMediaCodec_delete(mediaCodec);
+            DecoderCache::release(mediaCodec, width, height, frameRate);
             mediaCodec = NULL;
         }
     }
 
-    int init(uint16_t width, uint16_t height) override {
-        int ret = -2;
-        if (mediaCodec) {
-            AMediaCodec_delete(mediaCodec);
-            mediaCodec = NULL;
-        }
-        //1 create MediaCodec
-        mediaCodec = AMediaCodec_createDecoderByType(MIME_TYPE);
+    int init(uint16_t width, uint16_t height, uint16_t frameRate) override {
         if (mediaCodec) {
-            AMediaFormat* mediaFormat = AMediaFormat_new();
-            AMediaFormat_setString(mediaFormat, AMEDIAFORMAT_KEY_MIME, MIME_TYPE);
-            AMediaFormat_setInt32(mediaFormat, AMEDIAFORMAT_KEY_WIDTH, width);
-            AMediaFormat_setInt32(mediaFormat, AMEDIAFORMAT_KEY_HEIGHT, height);
-            AMediaFormat_setInt32(mediaFormat, AMEDIAFORMAT_KEY_FRAME_RATE, 30);
-            AMediaFormat_setInt32(mediaFormat, AMEDIAFORMAT_KEY_COLOR_FORMAT, 21);
-            AMediaFormat_setInt32(mediaFormat, AMEDIAFORMAT_KEY_I_FRAME_INTERVAL, 1);
-            AMediaFormat_setInt32(mediaFormat, AMEDIAFORMAT_KEY_BIT_RATE, width * height);
-            if (AMEDIA_OK == AMediaCodec_configure(mediaCodec, mediaFormat, NULL, NULL, 0)) {
-                ret = AMediaCodec_start(mediaCodec);
-            } else {
-                AMediaCodec_delete(mediaCodec);
-                mediaCodec = NULL;
-                ret = -1;
-            }
-            AMediaFormat_delete(mediaFormat);
+            DecoderCache::release(mediaCodec, this->width, this->height, this->frameRate);
         }
-        return ret;
+        this->width = width;
+        this->height = height;
+        this->frameRate = frameRate;
+        //1 acquire MediaCodec：同尺寸同帧率命中只需 flush，否则重配或新建
+        mediaCodec = DecoderCache::acquire(width, height, frameRate);
+        return mediaCodec ? 0 : -1;
     }
 
     //3ms
@@ -75,7 +65,7 @@ public:
             //3.4 submit input buffer to queue buffers of input
             AMediaCodec_queueInputBuffer(mediaCodec, in_buffer_id, 0, raw_size, timeUs(), 0);
         } else {
-            LOGW(TAG, "Hardware: No available input buffer");
+            LOGTW(TAG, "Hardware: No available input buffer");
         }
 
         //3.5 get out buffer index of decode by output queue buffers
@@ -88,16 +78,16 @@ public:
             //3.7 release output buffer by output buffer index
             AMediaCodec_releaseOutputBuffer(mediaCodec, out_buffer_id, info.size != 0);
         } else if (out_buffer_id == AMEDIACODEC_INFO_OUTPUT_BUFFERS_CHANGED) {
-            LOGW(TAG, "Hardware: media info output buffers changed");
+            LOGTW(TAG, "Hardware: media info output buffers changed");
         } else if (out_buffer_id == AMEDIACODEC_INFO_OUTPUT_FORMAT_CHANGED) {
-            LOGW(TAG, "Hardware: media info output format changed");
+            LOGTW(TAG, "Hardware: media info output format changed");
             AMediaFormat *format = AMediaCodec_getOutputFormat(mediaCodec);
             LOGD(TAG, "AMediaFormat: %s", AMediaFormat_toString(format));
             AMediaFormat_delete(format);
         } else if (out_buffer_id == AMEDIACODEC_INFO_TRY_AGAIN_LATER) {
-            LOGW(TAG, "Hardware: media info try again later");
+            LOGTW(TAG, "Hardware: media info try again later");
         } else {
-            LOGW(TAG, "Hardware: Unexpected info code: %zd", out_buffer_id);
+            LOGTW(TAG, "Hardware: Unexpected info code: %zd", out_buffer_id);
         }
         //3.8 return nv12
         return out;
@@ -105,6 +95,8 @@ public:
 
 };
 
+#endif //__ANDROID__
+
 //*****************************************DecoderSw.cpp******************************************//
 
 #include <turbojpeg.h>
@@ -133,7 +125,7 @@ public:
         }
     }
 
-    int init(uint16_t width, uint16_t height) override {
+    int init(uint16_t width, uint16_t height, uint16_t frameRate) override {
         //1 create decompress
         handle = tjInitDecompress();
         //2 alloc yuv422 out buffer memory: subSample = TJSAMP_422
@@ -157,7 +149,7 @@ public:
 
 //*****************************************DecoderFactory.cpp*************************************//
 
-DecoderFactory::DecoderFactory():decoder(NULL) {
+DecoderFactory::DecoderFactory():type(DECODE_UNKNOWN), decoder(NULL) {
 
 }
 
@@ -177,7 +169,7 @@ PixelFormat DecoderFactory::getPixelFormat() {
     }
 }
 
-int DecoderFactory::init(uint16_t frameW, uint16_t frameH) {
+int DecoderFactory::init(uint16_t frameW, uint16_t frameH, DecodeType preferred, uint16_t frameRate) {
     int ret = 0;
     SAFE_DELETE(decoder);
     type = DECODE_UNKNOWN;
@@ -185,14 +177,17 @@ int DecoderFactory::init(uint16_t frameW, uint16_t frameH) {
         ret = -9;
         LOGE(TAG, "init frameW or frameH is error");
     } else {
-        decoder = new DecoderHw();
-        if (0 == decoder->init(frameW, frameH)) {
+#ifdef __ANDROID__
+        if (DECODE_SW != preferred) decoder = new DecoderHw();
+        if (decoder && 0 == decoder->init(frameW, frameH, frameRate)) {
             type = DECODE_HW;
             LOGD(TAG, "decode by Hardware");
-        } else {
+        } else
+#endif
+        {
             SAFE_DELETE(decoder)
             decoder = new DecoderSw();
-            ret = decoder->init(frameW, frameH);
+            ret = decoder->init(frameW, frameH, frameRate);
             type = DECODE_SW;
             LOGD(TAG, "decode by Software");
         }
@@ -22,6 +22,10 @@ typedef enum PixelFormat {
     PIXEL_FORMAT_YUV422 = 2, //yuv
     PIXEL_FORMAT_YUYV   = 3, //yuyv
     PIXEL_FORMAT_DEPTH  = 4, //uint16
+    PIXEL_FORMAT_NV16   = 5, //y + uv 交织 4:2:2
+    PIXEL_FORMAT_GREY   = 6, //uint8
+    PIXEL_FORMAT_Y10    = 7, //uint16，低 10 位有效
+    PIXEL_FORMAT_Y16    = 8, //uint16
     PIXEL_FORMAT_ERROR  = 0,
 } PixelFormatEnum;
 
@@ -30,7 +34,7 @@ protected:
     int width, height;
 public:
     virtual ~IDecoder() = default;
-    virtual int init(uint16_t width, uint16_t height) = 0;
+    virtual int init(uint16_t width, uint16_t height, uint16_t frameRate) = 0;
     virtual uint8_t* convert2YUV(void* raw_buffer, size_t raw_size) = 0;
 };
 
@@ -41,7 +45,12 @@ private:
 public:
     DecoderFactory();
     ~DecoderFactory();
-    int init(uint16_t frameW, uint16_t frameH);
+    /**
+     * @param preferred DECODE_UNKNOWN 先硬解、失败退回软解；DECODE_HW 同前；DECODE_SW 只用软解
+     * @param frameRate 相机实际帧率，用于配置硬解（AMEDIAFORMAT_KEY_FRAME_RATE），0 按 30
+     */
+    int init(uint16_t frameW, uint16_t frameH, DecodeType preferred = DECODE_UNKNOWN, uint16_t frameRate = 0);
+    DecodeType getDecodeType() const { return type; }
     PixelFormat getPixelFormat();
     uint8_t* convert2YUV(void* raw_buffer, size_t raw_size);
 };
@@ -0,0 +1,288 @@
+//
+// Created by Hsj on 2026/10/18.
+//
+
+#include "DeviceRegistry.h"
+#include "Common.h"
+#include <cstdio>
+#include <cstring>
+#include <cerrno>
+#include <fcntl.h>
+#include <dirent.h>
+#include <unistd.h>
+#include <pthread.h>
+#include <sys/socket.h>
+#include <sys/inotify.h>
+#include <linux/netlink.h>
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+#define TAG "DeviceRegistry"
+#define SYS_VIDEO_DIR "/sys/class/video4linux"
+#define DEV_DIR "/dev"
+#define VIDEO_PREFIX "video"
+#define EVENT_BUFFER_SIZE 4096
+
+static inline uint32_t deviceKey(uint16_t vid, uint16_t pid) {
+    return ((uint32_t) vid << 16) | pid;
+}
+
+/**
+ * videoN -> N，不是 video 节点返回 -1
+ */
+static int parseIndex(const char *name) {
+    if (0 != strncmp(name, VIDEO_PREFIX, sizeof(VIDEO_PREFIX) - 1)) return -1;
+    const char *p = name + sizeof(VIDEO_PREFIX) - 1;
+    if (*p < '0' || *p > '9') return -1;
+    int index = 0;
+    for (; *p; ++p) {
+        if (*p < '0' || *p > '9' || index > 9999) return -1;
+        index = index * 10 + (*p - '0');
+    }
+    return index;
+}
+
+DeviceRegistry::DeviceRegistry() : listener(NULL), monitorFd(-1), netlink(false) {
+    scan();
+    startMonitor();
+}
+
+//=======================================Private====================================================
+
+void DeviceRegistry::addLocked(const DeviceNode &node) {
+    DeviceNode old;
+    removeLocked(node.index, old);
+    nodes[node.index] = node;
+    std::vector<int> &indexes = devices[deviceKey(node.vid, node.pid)];
+    auto it = indexes.begin();
+    while (it != indexes.end() && *it < node.index) ++it;
+    indexes.insert(it, node.index);
+}
+
+bool DeviceRegistry::removeLocked(int index, DeviceNode &node) {
+    auto it = nodes.find(index);
+    if (it == nodes.end()) return false;
+    node = it->second;
+    nodes.erase(it);
+    auto device = devices.find(deviceKey(node.vid, node.pid));
+    if (device != devices.end()) {
+        std::vector<int> &indexes = device->second;
+        for (auto i = indexes.begin(); i != indexes.end(); ++i) {
+            if (*i == index) {
+                indexes.erase(i);
+                break;
+            }
+        }
+        if (indexes.empty()) devices.erase(device);
+    }
+    return true;
+}
+
+void DeviceRegistry::scan() {
+    std::map<int, DeviceNode> found;
+    DIR *dir = opendir(SYS_VIDEO_DIR);
+    if (dir == NULL) {
+        LOGW(TAG, "scan: open %s failed, %s", SYS_VIDEO_DIR, strerror(errno));
+    } else {
+        struct dirent *entry;
+        DeviceNode node;
+        while ((entry = readdir(dir)) != NULL) {
+            const int index = parseIndex(entry->d_name);
+            if (index >= 0 && readNode(index, node)) found[index] = node;
+        }
+        closedir(dir);
+    }
+    std::lock_guard<std::mutex> guard(lock);
+    nodes.clear();
+    devices.clear();
+    for (auto &it : found) {
+        addLocked(it.second);
+    }
+    LOGD(TAG, "scan: %zu usb video nodes", nodes.size());
+}
+
+bool DeviceRegistry::startMonitor() {
+    //1-inotify /dev：只关心节点创建/删除，事件少且不依赖 uevent 权限
+    int fd = inotify_init1(IN_CLOEXEC);
+    if (fd >= 0 && inotify_add_watch(fd, DEV_DIR, IN_CREATE | IN_DELETE) < 0) {
+        LOGW(TAG, "startMonitor: inotify %s failed, %s", DEV_DIR, strerror(errno));
+        close(fd);
+        fd = -1;
+    }
+    //2-netlink uevent
+    if (fd < 0) {
+        fd = socket(AF_NETLINK, SOCK_DGRAM | SOCK_CLOEXEC, NETLINK_KOBJECT_UEVENT);
+        struct sockaddr_nl addr;
+        memset(&addr, 0, sizeof(addr));
+        addr.nl_family = AF_NETLINK;
+        addr.nl_groups = 1;
+        if (fd >= 0 && 0 != bind(fd, (struct sockaddr *) &addr, sizeof(addr))) {
+            LOGW(TAG, "startMonitor: netlink bind failed, %s", strerror(errno));
+            close(fd);
+            fd = -1;
+        }
+        netlink = fd >= 0;
+    }
+    if (fd < 0) {
+        LOGW(TAG, "startMonitor: no hotplug monitor, lookup falls back to rescan");
+        return false;
+    }
+    monitorFd = fd;
+    pthread_t thread;
+    pthread_attr_t attr;
+    pthread_attr_init(&attr);
+    pthread_attr_setdetachstate(&attr, PTHREAD_CREATE_DETACHED);
+    const int ret = pthread_create(&thread, &attr, monitorThread, this);
+    pthread_attr_destroy(&attr);
+    if (ret != 0) {
+        LOGW(TAG, "startMonitor: create thread failed, %d", ret);
+        close(monitorFd);
+        monitorFd = -1;
+        return false;
+    }
+    LOGD(TAG, "startMonitor: %s", netlink ? "netlink" : "inotify");
+    return true;
+}
+
+void DeviceRegistry::handleNode(const char *name, bool attached) {
+    const int index = parseIndex(name);
+    if (index < 0) return;
+    DeviceNode node;
+    bool changed;
+    if (attached) {
+        //sysfs 在 /dev 节点之前创建，此时 modalias 已可读
+        changed = readNode(index, node);
+        if (changed) {
+            std::lock_guard<std::mutex> guard(lock);
+            addLocked(node);
+        }
+    } else {
+        std::lock_guard<std::mutex> guard(lock);
+        changed = removeLocked(index, node);
+    }
+    if (!changed) return;
+    LOGD(TAG, "%s: /dev/%s, vid=%d, pid=%d", attached ? "attached" : "detached", name, node.vid, node.pid);
+    DeviceListener callback = listener.load(std::memory_order_acquire);
+    if (callback) callback(attached, node);
+}
+
+void DeviceRegistry::monitorInotify() {
+    char buffer[EVENT_BUFFER_SIZE] __attribute__((aligned(__alignof__(struct inotify_event))));
+    while (true) {
+        const ssize_t length = read(monitorFd, buffer, sizeof(buffer));
+        if (length < 0 && errno == EINTR) continue;
+        if (length <= 0) break;
+        for (char *p = buffer; p < buffer + length;) {
+            const auto *event = reinterpret_cast<const struct inotify_event *>(p);
+            if (event->len > 0) handleNode(event->name, 0 != (event->mask & IN_CREATE));
+            p += sizeof(struct inotify_event) + event->len;
+        }
+    }
+}
+
+void DeviceRegistry::monitorNetlink() {
+    char buffer[EVENT_BUFFER_SIZE + 1];
+    while (true) {
+        const ssize_t length = recv(monitorFd, buffer, EVENT_BUFFER_SIZE, 0);
+        if (length < 0 && errno == EINTR) continue;
+        if (length <= 0) break;
+        buffer[length] = '\0';
+        //"add@/devices/...\0ACTION=add\0SUBSYSTEM=video4linux\0DEVNAME=video0\0..."
+        const char *action = NULL, *subsystem = NULL, *devName = NULL;
+        for (const char *p = buffer; p < buffer + length; p += strlen(p) + 1) {
+            if (0 == strncmp(p, "ACTION=", 7)) action = p + 7;
+            else if (0 == strncmp(p, "SUBSYSTEM=", 10)) subsystem = p + 10;
+            else if (0 == strncmp(p, "DEVNAME=", 8)) devName = p + 8;
+        }
+        if (!action || !subsystem || !devName || 0 != strcmp(subsystem, "video4linux")) continue;
+        const char *name = strrchr(devName, '/');
+        name = name ? name + 1 : devName;
+        if (0 == strcmp(action, "add")) {
+            handleNode(name, true);
+        } else if (0 == strcmp(action, "remove")) {
+            handleNode(name, false);
+        }
+    }
+}
+
+void *DeviceRegistry::monitorThread(void *args) {
+    auto *registry = reinterpret_cast<DeviceRegistry *>(args);
+    if (registry->netlink) {
+        registry->monitorNetlink();
+    } else {
+        registry->monitorInotify();
+    }
+    LOGW(TAG, "monitorThread: exit, %s", strerror(errno));
+    std::lock_guard<std::mutex> guard(registry->lock);
+    close(registry->monitorFd);
+    registry->monitorFd = -1;
+    return NULL;
+}
+
+//=======================================Public=====================================================
+
+DeviceRegistry &DeviceRegistry::instance() {
+    //进程内唯一，不析构（监听线程常驻）
+    static DeviceRegistry *registry = new DeviceRegistry();
+    return *registry;
+}
+
+bool DeviceRegistry::readNode(int index, DeviceNode &node) {
+    char path[96];
+    snprintf(path, sizeof(path), SYS_VIDEO_DIR "/" VIDEO_PREFIX "%d/device/modalias", index);
+    const int fd = open(path, O_RDONLY | O_CLOEXEC);
+    if (fd < 0) {
+        LOGD(TAG, "dev/video%d : read modalias failed", index);
+        return false;
+    }
+    char modalias[64];
+    const ssize_t length = read(fd, modalias, sizeof(modalias) - 1);
+    close(fd);
+    unsigned int vid = 0, pid = 0, bcd = 0;
+    modalias[length > 0 ? length : 0] = '\0';
+    //usb:vXXXXpXXXXdXXXXdc...
+    if (length < 14 || 2 > sscanf(modalias, "usb:v%4xp%4xd%4x", &vid, &pid, &bcd)) {
+        LOGD(TAG, "dev/video%d : format is not a usb of modalias", index);
+        return false;
+    }
+    node.index = index;
+    node.vid = (uint16_t) vid;
+    node.pid = (uint16_t) pid;
+    node.bcd = (uint16_t) bcd;
+    return true;
+}
+
+bool DeviceRegistry::find(uint16_t vid, uint16_t pid, std::string &path) {
+    for (int attempt = 0; attempt < 2; ++attempt) {
+        {
+            std::lock_guard<std::mutex> guard(lock);
+            auto it = devices.find(deviceKey(vid, pid));
+            if (it != devices.end() && !it->second.empty()) {
+                path = DEV_DIR "/" VIDEO_PREFIX + std::to_string(it->second.front());
+                return true;
+            }
+        }
+        //未命中：可能插入事件尚未处理或监听不可用，重新枚举一次
+        if (attempt == 0) scan();
+    }
+    return false;
+}
+
+void DeviceRegistry::snapshot(std::vector<DeviceNode> &out) {
+    std::lock_guard<std::mutex> guard(lock);
+    out.clear();
+    out.reserve(nodes.size());
+    for (auto &it : nodes) {
+        out.push_back(it.second);
+    }
+}
+
+void DeviceRegistry::setListener(DeviceListener callback) {
+    listener.store(callback, std::memory_order_release);
+}
+
+#ifdef __cplusplus
+}  // extern "C"
+#endif
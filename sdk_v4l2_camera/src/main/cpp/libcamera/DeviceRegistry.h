@@ -0,0 +1,73 @@
+//
+// Created by Hsj on 2026/10/18.
+//
+
+#ifndef ANDROID_CAMERA_V4L2_DEVICEREGISTRY_H
+#define ANDROID_CAMERA_V4L2_DEVICEREGISTRY_H
+
+#include <map>
+#include <mutex>
+#include <atomic>
+#include <string>
+#include <vector>
+#include <cstdint>
+#include <unordered_map>
+
+/*
+ * USB 相机设备表：进程内只枚举一次 /sys/class/video4linux，按 vid/pid 建索引
+ *   1、后台线程监听 /dev 的 inotify（videoN 节点创建/删除），不可用时退回 netlink uevent，增量更新设备表
+ *   2、find 命中为哈希查找；未命中（例如刚插入、事件尚未处理）时重新枚举一次再查
+ *   3、插拔通过 DeviceListener 在监听线程回调
+ */
+
+struct DeviceNode {
+    int index;              //videoN 中的 N
+    uint16_t vid;
+    uint16_t pid;
+    uint16_t bcd;           //bcdDevice，固件版本
+};
+
+typedef void (*DeviceListener)(bool attached, const DeviceNode &node);
+
+class DeviceRegistry {
+private:
+    std::mutex lock;
+    //videoN -> 设备
+    std::map<int, DeviceNode> nodes;
+    //(vid << 16 | pid) -> 节点序号（升序，与原先从 video0 开始扫描的选择一致）
+    std::unordered_map<uint32_t, std::vector<int>> devices;
+    std::atomic<DeviceListener> listener;
+    int monitorFd;
+    bool netlink;
+
+    DeviceRegistry();
+
+    void addLocked(const DeviceNode &node);
+    bool removeLocked(int index, DeviceNode &node);
+    void scan();
+    bool startMonitor();
+    void handleNode(const char *name, bool attached);
+    void monitorInotify();
+    void monitorNetlink();
+    static void *monitorThread(void *args);
+
+public:
+    static DeviceRegistry &instance();
+
+    /**
+     * 读取 /sys/class/video4linux/videoN/device/modalias 中的 usb vid/pid/bcdDevice，不是 usb 设备返回 false
+     */
+    static bool readNode(int index, DeviceNode &node);
+
+    /**
+     * @param path 输出 /dev/videoN
+     * @return 没有该设备返回 false
+     */
+    bool find(uint16_t vid, uint16_t pid, std::string &path);
+
+    void snapshot(std::vector<DeviceNode> &out);
+
+    void setListener(DeviceListener listener);
+};
+
+#endif //ANDROID_CAMERA_V4L2_DEVICEREGISTRY_H
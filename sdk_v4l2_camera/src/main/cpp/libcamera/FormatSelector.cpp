@@ -0,0 +1,207 @@
+//
+// Created by Hsj on 2026/10/18.
+//
+
+#include "FormatSelector.h"
+#include "CapabilityCache.h"
+#include "JpegEncoder.h"
+#include <map>
+#include <mutex>
+#include <cstdio>
+#include <cstring>
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+#define TAG "FormatSelector"
+#define BENCHMARK_FRAMES 12
+#define BENCHMARK_WARMUP_US 500000
+#define BENCHMARK_QUALITY 85
+//目标帧率容差：29.97 视为满足 30
+#define FPS_TOLERANCE 0.95f
+
+static std::mutex benchmarkLock;
+//key -> (width, height, type) -> fps
+static std::map<std::string, std::map<uint64_t, float>> benchmarkCache;
+static std::map<std::string, bool> benchmarkLoaded;
+
+static inline uint64_t benchmarkId(int width, int height, DecodeType type) {
+    return ((uint64_t) (uint16_t) width << 32) | ((uint64_t) (uint16_t) height << 16) | (uint16_t) type;
+}
+
+static std::string benchmarkFile(const std::string &directory, const std::string &key) {
+    return directory + "/decode_" + key + ".txt";
+}
+
+static bool matchSize(const FrameCapability &capability, int width, int height) {
+    if (capability.sizeType == FRAME_SIZE_DISCRETE) {
+        return capability.width == (uint32_t) width && capability.height == (uint32_t) height;
+    }
+    const uint32_t w = width, h = height;
+    return w >= capability.minWidth && w <= capability.width && h >= capability.minHeight && h <= capability.height
+           && (capability.stepWidth == 0 || (w - capability.minWidth) % capability.stepWidth == 0)
+           && (capability.stepHeight == 0 || (h - capability.minHeight) % capability.stepHeight == 0);
+}
+
+static inline int intervalFps(const FrameInterval &interval) {
+    return interval.numerator == 0 ? 0 : (int) ((interval.denominator + interval.numerator / 2) / interval.numerator);
+}
+
+/**
+ * 相机在该能力下可设置的帧率：不低于目标的最小值，都低于目标时取最大值
+ */
+static int cameraFps(const FrameCapability &capability, int fps) {
+    if (capability.intervalType == FRAME_INTERVAL_STEPWISE && capability.intervals.size() >= 2) {
+        const int maxFps = intervalFps(capability.intervals[0]);
+        const int minFps = intervalFps(capability.intervals[1]);
+        return fps > maxFps ? maxFps : fps < minFps ? minFps : fps;
+    } else if (capability.intervalType == FRAME_INTERVAL_DISCRETE && !capability.intervals.empty()) {
+        int above = 0, highest = 0;
+        for (const FrameInterval &interval : capability.intervals) {
+            const int value = intervalFps(interval);
+            if (value >= fps && (above == 0 || value < above)) above = value;
+            if (value > highest) highest = value;
+        }
+        return above > 0 ? above : highest;
+    }
+    //驱动不支持枚举帧间隔：无法判断，按目标处理
+    return fps;
+}
+
+float FormatSelector::benchmark(int width, int height, DecodeType type) {
+    //1-合成帧：YUYV 渐变 + 噪声（接近真实画面的熵），编码成 4:2:2 MJPEG，与 UVC 相机输出一致
+    std::vector<uint8_t> yuyv((size_t) width * height * 2);
+    uint32_t seed = 0x12345678;
+    for (int y = 0; y < height; ++y) {
+        uint8_t *row = yuyv.data() + (size_t) y * width * 2;
+        for (int x = 0; x < width * 2; ++x) {
+            seed = seed * 1103515245 + 12345;
+            row[x] = (uint8_t) ((x & 1) ? 128 + ((y >> 2) & 0x3F) - 32 : (x / 2 + y) + (seed >> 28));
+        }
+    }
+    std::vector<uint8_t> jpeg(JpegEncoderPool::bufferSize(width, height, PIXEL_FORMAT_YUYV));
+    JpegEncoder encoder;
+    const long jpegBytes = encoder.encode(yuyv.data(), width, height, PIXEL_FORMAT_YUYV, BENCHMARK_QUALITY,
+                                          jpeg.data(), jpeg.size());
+    if (jpegBytes <= 0) return 0;
+
+    DecoderFactory decoder;
+    if (0 != decoder.init(width, height, type) || decoder.getDecodeType() != type) {
+        LOGD(TAG, "benchmark: decoder %d unavailable", type);
+        return 0;
+    }
+    //2-预热：硬解有流水线延迟，等到第一帧输出
+    uint64_t start = timeMonotonicUs();
+    while (NULL == decoder.convert2YUV(jpeg.data(), jpegBytes)) {
+        if (timeMonotonicUs() - start > BENCHMARK_WARMUP_US) {
+            LOGW(TAG, "benchmark: decoder %d no output", type);
+            return 0;
+        }
+    }
+    //3-计时：按输出帧数计算吞吐
+    int outputs = 0;
+    start = timeMonotonicUs();
+    for (int i = 0; i < BENCHMARK_FRAMES; ++i) {
+        if (decoder.convert2YUV(jpeg.data(), jpegBytes)) outputs++;
+    }
+    const uint64_t costUs = timeMonotonicUs() - start;
+    const float fps = costUs > 0 ? outputs * 1000000.0f / costUs : 0;
+    LOGD(TAG, "benchmark: %dx%d, decoder=%d, jpeg=%ld, %d frames in %llu us, %.1f fps", width, height, type,
+         jpegBytes, outputs, (unsigned long long) costUs, fps);
+    return fps;
+}
+
+float FormatSelector::decodeFps(const std::string &key, int width, int height, DecodeType type) {
+    const uint64_t id = benchmarkId(width, height, type);
+    const std::string directory = CapabilityCache::directory();
+    {
+        std::lock_guard<std::mutex> guard(benchmarkLock);
+        std::map<uint64_t, float> &results = benchmarkCache[key];
+        //1-首次查询该设备时读取磁盘结果
+        if (!benchmarkLoaded[key] && !key.empty() && !directory.empty()) {
+            benchmarkLoaded[key] = true;
+            FILE *file = fopen(benchmarkFile(directory, key).c_str(), "r");
+            if (file) {
+                int w, h, t;
+                float fps;
+                while (4 == fscanf(file, "%d %d %d %f", &w, &h, &t, &fps)) {
+                    results[benchmarkId(w, h, (DecodeType) t)] = fps;
+                }
+                fclose(file);
+            }
+        }
+        auto it = results.find(id);
+        if (it != results.end()) return it->second;
+    }
+    //2-不持锁跑基准测试（数百毫秒），结果追加到磁盘
+    const float fps = benchmark(width, height, type);
+    std::lock_guard<std::mutex> guard(benchmarkLock);
+    benchmarkCache[key][id] = fps;
+    if (!key.empty() && !directory.empty()) {
+        FILE *file = fopen(benchmarkFile(directory, key).c_str(), "a");
+        if (file) {
+            fprintf(file, "%d %d %d %.1f\n", width, height, type, fps);
+            fclose(file);
+        }
+    }
+    return fps;
+}
+
+bool FormatSelector::select(const std::string &key, const std::vector<FrameCapability> &capabilities,
+                            int width, int height, int fps, FormatSelection &selection) {
+    if (fps <= 0) fps = 30;
+    //1-目标尺寸下各格式的相机帧率（NV12M/NV16M 归入 NV12/NV16；H.264/HEVC 码流与灰度/深度格式不作为候选）
+    int rates[FRAME_FORMAT_Z16 + 1] = {0};
+    for (const FrameCapability &capability : capabilities) {
+        const int format = frameFormatOf(capability.pixelFormat);
+        if (format < 0 || !matchSize(capability, width, height)) continue;
+        const int value = cameraFps(capability, fps);
+        if (value > rates[format]) rates[format] = value;
+    }
+    const int mjpegFps = rates[FRAME_FORMAT_MJPEG];
+    const int yuyvFps = rates[FRAME_FORMAT_YUYV];
+    if (mjpegFps == 0 && yuyvFps == 0 && rates[FRAME_FORMAT_NV12] == 0 && rates[FRAME_FORMAT_NV16] == 0) {
+        LOGW(TAG, "select: no MJPEG/YUYV/NV12/NV16 at %dx%d", width, height);
+        return false;
+    }
+
+    //2-按 CPU 开销从低到高，取第一个达到目标的组合：NV12 可直接送编码器，YUYV/NV16 只需重排
+    const FormatSelection candidates[] = {
+            {FRAME_FORMAT_NV12,  DECODE_UNKNOWN, rates[FRAME_FORMAT_NV12], 0},
+            {FRAME_FORMAT_YUYV,  DECODE_UNKNOWN, yuyvFps,                  0},
+            {FRAME_FORMAT_NV16,  DECODE_UNKNOWN, rates[FRAME_FORMAT_NV16], 0},
+            {FRAME_FORMAT_MJPEG, DECODE_HW,      mjpegFps,                 0},
+            {FRAME_FORMAT_MJPEG, DECODE_SW,      mjpegFps,                 0},
+    };
+    bool found = false;
+    for (const FormatSelection &candidate : candidates) {
+        if (candidate.fps == 0) continue;
+        float expected = (float) candidate.fps;
+        if (candidate.frameFormat == FRAME_FORMAT_MJPEG) {
+            const float decoded = decodeFps(key, width, height, candidate.decodeType);
+            if (decoded <= 0) continue;
+            if (decoded < expected) expected = decoded;
+        }
+        LOGD(TAG, "select: format=%d, decoder=%d, camera=%d fps, expected=%.1f fps", candidate.frameFormat,
+             candidate.decodeType, candidate.fps, expected);
+        if (!found || expected > selection.expectedFps) {
+            selection = candidate;
+            selection.expectedFps = expected;
+            found = true;
+        }
+        if (expected >= fps * FPS_TOLERANCE) break;
+    }
+    if (!found) {
+        //解码器都不可用（基准测试失败），保持原有行为：MJPEG 由 DecoderFactory 自行选择
+        selection = {mjpegFps > 0 ? FRAME_FORMAT_MJPEG : FRAME_FORMAT_YUYV, DECODE_UNKNOWN,
+                     mjpegFps > 0 ? mjpegFps : yuyvFps, 0};
+    }
+    LOGD(TAG, "select: %dx%d@%d -> format=%d, decoder=%d, fps=%d", width, height, fps,
+         selection.frameFormat, selection.decodeType, selection.fps);
+    return true;
+}
+
+#ifdef __cplusplus
+}  // extern "C"
+#endif
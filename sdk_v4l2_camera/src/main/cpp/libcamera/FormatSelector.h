@@ -0,0 +1,43 @@
+//
+// Created by Hsj on 2026/10/18.
+//
+
+#ifndef ANDROID_CAMERA_V4L2_FORMATSELECTOR_H
+#define ANDROID_CAMERA_V4L2_FORMATSELECTOR_H
+
+#include <string>
+#include <vector>
+#include "FrameSource.h"
+#include "DecoderFactory.h"
+
+/*
+ * 自动选择 相机格式 + 帧间隔 + 解码器：
+ *   1、从能力缓存取目标尺寸下各格式的最高帧率，选不低于目标 fps 的最小帧率
+ *   2、MJPEG 的解码吞吐由设备上的短基准测试得到（合成 4:2:2 MJPEG 帧，硬解/软解各测一次），
+ *      结果按 设备键 + 尺寸 缓存在内存，设置了能力缓存目录时写入 decode_{key}.txt
+ *   3、按 CPU 开销从低到高（NV12 > YUYV > NV16 不解码 > MJPEG 硬解 > MJPEG 软解）取第一个能达到目标 fps 的组合，
+ *      都达不到时取实际帧率最高的组合；只有需要时才跑对应解码器的基准测试
+ */
+
+struct FormatSelection {
+    int frameFormat;            //FRAME_FORMAT_MJPEG/YUYV/NV12/NV16
+    DecodeType decodeType;      //非 MJPEG 为 DECODE_UNKNOWN
+    int fps;                    //相机帧率（帧间隔的倒数）
+    float expectedFps;          //相机帧率与解码吞吐的较小值
+};
+
+class FormatSelector {
+private:
+    static float decodeFps(const std::string &key, int width, int height, DecodeType type);
+    static float benchmark(int width, int height, DecodeType type);
+
+public:
+    /**
+     * @param key 能力缓存键（CapabilityCache::keyOf），空则基准结果只缓存在内存
+     * @return 目标尺寸下没有可用格式返回 false
+     */
+    static bool select(const std::string &key, const std::vector<FrameCapability> &capabilities,
+                       int width, int height, int fps, FormatSelection &selection);
+};
+
+#endif //ANDROID_CAMERA_V4L2_FORMATSELECTOR_H
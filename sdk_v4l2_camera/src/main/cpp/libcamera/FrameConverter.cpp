@@ -0,0 +1,302 @@
+//
+// Created by Hsj on 2026/10/18.
+//
+
+#include <cstring>
+#include <cstdlib>
+#include <libyuv.h>
+#include "FrameConverter.h"
+#if defined(__ARM_NEON) || defined(__ARM_NEON__)
+#include <arm_neon.h>
+#endif
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+#define TAG "FrameConverter"
+#define HIST_SIZE 0x10000
+//Y10/Y16 窗口统计：按高 10 位分桶，每隔 TONE_SAMPLE_STEP 行/列取一个像素
+#define TONE_BINS 1024
+#define TONE_SAMPLE_STEP 4
+//窗口取 0.5% ~ 99.5% 分位，忽略坏点和高光
+#define TONE_CLIP_PERMILLE 5
+
+typedef uint16_t DepthPixel;
+
+static void calculateDepthHist(unsigned int *histogram, const uint8_t *data, int width, int height, int stride) {
+    unsigned int value = 0;
+    unsigned int index = 0;
+    unsigned int numberOfPoints = 0;
+    // Calculate the accumulative histogram
+    memset(histogram, 0, HIST_SIZE * sizeof(int));
+    for (int h = 0; h < height; ++h) {
+        const auto *depth = (const DepthPixel *) (data + (size_t) h * stride);
+        for (int w = 0; w < width; ++w, ++depth) {
+            value = *depth;
+            if (value != 0) {
+                histogram[value]++;
+                numberOfPoints++;
+            }
+        }
+    }
+    for (index = 1; index < HIST_SIZE; index++) {
+        histogram[index] += histogram[index - 1];
+    }
+    if (numberOfPoints != 0) {
+        for (index = 1; index < HIST_SIZE; index++) {
+            histogram[index] = (unsigned int) (256 * (1.0f -((float) histogram[index] / numberOfPoints)));
+        }
+    }
+}
+
+/**
+ * 16 位 -> 8 位线性窗口映射：gray = clamp((value - low) * scale >> shift, 0, 255)，灰度写入 RGBA 的 R/G/B
+ * scale 不超过 uint16，(value - low) * scale 不会溢出 uint32
+ */
+static void toneMapRow(const uint16_t *src, uint8_t *dest, int width, uint16_t low, uint32_t scale, int shift) {
+    int x = 0;
+#if defined(__ARM_NEON) || defined(__ARM_NEON__)
+    const uint16x8_t vLow = vdupq_n_u16(low);
+    const uint16x4_t vScale = vdup_n_u16((uint16_t) scale);
+    const int32x4_t vShift = vdupq_n_s32(-shift);
+    uint8x16x4_t rgba;
+    rgba.val[3] = vdupq_n_u8(0xFF);
+    for (; x + 16 <= width; x += 16) {
+        //vqsubq：小于 low 的饱和为 0
+        const uint16x8_t a = vqsubq_u16(vld1q_u16(src + x), vLow);
+        const uint16x8_t b = vqsubq_u16(vld1q_u16(src + x + 8), vLow);
+        const uint16x8_t ga = vcombine_u16(vqmovn_u32(vshlq_u32(vmull_u16(vget_low_u16(a), vScale), vShift)),
+                                           vqmovn_u32(vshlq_u32(vmull_u16(vget_high_u16(a), vScale), vShift)));
+        const uint16x8_t gb = vcombine_u16(vqmovn_u32(vshlq_u32(vmull_u16(vget_low_u16(b), vScale), vShift)),
+                                           vqmovn_u32(vshlq_u32(vmull_u16(vget_high_u16(b), vScale), vShift)));
+        const uint8x16_t gray = vcombine_u8(vqmovn_u16(ga), vqmovn_u16(gb));
+        rgba.val[0] = gray;
+        rgba.val[1] = gray;
+        rgba.val[2] = gray;
+        vst4q_u8(dest + x * 4, rgba);
+    }
+#endif
+    for (; x < width; ++x) {
+        const uint32_t value = src[x] > low ? ((uint32_t) (src[x] - low) * scale) >> shift : 0;
+        const uint8_t gray = value > 255 ? 255 : (uint8_t) value;
+        uint8_t *pixel = dest + x * 4;
+        pixel[0] = gray;
+        pixel[1] = gray;
+        pixel[2] = gray;
+        pixel[3] = 0xFF;
+    }
+}
+
+//==================================================================================================
+
+FrameConverter::FrameConverter(int pixelWidth, int pixelHeight, PixelFormat pixelFormat) :
+        pixelWidth(pixelWidth),
+        pixelHeight(pixelHeight),
+        pixelFormat(pixelFormat),
+        stride_uv(0),
+        start_uv(0),
+        start_u(0),
+        start_v(0),
+        yuv422(NULL),
+        histogram(NULL),
+        toneLow(-1),
+        toneHigh(-1) {
+    if (pixelFormat == PIXEL_FORMAT_NV12 || pixelFormat == PIXEL_FORMAT_NV16) {
+        start_uv = pixelWidth * pixelHeight;
+    } else if (pixelFormat == PIXEL_FORMAT_YUV422) {
+        stride_uv = pixelWidth / 2;
+        start_u = pixelWidth * pixelHeight;
+        start_v = start_u * 3 / 2;
+    } else if (pixelFormat == PIXEL_FORMAT_YUYV) {
+        stride_uv = pixelWidth / 2;
+        start_u = pixelWidth * pixelHeight;
+        start_v = start_u * 3 / 2;
+        yuv422 = (uint8_t *) malloc(pixelWidth * pixelHeight * 2);
+    } else if (pixelFormat == PIXEL_FORMAT_DEPTH) {
+        histogram = (unsigned int *) malloc(HIST_SIZE * sizeof(unsigned int));
+    } else if (pixelFormat == PIXEL_FORMAT_Y10 || pixelFormat == PIXEL_FORMAT_Y16) {
+        histogram = (unsigned int *) malloc(TONE_BINS * sizeof(unsigned int));
+    } else if (pixelFormat != PIXEL_FORMAT_GREY) {
+        LOGE(TAG, "PixelFormat error: %d", pixelFormat);
+    }
+}
+
+FrameConverter::~FrameConverter() {
+    SAFE_FREE(yuv422)
+    SAFE_FREE(histogram)
+}
+
+bool FrameConverter::isValid() const {
+    switch (pixelFormat) {
+        case PIXEL_FORMAT_NV12:
+        case PIXEL_FORMAT_NV16:
+        case PIXEL_FORMAT_YUV422:
+        case PIXEL_FORMAT_GREY:
+            return true;
+        case PIXEL_FORMAT_YUYV:
+            return yuv422 != NULL;
+        case PIXEL_FORMAT_DEPTH:
+        case PIXEL_FORMAT_Y10:
+        case PIXEL_FORMAT_Y16:
+            return histogram != NULL;
+        default:
+            return false;
+    }
+}
+
+void FrameConverter::toRGBA(const uint8_t *data, uint8_t *dest, int destStride) {
+    switch (pixelFormat) {
+        case PIXEL_FORMAT_NV12:
+            convertNV12(data, dest, destStride);
+            break;
+        case PIXEL_FORMAT_NV16:
+            convertNV16(data, pixelWidth, data + start_uv, pixelWidth, dest, destStride);
+            break;
+        case PIXEL_FORMAT_YUV422:
+            convertYUV422(data, dest, destStride);
+            break;
+        case PIXEL_FORMAT_YUYV:
+            convertYUYV(data, dest, destStride);
+            break;
+        case PIXEL_FORMAT_DEPTH:
+        case PIXEL_FORMAT_Y10:
+        case PIXEL_FORMAT_Y16:
+        case PIXEL_FORMAT_GREY:
+            toRGBA(data, pixelWidth * (pixelFormat == PIXEL_FORMAT_GREY ? 1 : 2), NULL, 0, dest, destStride);
+            break;
+        case PIXEL_FORMAT_ERROR:
+        default:
+            LOGE(TAG, "Convert pixelFormat is error: %d", pixelFormat);
+            break;
+    }
+}
+
+void FrameConverter::toRGBA(const uint8_t *y, int strideY, const uint8_t *uv, int strideUV,
+                            uint8_t *dest, int destStride) {
+    if (pixelFormat == PIXEL_FORMAT_NV12) {
+        libyuv::NV12ToABGR(y, strideY, uv, strideUV, dest, destStride, pixelWidth, pixelHeight);
+    } else if (pixelFormat == PIXEL_FORMAT_NV16) {
+        convertNV16(y, strideY, uv, strideUV, dest, destStride);
+    } else if (pixelFormat == PIXEL_FORMAT_GREY) {
+        //灰度即全范围 Y，R=G=B，ARGB/ABGR 字节序相同
+        libyuv::J400ToARGB(y, strideY, dest, destStride, pixelWidth, pixelHeight);
+    } else if (pixelFormat == PIXEL_FORMAT_Y10 || pixelFormat == PIXEL_FORMAT_Y16) {
+        convertWord(y, strideY, dest, destStride);
+    } else if (pixelFormat == PIXEL_FORMAT_DEPTH) {
+        convertDepth(y, strideY, dest, destStride);
+    } else {
+        LOGE(TAG, "Convert planes pixelFormat is error: %d", pixelFormat);
+    }
+}
+
+//==================================================================================================
+
+//NV12:10ms
+void FrameConverter::convertNV12(const uint8_t *data, uint8_t *dest, int destStride) {
+    libyuv::NV12ToABGR(data, pixelWidth,
+                       data + start_uv, pixelWidth,
+                       dest, destStride,
+                       pixelWidth, pixelHeight);
+}
+
+//NV16: libyuv 没有 NV16 转换，每行 Y 配一行 UV，逐行按 NV12 转换（仍走 NEON 行函数）
+void FrameConverter::convertNV16(const uint8_t *y, int strideY, const uint8_t *uv, int strideUV,
+                                 uint8_t *dest, int destStride) {
+    for (int row = 0; row < pixelHeight; ++row) {
+        libyuv::NV12ToABGR(y + (size_t) row * strideY, strideY,
+                           uv + (size_t) row * strideUV, strideUV,
+                           dest + (size_t) row * destStride, destStride,
+                           pixelWidth, 1);
+    }
+}
+
+//YUV422:10ms (YUV)
+void FrameConverter::convertYUV422(const uint8_t *data, uint8_t *dest, int destStride) {
+    libyuv::I422ToABGR(data, pixelWidth,
+                       data + start_u, stride_uv,
+                       data + start_v, stride_uv,
+                       dest, destStride,
+                       pixelWidth, pixelHeight);
+}
+
+//YUYV: 18ms (YUV422)
+void FrameConverter::convertYUYV(const uint8_t *data, uint8_t *dest, int destStride) {
+    if (UNLIKELY(yuv422 == NULL)) return;
+    // 1. 先将 YUYV (YUY2) 打包格式转换为 I422 planar 格式
+    libyuv::YUY2ToI422(data, pixelWidth * 2,
+                       yuv422, pixelWidth,
+                       yuv422 + start_u, stride_uv,
+                       yuv422 + start_v, stride_uv,
+                       pixelWidth, pixelHeight);
+    // 2. 再将 I422 转换为 ABGR
+    convertYUV422(yuv422, dest, destStride);
+}
+
+//DEPTH16: 20ms
+void FrameConverter::convertDepth(const uint8_t *data, int stride, uint8_t *dest, int destStride) {
+    if (UNLIKELY(histogram == NULL)) return;
+    // 1-Calculate Depth
+    calculateDepthHist(histogram, data, pixelWidth, pixelHeight, stride);
+    // 2-Update texture
+    for (int h = 0; h < pixelHeight; ++h) {
+        uint8_t *texture = dest + h * destStride;
+        const auto *depth = (const DepthPixel *) (data + (size_t) h * stride);
+        for (int w = 0; w < pixelWidth; ++w, ++depth, texture += 4) {
+            unsigned int val = histogram[*depth];
+            texture[0] = val;
+            texture[1] = val;
+            texture[2] = val;
+            texture[3] = 0xff;
+        }
+    }
+}
+
+/**
+ * Y10/Y16 窗口：抽样统计高 10 位直方图取分位，与上一帧做 1/4 平滑
+ */
+void FrameConverter::updateToneWindow(const uint8_t *data, int stride) {
+    const int shift = pixelFormat == PIXEL_FORMAT_Y10 ? 0 : 6;
+    memset(histogram, 0, TONE_BINS * sizeof(unsigned int));
+    unsigned int count = 0;
+    for (int h = 0; h < pixelHeight; h += TONE_SAMPLE_STEP) {
+        const auto *row = (const uint16_t *) (data + (size_t) h * stride);
+        for (int w = 0; w < pixelWidth; w += TONE_SAMPLE_STEP) {
+            const unsigned int bin = row[w] >> shift;
+            histogram[bin < TONE_BINS ? bin : TONE_BINS - 1]++;
+            count++;
+        }
+    }
+    const unsigned int clip = count * TONE_CLIP_PERMILLE / 1000;
+    int lowBin = 0, highBin = TONE_BINS - 1;
+    for (unsigned int sum = 0; lowBin < TONE_BINS - 1 && (sum += histogram[lowBin]) <= clip; ++lowBin);
+    for (unsigned int sum = 0; highBin > lowBin && (sum += histogram[highBin]) <= clip; --highBin);
+    const int low = lowBin << shift;
+    const int high = ((highBin + 1) << shift) - 1;
+    if (toneLow < 0) {
+        toneLow = low;
+        toneHigh = high;
+    } else {
+        toneLow += (low - toneLow) / 4;
+        toneHigh += (high - toneHigh) / 4;
+    }
+}
+
+//Y10/Y16: 自动窗口线性拉伸到 8 位，回调数据不受影响
+void FrameConverter::convertWord(const uint8_t *data, int stride, uint8_t *dest, int destStride) {
+    if (UNLIKELY(histogram == NULL)) return;
+    updateToneWindow(data, stride);
+    //scale = 255 / range，按 2^shift 定点；窄窗口时降低 shift 保证 scale 不超过 uint16
+    const uint32_t range = toneHigh > toneLow ? toneHigh - toneLow : 1;
+    int shift = 16;
+    while (shift > 0 && (255u << shift) / range > 0xFFFF) --shift;
+    const uint32_t scale = (255u << shift) / range;
+    for (int h = 0; h < pixelHeight; ++h) {
+        toneMapRow((const uint16_t *) (data + (size_t) h * stride), dest + (size_t) h * destStride, pixelWidth,
+                   (uint16_t) toneLow, scale, shift);
+    }
+}
+
+#ifdef __cplusplus
+}  // extern "C"
+#endif
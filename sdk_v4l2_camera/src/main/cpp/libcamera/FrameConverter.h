@@ -0,0 +1,61 @@
+//
+// Created by Hsj on 2026/10/18.
+//
+
+#ifndef ANDROID_CAMERA_V4L2_FRAMECONVERTER_H
+#define ANDROID_CAMERA_V4L2_FRAMECONVERTER_H
+
+#include "Common.h"
+#include "DecoderFactory.h"
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/**
+ * 帧数据 -> RGBA（内存顺序 R,G,B,A），不依赖 ANativeWindow，CameraView 与主机 benchmark 共用
+ */
+class FrameConverter {
+private:
+    int pixelWidth;
+    int pixelHeight;
+    int pixelFormat;
+    int stride_uv;
+    int start_uv;
+    int start_u;
+    int start_v;
+    uint8_t *yuv422;
+    unsigned int *histogram;
+    //Y10/Y16 色调映射窗口，逐帧平滑，避免亮度跳变
+    int toneLow;
+    int toneHigh;
+    void convertNV12(const uint8_t *data, uint8_t *dest, int destStride);
+    void convertNV16(const uint8_t *y, int strideY, const uint8_t *uv, int strideUV, uint8_t *dest, int destStride);
+    void convertYUV422(const uint8_t *data, uint8_t *dest, int destStride);
+    void convertYUYV(const uint8_t *data, uint8_t *dest, int destStride);
+    void convertDepth(const uint8_t *data, int stride, uint8_t *dest, int destStride);
+    void convertWord(const uint8_t *data, int stride, uint8_t *dest, int destStride);
+    void updateToneWindow(const uint8_t *data, int stride);
+
+public:
+    FrameConverter(int pixelWidth, int pixelHeight, PixelFormat pixelFormat);
+    ~FrameConverter();
+    bool isValid() const;
+    /**
+     * @param data       一帧数据，格式由 pixelFormat 决定
+     * @param dest       RGBA 输出，至少 pixelHeight 行
+     * @param destStride 输出行跨度（字节）
+     */
+    void toRGBA(const uint8_t *data, uint8_t *dest, int destStride);
+    /**
+     * 按平面转换，直接读取 V4L2 缓冲区：行跨度可大于宽度
+     * 半平面格式（NV12/NV16）的 Y/UV 可不连续（NV12M/NV16M）；灰度/深度（GREY/Y10/Y16/DEPTH）只用 y，uv 忽略
+     */
+    void toRGBA(const uint8_t *y, int strideY, const uint8_t *uv, int strideUV, uint8_t *dest, int destStride);
+};
+
+#ifdef __cplusplus
+}  // extern "C"
+#endif
+
+#endif //ANDROID_CAMERA_V4L2_FRAMECONVERTER_H
@@ -0,0 +1,245 @@
+//
+// Created by Hsj on 2026/10/18.
+//
+
+#ifndef ANDROID_CAMERA_V4L2_FRAMESOURCE_H
+#define ANDROID_CAMERA_V4L2_FRAMESOURCE_H
+
+#include <vector>
+#include <utility>
+#include <linux/videodev2.h>
+#include "Common.h"
+#include "NativeAPI.h"
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+typedef enum {
+    FRAME_FORMAT_MJPEG = 0,
+    FRAME_FORMAT_YUYV  = 1,
+    FRAME_FORMAT_DEPTH = 2,
+    FRAME_FORMAT_NV12  = 3,  //Y + UV 交织 4:2:0，V4L2 NV12 或多平面 NV12M
+    FRAME_FORMAT_NV16  = 4,  //Y + UV 交织 4:2:2，V4L2 NV16 或多平面 NV16M
+    FRAME_FORMAT_H264  = 5,  //Annex-B 码流，每个缓冲区一个访问单元
+    FRAME_FORMAT_HEVC  = 6,
+    FRAME_FORMAT_GREY  = 7,  //8 位灰度
+    FRAME_FORMAT_Y10   = 8,  //10 位灰度，uint16 小端（低 10 位有效）
+    FRAME_FORMAT_Y16   = 9,  //16 位灰度，uint16 小端
+    FRAME_FORMAT_Z16   = 10, //16 位深度（毫米），uint16 小端
+} FrameFormat;
+
+#define MAX_FRAME_PLANES 3
+
+typedef enum {
+    FRAME_READ_SUCCESS = 0,
+    FRAME_READ_TIMEOUT = 1,  //超时或可恢复错误，继续等待
+    FRAME_READ_END     = 2,  //数据源结束（回放不循环）
+    FRAME_READ_ERROR   = -1,
+} FrameReadResult;
+
+typedef enum {
+    FRAME_SIZE_DISCRETE = 1,
+    FRAME_SIZE_STEPWISE = 2,        //连续范围按步长 1 记录
+} FrameSizeType;
+
+typedef enum {
+    FRAME_INTERVAL_NONE     = 0,    //驱动不支持 ENUM_FRAMEINTERVALS
+    FRAME_INTERVAL_DISCRETE = 1,
+    FRAME_INTERVAL_STEPWISE = 2,    //intervals 依次为 min、max、step
+} FrameIntervalType;
+
+/**
+ * 帧间隔（秒）= numerator / denominator
+ */
+struct FrameInterval {
+    uint32_t numerator;
+    uint32_t denominator;
+};
+
+/**
+ * 一种 像素格式 x 尺寸 的能力，stepwise 尺寸时 width/height 为最大值，帧间隔按最大尺寸枚举
+ */
+struct FrameCapability {
+    uint32_t pixelFormat;           //V4L2 fourcc
+    uint32_t flags;                 //V4L2_FMT_FLAG_*
+    uint32_t sizeType;
+    uint32_t width;
+    uint32_t height;
+    uint32_t minWidth;
+    uint32_t minHeight;
+    uint32_t stepWidth;
+    uint32_t stepHeight;
+    uint32_t intervalType;
+    std::vector<FrameInterval> intervals;
+};
+
+/**
+ * V4L2 fourcc -> FrameFormat，多平面变体（NV12M/NV16M）与连续格式归为同一帧格式，不支持返回 -1
+ */
+static inline int frameFormatOf(uint32_t pixelFormat) {
+    switch (pixelFormat) {
+        case V4L2_PIX_FMT_MJPEG:
+            return FRAME_FORMAT_MJPEG;
+        case V4L2_PIX_FMT_YUYV:
+            return FRAME_FORMAT_YUYV;
+        case V4L2_PIX_FMT_NV12:
+        case V4L2_PIX_FMT_NV12M:
+            return FRAME_FORMAT_NV12;
+        case V4L2_PIX_FMT_NV16:
+        case V4L2_PIX_FMT_NV16M:
+            return FRAME_FORMAT_NV16;
+        case V4L2_PIX_FMT_H264:
+            return FRAME_FORMAT_H264;
+        case V4L2_PIX_FMT_HEVC:
+            return FRAME_FORMAT_HEVC;
+        case V4L2_PIX_FMT_GREY:
+            return FRAME_FORMAT_GREY;
+        case V4L2_PIX_FMT_Y10:
+            return FRAME_FORMAT_Y10;
+        case V4L2_PIX_FMT_Y16:
+            return FRAME_FORMAT_Y16;
+        case V4L2_PIX_FMT_Z16:
+            return FRAME_FORMAT_Z16;
+        default:
+            return -1;
+    }
+}
+
+/**
+ * FrameFormat -> 连续（单平面）V4L2 fourcc，深度帧按 YUYV 采集
+ */
+static inline uint32_t pixelFormatOf(int frameFormat) {
+    switch (frameFormat) {
+        case FRAME_FORMAT_MJPEG:
+            return V4L2_PIX_FMT_MJPEG;
+        case FRAME_FORMAT_NV12:
+            return V4L2_PIX_FMT_NV12;
+        case FRAME_FORMAT_NV16:
+            return V4L2_PIX_FMT_NV16;
+        case FRAME_FORMAT_H264:
+            return V4L2_PIX_FMT_H264;
+        case FRAME_FORMAT_HEVC:
+            return V4L2_PIX_FMT_HEVC;
+        case FRAME_FORMAT_GREY:
+            return V4L2_PIX_FMT_GREY;
+        case FRAME_FORMAT_Y10:
+            return V4L2_PIX_FMT_Y10;
+        case FRAME_FORMAT_Y16:
+            return V4L2_PIX_FMT_Y16;
+        case FRAME_FORMAT_Z16:
+            return V4L2_PIX_FMT_Z16;
+        default:
+            return V4L2_PIX_FMT_YUYV;
+    }
+}
+
+static inline bool isSemiPlanar(int frameFormat) {
+    return frameFormat == FRAME_FORMAT_NV12 || frameFormat == FRAME_FORMAT_NV16;
+}
+
+/**
+ * 单平面灰度/深度（GREY/Y10/Y16/Z16）：原始数据直接回调，只在预览时做色调映射
+ */
+static inline bool isMonochrome(int frameFormat) {
+    return frameFormat == FRAME_FORMAT_GREY || frameFormat == FRAME_FORMAT_Y10
+           || frameFormat == FRAME_FORMAT_Y16 || frameFormat == FRAME_FORMAT_Z16;
+}
+
+/**
+ * 第一个图像平面每像素字节数：GREY、NV12/NV16 的 Y 为 1，其余未压缩格式为 2
+ */
+static inline int planeBytesPerPixel(int frameFormat) {
+    return frameFormat == FRAME_FORMAT_GREY || isSemiPlanar(frameFormat) ? 1 : 2;
+}
+
+/**
+ * 未压缩格式的紧凑帧大小（去掉行对齐填充），MJPEG/H.264/HEVC 返回 0
+ */
+static inline size_t packedFrameBytes(int frameFormat, int width, int height) {
+    switch (frameFormat) {
+        case FRAME_FORMAT_MJPEG:
+        case FRAME_FORMAT_H264:
+        case FRAME_FORMAT_HEVC:
+            return 0;
+        case FRAME_FORMAT_NV12:
+            return (size_t) width * height * 3 / 2;
+        case FRAME_FORMAT_GREY:
+            return (size_t) width * height;
+        default:
+            return (size_t) width * height * 2;
+    }
+}
+
+/**
+ * H.264/HEVC：帧数据为压缩码流，不经过 YUV 解码/转换，直接交给复用器或 MediaCodec
+ */
+static inline bool isCompressedStream(int frameFormat) {
+    return frameFormat == FRAME_FORMAT_H264 || frameFormat == FRAME_FORMAT_HEVC;
+}
+
+/**
+ * 一个图像平面：ISP 输出的行跨度（bytesperline）通常按 16/64 字节对齐，大于宽度
+ */
+struct FramePlane {
+    uint8_t *data;
+    uint32_t stride;
+    size_t bytes;
+};
+
+/**
+ * 一帧原始数据，acquire 取出后需 release 归还
+ * data/bytes 为第一个内存平面（MJPEG/YUYV 即整帧）；planes 为逐个图像平面：
+ * NV12/NV16 为 Y + UV 两个平面，单缓冲（NV12/NV16）时 UV 紧跟 Y，多平面（NV12M/NV16M）时各自独立映射
+ */
+struct SourceFrame {
+    void *data;
+    size_t bytes;
+    uint64_t timestampUs;
+    uint32_t sequence;
+    int index;
+    int planeCount;
+    FramePlane planes[MAX_FRAME_PLANES];
+};
+
+/**
+ * 帧源：V4L2 设备或录制文件回放，CameraAPI 只依赖此接口
+ * 调用顺序：open -> setFormat -> streamOn -> acquire/release... -> streamOff -> close
+ */
+class IFrameSource {
+public:
+    virtual ~IFrameSource() = default;
+    virtual ActionInfo open(const char *path) = 0;
+    virtual bool setControl(uint32_t id, int32_t value) = 0;
+    /**
+     * 枚举 格式 x 尺寸 x 帧间隔，开销大（每项一次 ioctl），由 CameraAPI 通过 CapabilityCache 缓存
+     */
+    virtual ActionInfo getCapabilities(std::vector<FrameCapability> &capabilities) = 0;
+    /**
+     * NV12/NV16 优先选连续格式，设备只提供多平面变体（NV12M/NV16M）时使用后者，
+     * 驱动调整了格式或尺寸时失败，避免按错误的平面布局解析
+     */
+    virtual ActionInfo setFormat(int width, int height, int frameFormat) = 0;
+    /**
+     * VIDIOC_S_PARM 设置帧间隔 1/fps，setFormat 之后重新应用（S_FMT 可能重置帧率）
+     * 实际帧率以驱动回填为准，通过 getFrameRate 读取
+     */
+    virtual ActionInfo setFrameRate(int fps) = 0;
+    virtual int getFrameRate() = 0;
+    /**
+     * 热备：streamOff 后保留缓冲区（V4L2 为 mmap 映射），下次 streamOn 只需重新入队 + STREAMON
+     * 关闭时立即释放已保留的缓冲区
+     */
+    virtual void setWarmStandby(bool enable) = 0;
+    virtual ActionInfo streamOn() = 0;
+    virtual ActionInfo streamOff() = 0;
+    virtual FrameReadResult acquire(SourceFrame &frame, int timeoutMs) = 0;
+    virtual void release(const SourceFrame &frame) = 0;
+    virtual ActionInfo close() = 0;
+};
+
+#ifdef __cplusplus
+}  // extern "C"
+#endif
+
+#endif //ANDROID_CAMERA_V4L2_FRAMESOURCE_H
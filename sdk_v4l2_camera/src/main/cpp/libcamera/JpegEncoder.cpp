@@ -0,0 +1,154 @@
+//
+// Created by Hsj on 2026/10/18.
+//
+
+#include "JpegEncoder.h"
+#include <cstdlib>
+#include <libyuv.h>
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+#define TAG "JpegEncoder"
+
+static int subSampleOf(PixelFormat pixelFormat) {
+    switch (pixelFormat) {
+        case PIXEL_FORMAT_NV12:
+            return TJSAMP_420;
+        case PIXEL_FORMAT_YUV422:
+        case PIXEL_FORMAT_YUYV:
+        case PIXEL_FORMAT_NV16:
+            return TJSAMP_422;
+        default:
+            return -1;
+    }
+}
+
+//======================================JpegEncoder=================================================
+
+JpegEncoder::JpegEncoder() :
+        handle(tjInitCompress()),
+        scratch(NULL),
+        scratchBytes(0) {
+    if (handle == NULL) {
+        LOGE(TAG, "JpegEncoder: tjInitCompress failed, %s", tjGetErrorStr2(NULL));
+    }
+}
+
+JpegEncoder::~JpegEncoder() {
+    SAFE_FREE(scratch)
+    if (handle) {
+        tjDestroy(handle);
+        handle = NULL;
+    }
+}
+
+bool JpegEncoder::ensureScratch(size_t bytes) {
+    if (bytes > scratchBytes) {
+        SAFE_FREE(scratch)
+        scratch = (uint8_t *) malloc(bytes);
+        scratchBytes = scratch ? bytes : 0;
+    }
+    return scratch != NULL;
+}
+
+long JpegEncoder::encode(const uint8_t *data, int width, int height, PixelFormat pixelFormat, int quality,
+                         uint8_t *jpeg, unsigned long jpegCapacity) {
+    const int subSample = subSampleOf(pixelFormat);
+    if (handle == NULL || subSample < 0 || data == NULL || jpeg == NULL) {
+        LOGW(TAG, "encode: invalid params, pixelFormat=%d", pixelFormat);
+        return -1;
+    }
+    const int chromaW = (width + 1) / 2;
+    const int ySize = width * height;
+    const uint8_t *planes[3];
+    int strides[3];
+    if (pixelFormat == PIXEL_FORMAT_NV12 || pixelFormat == PIXEL_FORMAT_NV16) {
+        //NV12/NV16 的 UV 交织，拆成 U/V 平面
+        const int chromaH = pixelFormat == PIXEL_FORMAT_NV16 ? height : (height + 1) / 2;
+        if (!ensureScratch((size_t) chromaW * chromaH * 2)) return -1;
+        libyuv::SplitUVPlane(data + ySize, width, scratch, chromaW, scratch + chromaW * chromaH, chromaW,
+                             chromaW, chromaH);
+        planes[0] = data;
+        planes[1] = scratch;
+        planes[2] = scratch + chromaW * chromaH;
+    } else if (pixelFormat == PIXEL_FORMAT_YUV422) {
+        //与 FrameConverter 一致：Y 后接 U、V 平面
+        planes[0] = data;
+        planes[1] = data + ySize;
+        planes[2] = data + ySize + ySize / 2;
+    } else {
+        //YUYV 打包格式先转 I422
+        if (!ensureScratch((size_t) ySize + (size_t) chromaW * height * 2)) return -1;
+        libyuv::YUY2ToI422(data, width * 2,
+                           scratch, width,
+                           scratch + ySize, chromaW,
+                           scratch + ySize + chromaW * height, chromaW,
+                           width, height);
+        planes[0] = scratch;
+        planes[1] = scratch + ySize;
+        planes[2] = scratch + ySize + chromaW * height;
+    }
+    strides[0] = width;
+    strides[1] = pixelFormat == PIXEL_FORMAT_YUV422 ? width / 2 : chromaW;
+    strides[2] = strides[1];
+
+    //输出缓冲区已按 tjBufSize 预分配，禁止 turbojpeg 重新分配
+    unsigned char *out = jpeg;
+    unsigned long outSize = jpegCapacity;
+    if (0 != tjCompressFromYUVPlanes(handle, planes, width, strides, height, subSample, &out, &outSize,
+                                     quality, TJFLAG_NOREALLOC | TJFLAG_FASTDCT)) {
+        LOGW(TAG, "encode: tjCompressFromYUVPlanes failed, %s", tjGetErrorStr2(handle));
+        return -1;
+    }
+    return (long) outSize;
+}
+
+//======================================JpegEncoderPool=============================================
+
+JpegEncoderPool::JpegEncoderPool(int maxCount) :
+        maxCount(maxCount > 0 ? maxCount : 1),
+        createdCount(0) {
+    pthread_mutex_init(&lock, NULL);
+}
+
+JpegEncoderPool::~JpegEncoderPool() {
+    for (JpegEncoder *encoder : idle) {
+        delete encoder;
+    }
+    idle.clear();
+    pthread_mutex_destroy(&lock);
+}
+
+JpegEncoder *JpegEncoderPool::acquire() {
+    JpegEncoder *encoder = NULL;
+    bool create = false;
+    pthread_mutex_lock(&lock);
+    if (!idle.empty()) {
+        encoder = idle.back();
+        idle.pop_back();
+    } else if (createdCount < maxCount) {
+        ++createdCount;
+        create = true;
+    }
+    pthread_mutex_unlock(&lock);
+    //新建放在锁外，tjInitCompress 较慢
+    return create ? new JpegEncoder() : encoder;
+}
+
+void JpegEncoderPool::release(JpegEncoder *encoder) {
+    pthread_mutex_lock(&lock);
+    idle.push_back(encoder);
+    pthread_mutex_unlock(&lock);
+}
+
+unsigned long JpegEncoderPool::bufferSize(int width, int height, PixelFormat pixelFormat) {
+    const int subSample = subSampleOf(pixelFormat);
+    if (subSample < 0 || width <= 0 || height <= 0) return 0;
+    return tjBufSize(width, height, subSample);
+}
+
+#ifdef __cplusplus
+}  // extern "C"
+#endif
@@ -0,0 +1,69 @@
+//
+// Created by Hsj on 2026/10/18.
+//
+
+#ifndef ANDROID_CAMERA_V4L2_JPEGENCODER_H
+#define ANDROID_CAMERA_V4L2_JPEGENCODER_H
+
+#include <vector>
+#include <pthread.h>
+#include <turbojpeg.h>
+#include "Common.h"
+#include "DecoderFactory.h"
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/**
+ * 单个 JPEG 编码器：tjhandle + 格式转换暂存区，直接从解码输出（NV12/NV16/YUV422/YUYV）压缩，不经过 RGB
+ * 非线程安全，由 JpegEncoderPool 分配给编码线程使用
+ */
+class JpegEncoder {
+private:
+    tjhandle handle;
+    uint8_t *scratch;
+    size_t scratchBytes;
+
+    bool ensureScratch(size_t bytes);
+
+public:
+    JpegEncoder();
+    ~JpegEncoder();
+    /**
+     * @return JPEG 字节数，失败返回 -1
+     */
+    long encode(const uint8_t *data, int width, int height, PixelFormat pixelFormat, int quality,
+                uint8_t *jpeg, unsigned long jpegCapacity);
+};
+
+/**
+ * 编码器池：按需创建、用完归还，最多 maxCount 个，取不到时不等待，由调用方丢帧
+ */
+class JpegEncoderPool {
+private:
+    const int maxCount;
+    int createdCount;
+    std::vector<JpegEncoder *> idle;
+    pthread_mutex_t lock;
+
+public:
+    explicit JpegEncoderPool(int maxCount);
+    ~JpegEncoderPool();
+    /**
+     * @return 编码器都在使用中时返回 NULL
+     */
+    JpegEncoder *acquire();
+    void release(JpegEncoder *encoder);
+
+    /**
+     * 该尺寸/格式下 JPEG 输出缓冲区的最坏大小，按此预分配可保证编码不需要重新分配
+     */
+    static unsigned long bufferSize(int width, int height, PixelFormat pixelFormat);
+};
+
+#ifdef __cplusplus
+}  // extern "C"
+#endif
+
+#endif //ANDROID_CAMERA_V4L2_JPEGENCODER_H
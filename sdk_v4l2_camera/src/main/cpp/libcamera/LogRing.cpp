@@ -0,0 +1,232 @@
+//
+// Created by Hsj on 2026/10/18.
+//
+
+#include "LogRing.h"
+#include <atomic>
+#include <cstdio>
+#include <pthread.h>
+#include <unistd.h>
+
+#define RING_SIZE 4096                      //2 的幂
+#define RING_MASK (RING_SIZE - 1)
+#define DRAIN_IDLE_US 5000
+#define MESSAGE_SIZE 1024
+#define DEFAULT_SAMPLE_INTERVAL 300
+
+//默认：开启 LOG_SWITCH 时输出 debug 并每 300 帧采样一帧，否则只输出 warn 及以上
+#ifdef LOG_SWITCH
+#define DEFAULT_LOG_LEVEL LOG_LEVEL_DEBUG
+#else
+#define DEFAULT_LOG_LEVEL LOG_LEVEL_WARN
+#endif
+
+static uint64_t packConfig(int level, uint32_t sampleInterval, uint32_t slowFrameUs) {
+    if (level < 0) level = 0;
+    if (level > LOG_LEVEL_SILENT) level = LOG_LEVEL_SILENT;
+    if (sampleInterval > 0xFFFFFF) sampleInterval = 0xFFFFFF;
+    return (uint64_t) level | ((uint64_t) sampleInterval << 8) | ((uint64_t) slowFrameUs << 32);
+}
+
+std::atomic<uint64_t> LogControl::config(packConfig(DEFAULT_LOG_LEVEL, DEFAULT_SAMPLE_INTERVAL, 0));
+
+void LogControl::set(int level, uint32_t sampleInterval, uint32_t slowFrameUs) {
+    config.store(packConfig(level, sampleInterval, slowFrameUs), std::memory_order_relaxed);
+}
+
+struct LogRecord {
+    std::atomic<size_t> sequence;
+    int level;
+    int argc;
+    const char *tag;
+    const char *format;
+    uint64_t args[LOG_RING_MAX_ARGS];
+};
+
+//有界 MPSC 队列：每个槽位的 sequence 表示可写（== pos）或可读（== pos + 1）
+static LogRecord ring[RING_SIZE];
+static std::atomic<size_t> enqueuePos(0);
+static size_t dequeuePos = 0;
+static std::atomic<uint32_t> droppedCount(0);
+static pthread_once_t startOnce = PTHREAD_ONCE_INIT;
+
+static void writeLog(int level, const char *tag, const char *message) {
+#ifdef __ANDROID__
+    __android_log_write(level, tag, message);
+#else
+    static const char LEVELS[] = "??VDIWEF";
+    fprintf(stderr, "%c/%s: %s\n", LEVELS[level & 7], tag, message);
+#endif
+}
+
+/**
+ * 按格式串逐个转换说明符取参数，长度修饰统一按 64 位处理后再截断，避免可变参数类型不匹配
+ */
+static void formatRecord(const LogRecord &record, char *out, size_t size) {
+    const char *f = record.format;
+    size_t length = 0;
+    int index = 0;
+    while (*f && length + 1 < size) {
+        if (*f != '%') {
+            out[length++] = *f++;
+            continue;
+        } else if (f[1] == '%') {
+            out[length++] = '%';
+            f += 2;
+            continue;
+        }
+        //%[flags][width][.precision][length]conversion
+        char spec[32];
+        size_t specLength = 0;
+        spec[specLength++] = *f++;
+        while (*f && strchr("-+ #0123456789.", *f) && specLength < sizeof(spec) - 4) spec[specLength++] = *f++;
+        char modifier[3] = {0};
+        size_t modifierLength = 0;
+        while (*f && strchr("hljztL", *f)) {
+            if (modifierLength < 2) modifier[modifierLength++] = *f;
+            f++;
+        }
+        const char conversion = *f;
+        if (!conversion) break;
+        f++;
+        const uint64_t value = index < record.argc ? record.args[index++] : 0;
+        const bool wide = modifier[0] == 'l' || modifier[0] == 'j' || modifier[0] == 'z' || modifier[0] == 't';
+        int written = 0;
+        switch (conversion) {
+            case 'd':
+            case 'i': {
+                long long number = wide ? (long long) (int64_t) value
+                        : 0 == strcmp(modifier, "hh") ? (long long) (signed char) value
+                        : 0 == strcmp(modifier, "h") ? (long long) (short) value : (long long) (int) value;
+                spec[specLength] = 'l';
+                spec[specLength + 1] = 'l';
+                spec[specLength + 2] = conversion;
+                spec[specLength + 3] = '\0';
+                written = snprintf(out + length, size - length, spec, number);
+                break;
+            }
+            case 'u':
+            case 'x':
+            case 'X':
+            case 'o': {
+                unsigned long long number = wide ? (unsigned long long) value
+                        : 0 == strcmp(modifier, "hh") ? (unsigned long long) (unsigned char) value
+                        : 0 == strcmp(modifier, "h") ? (unsigned long long) (unsigned short) value
+                        : (unsigned long long) (unsigned int) value;
+                spec[specLength] = 'l';
+                spec[specLength + 1] = 'l';
+                spec[specLength + 2] = conversion;
+                spec[specLength + 3] = '\0';
+                written = snprintf(out + length, size - length, spec, number);
+                break;
+            }
+            case 'f':
+            case 'F':
+            case 'e':
+            case 'E':
+            case 'g':
+            case 'G':
+            case 'a':
+            case 'A': {
+                double number;
+                memcpy(&number, &value, sizeof(number));
+                spec[specLength] = conversion;
+                spec[specLength + 1] = '\0';
+                written = snprintf(out + length, size - length, spec, number);
+                break;
+            }
+            case 'c':
+            case 'p':
+            case 's': {
+                spec[specLength] = conversion;
+                spec[specLength + 1] = '\0';
+                if (conversion == 'c') {
+                    written = snprintf(out + length, size - length, spec, (int) value);
+                } else if (conversion == 'p') {
+                    written = snprintf(out + length, size - length, spec, (void *) (uintptr_t) value);
+                } else {
+                    const char *text = (const char *) (uintptr_t) value;
+                    written = snprintf(out + length, size - length, spec, text ? text : "(null)");
+                }
+                break;
+            }
+            default:
+                break;
+        }
+        if (written > 0) {
+            length += (size_t) written < size - length ? (size_t) written : size - length - 1;
+        }
+    }
+    out[length] = '\0';
+}
+
+static bool pop(LogRecord &record) {
+    LogRecord &slot = ring[dequeuePos & RING_MASK];
+    if (slot.sequence.load(std::memory_order_acquire) != dequeuePos + 1) return false;
+    record.level = slot.level;
+    record.argc = slot.argc;
+    record.tag = slot.tag;
+    record.format = slot.format;
+    memcpy(record.args, slot.args, sizeof(record.args));
+    slot.sequence.store(dequeuePos + RING_SIZE, std::memory_order_release);
+    dequeuePos++;
+    return true;
+}
+
+static void *drainThread(void *args) {
+    LogRecord record;
+    char message[MESSAGE_SIZE];
+    while (true) {
+        bool idle = true;
+        while (pop(record)) {
+            formatRecord(record, message, sizeof(message));
+            writeLog(record.level, record.tag, message);
+            idle = false;
+        }
+        uint32_t dropped = droppedCount.exchange(0, std::memory_order_relaxed);
+        if (dropped > 0) {
+            snprintf(message, sizeof(message), "dropped %u log records", dropped);
+            writeLog(LOG_LEVEL_WARN, "LogRing", message);
+        }
+        if (idle) usleep(DRAIN_IDLE_US);
+    }
+    return NULL;
+}
+
+static void startDrain() {
+    for (size_t i = 0; i < RING_SIZE; ++i) {
+        ring[i].sequence.store(i, std::memory_order_relaxed);
+    }
+    pthread_t thread;
+    pthread_attr_t attr;
+    pthread_attr_init(&attr);
+    pthread_attr_setdetachstate(&attr, PTHREAD_CREATE_DETACHED);
+    pthread_create(&thread, &attr, drainThread, NULL);
+    pthread_attr_destroy(&attr);
+}
+
+bool LogRing::push(int level, const char *tag, const char *format, const uint64_t *args, int argc) {
+    pthread_once(&startOnce, startDrain);
+    size_t position = enqueuePos.load(std::memory_order_relaxed);
+    LogRecord *slot;
+    while (true) {
+        slot = &ring[position & RING_MASK];
+        const size_t sequence = slot->sequence.load(std::memory_order_acquire);
+        const intptr_t diff = (intptr_t) sequence - (intptr_t) position;
+        if (diff == 0) {
+            if (enqueuePos.compare_exchange_weak(position, position + 1, std::memory_order_relaxed)) break;
+        } else if (diff < 0) {
+            droppedCount.fetch_add(1, std::memory_order_relaxed);
+            return false;
+        } else {
+            position = enqueuePos.load(std::memory_order_relaxed);
+        }
+    }
+    slot->level = level;
+    slot->argc = argc;
+    slot->tag = tag;
+    slot->format = format;
+    memcpy(slot->args, args, argc * sizeof(uint64_t));
+    slot->sequence.store(position + 1, std::memory_order_release);
+    return true;
+}
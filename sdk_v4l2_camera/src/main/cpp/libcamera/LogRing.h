@@ -0,0 +1,114 @@
+//
+// Created by Hsj on 2026/10/18.
+//
+
+#ifndef ANDROID_CAMERA_V4L2_LOGRING_H
+#define ANDROID_CAMERA_V4L2_LOGRING_H
+
+#include <atomic>
+#include <cstring>
+#include <type_traits>
+#include "Common.h"
+
+/*
+ * 异步日志：热路径只记录 格式串指针 + 参数（不格式化），后台线程格式化并输出
+ * LOGT* 用法与 LOGD 相同，限制：
+ *   1、format 必须是字符串常量（只保存指针）
+ *   2、%s 参数必须是静态生命周期字符串
+ *   3、最多 LOG_RING_MAX_ARGS 个参数，不支持 '*' 宽度/精度
+ * 环形缓冲区满时丢弃，由后台线程汇报丢弃条数
+ * LOGT* 不受编译期 LOG_SWITCH 控制，由 LogControl 运行时按级别过滤（一次 relaxed 原子读）
+ * 本头文件包含模板，不能放在 extern "C" 中
+ */
+
+#define LOG_RING_MAX_ARGS 6
+
+#define LOG_LEVEL_VERBOSE 2
+#define LOG_LEVEL_DEBUG   3
+#define LOG_LEVEL_INFO    4
+#define LOG_LEVEL_WARN    5
+#define LOG_LEVEL_ERROR   6
+#define LOG_LEVEL_SILENT  8
+
+/**
+ * 运行时日志级别与逐帧采样，三个参数打包成一个 64 位原子量，读取只需一次 relaxed load：
+ *   bit 0-7 最低输出级别，bit 8-31 每 N 帧采样一帧（0 不按间隔采样），bit 32-63 慢帧阈值 us（0 不按耗时采样）
+ */
+class LogControl {
+private:
+    static std::atomic<uint64_t> config;
+
+public:
+    static void set(int level, uint32_t sampleInterval, uint32_t slowFrameUs);
+
+    static inline uint64_t load() {
+        return config.load(std::memory_order_relaxed);
+    }
+
+    static inline int level(uint64_t value) {
+        return (int) (value & 0xFF);
+    }
+
+    static inline uint32_t sampleInterval(uint64_t value) {
+        return (uint32_t) (value >> 8) & 0xFFFFFF;
+    }
+
+    static inline uint32_t slowFrameUs(uint64_t value) {
+        return (uint32_t) (value >> 32);
+    }
+
+    static inline bool isLoggable(int level) {
+        return level >= LogControl::level(load());
+    }
+
+    /**
+     * 帧级 debug 日志是否输出：命中采样间隔或耗时超过慢帧阈值
+     */
+    static inline bool sampleFrame(uint64_t value, uint32_t frameIndex, uint64_t costUs) {
+        if (LOG_LEVEL_DEBUG < level(value)) return false;
+        const uint32_t interval = sampleInterval(value);
+        const uint32_t slowUs = slowFrameUs(value);
+        return (interval > 0 && frameIndex % interval == 0) || (slowUs > 0 && costUs >= slowUs);
+    }
+};
+
+class LogRing {
+public:
+    /**
+     * 多线程并发写入，无锁、不阻塞，满时返回 false
+     */
+    static bool push(int level, const char *tag, const char *format, const uint64_t *args, int argc);
+};
+
+template<typename T>
+inline typename std::enable_if<std::is_floating_point<T>::value, uint64_t>::type logArg(T value) {
+    double number = value;
+    uint64_t bits;
+    memcpy(&bits, &number, sizeof(bits));
+    return bits;
+}
+
+template<typename T>
+inline typename std::enable_if<std::is_integral<T>::value || std::is_enum<T>::value, uint64_t>::type logArg(T value) {
+    return (uint64_t) (int64_t) value;
+}
+
+template<typename T>
+inline uint64_t logArg(T *value) {
+    return (uint64_t) (uintptr_t) value;
+}
+
+template<typename... Args>
+inline void logRingPush(int level, const char *tag, const char *format, Args... args) {
+    static_assert(sizeof...(Args) <= LOG_RING_MAX_ARGS, "LOGT: too many arguments");
+    const uint64_t values[sizeof...(Args) + 1] = {logArg(args)..., 0};
+    LogRing::push(level, tag, format, values, sizeof...(Args));
+}
+
+#define LOGT(LEVEL, TAG, ...) (LogControl::isLoggable(LEVEL) ? logRingPush(LEVEL, TAG, __VA_ARGS__) : (void) 0)
+#define LOGTD(TAG, ...) LOGT(LOG_LEVEL_DEBUG, TAG, __VA_ARGS__)
+#define LOGTI(TAG, ...) LOGT(LOG_LEVEL_INFO, TAG, __VA_ARGS__)
+#define LOGTW(TAG, ...) LOGT(LOG_LEVEL_WARN, TAG, __VA_ARGS__)
+#define LOGTE(TAG, ...) LOGT(LOG_LEVEL_ERROR, TAG, __VA_ARGS__)
+
+#endif //ANDROID_CAMERA_V4L2_LOGRING_H
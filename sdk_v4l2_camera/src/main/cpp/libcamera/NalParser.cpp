@@ -0,0 +1,112 @@
+//
+// Created by Hsj on 2026/10/18.
+//
+
+#include "NalParser.h"
+#include <cstring>
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+#define TAG "NalParser"
+
+#define H264_NAL_IDR 5
+#define H264_NAL_SPS 7
+#define H264_NAL_PPS 8
+#define HEVC_NAL_IRAP_MIN 16
+#define HEVC_NAL_IRAP_MAX 23
+#define HEVC_NAL_VPS 32
+#define HEVC_NAL_SPS 33
+#define HEVC_NAL_PPS 34
+
+static const uint8_t START_CODE[] = {0, 0, 0, 1};
+
+/**
+ * 下一个起始码 00 00 01 的位置，没有返回 end；memchr 找 01 再回看两个 00
+ */
+static const uint8_t *findStartCode(const uint8_t *p, const uint8_t *end) {
+    const uint8_t *q = p + 2;
+    while (q < end) {
+        q = (const uint8_t *) memchr(q, 1, end - q);
+        if (q == NULL) return end;
+        if (q[-1] == 0 && q[-2] == 0) return q - 2;
+        ++q;
+    }
+    return end;
+}
+
+NalParser::NalParser(bool hevc) : hevc(hevc) {
+}
+
+void NalParser::storeNal(std::vector<uint8_t> &target, const uint8_t *nal, size_t size, bool &changed) {
+    if (target.size() == size + sizeof(START_CODE)
+        && 0 == memcmp(target.data() + sizeof(START_CODE), nal, size)) {
+        return;
+    }
+    target.assign(START_CODE, START_CODE + sizeof(START_CODE));
+    target.insert(target.end(), nal, nal + size);
+    changed = true;
+}
+
+bool NalParser::parse(const uint8_t *data, size_t size, bool &configChanged) {
+    configChanged = false;
+    if (data == NULL || size < 4) return false;
+    const uint8_t *end = data + size;
+    const uint8_t *start = findStartCode(data, end);
+    while (start < end) {
+        const uint8_t *nal = start + 3;
+        const uint8_t *next = findStartCode(nal, end);
+        //去掉下一个 4 字节起始码的前导 0 和 trailing_zero_8bits
+        const uint8_t *nalEnd = next;
+        while (nalEnd > nal && nalEnd[-1] == 0) --nalEnd;
+        start = next;
+        if (nalEnd <= nal) continue;
+        const size_t nalSize = nalEnd - nal;
+        if (hevc) {
+            const int type = (nal[0] >> 1) & 0x3F;
+            if (type == HEVC_NAL_VPS) {
+                storeNal(vps, nal, nalSize, configChanged);
+            } else if (type == HEVC_NAL_SPS) {
+                storeNal(sps, nal, nalSize, configChanged);
+            } else if (type == HEVC_NAL_PPS) {
+                storeNal(pps, nal, nalSize, configChanged);
+            } else if (type < HEVC_NAL_VPS) {
+                //VCL：0~31
+                return type >= HEVC_NAL_IRAP_MIN && type <= HEVC_NAL_IRAP_MAX;
+            }
+        } else {
+            const int type = nal[0] & 0x1F;
+            if (type == H264_NAL_SPS) {
+                storeNal(sps, nal, nalSize, configChanged);
+            } else if (type == H264_NAL_PPS) {
+                storeNal(pps, nal, nalSize, configChanged);
+            } else if (type >= 1 && type <= H264_NAL_IDR) {
+                //VCL：1~5
+                return type == H264_NAL_IDR;
+            }
+        }
+    }
+    return false;
+}
+
+bool NalParser::hasConfig() const {
+    return !sps.empty() && !pps.empty() && (!hevc || !vps.empty());
+}
+
+void NalParser::getConfig(std::vector<uint8_t> &csd0, std::vector<uint8_t> &csd1) const {
+    csd0.clear();
+    csd1.clear();
+    if (hevc) {
+        csd0.insert(csd0.end(), vps.begin(), vps.end());
+        csd0.insert(csd0.end(), sps.begin(), sps.end());
+        csd0.insert(csd0.end(), pps.begin(), pps.end());
+    } else {
+        csd0 = sps;
+        csd1 = pps;
+    }
+}
+
+#ifdef __cplusplus
+}  // extern "C"
+#endif
@@ -0,0 +1,41 @@
+//
+// Created by Hsj on 2026/10/18.
+//
+
+#ifndef ANDROID_CAMERA_V4L2_NALPARSER_H
+#define ANDROID_CAMERA_V4L2_NALPARSER_H
+
+#include <vector>
+#include "Common.h"
+
+/*
+ * H.264/HEVC Annex-B 访问单元解析，UVC 相机每个 V4L2 缓冲区为一个访问单元（起始码 00 00 01 / 00 00 00 01 分隔的 NAL）：
+ *   1、判断关键帧（H.264 IDR=5，HEVC IRAP 16~23）
+ *   2、提取参数集（H.264 SPS/PPS，HEVC VPS/SPS/PPS），供 MediaCodec/MediaMuxer 的 csd-0/csd-1
+ * 参数集总在图像数据之前，遇到第一个 VCL NAL 即停止扫描，不读取 slice 数据
+ */
+class NalParser {
+private:
+    bool hevc;
+    //含 4 字节起始码
+    std::vector<uint8_t> vps;
+    std::vector<uint8_t> sps;
+    std::vector<uint8_t> pps;
+    static void storeNal(std::vector<uint8_t> &target, const uint8_t *nal, size_t size, bool &changed);
+
+public:
+    explicit NalParser(bool hevc);
+    /**
+     * @param configChanged 访问单元带有与之前不同的参数集
+     * @return 是否关键帧
+     */
+    bool parse(const uint8_t *data, size_t size, bool &configChanged);
+    bool isHevc() const { return hevc; }
+    bool hasConfig() const;
+    /**
+     * H.264：csd0 = SPS、csd1 = PPS；HEVC：csd0 = VPS + SPS + PPS、csd1 为空，均为 Annex-B（带起始码）
+     */
+    void getConfig(std::vector<uint8_t> &csd0, std::vector<uint8_t> &csd1) const;
+};
+
+#endif //ANDROID_CAMERA_V4L2_NALPARSER_H
@@ -5,10 +5,18 @@
 #include "Common.h"
 #include "NativeAPI.h"
 #include "CameraAPI.h"
+#include "LogRing.h"
+#include "Trace.h"
+#include "JpegEncoder.h"
+#include "DeviceRegistry.h"
+#include "CapabilityCache.h"
+#include "DecoderCache.h"
+#include <mutex>
 
 #define TAG "NativeAPI"
 #define OBJECT_ID "nativeObj"
 #define CLASS_NAME "com/hsj/camera/CameraAPI"
+#define ENCODER_CLASS_NAME "com/hsj/camera/JpegEncoderPool"
 
 typedef jlong CAMERA_ID;
 
@@ -61,6 +69,28 @@ static ActionInfo nativeCreateByPath(JNIEnv *env, jobject thiz, CAMERA_ID camera
     return status;
 }
 
+static ActionInfo nativeCreateByReplay(JNIEnv *env, jobject thiz, CAMERA_ID cameraId, jstring filePath,
+                                       jboolean realtime, jboolean loop) {
+    auto *camera = reinterpret_cast<CameraAPI *>(cameraId);
+    ActionInfo status = ACTION_ERROR_RELEASE;
+    if (LIKELY(camera)) {
+        if (filePath == nullptr) {
+            LOGE(TAG, "nativeCreateByReplay: filePath is null");
+            return ACTION_ERROR_INVALID_PATH;
+        }
+        const char* path = env->GetStringUTFChars(filePath, nullptr);
+        if (path != nullptr) {
+            status = camera->connectByReplay(path, realtime, loop);
+            env->ReleaseStringUTFChars(filePath, path);
+        } else {
+            LOGE(TAG, "nativeCreateByReplay: failed to get UTF chars");
+            status = ACTION_ERROR_INVALID_PATH;
+        }
+    }
+    LOGD(TAG, "camera->connectByReplay(): %d", status);
+    return status;
+}
+
 static ActionInfo nativeAutoExposure(JNIEnv *env, jobject thiz, CAMERA_ID cameraId, jboolean isAuto) {
     auto *camera = reinterpret_cast<CameraAPI *>(cameraId);
     ActionInfo status = ACTION_ERROR_DESTROY;
@@ -116,6 +146,47 @@ static jobjectArray nativeSupportSize(JNIEnv *env, jobject thiz, CAMERA_ID camer
     return objArr;
 }
 
+/**
+ * 每项：fourcc, flags, sizeType, width, height, minWidth, minHeight, stepWidth, stepHeight,
+ * intervalType, 之后为 (numerator, denominator) * n，与 FrameCapability.java 对应
+ */
+static jintArray capabilityRow(JNIEnv *env, const FrameCapability &capability) {
+    std::vector<jint> row = {(jint) capability.pixelFormat, (jint) capability.flags, (jint) capability.sizeType,
+                             (jint) capability.width, (jint) capability.height, (jint) capability.minWidth,
+                             (jint) capability.minHeight, (jint) capability.stepWidth, (jint) capability.stepHeight,
+                             (jint) capability.intervalType};
+    for (const FrameInterval &interval : capability.intervals) {
+        row.push_back((jint) interval.numerator);
+        row.push_back((jint) interval.denominator);
+    }
+    jintArray arr = env->NewIntArray(row.size());
+    env->SetIntArrayRegion(arr, 0, row.size(), row.data());
+    return arr;
+}
+
+static jobjectArray nativeCapabilities(JNIEnv *env, jobject thiz, CAMERA_ID cameraId) {
+    auto *camera = reinterpret_cast<CameraAPI *>(cameraId);
+    jobjectArray objArr = nullptr;
+    if (LIKELY(camera)) {
+        std::vector<FrameCapability> capabilities;
+        ActionInfo status = camera->getCapabilities(capabilities);
+        if (status == ACTION_SUCCESS) {
+            jclass cls = env->FindClass("[I");
+            objArr = env->NewObjectArray(capabilities.size(), cls, nullptr);
+            env->DeleteLocalRef(cls);
+            for (size_t i = 0; i < capabilities.size(); i++) {
+                jintArray arr = capabilityRow(env, capabilities[i]);
+                env->SetObjectArrayElement(objArr, i, arr);
+                env->DeleteLocalRef(arr);
+            }
+            LOGI(TAG, "camera->getCapabilities(): length:%zu", capabilities.size());
+        } else {
+            LOGE(TAG, "camera->getCapabilities(): status:%d", status);
+        }
+    }
+    return objArr;
+}
+
 static ActionInfo nativeFrameSize(JNIEnv *env, jobject thiz, CAMERA_ID cameraId, jint width, jint height, jint frameFormat) {
     auto *camera = reinterpret_cast<CameraAPI *>(cameraId);
     ActionInfo status = ACTION_ERROR_DESTROY;
@@ -131,6 +202,46 @@ static ActionInfo nativeFrameSize(JNIEnv *env, jobject thiz, CAMERA_ID cameraId,
     return status;
 }
 
+static jintArray nativeFrameSizeAuto(JNIEnv *env, jobject thiz, CAMERA_ID cameraId, jint width, jint height, jint fps) {
+    auto *camera = reinterpret_cast<CameraAPI *>(cameraId);
+    jintArray result = nullptr;
+    if (LIKELY(camera)) {
+        FormatSelection selection;
+        ActionInfo status = camera->setFrameSizeAuto(width, height, fps, selection);
+        if (status == ACTION_SUCCESS) {
+            jint values[3] = {selection.frameFormat, selection.decodeType, selection.fps};
+            result = env->NewIntArray(3);
+            env->SetIntArrayRegion(result, 0, 3, values);
+        }
+        LOGD(TAG, "camera->setFrameSizeAuto(): %d", status);
+    }
+    return result;
+}
+
+static ActionInfo nativeFrameRate(JNIEnv *env, jobject thiz, CAMERA_ID cameraId, jint fps) {
+    auto *camera = reinterpret_cast<CameraAPI *>(cameraId);
+    ActionInfo status = ACTION_ERROR_RELEASE;
+    if (LIKELY(camera)) {
+        status = camera->setFrameRate(fps);
+    }
+    LOGD(TAG, "camera->setFrameRate(): %d", status);
+    return status;
+}
+
+static jint nativeGetFrameRate(JNIEnv *env, jobject thiz, CAMERA_ID cameraId) {
+    auto *camera = reinterpret_cast<CameraAPI *>(cameraId);
+    return LIKELY(camera) ? camera->getFrameRate() : 0;
+}
+
+static jintArray nativeFrameCapability(JNIEnv *env, jobject thiz, CAMERA_ID cameraId) {
+    auto *camera = reinterpret_cast<CameraAPI *>(cameraId);
+    FrameCapability capability{};
+    if (LIKELY(camera) && ACTION_SUCCESS == camera->getFrameCapability(capability)) {
+        return capabilityRow(env, capability);
+    }
+    return nullptr;
+}
+
 static jintArray nativeGetActualFrameSize(JNIEnv *env, jobject thiz, CAMERA_ID cameraId) {
     auto *camera = reinterpret_cast<CameraAPI *>(cameraId);
     jintArray result = nullptr;
@@ -147,6 +258,16 @@ static jintArray nativeGetActualFrameSize(JNIEnv *env, jobject thiz, CAMERA_ID c
     return result;
 }
 
+static jint nativeGetPixelFormat(JNIEnv *env, jobject thiz, CAMERA_ID cameraId) {
+    auto *camera = reinterpret_cast<CameraAPI *>(cameraId);
+    jint pixelFormat = PIXEL_FORMAT_ERROR;
+    if (LIKELY(camera)) {
+        pixelFormat = camera->getPixelFormat();
+    }
+    LOGD(TAG, "camera->getPixelFormat(): %d", pixelFormat);
+    return pixelFormat;
+}
+
 static ActionInfo nativeFrameCallback(JNIEnv *env, jobject thiz, CAMERA_ID cameraId, jobject frame_callback) {
     auto *camera = reinterpret_cast<CameraAPI *>(cameraId);
     ActionInfo status = ACTION_ERROR_DESTROY;
@@ -158,6 +279,43 @@ static ActionInfo nativeFrameCallback(JNIEnv *env, jobject thiz, CAMERA_ID camer
     return status;
 }
 
+static ActionInfo nativeRoiCallback(JNIEnv *env, jobject thiz, CAMERA_ID cameraId, jobject roi_callback) {
+    auto *camera = reinterpret_cast<CameraAPI *>(cameraId);
+    ActionInfo status = ACTION_ERROR_DESTROY;
+    if (LIKELY(camera)) {
+        jobject _roi_callback = roi_callback ? env->NewGlobalRef(roi_callback) : NULL;
+        status = camera->setRoiCallback(env, _roi_callback);
+        if (status != ACTION_SUCCESS && _roi_callback) {
+            env->DeleteGlobalRef(_roi_callback);
+        }
+    }
+    LOGD(TAG, "camera->setRoiCallback(): %d", status);
+    return status;
+}
+
+static ActionInfo nativeStreamCallback(JNIEnv *env, jobject thiz, CAMERA_ID cameraId, jobject stream_callback) {
+    auto *camera = reinterpret_cast<CameraAPI *>(cameraId);
+    ActionInfo status = ACTION_ERROR_DESTROY;
+    if (LIKELY(camera)) {
+        jobject _stream_callback = stream_callback ? env->NewGlobalRef(stream_callback) : NULL;
+        status = camera->setStreamCallback(env, _stream_callback);
+        if (status != ACTION_SUCCESS && _stream_callback) {
+            env->DeleteGlobalRef(_stream_callback);
+        }
+    }
+    LOGD(TAG, "camera->setStreamCallback(): %d", status);
+    return status;
+}
+
+static ActionInfo nativeSetRoi(JNIEnv *env, jobject thiz, CAMERA_ID cameraId, jint x, jint y, jint width, jint height) {
+    auto *camera = reinterpret_cast<CameraAPI *>(cameraId);
+    ActionInfo status = ACTION_ERROR_DESTROY;
+    if (LIKELY(camera)) {
+        status = camera->setRoi(x, y, width, height);
+    }
+    return status;
+}
+
 static ActionInfo nativePreview(JNIEnv *env, jobject thiz, CAMERA_ID cameraId, jobject surface) {
     auto *camera = reinterpret_cast<CameraAPI *>(cameraId);
     ActionInfo status = ACTION_ERROR_DESTROY;
@@ -188,6 +346,24 @@ static ActionInfo nativeStop(JNIEnv *env, jobject thiz, CAMERA_ID cameraId) {
     return status;
 }
 
+static ActionInfo nativeReconfigure(JNIEnv *env, jobject thiz, CAMERA_ID cameraId, jint width, jint height,
+                                    jint frame_format, jint fps) {
+    auto *camera = reinterpret_cast<CameraAPI *>(cameraId);
+    ActionInfo status = ACTION_ERROR_DESTROY;
+    if (LIKELY(camera)) {
+        status = camera->reconfigure(width, height, frame_format, fps);
+    }
+    LOGD(TAG, "camera->reconfigure(): %d", status);
+    return status;
+}
+
+static void nativeWarmStandby(JNIEnv *env, jobject thiz, CAMERA_ID cameraId, jboolean enable) {
+    auto *camera = reinterpret_cast<CameraAPI *>(cameraId);
+    if (LIKELY(camera)) {
+        camera->setWarmStandby(enable);
+    }
+}
+
 static ActionInfo nativeDestroy(JNIEnv *env, jobject thiz, CAMERA_ID cameraId) {
     auto *camera = reinterpret_cast<CameraAPI *>(cameraId);
     setFieldLong(env, thiz, OBJECT_ID, 0);
@@ -218,26 +394,238 @@ static void nativeSaveDebugFrame(JNIEnv *env, jobject thiz, CAMERA_ID cameraId,
     }
 }
 
+static ActionInfo nativeStartStreamCapture(JNIEnv *env, jobject thiz, CAMERA_ID cameraId, jstring filePath) {
+    auto *camera = reinterpret_cast<CameraAPI *>(cameraId);
+    ActionInfo status = ACTION_ERROR_DESTROY;
+    if (LIKELY(camera)) {
+        if (filePath == nullptr) {
+            LOGE(TAG, "nativeStartStreamCapture: filePath is null");
+            return ACTION_ERROR_INVALID_PATH;
+        }
+        const char* path = env->GetStringUTFChars(filePath, nullptr);
+        if (path != nullptr) {
+            status = camera->startStreamCapture(path);
+            env->ReleaseStringUTFChars(filePath, path);
+        } else {
+            status = ACTION_ERROR_INVALID_PATH;
+        }
+    }
+    LOGD(TAG, "camera->startStreamCapture(): %d", status);
+    return status;
+}
+
+static ActionInfo nativeStopStreamCapture(JNIEnv *env, jobject thiz, CAMERA_ID cameraId) {
+    auto *camera = reinterpret_cast<CameraAPI *>(cameraId);
+    ActionInfo status = ACTION_ERROR_DESTROY;
+    if (LIKELY(camera)) {
+        status = camera->stopStreamCapture();
+    }
+    LOGD(TAG, "camera->stopStreamCapture(): %d", status);
+    return status;
+}
+
+static void nativeSetLogLevel(JNIEnv *env, jclass clazz, jint level, jint sampleInterval, jint slowFrameUs) {
+    LogControl::set(level, sampleInterval > 0 ? sampleInterval : 0, slowFrameUs > 0 ? slowFrameUs : 0);
+    LOGD(TAG, "nativeSetLogLevel: level=%d, sampleInterval=%d, slowFrameUs=%d", level, sampleInterval, slowFrameUs);
+}
+
+static jboolean nativeSetTraceEnabled(JNIEnv *env, jclass clazz, jboolean enable) {
+    bool ret = Trace::setEnabled(enable);
+    LOGD(TAG, "nativeSetTraceEnabled: enable=%d, ret=%d", enable, ret);
+    return (jboolean) ret;
+}
+
+static std::mutex deviceLock;
+static jobject deviceCallback = nullptr;
+static jmethodID deviceAttachedId = nullptr;
+static jmethodID deviceDetachedId = nullptr;
+
+/**
+ * 设备监听线程回调 Java，插拔事件很少，每次回调临时 attach/detach
+ */
+static void onDeviceChanged(bool attached, const DeviceNode &node) {
+    JavaVM *vm = getVM();
+    JNIEnv *env = nullptr;
+    bool attachThread = false;
+    if (JNI_OK != vm->GetEnv(reinterpret_cast<void **>(&env), JNI_VERSION_1_6)) {
+        if (JNI_OK != vm->AttachCurrentThread(&env, NULL)) return;
+        attachThread = true;
+    }
+    jobject callback = nullptr;
+    jmethodID method = nullptr;
+    {
+        std::lock_guard<std::mutex> guard(deviceLock);
+        if (deviceCallback) {
+            //局部引用保证回调期间被替换也不会失效
+            callback = env->NewLocalRef(deviceCallback);
+            method = attached ? deviceAttachedId : deviceDetachedId;
+        }
+    }
+    if (callback) {
+        char path[32];
+        snprintf(path, sizeof(path), "/dev/video%d", node.index);
+        jstring devicePath = env->NewStringUTF(path);
+        env->CallVoidMethod(callback, method, devicePath, (jint) node.vid, (jint) node.pid);
+        if (env->ExceptionCheck()) {
+            LOGE(TAG, "onDeviceChanged: callback exception");
+            env->ExceptionDescribe();
+            env->ExceptionClear();
+        }
+        env->DeleteLocalRef(devicePath);
+        env->DeleteLocalRef(callback);
+    }
+    if (attachThread) vm->DetachCurrentThread();
+}
+
+static void nativeSetCapabilityCacheDir(JNIEnv *env, jclass clazz, jstring directory) {
+    const char *dir = directory ? env->GetStringUTFChars(directory, nullptr) : nullptr;
+    CapabilityCache::setDirectory(dir);
+    LOGD(TAG, "nativeSetCapabilityCacheDir: %s", dir ? dir : "null");
+    if (dir) env->ReleaseStringUTFChars(directory, dir);
+}
+
+static jint nativePrewarmDecoder(JNIEnv *env, jclass clazz, jint width, jint height) {
+    int ret = DecoderCache::prewarm(width, height, 0);
+    LOGD(TAG, "nativePrewarmDecoder: %dx%d, %d", width, height, ret);
+    return ret;
+}
+
+static void nativeClearDecoderCache(JNIEnv *env, jclass clazz) {
+    DecoderCache::clear();
+}
+
+static void nativeSetDeviceCallback(JNIEnv *env, jclass clazz, jobject callback) {
+    {
+        std::lock_guard<std::mutex> guard(deviceLock);
+        if (deviceCallback) {
+            env->DeleteGlobalRef(deviceCallback);
+            deviceCallback = nullptr;
+        }
+        if (callback) {
+            jclass cls = env->GetObjectClass(callback);
+            deviceAttachedId = env->GetMethodID(cls, "onDeviceAttached", "(Ljava/lang/String;II)V");
+            deviceDetachedId = env->GetMethodID(cls, "onDeviceDetached", "(Ljava/lang/String;II)V");
+            env->DeleteLocalRef(cls);
+            deviceCallback = env->NewGlobalRef(callback);
+        }
+    }
+    DeviceRegistry::instance().setListener(callback ? onDeviceChanged : nullptr);
+    LOGD(TAG, "nativeSetDeviceCallback: %s", callback ? "set" : "clear");
+}
+
+static jobjectArray nativeGetDevices(JNIEnv *env, jclass clazz) {
+    std::vector<DeviceNode> nodes;
+    DeviceRegistry::instance().snapshot(nodes);
+    jclass cls = env->FindClass("[I");
+    jobjectArray objArr = env->NewObjectArray(nodes.size(), cls, nullptr);
+    env->DeleteLocalRef(cls);
+    for (size_t i = 0; i < nodes.size(); i++) {
+        jint device[3] = {nodes[i].index, nodes[i].vid, nodes[i].pid};
+        jintArray arr = env->NewIntArray(3);
+        env->SetIntArrayRegion(arr, 0, 3, device);
+        env->SetObjectArrayElement(objArr, i, arr);
+        env->DeleteLocalRef(arr);
+    }
+    return objArr;
+}
+
 static const JNINativeMethod METHODS[] = {
         {"nativeInit",               "()J",                                 (void *) nativeInit},
         {"nativeCreate",             "(JII)I",                              (void *) nativeCreate},
         {"nativeCreateByPath",       "(JLjava/lang/String;)I",              (void *) nativeCreateByPath},
+        {"nativeCreateByReplay",     "(JLjava/lang/String;ZZ)I",            (void *) nativeCreateByReplay},
         {"nativeAutoExposure",       "(JZ)I",                               (void *) nativeAutoExposure},
         {"nativeSetExposure",        "(JI)I",                               (void *) nativeSetExposure},
         {"nativeFrameCallback",      "(JLcom/hsj/camera/IFrameCallback;)I", (void *) nativeFrameCallback},
         {"nativeSupportSize",        "(J)[[I",                              (void *) nativeSupportSize},
+        {"nativeCapabilities",       "(J)[[I",                              (void *) nativeCapabilities},
         {"nativeFrameSize",          "(JIII)I",                             (void *) nativeFrameSize},
+        {"nativeFrameSizeAuto",      "(JIII)[I",                            (void *) nativeFrameSizeAuto},
+        {"nativeFrameRate",          "(JI)I",                               (void *) nativeFrameRate},
+        {"nativeGetFrameRate",       "(J)I",                                (void *) nativeGetFrameRate},
+        {"nativeFrameCapability",    "(J)[I",                               (void *) nativeFrameCapability},
         {"nativeGetActualFrameSize", "(J)[I",                               (void *) nativeGetActualFrameSize},
+        {"nativeGetPixelFormat",     "(J)I",                                (void *) nativeGetPixelFormat},
+        {"nativeRoiCallback",        "(JLcom/hsj/camera/IRoiCallback;)I",   (void *) nativeRoiCallback},
+        {"nativeSetRoi",             "(JIIII)I",                            (void *) nativeSetRoi},
+        {"nativeStreamCallback",     "(JLcom/hsj/camera/IStreamCallback;)I", (void *) nativeStreamCallback},
         {"nativePreview",            "(JLandroid/view/Surface;)I",          (void *) nativePreview},
         {"nativeStart",              "(J)I",                                (void *) nativeStart},
         {"nativeStop",               "(J)I",                                (void *) nativeStop},
+        {"nativeReconfigure",        "(JIIII)I",                            (void *) nativeReconfigure},
+        {"nativeWarmStandby",        "(JZ)V",                               (void *) nativeWarmStandby},
         {"nativeDestroy",            "(J)I",                                (void *) nativeDestroy},
         {"nativeSaveDebugFrame",     "(JLjava/lang/String;)V",              (void *) nativeSaveDebugFrame},
+        {"nativeStartStreamCapture", "(JLjava/lang/String;)I",              (void *) nativeStartStreamCapture},
+        {"nativeStopStreamCapture",  "(J)I",                                (void *) nativeStopStreamCapture},
+        {"nativeSetLogLevel",        "(III)V",                              (void *) nativeSetLogLevel},
+        {"nativeSetTraceEnabled",    "(Z)Z",                                (void *) nativeSetTraceEnabled},
+        {"nativeSetDeviceCallback",  "(Lcom/hsj/camera/IDeviceCallback;)V",  (void *) nativeSetDeviceCallback},
+        {"nativeGetDevices",         "()[[I",                               (void *) nativeGetDevices},
+        {"nativeSetCapabilityCacheDir", "(Ljava/lang/String;)V",            (void *) nativeSetCapabilityCacheDir},
+        {"nativePrewarmDecoder",     "(II)I",                               (void *) nativePrewarmDecoder},
+        {"nativeClearDecoderCache",  "()V",                                 (void *) nativeClearDecoderCache},
 };
 
-jint registerAPI(JNIEnv *env){
-    jclass clazz = env->FindClass(CLASS_NAME);
+//======================================JpegEncoderPool=============================================
+
+static jlong nativeEncoderCreate(JNIEnv *env, jclass clazz, jint maxCount) {
+    auto *pool = new JpegEncoderPool(maxCount);
+    return reinterpret_cast<jlong>(pool);
+}
+
+static jint nativeEncoderBufferSize(JNIEnv *env, jclass clazz, jint width, jint height, jint pixelFormat) {
+    unsigned long size = JpegEncoderPool::bufferSize(width, height, (PixelFormat) pixelFormat);
+    return size > INT32_MAX ? 0 : (jint) size;
+}
+
+static jint nativeEncoderEncode(JNIEnv *env, jclass clazz, jlong poolId, jobject frame, jint width, jint height,
+                                jint pixelFormat, jint quality, jobject jpeg) {
+    auto *pool = reinterpret_cast<JpegEncoderPool *>(poolId);
+    auto *data = (const uint8_t *) env->GetDirectBufferAddress(frame);
+    auto *out = (uint8_t *) env->GetDirectBufferAddress(jpeg);
+    if (UNLIKELY(pool == NULL || data == NULL || out == NULL)) {
+        LOGE(TAG, "nativeEncoderEncode: pool or buffer is null");
+        return -1;
+    }
+    const unsigned long capacity = (unsigned long) env->GetDirectBufferCapacity(jpeg);
+    JpegEncoder *encoder = pool->acquire();
+    if (encoder == NULL) {
+        //编码器都在使用中，丢弃本帧而不是阻塞调用线程
+        return -2;
+    }
+    long size = encoder->encode(data, width, height, (PixelFormat) pixelFormat, quality, out, capacity);
+    pool->release(encoder);
+    return (jint) size;
+}
+
+static void nativeEncoderDestroy(JNIEnv *env, jclass clazz, jlong poolId) {
+    auto *pool = reinterpret_cast<JpegEncoderPool *>(poolId);
+    SAFE_DELETE(pool)
+}
+
+static const JNINativeMethod ENCODER_METHODS[] = {
+        {"nativeCreate",     "(I)J",                                        (void *) nativeEncoderCreate},
+        {"nativeBufferSize", "(III)I",                                      (void *) nativeEncoderBufferSize},
+        {"nativeEncode",     "(JLjava/nio/ByteBuffer;IIIILjava/nio/ByteBuffer;)I", (void *) nativeEncoderEncode},
+        {"nativeDestroy",    "(J)V",                                        (void *) nativeEncoderDestroy},
+};
+
+static jint registerClass(JNIEnv *env, const char *className, const JNINativeMethod *methods, jint count) {
+    jclass clazz = env->FindClass(className);
     if (clazz == nullptr) return JNI_ERR;
-    jint ret = env->RegisterNatives(clazz, METHODS, sizeof(METHODS) / sizeof(JNINativeMethod));
-    return ret == JNI_OK ? JNI_VERSION_1_6 : ret;
+    jint ret = env->RegisterNatives(clazz, methods, count);
+    env->DeleteLocalRef(clazz);
+    return ret;
+}
+
+jint registerAPI(JNIEnv *env){
+    jint ret = registerClass(env, CLASS_NAME, METHODS, sizeof(METHODS) / sizeof(JNINativeMethod));
+    if (ret != JNI_OK) return ret;
+    //JpegEncoderPool 是可选功能，应用未使用时可能被 R8 移除，找不到时不影响相机库加载
+    if (JNI_OK != registerClass(env, ENCODER_CLASS_NAME, ENCODER_METHODS, sizeof(ENCODER_METHODS) / sizeof(JNINativeMethod))) {
+        if (env->ExceptionCheck()) env->ExceptionClear();
+        LOGW(TAG, "registerAPI: %s not registered, JPEG encoder pool unavailable", ENCODER_CLASS_NAME);
+    }
+    return JNI_VERSION_1_6;
 }
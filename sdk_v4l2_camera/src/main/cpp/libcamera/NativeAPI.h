@@ -16,6 +16,7 @@ typedef enum ActionInfo{
     ACTION_ERROR_NO_DEVICE        = 18,
     ACTION_ERROR_OPEN_FAIL        = 19,
     ACTION_ERROR_OPEN             = 20,
+    ACTION_ERROR_SET_FPS          = 21,
     ACTION_ERROR_AUTO_EXPOSURE    = 23,
     ACTION_ERROR_SET_EXPOSURE     = 24,
     ACTION_ERROR_GET_W_H          = 25,
@@ -28,6 +29,7 @@ typedef enum ActionInfo{
     ACTION_ERROR_CLOSE            = 50,
     ACTION_ERROR_DESTROY          = 60,
     ACTION_ERROR_RELEASE          = 70,
+    ACTION_ERROR_CAPTURE          = 80,
     ACTION_ERROR_INVALID_PATH     = 100,
     ACTION_ERROR_DEVICE_ACCESS    = 101
 }actionInfo;
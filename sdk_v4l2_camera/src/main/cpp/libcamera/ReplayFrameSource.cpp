@@ -0,0 +1,341 @@
+//
+// Created by Hsj on 2026/10/18.
+//
+
+#include "ReplayFrameSource.h"
+#include "StreamFile.h"
+#include <cstring>
+#include <cstdio>
+#include <cctype>
+#include <cerrno>
+#include <linux/videodev2.h>
+#include <fcntl.h>
+#include <unistd.h>
+#include <sys/stat.h>
+#include <sys/mman.h>
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+#define TAG "ReplayFrameSource"
+#define RAW_FRAME_INTERVAL_US 33333
+
+ReplayFrameSource::ReplayFrameSource(bool realtime, bool loop) :
+        realtime(realtime),
+        loop(loop),
+        fd(-1),
+        mapped(NULL),
+        mappedSize(0),
+        streamFile(false),
+        fileWidth(0),
+        fileHeight(0),
+        fileFormat(-1),
+        fileFps(0),
+        position(0),
+        sequence(0),
+        baseUs(0),
+        loopOffsetUs(0) {
+}
+
+ReplayFrameSource::~ReplayFrameSource() {
+    close();
+}
+
+//=======================================Private====================================================
+
+bool ReplayFrameSource::parseStreamFile() {
+    StreamFileHeader header;
+    if (mappedSize < sizeof(header)) return false;
+    memcpy(&header, mapped, sizeof(header));
+    if (0 != memcmp(header.magic, STREAM_FILE_MAGIC, sizeof(header.magic))) return false;
+    if (header.version > STREAM_FILE_VERSION) {
+        LOGW(TAG, "parseStreamFile: unsupported version %d", header.version);
+        return false;
+    }
+    fileWidth = header.width;
+    fileHeight = header.height;
+    fileFormat = header.frameFormat;
+    fileFps = header.fps;
+
+    //1-有索引：直接按索引定位帧头
+    StreamFrameHeader frame;
+    const size_t indexBytes = (size_t) header.frameCount * sizeof(StreamIndexEntry);
+    if (header.indexOffset != 0 && header.indexOffset + indexBytes <= mappedSize) {
+        const uint8_t *index = mapped + header.indexOffset;
+        for (uint32_t i = 0; i < header.frameCount; ++i) {
+            StreamIndexEntry entry;
+            memcpy(&entry, index + i * sizeof(entry), sizeof(entry));
+            if (entry.offset + sizeof(frame) > mappedSize) break;
+            memcpy(&frame, mapped + entry.offset, sizeof(frame));
+            size_t payload = entry.offset + sizeof(frame);
+            if (frame.sync != STREAM_FRAME_SYNC || payload + frame.bytes > mappedSize) break;
+            entries.push_back({payload, frame.bytes, frame.timestampUs});
+        }
+    }
+
+    //2-无索引或索引损坏：顺序扫描帧头
+    if (entries.empty()) {
+        size_t end = header.indexOffset != 0 && header.indexOffset <= mappedSize ? header.indexOffset : mappedSize;
+        size_t offset = sizeof(header);
+        while (offset + sizeof(frame) <= end) {
+            memcpy(&frame, mapped + offset, sizeof(frame));
+            size_t payload = offset + sizeof(frame);
+            if (frame.sync != STREAM_FRAME_SYNC || payload + frame.bytes > end) break;
+            entries.push_back({payload, frame.bytes, frame.timestampUs});
+            offset = payload + frame.bytes;
+        }
+    }
+    LOGD(TAG, "parseStreamFile: %dx%d, format=%d, fps=%d, frames=%zu (index=%s)", fileWidth, fileHeight,
+         fileFormat, header.fps, entries.size(), header.indexOffset != 0 ? "YES" : "NO");
+    return true;
+}
+
+void ReplayFrameSource::parseFileName(const char *path) {
+    //raw 文件名约定与 saveDebugFrame 一致：frame_{w}x{h}_{format}.raw
+    const char *name = strrchr(path, '/');
+    name = name ? name + 1 : path;
+    for (const char *p = name; *p; ++p) {
+        int width = 0, height = 0;
+        if (isdigit(*p) && (p == name || !isdigit(*(p - 1)))
+            && 2 == sscanf(p, "%dx%d", &width, &height) && width > 0 && height > 0) {
+            fileWidth = width;
+            fileHeight = height;
+            break;
+        }
+    }
+    if (strstr(name, "mjpeg") || strstr(name, "jpg")) {
+        fileFormat = FRAME_FORMAT_MJPEG;
+    } else if (strstr(name, "yuyv")) {
+        fileFormat = FRAME_FORMAT_YUYV;
+    } else if (strstr(name, "depth")) {
+        fileFormat = FRAME_FORMAT_DEPTH;
+    } else if (strstr(name, "nv12")) {
+        fileFormat = FRAME_FORMAT_NV12;
+    } else if (strstr(name, "nv16")) {
+        fileFormat = FRAME_FORMAT_NV16;
+    } else if (strstr(name, "grey")) {
+        fileFormat = FRAME_FORMAT_GREY;
+    } else if (strstr(name, "y10")) {
+        fileFormat = FRAME_FORMAT_Y10;
+    } else if (strstr(name, "y16")) {
+        fileFormat = FRAME_FORMAT_Y16;
+    } else if (strstr(name, "z16")) {
+        fileFormat = FRAME_FORMAT_Z16;
+    }
+    LOGD(TAG, "parseFileName: %s -> %dx%d, format=%d", name, fileWidth, fileHeight, fileFormat);
+}
+
+bool ReplayFrameSource::buildRawEntries(int width, int height, int frameFormat) {
+    entries.clear();
+    uint64_t timestampUs = 0;
+    if (isCompressedStream(frameFormat)) {
+        //裸 Annex-B 码流没有访问单元边界与时间戳，只支持录制的码流文件
+        LOGE(TAG, "buildRawEntries: format %d requires a stream file", frameFormat);
+        return false;
+    } else if (frameFormat == FRAME_FORMAT_MJPEG) {
+        //按 SOI(FFD8)/EOI(FFD9) 切分
+        size_t start = 0;
+        bool inFrame = false;
+        for (size_t i = 0; i + 1 < mappedSize; ++i) {
+            if (mapped[i] != 0xFF) continue;
+            if (!inFrame && mapped[i + 1] == 0xD8) {
+                start = i;
+                inFrame = true;
+            } else if (inFrame && mapped[i + 1] == 0xD9) {
+                entries.push_back({start, i + 2 - start, timestampUs});
+                timestampUs += RAW_FRAME_INTERVAL_US;
+                inFrame = false;
+                ++i;
+            }
+        }
+    } else {
+        const size_t frameBytes = packedFrameBytes(frameFormat, width, height);
+        for (size_t offset = 0; offset + frameBytes <= mappedSize; offset += frameBytes) {
+            entries.push_back({offset, frameBytes, timestampUs});
+            timestampUs += RAW_FRAME_INTERVAL_US;
+        }
+    }
+    LOGD(TAG, "buildRawEntries: %dx%d, format=%d, frames=%zu", width, height, frameFormat, entries.size());
+    return !entries.empty();
+}
+
+uint64_t ReplayFrameSource::replayTimestampUs(size_t index) const {
+    return baseUs + loopOffsetUs + (entries[index].timestampUs - entries[0].timestampUs);
+}
+
+//=======================================Public=====================================================
+
+ActionInfo ReplayFrameSource::open(const char *path) {
+    fd = ::open(path, O_RDONLY);
+    if (0 > fd) {
+        LOGE(TAG, "open: %s failed, %s", path, strerror(errno));
+        return (errno == EACCES || errno == EPERM) ? ACTION_ERROR_DEVICE_ACCESS : ACTION_ERROR_OPEN_FAIL;
+    }
+    struct stat st;
+    if (0 != fstat(fd, &st) || st.st_size <= 0) {
+        LOGE(TAG, "open: %s is empty", path);
+        close();
+        return ACTION_ERROR_OPEN;
+    }
+    mappedSize = (size_t) st.st_size;
+    void *addr = mmap(NULL, mappedSize, PROT_READ, MAP_PRIVATE, fd, 0);
+    if (MAP_FAILED == addr) {
+        LOGE(TAG, "open: mmap failed, %s", strerror(errno));
+        mappedSize = 0;
+        close();
+        return ACTION_ERROR_OPEN;
+    }
+    mapped = (uint8_t *) addr;
+    madvise(mapped, mappedSize, MADV_SEQUENTIAL);
+
+    streamFile = parseStreamFile();
+    if (streamFile && entries.empty()) {
+        LOGE(TAG, "open: %s has no frame", path);
+        close();
+        return ACTION_ERROR_OPEN;
+    } else if (!streamFile) {
+        parseFileName(path);
+    }
+    LOGD(TAG, "open: %s succeed (%s, realtime=%d, loop=%d)", path,
+         streamFile ? "stream" : "raw", realtime, loop);
+    return ACTION_SUCCESS;
+}
+
+bool ReplayFrameSource::setControl(uint32_t id, int32_t value) {
+    //回放没有相机控制，忽略
+    LOGD(TAG, "setControl: ignore 0x%08X=%d", id, value);
+    return true;
+}
+
+ActionInfo ReplayFrameSource::getCapabilities(std::vector<FrameCapability> &capabilities) {
+    if (fileWidth > 0 && fileHeight > 0) {
+        //与 V4L2FrameSource::setFormat 一致：深度帧按 YUYV 采集
+        FrameCapability capability{};
+        capability.pixelFormat = pixelFormatOf(fileFormat);
+        capability.flags = fileFormat == FRAME_FORMAT_MJPEG ? V4L2_FMT_FLAG_COMPRESSED : 0;
+        capability.sizeType = FRAME_SIZE_DISCRETE;
+        capability.width = fileWidth;
+        capability.height = fileHeight;
+        capability.intervalType = FRAME_INTERVAL_DISCRETE;
+        capability.intervals.push_back({1, (uint32_t) getFrameRate()});
+        capabilities.push_back(capability);
+    }
+    return ACTION_SUCCESS;
+}
+
+ActionInfo ReplayFrameSource::setFormat(int width, int height, int frameFormat) {
+    if (fileFormat >= 0 && fileFormat != frameFormat) {
+        LOGE(TAG, "setFormat: file format is %d, request %d", fileFormat, frameFormat);
+        return ACTION_ERROR_SET_W_H;
+    }
+    if (streamFile) {
+        if (width != fileWidth || height != fileHeight) {
+            LOGE(TAG, "setFormat: file size is %dx%d, request %dx%d", fileWidth, fileHeight, width, height);
+            return ACTION_ERROR_SET_W_H;
+        }
+    } else if (!buildRawEntries(width, height, frameFormat)) {
+        LOGE(TAG, "setFormat: no frame of %dx%d in file", width, height);
+        return ACTION_ERROR_SET_W_H;
+    }
+    fileWidth = width;
+    fileHeight = height;
+    fileFormat = frameFormat;
+    return ACTION_SUCCESS;
+}
+
+ActionInfo ReplayFrameSource::setFrameRate(int fps) {
+    //回放按文件原始帧间隔送帧，忽略
+    LOGD(TAG, "setFrameRate: ignore %d", fps);
+    return ACTION_SUCCESS;
+}
+
+int ReplayFrameSource::getFrameRate() {
+    return fileFps > 0 ? fileFps : 1000000 / RAW_FRAME_INTERVAL_US;
+}
+
+void ReplayFrameSource::setWarmStandby(bool enable) {
+    //帧数据直接来自文件映射，无缓冲区需要保留
+}
+
+ActionInfo ReplayFrameSource::streamOn() {
+    if (entries.empty()) {
+        LOGE(TAG, "streamOn: no frame");
+        return ACTION_ERROR_START;
+    }
+    position = 0;
+    sequence = 0;
+    loopOffsetUs = 0;
+    baseUs = timeMonotonicUs();
+    return ACTION_SUCCESS;
+}
+
+ActionInfo ReplayFrameSource::streamOff() {
+    position = 0;
+    return ACTION_SUCCESS;
+}
+
+FrameReadResult ReplayFrameSource::acquire(SourceFrame &frame, int timeoutMs) {
+    if (position >= entries.size()) {
+        if (!loop) return FRAME_READ_END;
+        //下一轮紧接上一轮最后一帧，间隔取平均帧间隔
+        const uint64_t span = entries.back().timestampUs - entries.front().timestampUs;
+        const size_t count = entries.size();
+        loopOffsetUs += span + (count > 1 ? span / (count - 1) : RAW_FRAME_INTERVAL_US);
+        position = 0;
+    }
+    const uint64_t timestampUs = replayTimestampUs(position);
+    if (realtime) {
+        const uint64_t now = timeMonotonicUs();
+        if (timestampUs > now) {
+            const uint64_t waitUs = timestampUs - now;
+            if (waitUs > (uint64_t) timeoutMs * 1000) {
+                usleep(timeoutMs * 1000);
+                return FRAME_READ_TIMEOUT;
+            }
+            usleep(waitUs);
+        }
+    }
+    const ReplayEntry &entry = entries[position];
+    frame.index = (int) position;
+    frame.data = mapped + entry.offset;
+    frame.bytes = entry.bytes;
+    //录制/raw 文件中的帧已是紧凑排列（行跨度 = 宽度），NV12/NV16 的 UV 紧跟 Y
+    const size_t ySize = (size_t) fileWidth * fileHeight;
+    if (isSemiPlanar(fileFormat) && entry.bytes > ySize) {
+        frame.planeCount = 2;
+        frame.planes[0] = {(uint8_t *) frame.data, (uint32_t) fileWidth, ySize};
+        frame.planes[1] = {(uint8_t *) frame.data + ySize, (uint32_t) fileWidth, entry.bytes - ySize};
+    } else {
+        frame.planeCount = 1;
+        const bool compressed = fileFormat == FRAME_FORMAT_MJPEG || isCompressedStream(fileFormat);
+        frame.planes[0] = {(uint8_t *) frame.data,
+                           (uint32_t) (compressed ? 0 : fileWidth * planeBytesPerPixel(fileFormat)), entry.bytes};
+    }
+    frame.timestampUs = timestampUs;
+    frame.sequence = sequence++;
+    ++position;
+    return FRAME_READ_SUCCESS;
+}
+
+void ReplayFrameSource::release(const SourceFrame &frame) {
+    //数据直接指向文件映射，无需归还
+}
+
+ActionInfo ReplayFrameSource::close() {
+    if (mapped) {
+        munmap(mapped, mappedSize);
+        mapped = NULL;
+    }
+    mappedSize = 0;
+    if (fd >= 0) {
+        ::close(fd);
+        fd = -1;
+    }
+    std::vector<ReplayEntry>().swap(entries);
+    return ACTION_SUCCESS;
+}
+
+#ifdef __cplusplus
+}  // extern "C"
+#endif
@@ -0,0 +1,69 @@
+//
+// Created by Hsj on 2026/10/18.
+//
+
+#ifndef ANDROID_CAMERA_V4L2_REPLAYFRAMESOURCE_H
+#define ANDROID_CAMERA_V4L2_REPLAYFRAMESOURCE_H
+
+#include "FrameSource.h"
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+struct ReplayEntry {
+    size_t offset;          //payload 偏移
+    size_t bytes;
+    uint64_t timestampUs;
+};
+
+/**
+ * 录制文件回放帧源：代替 V4L2 设备，用于无相机时的解码/渲染/回调压测
+ * 支持 StreamFile.h 流文件（带原始时间戳）和 raw 文件（saveDebugFrame 输出或多帧拼接，按 30fps 生成时间戳）
+ * realtime 按原始帧间隔送帧，否则以最快速度送帧；时间戳都平移到 CLOCK_MONOTONIC 并保持原始间隔
+ */
+class ReplayFrameSource : public IFrameSource {
+private:
+    const bool realtime;
+    const bool loop;
+    int fd;
+    uint8_t *mapped;
+    size_t mappedSize;
+    bool streamFile;
+    int fileWidth;
+    int fileHeight;
+    int fileFormat;
+    int fileFps;
+    std::vector<ReplayEntry> entries;
+    size_t position;
+    uint32_t sequence;
+    uint64_t baseUs;        //第一帧对应的 CLOCK_MONOTONIC
+    uint64_t loopOffsetUs;  //循环回放累计的时间偏移
+
+    bool parseStreamFile();
+    void parseFileName(const char *path);
+    bool buildRawEntries(int width, int height, int frameFormat);
+    uint64_t replayTimestampUs(size_t index) const;
+
+public:
+    ReplayFrameSource(bool realtime, bool loop);
+    ~ReplayFrameSource() override;
+    ActionInfo open(const char *path) override;
+    bool setControl(uint32_t id, int32_t value) override;
+    ActionInfo getCapabilities(std::vector<FrameCapability> &capabilities) override;
+    ActionInfo setFormat(int width, int height, int frameFormat) override;
+    ActionInfo setFrameRate(int fps) override;
+    int getFrameRate() override;
+    void setWarmStandby(bool enable) override;
+    ActionInfo streamOn() override;
+    ActionInfo streamOff() override;
+    FrameReadResult acquire(SourceFrame &frame, int timeoutMs) override;
+    void release(const SourceFrame &frame) override;
+    ActionInfo close() override;
+};
+
+#ifdef __cplusplus
+}  // extern "C"
+#endif
+
+#endif //ANDROID_CAMERA_V4L2_REPLAYFRAMESOURCE_H
@@ -0,0 +1,156 @@
+//
+// Created by Hsj on 2026/10/18.
+//
+
+#include "RoiDecoder.h"
+#include <cstring>
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+#define TAG "RoiDecoder"
+
+static inline uint64_t packRoi(int x, int y, int width, int height) {
+    return (uint64_t) (x & 0xFFFF) | ((uint64_t) (y & 0xFFFF) << 16)
+           | ((uint64_t) (width & 0xFFFF) << 32) | ((uint64_t) (height & 0xFFFF) << 48);
+}
+
+RoiDecoder::RoiDecoder() :
+        handle(NULL),
+        roi(0),
+        cropBuffer(NULL),
+        cropCapacity(0),
+        outBuffer(NULL),
+        outCapacity(0),
+        warned(false) {
+}
+
+RoiDecoder::~RoiDecoder() {
+    if (cropBuffer) {
+        tjFree(cropBuffer);
+        cropBuffer = NULL;
+    }
+    if (outBuffer) {
+        tjFree(outBuffer);
+        outBuffer = NULL;
+    }
+    if (handle) {
+        tjDestroy(handle);
+        handle = NULL;
+    }
+}
+
+//=======================================Private====================================================
+
+bool RoiDecoder::ensureBuffers(int width, int height, int subSample) {
+    //裁剪结果按最坏情况预分配，配合 TJFLAG_NOREALLOC 避免 turbojpeg 内部重新分配
+    const unsigned long cropSize = tjBufSize(width, height, subSample);
+    if (cropSize > cropCapacity) {
+        if (cropBuffer) tjFree(cropBuffer);
+        cropBuffer = tjAlloc((int) cropSize);
+        cropCapacity = cropBuffer ? cropSize : 0;
+    }
+    const size_t outSize = tjBufSizeYUV2(width, 1, height, subSample);
+    if (outSize > outCapacity) {
+        if (outBuffer) tjFree(outBuffer);
+        outBuffer = tjAlloc((int) outSize);
+        outCapacity = outBuffer ? outSize : 0;
+    }
+    return cropBuffer && outBuffer;
+}
+
+//=======================================Public=====================================================
+
+void RoiDecoder::setRoi(int x, int y, int width, int height) {
+    if (x < 0 || y < 0 || width <= 0 || height <= 0) {
+        roi.store(0, std::memory_order_relaxed);
+    } else {
+        roi.store(packRoi(x, y, width, height), std::memory_order_relaxed);
+    }
+}
+
+bool RoiDecoder::isEnabled() const {
+    return 0 != (roi.load(std::memory_order_relaxed) >> 32);
+}
+
+uint8_t *RoiDecoder::decode(const void *jpeg, size_t jpegBytes, RoiRect &rect, size_t &outBytes) {
+    const uint64_t value = roi.load(std::memory_order_relaxed);
+    const int x = (int) (value & 0xFFFF);
+    const int y = (int) ((value >> 16) & 0xFFFF);
+    const int w = (int) ((value >> 32) & 0xFFFF);
+    const int h = (int) ((value >> 48) & 0xFFFF);
+    if (w == 0 || h == 0) return NULL;
+    if (handle == NULL) {
+        //transform 句柄同时支持解压
+        handle = tjInitTransform();
+        if (handle == NULL) {
+            LOGE(TAG, "decode: tjInitTransform failed, %s", tjGetErrorStr2(NULL));
+            return NULL;
+        }
+    }
+
+    //1-读取帧头，按 MCU 对齐裁剪起点
+    auto *raw = (unsigned char *) jpeg;
+    int frameW = 0, frameH = 0, subSample = 0, colorSpace = 0;
+    if (0 != tjDecompressHeader3(handle, raw, jpegBytes, &frameW, &frameH, &subSample, &colorSpace)) {
+        return NULL;
+    }
+    if (subSample != TJSAMP_422) {
+        if (!warned) {
+            warned = true;
+            LOGW(TAG, "decode: only support 4:2:2 MJPEG, subSample=%d", subSample);
+        }
+        return NULL;
+    }
+    const int mcuW = tjMCUWidth[subSample];
+    const int mcuH = tjMCUHeight[subSample];
+    const int left = x < frameW ? x / mcuW * mcuW : -1;
+    const int top = y < frameH ? y / mcuH * mcuH : -1;
+    if (left < 0 || top < 0) return NULL;
+    const int right = x + w < frameW ? x + w : frameW;
+    const int bottom = y + h < frameH ? y + h : frameH;
+    rect.x = left;
+    rect.y = top;
+    rect.width = right - left;
+    rect.height = bottom - top;
+    if (!ensureBuffers(rect.width, rect.height, subSample)) {
+        LOGE(TAG, "decode: alloc buffer failed, %dx%d", rect.width, rect.height);
+        return NULL;
+    }
+
+    //2-无损裁剪：只保留覆盖 ROI 的 MCU，跳过其余区域的反量化/IDCT
+    unsigned char *crop = raw;
+    unsigned long cropBytes = jpegBytes;
+    if (rect.width != frameW || rect.height != frameH) {
+        tjtransform transform;
+        memset(&transform, 0, sizeof(transform));
+        transform.r.x = rect.x;
+        transform.r.y = rect.y;
+        transform.r.w = rect.width;
+        transform.r.h = rect.height;
+        transform.op = TJXOP_NONE;
+        transform.options = TJXOPT_CROP;
+        crop = cropBuffer;
+        cropBytes = cropCapacity;
+        if (0 != tjTransform(handle, raw, jpegBytes, 1, &crop, &cropBytes, &transform, TJFLAG_NOREALLOC)
+            && TJERR_WARNING != tjGetErrorCode(handle)) {
+            LOGW(TAG, "decode: tjTransform failed, %s", tjGetErrorStr2(handle));
+            return NULL;
+        }
+    }
+
+    //3-解码裁剪后的小图
+    //数据不完整等警告仍输出已解码部分，与软解一致
+    if (0 != tjDecompressToYUV2(handle, crop, cropBytes, outBuffer, rect.width, 1, rect.height, 0)
+        && TJERR_WARNING != tjGetErrorCode(handle)) {
+        LOGW(TAG, "decode: tjDecompressToYUV2 failed, %s", tjGetErrorStr2(handle));
+        return NULL;
+    }
+    outBytes = tjBufSizeYUV2(rect.width, 1, rect.height, subSample);
+    return outBuffer;
+}
+
+#ifdef __cplusplus
+}  // extern "C"
+#endif
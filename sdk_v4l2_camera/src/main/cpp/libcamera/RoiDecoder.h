@@ -0,0 +1,59 @@
+//
+// Created by Hsj on 2026/10/18.
+//
+
+#ifndef ANDROID_CAMERA_V4L2_ROIDECODER_H
+#define ANDROID_CAMERA_V4L2_ROIDECODER_H
+
+#include <atomic>
+#include <turbojpeg.h>
+#include "Common.h"
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+struct RoiRect {
+    int x;
+    int y;
+    int width;
+    int height;
+};
+
+/**
+ * MJPEG 感兴趣区域解码：tjTransform 无损裁剪（TJXOP_NONE + TJXOPT_CROP）出覆盖 ROI 的 MCU 块，
+ * 只对裁剪后的小图做 IDCT/上采样，输出 YUV422 planar（紧密排列）
+ * 裁剪起点按 MCU 对齐向左上扩展，实际区域通过 rect 返回
+ * ROI 以一个 64 位原子量保存，可在采集过程中随时修改
+ */
+class RoiDecoder {
+private:
+    tjhandle handle;
+    std::atomic<uint64_t> roi;
+    unsigned char *cropBuffer;
+    unsigned long cropCapacity;
+    uint8_t *outBuffer;
+    size_t outCapacity;
+    bool warned;
+
+    bool ensureBuffers(int width, int height, int subSample);
+
+public:
+    RoiDecoder();
+    ~RoiDecoder();
+    /**
+     * @param width 为 0 时关闭 ROI 解码
+     */
+    void setRoi(int x, int y, int width, int height);
+    bool isEnabled() const;
+    /**
+     * @return YUV422 planar 数据，ROI 关闭、超出画面或解码失败返回 NULL
+     */
+    uint8_t *decode(const void *jpeg, size_t jpegBytes, RoiRect &rect, size_t &outBytes);
+};
+
+#ifdef __cplusplus
+}  // extern "C"
+#endif
+
+#endif //ANDROID_CAMERA_V4L2_ROIDECODER_H
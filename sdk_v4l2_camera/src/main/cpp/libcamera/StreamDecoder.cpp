@@ -0,0 +1,145 @@
+//
+// Created by Hsj on 2026/10/18.
+//
+
+#include "StreamDecoder.h"
+#include <cstring>
+#include <vector>
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+#define TAG "StreamDecoder"
+#define MIME_AVC "video/avc"
+#define MIME_HEVC "video/hevc"
+#define TIME_OUT_US 3000
+#define DEFAULT_FRAME_RATE 30
+
+StreamDecoder::StreamDecoder(bool hevc, int width, int height, int frameRate, ANativeWindow *window) :
+        hevc(hevc),
+        width(width),
+        height(height),
+        frameRate(frameRate > 0 ? frameRate : DEFAULT_FRAME_RATE),
+        window(window),
+        codec(NULL),
+        waitKeyFrame(true) {
+}
+
+StreamDecoder::~StreamDecoder() {
+    release();
+    if (window) {
+        ANativeWindow_release(window);
+        window = NULL;
+    }
+}
+
+//=======================================Private====================================================
+
+bool StreamDecoder::configure(const NalParser &parser) {
+    const char *mime = hevc ? MIME_HEVC : MIME_AVC;
+    codec = AMediaCodec_createDecoderByType(mime);
+    if (codec == NULL) {
+        LOGE(TAG, "configure: no decoder for %s", mime);
+        return false;
+    }
+    std::vector<uint8_t> csd0, csd1;
+    parser.getConfig(csd0, csd1);
+    AMediaFormat *format = AMediaFormat_new();
+    AMediaFormat_setString(format, AMEDIAFORMAT_KEY_MIME, mime);
+    AMediaFormat_setInt32(format, AMEDIAFORMAT_KEY_WIDTH, width);
+    AMediaFormat_setInt32(format, AMEDIAFORMAT_KEY_HEIGHT, height);
+    AMediaFormat_setInt32(format, AMEDIAFORMAT_KEY_FRAME_RATE, frameRate);
+    //AMEDIAFORMAT_KEY_CSD_0 需要 API 28，直接用键名
+    AMediaFormat_setBuffer(format, "csd-0", csd0.data(), csd0.size());
+    if (!csd1.empty()) AMediaFormat_setBuffer(format, "csd-1", csd1.data(), csd1.size());
+    media_status_t status = AMediaCodec_configure(codec, format, window, NULL, 0);
+    if (AMEDIA_OK == status) status = AMediaCodec_start(codec);
+    AMediaFormat_delete(format);
+    if (AMEDIA_OK != status) {
+        LOGE(TAG, "configure: %s %dx%d failed, %d", mime, width, height, status);
+        AMediaCodec_delete(codec);
+        codec = NULL;
+        return false;
+    }
+    LOGD(TAG, "configure: %s %dx%d@%d, csd=%zu/%zu", mime, width, height, frameRate, csd0.size(), csd1.size());
+    return true;
+}
+
+void StreamDecoder::release() {
+    if (codec) {
+        AMediaCodec_stop(codec);
+        AMediaCodec_delete(codec);
+        codec = NULL;
+    }
+}
+
+void StreamDecoder::drain() {
+    AMediaCodecBufferInfo info;
+    ssize_t index;
+    //有几帧输出就渲染几帧，releaseOutputBuffer(render=true) 由 Surface 显示
+    while ((index = AMediaCodec_dequeueOutputBuffer(codec, &info, 0)) != AMEDIACODEC_INFO_TRY_AGAIN_LATER) {
+        if (index >= 0) {
+            AMediaCodec_releaseOutputBuffer(codec, index, info.size != 0);
+        } else if (index == AMEDIACODEC_INFO_OUTPUT_FORMAT_CHANGED) {
+            AMediaFormat *format = AMediaCodec_getOutputFormat(codec);
+            LOGD(TAG, "drain: output format %s", AMediaFormat_toString(format));
+            AMediaFormat_delete(format);
+        } else if (index != AMEDIACODEC_INFO_OUTPUT_BUFFERS_CHANGED) {
+            LOGW(TAG, "drain: unexpected info code: %zd", index);
+            break;
+        }
+    }
+}
+
+//=======================================Public=====================================================
+
+void StreamDecoder::decode(const void *data, size_t size, uint64_t timestampUs, bool keyFrame, bool configChanged,
+                           const NalParser &parser) {
+    //参数集变化（如分辨率切换）：旧解码器无法继续，等关键帧重建
+    if (configChanged && codec) {
+        release();
+        waitKeyFrame = true;
+    }
+    if (waitKeyFrame) {
+        if (!keyFrame || !parser.hasConfig()) return;
+        if (codec == NULL && !configure(parser)) return;
+        waitKeyFrame = false;
+    }
+    if (codec == NULL) return;
+    ssize_t index = AMediaCodec_dequeueInputBuffer(codec, TIME_OUT_US);
+    if (index >= 0) {
+        size_t capacity = 0;
+        uint8_t *input = AMediaCodec_getInputBuffer(codec, index, &capacity);
+        if (input && size <= capacity) {
+            memcpy(input, data, size);
+            AMediaCodec_queueInputBuffer(codec, index, 0, size, timestampUs, 0);
+        } else {
+            LOGW(TAG, "decode: access unit %zu > input buffer %zu", size, capacity);
+            AMediaCodec_queueInputBuffer(codec, index, 0, 0, timestampUs, 0);
+        }
+    } else {
+        //输入满时丢弃这一帧，之后的 P 帧会花屏到下一个关键帧
+        LOGW(TAG, "decode: no available input buffer");
+        waitKeyFrame = true;
+    }
+    drain();
+}
+
+void StreamDecoder::reset() {
+    if (codec) AMediaCodec_flush(codec);
+    waitKeyFrame = true;
+}
+
+void StreamDecoder::resize(bool hevc, int width, int height, int frameRate) {
+    release();
+    this->hevc = hevc;
+    this->width = width;
+    this->height = height;
+    this->frameRate = frameRate > 0 ? frameRate : DEFAULT_FRAME_RATE;
+    waitKeyFrame = true;
+}
+
+#ifdef __cplusplus
+}  // extern "C"
+#endif
@@ -0,0 +1,56 @@
+//
+// Created by Hsj on 2026/10/18.
+//
+
+#ifndef ANDROID_CAMERA_V4L2_STREAMDECODER_H
+#define ANDROID_CAMERA_V4L2_STREAMDECODER_H
+
+#include <media/NdkMediaCodec.h>
+#include <android/native_window.h>
+#include "Common.h"
+#include "NalParser.h"
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/**
+ * H.264/HEVC 预览解码：MediaCodec 直接输出到预览 Surface（不取回 YUV，不经过 CPU 转换）
+ * 等到第一个带参数集的关键帧才配置解码器（csd-0/csd-1 来自 NalParser），之前的帧丢弃；参数集变化时重建解码器
+ */
+class StreamDecoder {
+private:
+    bool hevc;
+    int width;
+    int height;
+    int frameRate;
+    ANativeWindow *window;
+    AMediaCodec *codec;
+    bool waitKeyFrame;
+    bool configure(const NalParser &parser);
+    void release();
+    void drain();
+
+public:
+    /**
+     * @param window 预览窗口，由 StreamDecoder 持有并在析构时释放
+     */
+    StreamDecoder(bool hevc, int width, int height, int frameRate, ANativeWindow *window);
+    ~StreamDecoder();
+    void decode(const void *data, size_t size, uint64_t timestampUs, bool keyFrame, bool configChanged,
+                const NalParser &parser);
+    /**
+     * 重新开始采集：清空解码器中的帧，从下一个关键帧开始解码
+     */
+    void reset();
+    /**
+     * 重配分辨率/帧率：释放解码器，等下一个带参数集的关键帧按新尺寸重新配置，窗口保留
+     */
+    void resize(bool hevc, int width, int height, int frameRate);
+};
+
+#ifdef __cplusplus
+}  // extern "C"
+#endif
+
+#endif //ANDROID_CAMERA_V4L2_STREAMDECODER_H
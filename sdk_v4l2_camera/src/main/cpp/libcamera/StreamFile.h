@@ -0,0 +1,57 @@
+//
+// Created by Hsj on 2026/10/18.
+//
+
+#ifndef ANDROID_CAMERA_V4L2_STREAMFILE_H
+#define ANDROID_CAMERA_V4L2_STREAMFILE_H
+
+#include <stdint.h>
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/*
+ * 录制流文件（.v4l2s），小端：
+ * StreamFileHeader | (StreamFrameHeader + payload)* | [StreamIndexEntry * frameCount]
+ * indexOffset 为 0 表示没有索引（录制中断），读取时按帧头顺序扫描
+ * 未压缩格式的 payload 为紧凑排列（行跨度 = width * 每像素字节数），驱动行对齐的填充在录制时去掉
+ */
+#define STREAM_FILE_MAGIC      "V4L2STRM"
+#define STREAM_FILE_VERSION    1
+#define STREAM_FRAME_SYNC      0x4D415246  //"FRAM"
+
+#pragma pack(push, 1)
+
+typedef struct StreamFileHeader {
+    char magic[8];
+    uint16_t version;
+    uint16_t frameFormat;   //FrameFormat
+    uint16_t width;
+    uint16_t height;
+    uint16_t fps;
+    uint16_t reserved;
+    uint32_t frameCount;
+    uint64_t indexOffset;
+} StreamFileHeader;
+
+typedef struct StreamFrameHeader {
+    uint32_t sync;
+    uint32_t sequence;
+    uint32_t bytes;         //payload 长度（V4L2 bytesused）
+    uint32_t flags;
+    uint64_t timestampUs;   //采集时间戳（CLOCK_MONOTONIC）
+} StreamFrameHeader;
+
+typedef struct StreamIndexEntry {
+    uint64_t offset;        //StreamFrameHeader 在文件中的偏移
+    uint64_t timestampUs;
+} StreamIndexEntry;
+
+#pragma pack(pop)
+
+#ifdef __cplusplus
+}  // extern "C"
+#endif
+
+#endif //ANDROID_CAMERA_V4L2_STREAMFILE_H
@@ -0,0 +1,216 @@
+//
+// Created by Hsj on 2026/10/18.
+//
+
+#include "StreamWriter.h"
+#include "Trace.h"
+#include <cstring>
+#include <cstdlib>
+#include <cerrno>
+#include <fcntl.h>
+#include <unistd.h>
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+#define TAG "StreamWriter"
+
+StreamWriter::StreamWriter() :
+        fd(-1),
+        ring(NULL),
+        capacity(0),
+        head(0),
+        tail(0),
+        fileOffset(0),
+        droppedCount(0),
+        failed(false),
+        running(false),
+        thread_writer(0) {
+    memset(&header, 0, sizeof(header));
+    pthread_mutex_init(&lock, NULL);
+    pthread_cond_init(&cond, NULL);
+}
+
+StreamWriter::~StreamWriter() {
+    close();
+    pthread_cond_destroy(&cond);
+    pthread_mutex_destroy(&lock);
+}
+
+//=======================================Private====================================================
+
+void StreamWriter::copyIn(size_t position, const void *data, size_t bytes) {
+    size_t offset = position % capacity;
+    size_t first = bytes < capacity - offset ? bytes : capacity - offset;
+    memcpy(ring + offset, data, first);
+    if (first < bytes) memcpy(ring, (const uint8_t *) data + first, bytes - first);
+}
+
+void StreamWriter::copyOut(size_t position, void *data, size_t bytes) const {
+    size_t offset = position % capacity;
+    size_t first = bytes < capacity - offset ? bytes : capacity - offset;
+    memcpy(data, ring + offset, first);
+    if (first < bytes) memcpy((uint8_t *) data + first, ring, bytes - first);
+}
+
+bool StreamWriter::writeRing(size_t position, size_t bytes) {
+    while (bytes > 0) {
+        size_t offset = position % capacity;
+        size_t chunk = bytes < capacity - offset ? bytes : capacity - offset;
+        ssize_t ret = ::write(fd, ring + offset, chunk);
+        if (ret < 0) {
+            if (errno == EINTR) continue;
+            LOGE(TAG, "writeRing: write failed, %s", strerror(errno));
+            return false;
+        }
+        position += ret;
+        bytes -= ret;
+    }
+    return true;
+}
+
+void StreamWriter::drain() {
+    TRACE_SCOPE("stream_capture_drain");
+    //1-记录本批次每帧的索引（文件偏移 = 落盘前的 fileOffset + 环内相对位置）
+    const size_t begin = tail.load(std::memory_order_relaxed);
+    const size_t end = head.load(std::memory_order_acquire);
+    const size_t indexed = index.size();
+    size_t position = begin;
+    while (!failed && position < end) {
+        StreamFrameHeader frame;
+        copyOut(position, &frame, sizeof(frame));
+        index.push_back({fileOffset + (position - begin), frame.timestampUs});
+        position += sizeof(frame) + frame.bytes;
+    }
+    //2-整批顺序写入，最多两次 write；失败后不再落盘和索引，fileOffset 停在最后一个完整批次末尾
+    if (!failed && writeRing(begin, end - begin)) {
+        fileOffset += end - begin;
+    } else {
+        failed = true;
+        index.resize(indexed);
+    }
+    tail.store(end, std::memory_order_release);
+    if (Trace::isEnabled()) {
+        Trace::setCounter("stream_capture_pending", (int64_t) (head.load(std::memory_order_relaxed) - end));
+    }
+}
+
+void *StreamWriter::writerThread(void *args) {
+    auto *writer = reinterpret_cast<StreamWriter *>(args);
+    while (true) {
+        pthread_mutex_lock(&writer->lock);
+        while (writer->running && writer->head.load(std::memory_order_acquire) == writer->tail.load()) {
+            pthread_cond_wait(&writer->cond, &writer->lock);
+        }
+        bool exit = !writer->running;
+        pthread_mutex_unlock(&writer->lock);
+        writer->drain();
+        if (exit) break;
+    }
+    pthread_exit(NULL);
+}
+
+//=======================================Public=====================================================
+
+ActionInfo StreamWriter::open(const char *path, int frameFormat, int width, int height, int fps, size_t bufferBytes) {
+    if (fd >= 0) {
+        LOGW(TAG, "open: already opened");
+        return ACTION_ERROR_CAPTURE;
+    }
+    fd = ::open(path, O_WRONLY | O_CREAT | O_TRUNC, 0644);
+    if (0 > fd) {
+        LOGE(TAG, "open: %s failed, %s", path, strerror(errno));
+        return ACTION_ERROR_INVALID_PATH;
+    }
+    //文件头先占位，close 时回填帧数与索引偏移
+    memcpy(header.magic, STREAM_FILE_MAGIC, sizeof(header.magic));
+    header.version = STREAM_FILE_VERSION;
+    header.frameFormat = frameFormat;
+    header.width = width;
+    header.height = height;
+    header.fps = fps;
+    if ((ssize_t) sizeof(header) != ::write(fd, &header, sizeof(header))) {
+        LOGE(TAG, "open: write header failed, %s", strerror(errno));
+        ::close(fd);
+        fd = -1;
+        return ACTION_ERROR_CAPTURE;
+    }
+    capacity = bufferBytes;
+    ring = (uint8_t *) malloc(capacity);
+    if (ring == NULL) {
+        LOGE(TAG, "open: malloc %zu failed", capacity);
+        ::close(fd);
+        fd = -1;
+        return ACTION_ERROR_CAPTURE;
+    }
+    head.store(0);
+    tail.store(0);
+    fileOffset = sizeof(header);
+    droppedCount = 0;
+    failed = false;
+    index.clear();
+    running = true;
+    if (0 != pthread_create(&thread_writer, NULL, writerThread, (void *) this)) {
+        LOGE(TAG, "open: pthread_create failed");
+        running = false;
+        SAFE_FREE(ring)
+        ::close(fd);
+        fd = -1;
+        return ACTION_ERROR_CAPTURE;
+    }
+    LOGD(TAG, "open: %s, %dx%d, format=%d, fps=%d, buffer=%zu", path, width, height, frameFormat, fps, capacity);
+    return ACTION_SUCCESS;
+}
+
+bool StreamWriter::write(const void *data, size_t bytes, uint32_t sequence, uint64_t timestampUs) {
+    const size_t need = sizeof(StreamFrameHeader) + bytes;
+    const size_t position = head.load(std::memory_order_relaxed);
+    if (!running || need > capacity - (position - tail.load(std::memory_order_acquire))) {
+        droppedCount++;
+        return false;
+    }
+    StreamFrameHeader frame = {STREAM_FRAME_SYNC, sequence, (uint32_t) bytes, 0, timestampUs};
+    copyIn(position, &frame, sizeof(frame));
+    copyIn(position + sizeof(frame), data, bytes);
+    head.store(position + need, std::memory_order_release);
+    pthread_mutex_lock(&lock);
+    pthread_cond_signal(&cond);
+    pthread_mutex_unlock(&lock);
+    return true;
+}
+
+ActionInfo StreamWriter::close() {
+    if (fd < 0) return ACTION_SUCCESS;
+    //1-停止写线程，剩余数据在线程退出前落盘
+    pthread_mutex_lock(&lock);
+    running = false;
+    pthread_cond_signal(&cond);
+    pthread_mutex_unlock(&lock);
+    pthread_join(thread_writer, NULL);
+    thread_writer = 0;
+    SAFE_FREE(ring)
+
+    //2-索引追加到已完整写入的数据之后，回填文件头；写入失败时保留失败前的帧，去掉半截批次
+    ActionInfo action = failed ? ACTION_ERROR_CAPTURE : ACTION_SUCCESS;
+    const size_t indexBytes = index.size() * sizeof(StreamIndexEntry);
+    header.frameCount = (uint32_t) index.size();
+    header.indexOffset = fileOffset;
+    if ((indexBytes > 0 && (ssize_t) indexBytes != pwrite(fd, index.data(), indexBytes, fileOffset))
+        || (ssize_t) sizeof(header) != pwrite(fd, &header, sizeof(header), 0)
+        || (failed && 0 != ftruncate(fd, fileOffset + indexBytes))) {
+        LOGE(TAG, "close: write failed, %s", strerror(errno));
+        action = ACTION_ERROR_CAPTURE;
+    }
+    fdatasync(fd);
+    ::close(fd);
+    fd = -1;
+    LOGD(TAG, "close: frames=%u, dropped=%u, bytes=%llu", header.frameCount, droppedCount,
+         (unsigned long long) (fileOffset + indexBytes));
+    std::vector<StreamIndexEntry>().swap(index);
+    return action;
+}
+
+#ifdef __cplusplus
+}  // extern "C"
+#endif
@@ -0,0 +1,62 @@
+//
+// Created by Hsj on 2026/10/18.
+//
+
+#ifndef ANDROID_CAMERA_V4L2_STREAMWRITER_H
+#define ANDROID_CAMERA_V4L2_STREAMWRITER_H
+
+#include <atomic>
+#include <vector>
+#include <pthread.h>
+#include "Common.h"
+#include "NativeAPI.h"
+#include "StreamFile.h"
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/**
+ * 流文件录制（格式见 StreamFile.h）
+ * 采集线程只把帧拷入环形缓冲区（满则丢帧、不阻塞），写线程批量落盘并记录索引，close 时写索引、回填文件头
+ */
+class StreamWriter {
+private:
+    int fd;
+    uint8_t *ring;
+    size_t capacity;
+    std::atomic<size_t> head;   //采集线程写入总字节
+    std::atomic<size_t> tail;   //写线程落盘总字节
+    StreamFileHeader header;
+    std::vector<StreamIndexEntry> index;
+    uint64_t fileOffset;
+    uint32_t droppedCount;
+    bool failed;
+
+    volatile bool running;
+    pthread_t thread_writer;
+    pthread_mutex_t lock;
+    pthread_cond_t cond;
+
+    void copyIn(size_t position, const void *data, size_t bytes);
+    void copyOut(size_t position, void *data, size_t bytes) const;
+    bool writeRing(size_t position, size_t bytes);
+    void drain();
+    static void *writerThread(void *args);
+
+public:
+    StreamWriter();
+    ~StreamWriter();
+    ActionInfo open(const char *path, int frameFormat, int width, int height, int fps, size_t bufferBytes);
+    /**
+     * 采集线程调用，缓冲区不足时丢弃该帧并返回 false
+     */
+    bool write(const void *data, size_t bytes, uint32_t sequence, uint64_t timestampUs);
+    ActionInfo close();
+};
+
+#ifdef __cplusplus
+}  // extern "C"
+#endif
+
+#endif //ANDROID_CAMERA_V4L2_STREAMWRITER_H
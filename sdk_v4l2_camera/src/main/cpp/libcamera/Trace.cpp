@@ -0,0 +1,76 @@
+//
+// Created by Hsj on 2026/10/18.
+//
+
+#include "Trace.h"
+#include "Common.h"
+#include <pthread.h>
+#ifdef __ANDROID__
+#include <dlfcn.h>
+#endif
+
+#define TAG "Trace"
+
+typedef void (*ATraceBeginSection)(const char *sectionName);
+typedef void (*ATraceEndSection)();
+typedef void (*ATraceAsyncSection)(const char *sectionName, int32_t cookie);
+typedef void (*ATraceSetCounter)(const char *counterName, int64_t counterValue);
+
+static ATraceBeginSection traceBeginSection = NULL;
+static ATraceEndSection traceEndSection = NULL;
+static ATraceAsyncSection traceBeginAsyncSection = NULL;
+static ATraceAsyncSection traceEndAsyncSection = NULL;
+static ATraceSetCounter traceSetCounter = NULL;
+static pthread_once_t loadOnce = PTHREAD_ONCE_INIT;
+
+std::atomic<bool> Trace::enabled(false);
+
+static void loadSymbols() {
+#ifdef __ANDROID__
+    void *lib = dlopen("libandroid.so", RTLD_NOW | RTLD_LOCAL);
+    if (lib == NULL) {
+        LOGW(TAG, "loadSymbols: dlopen libandroid.so failed, %s", dlerror());
+        return;
+    }
+    traceBeginSection = (ATraceBeginSection) dlsym(lib, "ATrace_beginSection");
+    traceEndSection = (ATraceEndSection) dlsym(lib, "ATrace_endSection");
+    traceBeginAsyncSection = (ATraceAsyncSection) dlsym(lib, "ATrace_beginAsyncSection");
+    traceEndAsyncSection = (ATraceAsyncSection) dlsym(lib, "ATrace_endAsyncSection");
+    traceSetCounter = (ATraceSetCounter) dlsym(lib, "ATrace_setCounter");
+    LOGD(TAG, "loadSymbols: section=%d, async=%d, counter=%d", traceBeginSection != NULL,
+         traceBeginAsyncSection != NULL, traceSetCounter != NULL);
+#endif
+}
+
+bool Trace::setEnabled(bool enable) {
+    if (enable) {
+        pthread_once(&loadOnce, loadSymbols);
+        if (traceBeginSection == NULL || traceEndSection == NULL) {
+            LOGW(TAG, "setEnabled: ATrace not available");
+            enabled.store(false, std::memory_order_relaxed);
+            return false;
+        }
+    }
+    enabled.store(enable, std::memory_order_relaxed);
+    return true;
+}
+
+void Trace::beginSection(const char *name) {
+    traceBeginSection(name);
+}
+
+void Trace::endSection() {
+    traceEndSection();
+}
+
+void Trace::beginAsyncSection(const char *name, int32_t cookie) {
+    if (traceBeginAsyncSection) traceBeginAsyncSection(name, cookie);
+}
+
+void Trace::endAsyncSection(const char *name, int32_t cookie) {
+    if (traceEndAsyncSection) traceEndAsyncSection(name, cookie);
+}
+
+void Trace::setCounter(const char *name, int64_t value) {
+    if (traceSetCounter) traceSetCounter(name, value);
+}
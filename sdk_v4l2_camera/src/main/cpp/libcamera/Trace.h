@@ -0,0 +1,66 @@
+//
+// Created by Hsj on 2026/10/18.
+//
+
+#ifndef ANDROID_CAMERA_V4L2_TRACE_H
+#define ANDROID_CAMERA_V4L2_TRACE_H
+
+#include <atomic>
+#include <cstdint>
+
+/*
+ * ATrace 埋点（systrace/Perfetto 的 atrace 类别 app）：
+ *   1、NDK ATrace_* 通过 dlsym 取得（begin/end 需要 API 23，counter/async 需要 API 29），不可用时为空操作
+ *   2、运行时开关，关闭时每个埋点只有一次 relaxed 原子读
+ *   3、每帧用 V4L2 sequence 作为异步区段 cookie 和计数器值，便于把各阶段关联到同一帧
+ */
+
+#define TRACE_FRAME "v4l2_frame"
+#define TRACE_SEQUENCE "v4l2_sequence"
+
+class Trace {
+private:
+    static std::atomic<bool> enabled;
+
+public:
+    /**
+     * @return 开启时 ATrace 不可用返回 false
+     */
+    static bool setEnabled(bool enable);
+
+    static inline bool isEnabled() {
+        return enabled.load(std::memory_order_relaxed);
+    }
+
+    static void beginSection(const char *name);
+    static void endSection();
+    static void beginAsyncSection(const char *name, int32_t cookie);
+    static void endAsyncSection(const char *name, int32_t cookie);
+    static void setCounter(const char *name, int64_t value);
+};
+
+/**
+ * 作用域区段，构造时记录开关状态，保证 begin/end 成对
+ */
+class TraceScope {
+private:
+    const bool active;
+
+public:
+    explicit TraceScope(const char *name) : active(Trace::isEnabled()) {
+        if (active) Trace::beginSection(name);
+    }
+
+    ~TraceScope() {
+        if (active) Trace::endSection();
+    }
+
+    TraceScope(const TraceScope &) = delete;
+    TraceScope &operator=(const TraceScope &) = delete;
+};
+
+#define TRACE_CONCAT_(A, B) A##B
+#define TRACE_CONCAT(A, B) TRACE_CONCAT_(A, B)
+#define TRACE_SCOPE(NAME) TraceScope TRACE_CONCAT(traceScope, __LINE__)(NAME)
+
+#endif //ANDROID_CAMERA_V4L2_TRACE_H
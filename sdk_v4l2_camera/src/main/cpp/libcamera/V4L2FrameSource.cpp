@@ -0,0 +1,623 @@
+//
+// Created by Hsj on 2026/10/18.
+//
+
+#include "V4L2FrameSource.h"
+#include "Trace.h"
+#include <cstring>
+#include <cstdlib>
+#include <cerrno>
+#include <fcntl.h>
+#include <unistd.h>
+#include <sys/mman.h>
+#include <sys/ioctl.h>
+#include <sys/select.h>
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+#define TAG "V4L2FrameSource"
+#define MAX_BUFFER_COUNT 4
+#define DEFAULT_FRAME_RATE 30
+
+// 兼容性定义：确保 V4L2 多平面 API 支持
+#ifndef V4L2_CAP_VIDEO_CAPTURE_MPLANE
+#define V4L2_CAP_VIDEO_CAPTURE_MPLANE 0x00001000
+#endif
+
+#ifndef V4L2_CAP_DEVICE_CAPS
+#define V4L2_CAP_DEVICE_CAPS 0x80000000
+#endif
+
+#ifndef V4L2_BUF_TYPE_VIDEO_CAPTURE_MPLANE
+#define V4L2_BUF_TYPE_VIDEO_CAPTURE_MPLANE 9
+#endif
+
+V4L2FrameSource::V4L2FrameSource() :
+        fd(0),
+        useMultiplanar(false),
+        frameFormat(FRAME_FORMAT_MJPEG),
+        frameHeight(0),
+        memoryPlanes(1),
+        frameRate(0),
+        requestFrameRate(DEFAULT_FRAME_RATE),
+        buffers(NULL),
+        bufferCount(0),
+        streaming(false),
+        warmStandby(false) {
+    memset(strides, 0, sizeof(strides));
+}
+
+V4L2FrameSource::~V4L2FrameSource() {
+    releaseBuffer();
+    if (fd > 0) {
+        ::close(fd);
+        fd = 0;
+    }
+}
+
+static void fourccName(uint32_t fourcc, char name[5]) {
+    name[0] = fourcc & 0xFF;
+    name[1] = (fourcc >> 8) & 0xFF;
+    name[2] = (fourcc >> 16) & 0xFF;
+    name[3] = (fourcc >> 24) & 0xFF;
+    name[4] = 0;
+}
+
+//=======================================Private====================================================
+
+inline v4l2_buf_type V4L2FrameSource::bufferType() const {
+    return static_cast<v4l2_buf_type>(
+            useMultiplanar ? V4L2_BUF_TYPE_VIDEO_CAPTURE_MPLANE : V4L2_BUF_TYPE_VIDEO_CAPTURE);
+}
+
+void V4L2FrameSource::resetBuffer(struct v4l2_buffer &buffer, struct v4l2_plane *planes, unsigned int index) const {
+    memset(&buffer, 0, sizeof(buffer));
+    memset(planes, 0, sizeof(struct v4l2_plane) * MAX_FRAME_PLANES);
+    buffer.type = bufferType();
+    buffer.memory = V4L2_MEMORY_MMAP;
+    buffer.index = index;
+    if (useMultiplanar) {
+        buffer.m.planes = planes;
+        buffer.length = memoryPlanes;
+    }
+}
+
+ActionInfo V4L2FrameSource::prepareBuffer() {
+    //1-request buffers
+    struct v4l2_requestbuffers buffer1;
+    memset(&buffer1, 0, sizeof(buffer1));
+    buffer1.count = MAX_BUFFER_COUNT;
+    buffer1.type = bufferType();
+    buffer1.memory = V4L2_MEMORY_MMAP;
+    if (0 > ioctl(fd, VIDIOC_REQBUFS, &buffer1)) {
+        LOGE(TAG, "prepareBuffer: ioctl VIDIOC_REQBUFS failed: %s", strerror(errno));
+        return ACTION_ERROR_START;
+    }
+    //驱动可能分配少于请求的数量
+    bufferCount = buffer1.count < MAX_BUFFER_COUNT ? (int) buffer1.count : MAX_BUFFER_COUNT;
+    if (bufferCount <= 0) {
+        LOGE(TAG, "prepareBuffer: no buffer allocated");
+        return ACTION_ERROR_START;
+    }
+
+    //2-query memory
+    buffers = (struct VideoBuffer *) calloc(MAX_BUFFER_COUNT, sizeof(*buffers));
+    for (int i = 0; i < bufferCount; ++i) {
+        struct v4l2_buffer buffer2;
+        struct v4l2_plane planes[MAX_FRAME_PLANES];
+        resetBuffer(buffer2, planes, i);
+        if (0 > ioctl(fd, VIDIOC_QUERYBUF, &buffer2)) {
+            LOGE(TAG, "prepareBuffer: ioctl VIDIOC_QUERYBUF failed: %s", strerror(errno));
+            return ACTION_ERROR_START;
+        }
+
+        //多平面 API 每个内存平面有独立的 mem_offset（NV12M 的 Y、UV 可能在不同的 dma-buf 上）
+        for (int p = 0; p < memoryPlanes; ++p) {
+            const size_t length = useMultiplanar ? buffer2.m.planes[p].length : buffer2.length;
+            const off_t offset = useMultiplanar ? buffer2.m.planes[p].m.mem_offset : buffer2.m.offset;
+            buffers[i].length[p] = length;
+            buffers[i].start[p] = mmap(NULL, length, PROT_READ | PROT_WRITE, MAP_SHARED, fd, offset);
+            if (MAP_FAILED == buffers[i].start[p]) {
+                buffers[i].start[p] = NULL;
+                LOGE(TAG, "prepareBuffer: mmap buffer %d plane %d failed", i, p);
+                return ACTION_ERROR_START;
+            }
+        }
+    }
+
+    LOGD(TAG, "prepareBuffer: success (%s, count=%d, planes=%d)", useMultiplanar ? "multiplanar" : "single-planar",
+         bufferCount, memoryPlanes);
+    return ACTION_SUCCESS;
+}
+
+ActionInfo V4L2FrameSource::queueBuffers() {
+    //3-queue buffers：STREAMOFF 会把全部缓冲区移出队列，每次 STREAMON 前重新入队
+    for (int i = 0; i < bufferCount; ++i) {
+        struct v4l2_buffer buffer3;
+        struct v4l2_plane planes[MAX_FRAME_PLANES];
+        resetBuffer(buffer3, planes, i);
+        if (0 > ioctl(fd, VIDIOC_QBUF, &buffer3)) {
+            LOGE(TAG, "queueBuffers: ioctl VIDIOC_QBUF failed: %s", strerror(errno));
+            return ACTION_ERROR_START;
+        }
+    }
+    return ACTION_SUCCESS;
+}
+
+void V4L2FrameSource::releaseBuffer() {
+    if (buffers == NULL) return;
+    for (int i = 0; i < MAX_BUFFER_COUNT; ++i) {
+        for (int p = 0; p < MAX_FRAME_PLANES; ++p) {
+            if (buffers[i].start[p] && 0 != munmap(buffers[i].start[p], buffers[i].length[p])) {
+                LOGW(TAG, "releaseBuffer: munmap failed");
+            }
+        }
+    }
+    SAFE_FREE(buffers)
+    bufferCount = 0;
+    //释放驱动侧缓冲区，之后才能修改格式
+    if (fd > 0) {
+        struct v4l2_requestbuffers request;
+        memset(&request, 0, sizeof(request));
+        request.count = 0;
+        request.type = bufferType();
+        request.memory = V4L2_MEMORY_MMAP;
+        ioctl(fd, VIDIOC_REQBUFS, &request);
+    }
+}
+
+uint64_t V4L2FrameSource::frameTimestampUs(const struct v4l2_buffer &buffer) {
+    // UVC 等驱动给出 CLOCK_MONOTONIC 采集时间戳，与 Java System.nanoTime() 同一时钟，可用于音视频对齐
+    if ((buffer.flags & V4L2_BUF_FLAG_TIMESTAMP_MASK) == V4L2_BUF_FLAG_TIMESTAMP_MONOTONIC
+        && (buffer.timestamp.tv_sec != 0 || buffer.timestamp.tv_usec != 0)) {
+        return (uint64_t) buffer.timestamp.tv_sec * 1000000 + buffer.timestamp.tv_usec;
+    } else {
+        return timeMonotonicUs();
+    }
+}
+
+void V4L2FrameSource::fillPlanes(SourceFrame &frame, const struct v4l2_buffer &buffer) const {
+    const VideoBuffer &mapped = buffers[buffer.index];
+    frame.index = buffer.index;
+    frame.bytes = 0;
+    //1-内存平面：多平面 API 的有效数据从 data_offset 开始（bytesused 含 data_offset）
+    for (int p = 0; p < memoryPlanes; ++p) {
+        const uint32_t offset = useMultiplanar ? buffer.m.planes[p].data_offset : 0;
+        const uint32_t used = useMultiplanar ? buffer.m.planes[p].bytesused : buffer.bytesused;
+        frame.planes[p].data = (uint8_t *) mapped.start[p] + offset;
+        frame.planes[p].stride = strides[p];
+        frame.planes[p].bytes = used > offset ? used - offset : 0;
+        frame.bytes += frame.planes[p].bytes;
+    }
+    frame.planeCount = memoryPlanes;
+    frame.data = frame.planes[0].data;
+    //2-单缓冲的 NV12/NV16：UV 紧跟 Y（偏移 = stride * height），拆成两个图像平面
+    if (memoryPlanes == 1 && isSemiPlanar(frameFormat)) {
+        FramePlane &y = frame.planes[0];
+        FramePlane &uv = frame.planes[1];
+        const size_t ySize = (size_t) strides[0] * frameHeight;
+        uv.data = y.data + ySize;
+        uv.stride = strides[0];
+        uv.bytes = y.bytes > ySize ? y.bytes - ySize : 0;
+        y.bytes = y.bytes < ySize ? y.bytes : ySize;
+        frame.planeCount = 2;
+    }
+}
+
+//=======================================Public=====================================================
+
+ActionInfo V4L2FrameSource::open(const char *devicePath) {
+    // 打开设备文件
+    fd = ::open(devicePath, O_RDWR | O_NONBLOCK);
+    if (0 > fd) {
+        LOGE(TAG, "open: %s failed, %s", devicePath, strerror(errno));
+        fd = 0;
+        if (errno == EACCES || errno == EPERM) {
+            return ACTION_ERROR_DEVICE_ACCESS;
+        }
+        return ACTION_ERROR_OPEN_FAIL;
+    }
+
+    // 查询设备能力
+    struct v4l2_capability cap;
+    memset(&cap, 0, sizeof(cap));
+    if (0 > ioctl(fd, VIDIOC_QUERYCAP, &cap)) {
+        LOGE(TAG, "open: ioctl VIDIOC_QUERYCAP failed, %s", strerror(errno));
+        ::close(fd);
+        fd = 0;
+        return ACTION_ERROR_START;
+    }
+
+    // 打印设备能力信息（用于调试）
+    LOGD(TAG, "open: device capabilities:");
+    LOGD(TAG, "  driver: %s", cap.driver);
+    LOGD(TAG, "  card: %s", cap.card);
+    LOGD(TAG, "  bus_info: %s", cap.bus_info);
+    LOGD(TAG, "  version: %u.%u.%u", (cap.version >> 16) & 0xFF, (cap.version >> 8) & 0xFF, cap.version & 0xFF);
+    LOGD(TAG, "  capabilities: 0x%08X", cap.capabilities);
+    LOGD(TAG, "  device_caps: 0x%08X", cap.device_caps);
+
+    // 检查是否支持视频捕获（支持单平面或多平面API）
+    uint32_t caps = (cap.capabilities & V4L2_CAP_DEVICE_CAPS) ? cap.device_caps : cap.capabilities;
+    bool supportsCapture = (caps & V4L2_CAP_VIDEO_CAPTURE) || (caps & V4L2_CAP_VIDEO_CAPTURE_MPLANE);
+
+    if (!supportsCapture) {
+        LOGE(TAG, "open: device does not support video capture");
+        LOGE(TAG, "  V4L2_CAP_VIDEO_CAPTURE: %s", (caps & V4L2_CAP_VIDEO_CAPTURE) ? "YES" : "NO");
+        LOGE(TAG, "  V4L2_CAP_VIDEO_CAPTURE_MPLANE: %s", (caps & V4L2_CAP_VIDEO_CAPTURE_MPLANE) ? "YES" : "NO");
+        ::close(fd);
+        fd = 0;
+        return ACTION_ERROR_START;
+    }
+
+    // 设置多平面标志
+    useMultiplanar = (caps & V4L2_CAP_VIDEO_CAPTURE_MPLANE) != 0;
+    LOGD(TAG, "open: video capture supported (capabilities=0x%08X, multiplanar=%s)",
+         caps, useMultiplanar ? "YES" : "NO");
+
+    LOGD(TAG, "open: %s succeed", devicePath);
+    return ACTION_SUCCESS;
+}
+
+bool V4L2FrameSource::setControl(uint32_t id, int32_t value) {
+    struct v4l2_control ctrl;
+    ctrl.id = id;
+    ctrl.value = value;
+    if (0 > ioctl(fd, VIDIOC_S_CTRL, &ctrl)) {
+        LOGW(TAG, "setControl: ioctl VIDIOC_S_CTRL 0x%08X failed, %s", id, strerror(errno));
+        return false;
+    }
+    return true;
+}
+
+void V4L2FrameSource::enumFrameIntervals(FrameCapability &capability) const {
+    struct v4l2_frmivalenum frmival;
+    memset(&frmival, 0, sizeof(frmival));
+    frmival.pixel_format = capability.pixelFormat;
+    frmival.width = capability.width;
+    frmival.height = capability.height;
+    while (ioctl(fd, VIDIOC_ENUM_FRAMEINTERVALS, &frmival) == 0) {
+        if (frmival.type == V4L2_FRMIVAL_TYPE_DISCRETE) {
+            capability.intervalType = FRAME_INTERVAL_DISCRETE;
+            capability.intervals.push_back({frmival.discrete.numerator, frmival.discrete.denominator});
+        } else {
+            //stepwise/continuous 只有 index 0 一项
+            capability.intervalType = FRAME_INTERVAL_STEPWISE;
+            capability.intervals.push_back({frmival.stepwise.min.numerator, frmival.stepwise.min.denominator});
+            capability.intervals.push_back({frmival.stepwise.max.numerator, frmival.stepwise.max.denominator});
+            capability.intervals.push_back({frmival.stepwise.step.numerator, frmival.stepwise.step.denominator});
+            break;
+        }
+        frmival.index++;
+    }
+}
+
+bool V4L2FrameSource::supportsFormat(uint32_t fourcc) const {
+    struct v4l2_fmtdesc fmtdesc;
+    memset(&fmtdesc, 0, sizeof(fmtdesc));
+    fmtdesc.type = bufferType();
+    while (ioctl(fd, VIDIOC_ENUM_FMT, &fmtdesc) == 0) {
+        if (fmtdesc.pixelformat == fourcc) return true;
+        fmtdesc.index++;
+    }
+    return false;
+}
+
+uint32_t V4L2FrameSource::resolvePixelFormat(int format) const {
+    //连续格式只需一次 mmap；NV12M/NV16M 只会出现在多平面 API（如 rkisp 主路径）
+    switch (format) {
+        case FRAME_FORMAT_NV12:
+            return !useMultiplanar || supportsFormat(V4L2_PIX_FMT_NV12) ? V4L2_PIX_FMT_NV12 : V4L2_PIX_FMT_NV12M;
+        case FRAME_FORMAT_NV16:
+            return !useMultiplanar || supportsFormat(V4L2_PIX_FMT_NV16) ? V4L2_PIX_FMT_NV16 : V4L2_PIX_FMT_NV16M;
+        default:
+            return pixelFormatOf(format);
+    }
+}
+
+ActionInfo V4L2FrameSource::getCapabilities(std::vector<FrameCapability> &capabilities) {
+    struct v4l2_frmsizeenum frmsize;
+    struct v4l2_fmtdesc fmtdesc;
+    memset(&fmtdesc, 0, sizeof(fmtdesc));
+    memset(&frmsize, 0, sizeof(frmsize));
+
+    // 根据设备类型选择正确的缓冲区类型
+    fmtdesc.type = bufferType();
+    fmtdesc.index = 0;
+
+    LOGD(TAG, "getCapabilities: using %s API", useMultiplanar ? "multiplanar" : "single-planar");
+
+    while (ioctl(fd, VIDIOC_ENUM_FMT, &fmtdesc) == 0) {
+        // 打印格式信息
+        char fourcc[5];
+        fourccName(fmtdesc.pixelformat, fourcc);
+        LOGD(TAG, "  Format[%d]: %s (%s), flags=0x%08X",
+             fmtdesc.index, fmtdesc.description, fourcc, fmtdesc.flags);
+
+        frmsize.pixel_format = fmtdesc.pixelformat;
+        frmsize.index = 0;
+
+        while (ioctl(fd, VIDIOC_ENUM_FRAMESIZES, &frmsize) == 0) {
+            FrameCapability capability{};
+            capability.pixelFormat = fmtdesc.pixelformat;
+            capability.flags = fmtdesc.flags;
+            if (frmsize.type == V4L2_FRMSIZE_TYPE_DISCRETE) {
+                capability.sizeType = FRAME_SIZE_DISCRETE;
+                capability.width = capability.minWidth = frmsize.discrete.width;
+                capability.height = capability.minHeight = frmsize.discrete.height;
+            } else if (frmsize.type == V4L2_FRMSIZE_TYPE_STEPWISE || frmsize.type == V4L2_FRMSIZE_TYPE_CONTINUOUS) {
+                capability.sizeType = FRAME_SIZE_STEPWISE;
+                capability.width = frmsize.stepwise.max_width;
+                capability.height = frmsize.stepwise.max_height;
+                capability.minWidth = frmsize.stepwise.min_width;
+                capability.minHeight = frmsize.stepwise.min_height;
+                capability.stepWidth = frmsize.type == V4L2_FRMSIZE_TYPE_CONTINUOUS ? 1 : frmsize.stepwise.step_width;
+                capability.stepHeight = frmsize.type == V4L2_FRMSIZE_TYPE_CONTINUOUS ? 1 : frmsize.stepwise.step_height;
+            } else {
+                LOGW(TAG, "    Size[%d]: unknown type=%d", frmsize.index, frmsize.type);
+                frmsize.index++;
+                continue;
+            }
+            enumFrameIntervals(capability);
+            LOGD(TAG, "    Size[%d]: %dx%d (%s), intervals=%zu", frmsize.index, capability.width, capability.height,
+                 capability.sizeType == FRAME_SIZE_DISCRETE ? "discrete" : "stepwise", capability.intervals.size());
+            capabilities.push_back(std::move(capability));
+            //stepwise/continuous 只有 index 0 一项
+            if (frmsize.type != V4L2_FRMSIZE_TYPE_DISCRETE) break;
+            frmsize.index++;
+        }
+        fmtdesc.index++;
+    }
+
+    LOGD(TAG, "getCapabilities: found %zu", capabilities.size());
+    return ACTION_SUCCESS;
+}
+
+ActionInfo V4L2FrameSource::setFormat(int width, int height, int frame_format) {
+    //热备保留的缓冲区按旧格式分配，改格式前释放
+    releaseBuffer();
+    const uint32_t fourcc = resolvePixelFormat(frame_format);
+    const bool multiPlaneFormat = fourcc == V4L2_PIX_FMT_NV12M || fourcc == V4L2_PIX_FMT_NV16M;
+    char name[5];
+    fourccName(fourcc, name);
+    //1-set frame width and height
+    struct v4l2_format format;
+    memset(&format, 0, sizeof(format));
+    format.type = bufferType();
+
+    if (useMultiplanar) {
+        // 多平面 API
+        format.fmt.pix_mp.width = width;
+        format.fmt.pix_mp.height = height;
+        format.fmt.pix_mp.field = V4L2_FIELD_ANY;
+        format.fmt.pix_mp.pixelformat = fourcc;
+        // NV12M/NV16M 的 Y、UV 各一个内存平面，其余格式（含连续 NV12/NV16）为一个
+        format.fmt.pix_mp.num_planes = multiPlaneFormat ? 2 : 1;
+
+        // 设置色彩空间和量化范围（重要！）
+        // 使用 ITU-R BT.709 色彩空间（适用于 HD 视频）
+        format.fmt.pix_mp.colorspace = V4L2_COLORSPACE_REC709;
+        format.fmt.pix_mp.ycbcr_enc = V4L2_YCBCR_ENC_709;
+        // 使用全范围量化（0-255），而不是有限范围（16-235）
+        format.fmt.pix_mp.quantization = V4L2_QUANTIZATION_FULL_RANGE;
+        format.fmt.pix_mp.xfer_func = V4L2_XFER_FUNC_709;
+
+        LOGD(TAG, "setFormat: multiplanar mode, %dx%d, format=%s, quantization=FULL_RANGE", width, height, name);
+    } else {
+        // 单平面 API
+        format.fmt.pix.width = width;
+        format.fmt.pix.height = height;
+        format.fmt.pix.field = V4L2_FIELD_ANY;
+        format.fmt.pix.pixelformat = fourcc;
+
+        // 设置色彩空间和量化范围
+        format.fmt.pix.colorspace = V4L2_COLORSPACE_REC709;
+        format.fmt.pix.ycbcr_enc = V4L2_YCBCR_ENC_709;
+        format.fmt.pix.quantization = V4L2_QUANTIZATION_FULL_RANGE;
+        format.fmt.pix.xfer_func = V4L2_XFER_FUNC_709;
+
+        LOGD(TAG, "setFormat: single-planar mode, %dx%d, format=%s, quantization=FULL_RANGE", width, height, name);
+    }
+
+    if (0 > ioctl(fd, VIDIOC_S_FMT, &format)) {
+        LOGE(TAG, "setFormat: ioctl set format failed, %s", strerror(errno));
+        return ACTION_ERROR_SET_W_H;
+    }
+
+    // 读取实际设置的格式与各平面行跨度
+    uint32_t actualFormat;
+    int actualWidth, actualHeight;
+    memset(strides, 0, sizeof(strides));
+    if (useMultiplanar) {
+        actualFormat = format.fmt.pix_mp.pixelformat;
+        actualWidth = format.fmt.pix_mp.width;
+        actualHeight = format.fmt.pix_mp.height;
+        memoryPlanes = format.fmt.pix_mp.num_planes;
+        if (memoryPlanes < 1) memoryPlanes = 1;
+        if (memoryPlanes > MAX_FRAME_PLANES) memoryPlanes = MAX_FRAME_PLANES;
+        for (int p = 0; p < memoryPlanes; ++p) {
+            strides[p] = format.fmt.pix_mp.plane_fmt[p].bytesperline;
+        }
+        LOGD(TAG, "  colorspace=%d, ycbcr_enc=%d, quantization=%d, xfer_func=%d",
+             format.fmt.pix_mp.colorspace, format.fmt.pix_mp.ycbcr_enc,
+             format.fmt.pix_mp.quantization, format.fmt.pix_mp.xfer_func);
+    } else {
+        actualFormat = format.fmt.pix.pixelformat;
+        actualWidth = format.fmt.pix.width;
+        actualHeight = format.fmt.pix.height;
+        memoryPlanes = 1;
+        strides[0] = format.fmt.pix.bytesperline;
+        LOGD(TAG, "  colorspace=%d, ycbcr_enc=%d, quantization=%d, xfer_func=%d",
+             format.fmt.pix.colorspace, format.fmt.pix.ycbcr_enc,
+             format.fmt.pix.quantization, format.fmt.pix.xfer_func);
+    }
+    fourccName(actualFormat, name);
+    LOGD(TAG, "setFormat: actual format: %s %dx%d, planes=%d, stride=%u/%u", name, actualWidth, actualHeight,
+         memoryPlanes, strides[0], strides[1]);
+
+    if (isSemiPlanar(frame_format) || isMonochrome(frame_format)) {
+        //按 stride * height 定位平面、按位深解析像素，格式或尺寸被驱动调整后无法正确解析
+        if (actualFormat != fourcc || actualWidth != width || actualHeight != height) {
+            LOGE(TAG, "setFormat: driver adjusted to %s %dx%d", name, actualWidth, actualHeight);
+            return ACTION_ERROR_SET_W_H;
+        }
+        const uint32_t rowBytes = (uint32_t) width * planeBytesPerPixel(frame_format);
+        for (int p = 0; p < memoryPlanes; ++p) {
+            if (strides[p] < rowBytes) strides[p] = rowBytes;
+        }
+    }
+    frameFormat = frame_format;
+    frameHeight = actualHeight;
+
+    //2-set frame fps：S_FMT 可能把帧间隔重置为默认值，重新应用请求帧率
+    applyFrameRate();
+    return ACTION_SUCCESS;
+}
+
+ActionInfo V4L2FrameSource::applyFrameRate() {
+    struct v4l2_streamparm parm;
+    memset(&parm, 0, sizeof(parm));
+    parm.type = bufferType();
+    if (0 == ioctl(fd, VIDIOC_G_PARM, &parm) && !(parm.parm.capture.capability & V4L2_CAP_TIMEPERFRAME)) {
+        LOGW(TAG, "applyFrameRate: device does not support timeperframe");
+    }
+    parm.parm.capture.timeperframe.numerator = 1;
+    parm.parm.capture.timeperframe.denominator = requestFrameRate;
+
+    if (0 > ioctl(fd, VIDIOC_S_PARM, &parm)) {
+        LOGW(TAG, "applyFrameRate: ioctl set fps failed, %s", strerror(errno));
+        frameRate = 0;
+        return ACTION_ERROR_SET_FPS;
+    }
+    //驱动回填实际帧间隔（不支持的帧率会被调整到最接近的档位）
+    const struct v4l2_fract &fract = parm.parm.capture.timeperframe;
+    frameRate = fract.numerator ? (fract.denominator + fract.numerator / 2) / fract.numerator : 0;
+    LOGD(TAG, "applyFrameRate: request %d fps, actual %u/%u s (%d fps)", requestFrameRate,
+         fract.numerator, fract.denominator, frameRate);
+    return ACTION_SUCCESS;
+}
+
+ActionInfo V4L2FrameSource::setFrameRate(int fps) {
+    if (fps <= 0) {
+        LOGW(TAG, "setFrameRate: invalid fps %d", fps);
+        return ACTION_ERROR_SET_FPS;
+    }
+    requestFrameRate = fps;
+    return applyFrameRate();
+}
+
+int V4L2FrameSource::getFrameRate() {
+    return frameRate;
+}
+
+void V4L2FrameSource::setWarmStandby(bool enable) {
+    warmStandby = enable;
+    if (!enable && !streaming) {
+        releaseBuffer();
+    }
+}
+
+ActionInfo V4L2FrameSource::streamOn() {
+    //热备时缓冲区仍在映射中，跳过 REQBUFS/QUERYBUF/mmap
+    const bool warm = buffers != NULL;
+    if (!warm && ACTION_SUCCESS != prepareBuffer()) {
+        releaseBuffer();
+        return ACTION_ERROR_START;
+    }
+    if (ACTION_SUCCESS != queueBuffers()) {
+        releaseBuffer();
+        return ACTION_ERROR_START;
+    }
+    enum v4l2_buf_type type = bufferType();
+    if (0 > ioctl(fd, VIDIOC_STREAMON, &type)) {
+        LOGE(TAG, "streamOn: ioctl VIDIOC_STREAMON failed, %s", strerror(errno));
+        releaseBuffer();
+        return ACTION_ERROR_START;
+    }
+    streaming = true;
+    LOGD(TAG, "streamOn: success (%s)", warm ? "warm" : "cold");
+    return ACTION_SUCCESS;
+}
+
+ActionInfo V4L2FrameSource::streamOff() {
+    ActionInfo action = ACTION_SUCCESS;
+    enum v4l2_buf_type type = bufferType();
+    if (0 > ioctl(fd, VIDIOC_STREAMOFF, &type)) {
+        LOGE(TAG, "streamOff: ioctl failed: %s", strerror(errno));
+        action = ACTION_ERROR_STOP;
+    } else {
+        LOGD(TAG, "streamOff: ioctl VIDIOC_STREAMOFF success");
+    }
+    streaming = false;
+    //热备且 STREAMOFF 成功时保留映射，否则释放
+    if (!warmStandby || action != ACTION_SUCCESS) {
+        releaseBuffer();
+    }
+    return action;
+}
+
+FrameReadResult V4L2FrameSource::acquire(SourceFrame &frame, int timeoutMs) {
+    fd_set fds;
+    struct timeval tv;
+    tv.tv_sec = timeoutMs / 1000;
+    tv.tv_usec = (timeoutMs % 1000) * 1000;
+    FD_ZERO (&fds);
+    FD_SET (fd, &fds);
+
+    int ret = select(fd + 1, &fds, NULL, NULL, &tv);
+    if (ret < 0) {
+        LOGE(TAG, "acquire: select failed: %s", strerror(errno));
+        return FRAME_READ_TIMEOUT;
+    } else if (ret == 0) {
+        LOGW(TAG, "acquire: select timeout (no data for %d ms)", timeoutMs);
+        return FRAME_READ_TIMEOUT;
+    }
+
+    // 有数据可读
+    struct v4l2_buffer buffer;
+    struct v4l2_plane planes[MAX_FRAME_PLANES];
+    resetBuffer(buffer, planes, 0);
+    {
+        TRACE_SCOPE("DQBUF");
+        if (0 > ioctl(fd, VIDIOC_DQBUF, &buffer)) {
+            LOGE(TAG, "acquire: VIDIOC_DQBUF failed: %s", strerror(errno));
+            return FRAME_READ_ERROR;
+        }
+    }
+
+    fillPlanes(frame, buffer);
+    frame.timestampUs = frameTimestampUs(buffer);
+    frame.sequence = buffer.sequence;
+    return FRAME_READ_SUCCESS;
+}
+
+void V4L2FrameSource::release(const SourceFrame &frame) {
+    struct v4l2_buffer buffer;
+    struct v4l2_plane planes[MAX_FRAME_PLANES];
+    resetBuffer(buffer, planes, frame.index);
+    TRACE_SCOPE("QBUF");
+    if (0 > ioctl(fd, VIDIOC_QBUF, &buffer)) {
+        LOGW(TAG, "release: ioctl VIDIOC_QBUF %s", strerror(errno));
+    }
+}
+
+ActionInfo V4L2FrameSource::close() {
+    ActionInfo action = ACTION_SUCCESS;
+    releaseBuffer();
+    if (fd > 0) {
+        if (0 > ::close(fd)) {
+            LOGE(TAG, "close: failed, %s", strerror(errno));
+            action = ACTION_ERROR_CLOSE;
+        } else {
+            LOGD(TAG, "close: success");
+        }
+        fd = 0;
+    }
+    return action;
+}
+
+#ifdef __cplusplus
+}  // extern "C"
+#endif
@@ -0,0 +1,74 @@
+//
+// Created by Hsj on 2026/10/18.
+//
+
+#ifndef ANDROID_CAMERA_V4L2_V4L2FRAMESOURCE_H
+#define ANDROID_CAMERA_V4L2_V4L2FRAMESOURCE_H
+
+#include <linux/videodev2.h>
+#include "FrameSource.h"
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/**
+ * 一个 V4L2 缓冲区的映射，多平面格式（NV12M/NV16M）每个内存平面单独 mmap
+ */
+struct VideoBuffer {
+    void *start[MAX_FRAME_PLANES];
+    size_t length[MAX_FRAME_PLANES];
+};
+
+/**
+ * V4L2 设备帧源：mmap 缓冲区 + select/DQBUF/QBUF
+ */
+class V4L2FrameSource : public IFrameSource {
+private:
+    int fd;
+    bool useMultiplanar;  // 是否使用多平面 API
+    int frameFormat;
+    int frameHeight;
+    int memoryPlanes;       // 每个缓冲区的内存平面数（多平面格式为 2）
+    uint32_t strides[MAX_FRAME_PLANES]; // S_FMT 回填的各内存平面 bytesperline
+    int frameRate;          // 驱动回填的实际帧率
+    int requestFrameRate;   // 请求帧率，setFormat 后重新应用
+    VideoBuffer* buffers;
+    int bufferCount;
+    bool streaming;
+    bool warmStandby;
+
+    inline v4l2_buf_type bufferType() const;
+    void resetBuffer(struct v4l2_buffer &buffer, struct v4l2_plane *planes, unsigned int index) const;
+    ActionInfo prepareBuffer();
+    ActionInfo queueBuffers();
+    void releaseBuffer();
+    void enumFrameIntervals(FrameCapability &capability) const;
+    bool supportsFormat(uint32_t fourcc) const;
+    uint32_t resolvePixelFormat(int frameFormat) const;
+    void fillPlanes(SourceFrame &frame, const struct v4l2_buffer &buffer) const;
+    ActionInfo applyFrameRate();
+    static uint64_t frameTimestampUs(const struct v4l2_buffer &buffer);
+
+public:
+    V4L2FrameSource();
+    ~V4L2FrameSource() override;
+    ActionInfo open(const char *path) override;
+    bool setControl(uint32_t id, int32_t value) override;
+    ActionInfo getCapabilities(std::vector<FrameCapability> &capabilities) override;
+    ActionInfo setFormat(int width, int height, int frameFormat) override;
+    ActionInfo setFrameRate(int fps) override;
+    int getFrameRate() override;
+    void setWarmStandby(bool enable) override;
+    ActionInfo streamOn() override;
+    ActionInfo streamOff() override;
+    FrameReadResult acquire(SourceFrame &frame, int timeoutMs) override;
+    void release(const SourceFrame &frame) override;
+    ActionInfo close() override;
+};
+
+#ifdef __cplusplus
+}  // extern "C"
+#endif
+
+#endif //ANDROID_CAMERA_V4L2_V4L2FRAMESOURCE_H
@@ -20,6 +20,38 @@ public final class CameraAPI {
     public static final int FRAME_FORMAT_MJPEG = 0;
     public static final int FRAME_FORMAT_YUYV = 1;
     public static final int FRAME_FORMAT_DEPTH = 2;
+    //半平面 YUV（ISP 输出），设备只提供多平面 NV12M/NV16M 时自动使用
+    public static final int FRAME_FORMAT_NV12 = 3;
+    public static final int FRAME_FORMAT_NV16 = 4;
+    //压缩码流（UVC H.264/H.265），不解码：码流经 setStreamCallback 直接复用，设置预览时 MediaCodec 解码到 Surface
+    public static final int FRAME_FORMAT_H264 = 5;
+    public static final int FRAME_FORMAT_HEVC = 6;
+    //灰度/深度：帧回调为原始数据（GREY 8 位，Y10/Y16/Z16 为 uint16 小端），只在预览时色调映射
+    public static final int FRAME_FORMAT_GREY = 7;
+    public static final int FRAME_FORMAT_Y10 = 8;
+    public static final int FRAME_FORMAT_Y16 = 9;
+    public static final int FRAME_FORMAT_Z16 = 10;
+    //PixelFormat: 帧回调数据格式，见 getPixelFormat()
+    public static final int PIXEL_FORMAT_ERROR = 0;
+    public static final int PIXEL_FORMAT_NV12 = 1;
+    public static final int PIXEL_FORMAT_YUV422 = 2;
+    public static final int PIXEL_FORMAT_YUYV = 3;
+    public static final int PIXEL_FORMAT_DEPTH = 4;
+    public static final int PIXEL_FORMAT_NV16 = 5;
+    public static final int PIXEL_FORMAT_GREY = 6;
+    public static final int PIXEL_FORMAT_Y10 = 7;
+    public static final int PIXEL_FORMAT_Y16 = 8;
+    //DecodeType: MJPEG 解码器，见 setFrameSizeAuto()
+    public static final int DECODE_NONE = 0;
+    public static final int DECODE_HW = 1;
+    public static final int DECODE_SW = 2;
+    //LogLevel: 与 android.util.Log 优先级一致
+    public static final int LOG_LEVEL_VERBOSE = 2;
+    public static final int LOG_LEVEL_DEBUG = 3;
+    public static final int LOG_LEVEL_INFO = 4;
+    public static final int LOG_LEVEL_WARN = 5;
+    public static final int LOG_LEVEL_ERROR = 6;
+    public static final int LOG_LEVEL_SILENT = 8;
     //Status
     private static final int STATUS_ERROR_DESTROYED = 50;
     private static final int STATUS_ERROR_OPEN = 40;
@@ -35,6 +67,77 @@ public final class CameraAPI {
 //======================================Java API====================================================
 
     private long nativeObj;
+    private static volatile boolean traceEnabled;
+
+    /**
+     * 运行时调整日志级别与逐帧日志采样（进程内全部相机共用），可在 release 包保留诊断日志
+     * 采集线程每帧只做一次原子读判断，关闭时没有额外开销
+     *
+     * @param level          最低输出级别，{@link #LOG_LEVEL_VERBOSE} ~ {@link #LOG_LEVEL_SILENT}
+     * @param sampleInterval 每 N 帧输出一条帧日志，0 不按间隔输出
+     * @param slowFrameUs    单帧处理耗时（出队到回调返回）超过该值时输出帧日志，0 不按耗时输出
+     */
+    public static void setLogLevel(int level, int sampleInterval, int slowFrameUs) {
+        Logger.setLevel(level);
+        nativeSetLogLevel(level, sampleInterval, slowFrameUs);
+    }
+
+    /**
+     * 开关 ATrace 埋点（Perfetto/systrace 的 app 类别）：DQBUF、decode、render、jni_callback、QBUF、
+     * 流录制写盘等区段，每帧以 V4L2 sequence 为 cookie 的异步区段 v4l2_frame 及计数器 v4l2_sequence
+     * 关闭时每个埋点只有一次原子读；Java 侧（如录像编码）可用 {@link #isTraceEnabled()} 判断是否埋点
+     *
+     * @return 系统不支持 ATrace（API 23 以下）时返回 false
+     */
+    public static boolean setTraceEnabled(boolean enable) {
+        boolean ret = nativeSetTraceEnabled(enable);
+        traceEnabled = enable && ret;
+        return ret;
+    }
+
+    public static boolean isTraceEnabled() {
+        return traceEnabled;
+    }
+
+    /**
+     * 当前连接的 USB 相机节点（进程内设备表，随插拔增量更新，不扫描 /dev）
+     *
+     * @return 每项为 {videoN 的 N, vendorId, productId}，设备路径为 "/dev/video" + N
+     */
+    public static int[][] getDevices() {
+        return nativeGetDevices();
+    }
+
+    /**
+     * 设置 USB 相机插拔回调（进程内唯一，null 取消），代替轮询 {@link #create(int, int)}
+     */
+    public static void setDeviceCallback(IDeviceCallback callback) {
+        nativeSetDeviceCallback(callback);
+    }
+
+    /**
+     * 能力缓存目录（如 context.getCacheDir().getPath()），null 只做进程内缓存
+     */
+    public static void setCapabilityCacheDir(String directory) {
+        nativeSetCapabilityCacheDir(directory);
+    }
+
+    /**
+     * 预创建该尺寸的 MJPEG 硬解（MediaCodec）放入进程内缓存，之后 setFrameSize 直接复用，省去 50~150ms 的创建配置
+     * 缓存最多保留两个空闲解码器（如预览 + 拍照分辨率）；同步创建，不要在主线程调用
+     *
+     * @return 成功或已有同尺寸缓存返回 true，设备没有 MJPEG 硬解返回 false
+     */
+    public static boolean prewarmDecoder(int width, int height) {
+        return STATUS_SUCCESS == nativePrewarmDecoder(width, height);
+    }
+
+    /**
+     * 销毁缓存中空闲的硬解（如 onTrimMemory 或不再使用相机时），正在使用的解码器不受影响
+     */
+    public static void clearDecoderCache() {
+        nativeClearDecoderCache();
+    }
 
     public CameraAPI() {
         this.nativeObj = nativeInit();
@@ -74,6 +177,30 @@ public final class CameraAPI {
         }
     }
 
+    /**
+     * 以录制文件代替相机：回放流文件（.v4l2s）或 raw 文件（frame_{width}x{height}_{format}.raw，可多帧拼接）
+     * 之后的 setFrameSize/setPreview/setFrameCallback/start 与真实相机一致，用于无相机时压测解码、渲染、回调
+     * 帧时间戳保持原始帧间隔（raw 文件按 30fps），曝光设置被忽略
+     *
+     * @param filePath 录制文件路径
+     * @param realtime true 按原始帧间隔送帧，false 以最快速度送帧
+     * @param loop     到达文件末尾后是否从头循环
+     * @return 成功返回 true，失败返回 false
+     */
+    public final synchronized boolean connectByReplay(String filePath, boolean realtime, boolean loop) {
+        if (filePath == null || filePath.isEmpty()) {
+            throw new IllegalArgumentException("File path cannot be null or empty");
+        }
+        if (this.nativeObj == 0) {
+            Log.e(TAG, "Can't be call after call destroy");
+            return false;
+        } else {
+            int status = nativeCreateByReplay(this.nativeObj, filePath, realtime, loop);
+            Logger.d(TAG, "connectByReplay: " + status);
+            return STATUS_SUCCESS == status;
+        }
+    }
+
     public final boolean setAutoExposure(boolean isAuto) {
         if (this.nativeObj == 0) {
             Log.w(TAG, "Can't be call after call destroy");
@@ -112,6 +239,47 @@ public final class CameraAPI {
         return sizes;
     }
 
+    /**
+     * 全部 格式 x 尺寸 x 帧率 能力，同一设备（vid/pid/固件）进程内只枚举一次，
+     * 设置 {@link #setCapabilityCacheDir} 后写入磁盘，之后启动不再逐项 ioctl 探测
+     *
+     * @return 失败或已销毁时返回空列表
+     */
+    public final List<FrameCapability> getCapabilities() {
+        int[][] rows = null;
+        if (this.nativeObj != 0) {
+            rows = nativeCapabilities(this.nativeObj);
+            Logger.d(TAG, "getCapabilities: " + (rows == null ? 0 : rows.length));
+        } else {
+            Logger.e(TAG, "getCapabilities: already destroyed");
+        }
+        return FrameCapability.parse(rows);
+    }
+
+    /**
+     * 按目标尺寸和帧率自动选择相机格式（NV12/YUYV/NV16/MJPEG）、帧间隔和 MJPEG 解码器（硬解/软解），代替写死帧格式
+     * 依据能力缓存（{@link #getCapabilities()}）和设备上的短解码基准测试（首次数百毫秒，之后按设备缓存，
+     * 设置 {@link #setCapabilityCacheDir} 后持久化），不要在主线程调用；选中的帧率同时设置到相机
+     *
+     * @return 成功返回 {帧格式 FRAME_FORMAT_*, 解码器 DECODE_*, 驱动回填的实际帧率}，失败返回 null
+     */
+    public final int[] setFrameSizeAuto(int width, int height, int fps) {
+        if (this.nativeObj == 0) {
+            Log.w(TAG, "Can't be call after call destroy");
+            return null;
+        } else {
+            int[] selection = nativeFrameSizeAuto(this.nativeObj, width, height, fps);
+            Logger.d(TAG, "setFrameSizeAuto: " + (selection == null ? "failed"
+                    : "format=" + selection[0] + ", decoder=" + selection[1] + ", fps=" + selection[2]));
+            return selection;
+        }
+    }
+
+    /**
+     * @param frameFormat FRAME_FORMAT_*；NV12/NV16 不解码，ISP 行对齐或多平面时帧回调收到去掉填充的紧凑帧，
+     *                    本身紧凑时帧回调直接引用 V4L2 缓冲区（零拷贝）；
+     *                    H264/HEVC 没有帧回调数据，码流通过 {@link #setStreamCallback} 获取
+     */
     public final boolean setFrameSize(int width, int height, int frameFormat) {
         if (this.nativeObj == 0) {
             Log.w(TAG, "Can't be call after call destroy");
@@ -140,6 +308,59 @@ public final class CameraAPI {
         }
     }
 
+    /**
+     * 设置相机帧率（VIDIOC_S_PARM），在 {@link #setFrameSize} 前后、{@link #start()} 之前调用
+     * 驱动会把不支持的帧率调整到最接近的档位，实际帧率见 {@link #getFrameRate()}，MJPEG 硬解随之重新配置
+     * 硬解重新配置失败退回软解时像素格式改变（预览随之更新），帧回调使用方需重新读取 {@link #getPixelFormat()}
+     */
+    public final boolean setFrameRate(int fps) {
+        if (this.nativeObj == 0) {
+            Log.w(TAG, "Can't be call after call destroy");
+            return false;
+        } else {
+            int status = nativeFrameRate(this.nativeObj, fps);
+            Logger.d(TAG, "setFrameRate: " + status + ", actual=" + getFrameRate());
+            return STATUS_SUCCESS == status;
+        }
+    }
+
+    /**
+     * 驱动回填的实际帧率，未设置格式或驱动不支持时返回 0；录像编码器应按此配置
+     */
+    public final int getFrameRate() {
+        return this.nativeObj == 0 ? 0 : nativeGetFrameRate(this.nativeObj);
+    }
+
+    /**
+     * 当前帧格式与尺寸对应的能力，{@link FrameCapability#getFrameRates()} 为可选帧率
+     *
+     * @return 未设置帧尺寸或未枚举到时返回 null
+     */
+    public final FrameCapability getFrameCapability() {
+        if (this.nativeObj == 0) return null;
+        int[] row = nativeFrameCapability(this.nativeObj);
+        List<FrameCapability> capabilities = FrameCapability.parse(row == null ? null : new int[][]{row});
+        return capabilities.isEmpty() ? null : capabilities.get(0);
+    }
+
+    /**
+     * 获取帧回调数据的像素格式，setFrameSize 之后有效
+     * MJPEG 取决于解码器（PIXEL_FORMAT_NV12 / PIXEL_FORMAT_YUV422），YUYV、DEPTH、NV12、NV16 为原始数据，
+     * GREY/Y10/Y16 为原始灰度（PIXEL_FORMAT_GREY/Y10/Y16），Z16 与 DEPTH 相同为 PIXEL_FORMAT_DEPTH，
+     * H264/HEVC 返回 PIXEL_FORMAT_ERROR
+     */
+    public final int getPixelFormat() {
+        if (this.nativeObj == 0) {
+            Log.w(TAG, "Can't be call after call destroy");
+            return PIXEL_FORMAT_ERROR;
+        } else {
+            return nativeGetPixelFormat(this.nativeObj);
+        }
+    }
+
+    /**
+     * 设置帧回调，传入 {@link IFrameTimestampCallback} 时额外回调采集时间戳
+     */
     public final boolean setFrameCallback(IFrameCallback frameCallback) {
         if (this.nativeObj == 0) {
             Log.w(TAG, "Can't be call after call destroy");
@@ -151,6 +372,49 @@ public final class CameraAPI {
         }
     }
 
+    /**
+     * 设置 ROI 回调（仅 MJPEG），需在 setFrameSize 之后、start 之前调用，传入 null 取消
+     * 配合 {@link #setRoi} 只解码覆盖区域的 MCU，解码耗时随区域面积下降，适合条码等局部分析
+     */
+    public final boolean setRoiCallback(IRoiCallback roiCallback) {
+        if (this.nativeObj == 0) {
+            Log.w(TAG, "Can't be call after call destroy");
+            return false;
+        } else {
+            int status = nativeRoiCallback(this.nativeObj, roiCallback);
+            Logger.d(TAG, "setRoiCallback: " + status);
+            return STATUS_SUCCESS == status;
+        }
+    }
+
+    /**
+     * 设置 H.264/HEVC 码流回调（仅 FRAME_FORMAT_H264/HEVC），setFrameSize 之后、采集中均可调用，传入 null 取消
+     * 新回调先收到 onStreamFormat（参数集），之后每个访问单元一次 onStreamFrame；不能在回调内调用本方法
+     * 录制见 {@link StreamMuxer}，码流原样写入 MP4，不经过解码与重新编码
+     */
+    public final boolean setStreamCallback(IStreamCallback streamCallback) {
+        if (this.nativeObj == 0) {
+            Log.w(TAG, "Can't be call after call destroy");
+            return false;
+        } else {
+            int status = nativeStreamCallback(this.nativeObj, streamCallback);
+            Logger.d(TAG, "setStreamCallback: " + status);
+            return STATUS_SUCCESS == status;
+        }
+    }
+
+    /**
+     * 设置 ROI 区域（帧像素坐标），采集过程中可随时修改，width 或 height 为 0 时停止 ROI 解码
+     */
+    public final boolean setRoi(int x, int y, int width, int height) {
+        if (this.nativeObj == 0) {
+            Log.w(TAG, "Can't be call after call destroy");
+            return false;
+        } else {
+            return STATUS_SUCCESS == nativeSetRoi(this.nativeObj, x, y, width, height);
+        }
+    }
+
     public final boolean setPreview(Surface surface) {
         if (this.nativeObj == 0) {
             Log.w(TAG, "Can't be call after call setPreview");
@@ -184,6 +448,39 @@ public final class CameraAPI {
         }
     }
 
+    /**
+     * 快速切换分辨率/帧格式/帧率，不关闭设备，{@link #setFrameSize} 之后调用
+     * 采集中由采集线程在两帧之间执行 STREAMOFF -> S_FMT -> 只重建变化部分（缓冲区、解码器、预览转换）-> STREAMON，
+     * 预览窗口保留，MJPEG 硬解经解码器缓存复用；本方法等待执行结果返回
+     * 之后帧回调的尺寸和像素格式随之改变，用 {@link #getActualFrameSize()}/{@link #getPixelFormat()} 重新读取
+     * 不能在 H264/HEVC 与像素格式之间切换，流录制中不能调用；失败时恢复原格式继续采集
+     *
+     * @param fps 小于等于 0 时保持当前帧率
+     */
+    public final synchronized boolean reconfigure(int width, int height, int frameFormat, int fps) {
+        if (this.nativeObj == 0) {
+            Log.w(TAG, "Can't be call after call destroy");
+            return false;
+        } else {
+            int status = nativeReconfigure(this.nativeObj, width, height, frameFormat, fps);
+            Logger.d(TAG, "reconfigure: " + status);
+            return STATUS_SUCCESS == status;
+        }
+    }
+
+    /**
+     * 热备模式：stop 后保留 V4L2 缓冲区映射和解码器，再次 start 只需重新入队 + STREAMON，
+     * 适合频繁启停（亮灭屏、模式切换）；代价是停止期间继续占用缓冲区内存
+     * 可在 create 前后任意时刻设置，关闭时立即释放已保留的缓冲区；setFrameSize 会重新分配
+     */
+    public final synchronized void setWarmStandby(boolean enable) {
+        if (this.nativeObj == 0) {
+            Log.w(TAG, "Can't be call after call destroy");
+        } else {
+            nativeWarmStandby(this.nativeObj, enable);
+        }
+    }
+
     public final synchronized void destroy() {
         if (this.nativeObj == 0) {
             Logger.w(TAG, "destroy: already destroyed");
@@ -215,6 +512,42 @@ public final class CameraAPI {
         Logger.d(TAG, "saveDebugFrame: requested save to " + savePath);
     }
 
+    /**
+     * 开始流录制：每个出队的原始帧（MJPEG/YUYV/DEPTH）连同采集时间戳、序号追加到流文件，
+     * 停止时写入帧索引。写盘在独立线程，写缓冲区满时丢帧而不阻塞采集
+     * 录制文件可用 {@link #connectByReplay} 回放或 {@link StreamFileReader} 读取
+     *
+     * @param filePath 输出文件路径，建议后缀 .v4l2s
+     * @return 成功返回 true，setFrameSize 之前调用返回 false
+     */
+    public final synchronized boolean startStreamCapture(String filePath) {
+        if (filePath == null || filePath.isEmpty()) {
+            throw new IllegalArgumentException("File path cannot be null or empty");
+        }
+        if (this.nativeObj == 0) {
+            Log.w(TAG, "Can't be call after call destroy");
+            return false;
+        } else {
+            int status = nativeStartStreamCapture(this.nativeObj, filePath);
+            Logger.d(TAG, "startStreamCapture: " + status);
+            return STATUS_SUCCESS == status;
+        }
+    }
+
+    /**
+     * 停止流录制，落盘剩余数据并写入索引
+     */
+    public final synchronized boolean stopStreamCapture() {
+        if (this.nativeObj == 0) {
+            Log.w(TAG, "Can't be call after call destroy");
+            return false;
+        } else {
+            int status = nativeStopStreamCapture(this.nativeObj);
+            Logger.d(TAG, "stopStreamCapture: " + status);
+            return STATUS_SUCCESS == status;
+        }
+    }
+
 //=======================================Native API=================================================
 
     private native long nativeInit();
@@ -223,26 +556,68 @@ public final class CameraAPI {
 
     private native int nativeCreateByPath(long nativeObj, String devicePath);
 
+    private native int nativeCreateByReplay(long nativeObj, String filePath, boolean realtime, boolean loop);
+
     private native int nativeAutoExposure(long nativeObj, boolean isAuto);
 
     private native int nativeSetExposure(long nativeObj, int level);
 
     private native int[][] nativeSupportSize(long nativeObj);
 
+    private native int[][] nativeCapabilities(long nativeObj);
+
     private native int nativeFrameSize(long nativeObj, int width, int height, int pixelFormat);
 
+    private native int[] nativeFrameSizeAuto(long nativeObj, int width, int height, int fps);
+
+    private native int nativeFrameRate(long nativeObj, int fps);
+
+    private native int nativeGetFrameRate(long nativeObj);
+
+    private native int[] nativeFrameCapability(long nativeObj);
+
     private native int[] nativeGetActualFrameSize(long nativeObj);
 
     private native int nativeFrameCallback(long nativeObj, IFrameCallback frameCallback);
 
+    private native int nativeGetPixelFormat(long nativeObj);
+
+    private native int nativeRoiCallback(long nativeObj, IRoiCallback roiCallback);
+
+    private native int nativeSetRoi(long nativeObj, int x, int y, int width, int height);
+
+    private native int nativeStreamCallback(long nativeObj, IStreamCallback streamCallback);
+
     private native int nativePreview(long nativeObj, Surface surface);
 
     private native int nativeStart(long nativeObj);
 
     private native int nativeStop(long nativeObj);
 
+    private native int nativeReconfigure(long nativeObj, int width, int height, int frameFormat, int fps);
+
+    private native void nativeWarmStandby(long nativeObj, boolean enable);
+
     private native int nativeDestroy(long nativeObj);
 
     private native void nativeSaveDebugFrame(long nativeObj, String savePath);
 
+    private native int nativeStartStreamCapture(long nativeObj, String filePath);
+
+    private native int nativeStopStreamCapture(long nativeObj);
+
+    private static native void nativeSetLogLevel(int level, int sampleInterval, int slowFrameUs);
+
+    private static native boolean nativeSetTraceEnabled(boolean enable);
+
+    private static native void nativeSetDeviceCallback(IDeviceCallback callback);
+
+    private static native int[][] nativeGetDevices();
+
+    private static native void nativeSetCapabilityCacheDir(String directory);
+
+    private static native int nativePrewarmDecoder(int width, int height);
+
+    private static native void nativeClearDecoderCache();
+
 }
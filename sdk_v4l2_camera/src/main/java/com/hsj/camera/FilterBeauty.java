@@ -0,0 +1,175 @@
+package com.hsj.camera;
+
+import android.content.res.AssetManager;
+import android.opengl.GLES20;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * @Author:Hsj
+ * @Date:2026/10/18
+ * @Class:FilterBeauty
+ * @Desc:磨皮美颜，4 个 pass：
+ *       1、降采样到 1/N 分辨率（copy_fragment.glsl）
+ *       2、3、低分辨率下水平、竖直两次一维双边滤波（beauty_blur_fragment.glsl）
+ *       4、全分辨率按高反差将原图与模糊结果合成（beauty_vertex.glsl / beauty_fragment.glsl）
+ *       采样步长由输出尺寸计算，与分辨率无关；质量档位决定降采样倍数和滤波半径
+ */
+public final class FilterBeauty extends GlFilter {
+
+    public static final int QUALITY_LOW = 0;
+    public static final int QUALITY_MEDIUM = 1;
+    public static final int QUALITY_HIGH = 2;
+
+    //各档位: {降采样倍数, 单方向采样半径}，滤波半径约为 倍数 x 半径 个原图像素
+    private static final int[][] QUALITY_TIERS = {{4, 3}, {3, 4}, {2, 5}};
+
+    private volatile float strength;
+    private volatile int quality;
+
+    private final GlFrameBuffer blurH = new GlFrameBuffer();
+    private final GlFrameBuffer blurV = new GlFrameBuffer();
+    private final GlProgram[] blurPrograms = new GlProgram[QUALITY_TIERS.length];
+    private GlProgram copy2D, copyExternal;
+    //当前 FBO 对应的质量档位，-1: 未创建
+    private int bufferQuality = -1;
+
+    public FilterBeauty() {
+        this(0.7f, QUALITY_MEDIUM);
+    }
+
+    /**
+     * @param strength 磨皮强度 0~1，0 为关闭（直接输出原图）
+     * @param quality  QUALITY_LOW / QUALITY_MEDIUM / QUALITY_HIGH
+     */
+    public FilterBeauty(float strength, int quality) {
+        setStrength(strength);
+        setQuality(quality);
+    }
+
+    public void setStrength(float strength) {
+        this.strength = Math.max(0.0f, Math.min(1.0f, strength));
+    }
+
+    public void setQuality(int quality) {
+        if (quality < QUALITY_LOW || quality > QUALITY_HIGH) {
+            throw new IllegalArgumentException("Not support quality: " + quality);
+        }
+        this.quality = quality;
+    }
+
+    @Override
+    protected String getVertexShader(AssetManager assets) {
+        return GlProgramCache.getShader(assets, "beauty_vertex.glsl");
+    }
+
+    @Override
+    protected String getFragmentShader(AssetManager assets) {
+        return GlProgramCache.getShader(assets, "beauty_fragment.glsl");
+    }
+
+    @Override
+    protected void onInit() {
+        //GL 上下文重建后旧句柄已失效
+        blurH.reset();
+        blurV.reset();
+        bufferQuality = -1;
+        Arrays.fill(blurPrograms, null);
+        String vertex = GlProgramCache.getShader(assets, "camera_vertex.glsl");
+        String copy = GlProgramCache.getShader(assets, "copy_fragment.glsl");
+        copy2D = getProgram(vertex, copy, false);
+        copyExternal = getProgram(vertex, copy, true);
+    }
+
+    @Override
+    protected void onSizeChanged(int width, int height) {
+        blurH.release();
+        blurV.release();
+        bufferQuality = -1;
+    }
+
+    @Override
+    protected void onDrawFrame(int output, int texture, boolean external,
+                               FloatBuffer vertexBuffer, FloatBuffer textureBuffer) {
+        float strength = this.strength;
+        int quality = this.quality;
+        GlProgram copy = external ? copyExternal : copy2D;
+        GlProgram composite = getFilterProgram(external);
+        GlProgram blur = getBlurProgram(quality);
+        if (copy == null) return;
+        if (strength <= 0.0f || composite == null || blur == null || !prepareBuffers(quality)) {
+            //关闭或初始化失败: 直接输出原图
+            useProgram(copy, texture, external);
+            drawQuad(copy, vertexBuffer, textureBuffer);
+            return;
+        }
+        //1-降采样: input -> blurV
+        blurV.bind();
+        useProgram(copy, texture, external);
+        drawQuad(copy, vertexBuffer, textureBuffer);
+        //2-水平双边滤波: blurV -> blurH
+        blurH.bind();
+        useProgram(blur, blurV.getTexture(), false);
+        GLES20.glUniform2f(blur.uniform("texelOffset"), 1.0f / blurV.getWidth(), 0.0f);
+        drawQuad(blur, vertexBuffer, FBO_TEXTURE_BUFFER);
+        //3-竖直双边滤波: blurH -> blurV
+        blurV.bind();
+        useProgram(blur, blurH.getTexture(), false);
+        GLES20.glUniform2f(blur.uniform("texelOffset"), 0.0f, 1.0f / blurV.getHeight());
+        drawQuad(blur, vertexBuffer, FBO_TEXTURE_BUFFER);
+        //4-合成: input + blurV -> output
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, output);
+        GLES20.glViewport(0, 0, width, height);
+        useProgram(composite, texture, external);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE1);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, blurV.getTexture());
+        GLES20.glUniform1i(composite.uniform("blurTexture"), 1);
+        GLES20.glUniform1f(composite.uniform("strength"), strength);
+        drawQuad(composite, vertexBuffer, textureBuffer);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE1);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, GLES20.GL_NONE);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+    }
+
+    @Override
+    protected void onRelease() {
+        blurH.release();
+        blurV.release();
+        bufferQuality = -1;
+    }
+
+    /**
+     * 按档位创建低分辨率 FBO，档位或尺寸不变时复用
+     */
+    private boolean prepareBuffers(int quality) {
+        if (bufferQuality == quality) return true;
+        int scale = QUALITY_TIERS[quality][0];
+        int w = Math.max(1, width / scale);
+        int h = Math.max(1, height / scale);
+        if (width <= 0 || height <= 0 || !blurH.create(w, h) || !blurV.create(w, h)) {
+            blurH.release();
+            blurV.release();
+            return false;
+        }
+        bufferQuality = quality;
+        return true;
+    }
+
+    /**
+     * 滤波半径以 #define 写入源码，不同档位为不同 program（由 GlProgramCache 缓存）
+     */
+    private GlProgram getBlurProgram(int quality) {
+        GlProgram program = blurPrograms[quality];
+        if (program == null) {
+            String vertex = GlProgramCache.getShader(assets, "camera_vertex.glsl");
+            String fragment = GlProgramCache.getShader(assets, "beauty_blur_fragment.glsl");
+            if (vertex == null || fragment == null) return null;
+            program = GlProgramCache.getProgram(vertex,
+                    "#define RADIUS " + QUALITY_TIERS[quality][1] + "\n" + fragment);
+            blurPrograms[quality] = program;
+        }
+        return program;
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.hsj.camera;
+
+import android.content.res.AssetManager;
+import android.opengl.GLES20;
+
+/**
+ * @Author:Hsj
+ * @Date:2026/10/18
+ * @Class:FilterDepth
+ * @Desc:深度图伪彩色（depth_fragment.glsl），灰度 [minValue, maxValue] 映射为 jet 色带，0 为无效深度显示黑色
+ */
+public final class FilterDepth extends GlFilter {
+
+    private volatile float minValue;
+    private volatile float maxValue;
+
+    public FilterDepth() {
+        this(0.0f, 1.0f);
+    }
+
+    /**
+     * @param minValue 映射下限 0~1
+     * @param maxValue 映射上限 0~1
+     */
+    public FilterDepth(float minValue, float maxValue) {
+        setRange(minValue, maxValue);
+    }
+
+    public void setRange(float minValue, float maxValue) {
+        this.minValue = minValue;
+        this.maxValue = maxValue;
+    }
+
+    @Override
+    protected String getFragmentShader(AssetManager assets) {
+        return GlProgramCache.getShader(assets, "depth_fragment.glsl");
+    }
+
+    @Override
+    protected void onDraw(GlProgram program) {
+        GLES20.glUniform1f(program.uniform("minValue"), minValue);
+        GLES20.glUniform1f(program.uniform("maxValue"), maxValue);
+    }
+
+}
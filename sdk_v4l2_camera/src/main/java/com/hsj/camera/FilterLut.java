@@ -0,0 +1,75 @@
+package com.hsj.camera;
+
+import android.content.res.AssetManager;
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+import android.opengl.GLUtils;
+
+import javax.microedition.khronos.opengles.GL10;
+
+/**
+ * @Author:Hsj
+ * @Date:2026/10/18
+ * @Class:FilterLut
+ * @Desc:颜色查找表滤镜（lut_fragment.glsl），LUT 图为 512x512，8x8 个 64x64 格子
+ */
+public final class FilterLut extends GlFilter {
+
+    private final Bitmap lut;
+    private final int[] lutTexture = new int[1];
+    private volatile float intensity;
+
+    public FilterLut(Bitmap lut) {
+        this(lut, 1.0f);
+    }
+
+    /**
+     * @param lut       512x512 LUT 图，GL 上下文重建时需要重新上传，调用方不要 recycle
+     * @param intensity 强度 0~1
+     */
+    public FilterLut(Bitmap lut, float intensity) {
+        if (lut == null || lut.getWidth() != 512 || lut.getHeight() != 512) {
+            throw new IllegalArgumentException("LUT bitmap must be 512x512");
+        }
+        this.lut = lut;
+        this.intensity = intensity;
+    }
+
+    public void setIntensity(float intensity) {
+        this.intensity = intensity;
+    }
+
+    @Override
+    protected String getFragmentShader(AssetManager assets) {
+        return GlProgramCache.getShader(assets, "lut_fragment.glsl");
+    }
+
+    @Override
+    protected void onInit() {
+        GLES20.glGenTextures(1, lutTexture, 0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, lutTexture[0]);
+        GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D, GL10.GL_TEXTURE_MIN_FILTER, GL10.GL_LINEAR);
+        GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D, GL10.GL_TEXTURE_MAG_FILTER, GL10.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_S, GL10.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_T, GL10.GL_CLAMP_TO_EDGE);
+        GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, lut, 0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, GLES20.GL_NONE);
+    }
+
+    @Override
+    protected void onDraw(GlProgram program) {
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE1);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, lutTexture[0]);
+        GLES20.glUniform1i(program.uniform("lutTexture"), 1);
+        GLES20.glUniform1f(program.uniform("intensity"), intensity);
+    }
+
+    @Override
+    protected void onRelease() {
+        if (lutTexture[0] != 0) {
+            GLES20.glDeleteTextures(1, lutTexture, 0);
+            lutTexture[0] = 0;
+        }
+    }
+
+}
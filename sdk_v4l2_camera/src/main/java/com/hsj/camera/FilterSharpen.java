@@ -0,0 +1,43 @@
+package com.hsj.camera;
+
+import android.content.res.AssetManager;
+import android.opengl.GLES20;
+
+/**
+ * @Author:Hsj
+ * @Date:2026/10/18
+ * @Class:FilterSharpen
+ * @Desc:拉普拉斯锐化（sharpen_fragment.glsl），采样步长按输出尺寸计算
+ */
+public final class FilterSharpen extends GlFilter {
+
+    private volatile float strength;
+
+    public FilterSharpen() {
+        this(0.5f);
+    }
+
+    /**
+     * @param strength 锐化强度，0 为不锐化
+     */
+    public FilterSharpen(float strength) {
+        this.strength = strength;
+    }
+
+    public void setStrength(float strength) {
+        this.strength = strength;
+    }
+
+    @Override
+    protected String getFragmentShader(AssetManager assets) {
+        return GlProgramCache.getShader(assets, "sharpen_fragment.glsl");
+    }
+
+    @Override
+    protected void onDraw(GlProgram program) {
+        GLES20.glUniform2f(program.uniform("texelSize"),
+                width > 0 ? 1.0f / width : 0.0f, height > 0 ? 1.0f / height : 0.0f);
+        GLES20.glUniform1f(program.uniform("strength"), strength);
+    }
+
+}
@@ -0,0 +1,171 @@
+package com.hsj.camera;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @Author:Hsj
+ * @Date:2026/10/18
+ * @Class:FrameCapability
+ * @Desc:相机的一种 像素格式 x 尺寸 x 帧率 能力（VIDIOC_ENUM_FMT/ENUM_FRAMESIZES/ENUM_FRAMEINTERVALS）
+ *       stepwise 尺寸时 {@link #getWidth()}/{@link #getHeight()} 为最大值，可在 min~max 间按 step 取值
+ *       由 {@link CameraAPI#getCapabilities()} 返回，同一设备（vid/pid/固件）只枚举一次
+ */
+public final class FrameCapability {
+
+    public static final int SIZE_DISCRETE = 1;
+    public static final int SIZE_STEPWISE = 2;
+
+    public static final int INTERVAL_NONE = 0;
+    public static final int INTERVAL_DISCRETE = 1;
+    public static final int INTERVAL_STEPWISE = 2;
+
+    //V4L2_FMT_FLAG_COMPRESSED
+    private static final int FLAG_COMPRESSED = 0x0001;
+    //native 每项的固定字段数，之后为 (numerator, denominator) * n
+    private static final int FIXED_FIELDS = 10;
+
+    private final int pixelFormat;
+    private final int flags;
+    private final int sizeType;
+    private final int width;
+    private final int height;
+    private final int minWidth;
+    private final int minHeight;
+    private final int stepWidth;
+    private final int stepHeight;
+    private final int intervalType;
+    private final float[] frameRates;
+
+    private FrameCapability(int[] row) {
+        this.pixelFormat = row[0];
+        this.flags = row[1];
+        this.sizeType = row[2];
+        this.width = row[3];
+        this.height = row[4];
+        this.minWidth = row[5];
+        this.minHeight = row[6];
+        this.stepWidth = row[7];
+        this.stepHeight = row[8];
+        this.intervalType = row[9];
+        int count = (row.length - FIXED_FIELDS) / 2;
+        this.frameRates = new float[count];
+        for (int i = 0; i < count; i++) {
+            int numerator = row[FIXED_FIELDS + i * 2];
+            int denominator = row[FIXED_FIELDS + i * 2 + 1];
+            frameRates[i] = numerator == 0 ? 0 : (float) denominator / numerator;
+        }
+    }
+
+    static List<FrameCapability> parse(int[][] rows) {
+        List<FrameCapability> capabilities = new ArrayList<>(rows == null ? 0 : rows.length);
+        if (rows != null) {
+            for (int[] row : rows) {
+                if (row != null && row.length >= FIXED_FIELDS) capabilities.add(new FrameCapability(row));
+            }
+        }
+        return capabilities;
+    }
+
+    /**
+     * V4L2 fourcc，如 'MJPG'、'YUYV'（小端，低字节为第一个字符）
+     */
+    public int getPixelFormat() {
+        return pixelFormat;
+    }
+
+    public String getFourcc() {
+        char[] fourcc = {(char) (pixelFormat & 0xFF), (char) ((pixelFormat >> 8) & 0xFF),
+                (char) ((pixelFormat >> 16) & 0xFF), (char) ((pixelFormat >>> 24) & 0xFF)};
+        return new String(fourcc).trim();
+    }
+
+    public boolean isCompressed() {
+        return (flags & FLAG_COMPRESSED) != 0;
+    }
+
+    /**
+     * 可传给 {@link CameraAPI#setFrameSize} 的帧格式，不支持的格式返回 -1
+     */
+    public int getFrameFormat() {
+        String fourcc = getFourcc();
+        if ("MJPG".equals(fourcc)) return CameraAPI.FRAME_FORMAT_MJPEG;
+        if ("YUYV".equals(fourcc)) return CameraAPI.FRAME_FORMAT_YUYV;
+        if ("NV12".equals(fourcc) || "NM12".equals(fourcc)) return CameraAPI.FRAME_FORMAT_NV12;
+        if ("NV16".equals(fourcc) || "NM16".equals(fourcc)) return CameraAPI.FRAME_FORMAT_NV16;
+        if ("H264".equals(fourcc)) return CameraAPI.FRAME_FORMAT_H264;
+        if ("HEVC".equals(fourcc)) return CameraAPI.FRAME_FORMAT_HEVC;
+        if ("GREY".equals(fourcc)) return CameraAPI.FRAME_FORMAT_GREY;
+        if ("Y10".equals(fourcc)) return CameraAPI.FRAME_FORMAT_Y10;
+        if ("Y16".equals(fourcc)) return CameraAPI.FRAME_FORMAT_Y16;
+        if ("Z16".equals(fourcc)) return CameraAPI.FRAME_FORMAT_Z16;
+        return -1;
+    }
+
+    public int getSizeType() {
+        return sizeType;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getMinWidth() {
+        return minWidth;
+    }
+
+    public int getMinHeight() {
+        return minHeight;
+    }
+
+    public int getStepWidth() {
+        return stepWidth;
+    }
+
+    public int getStepHeight() {
+        return stepHeight;
+    }
+
+    public int getIntervalType() {
+        return intervalType;
+    }
+
+    /**
+     * 帧率（fps）：{@link #INTERVAL_DISCRETE} 时为全部可选帧率；
+     * {@link #INTERVAL_STEPWISE} 时依次为 最大帧率（最小间隔）、最小帧率（最大间隔）、步长间隔对应的帧率
+     */
+    public float[] getFrameRates() {
+        return frameRates.clone();
+    }
+
+    public float getMaxFrameRate() {
+        float max = 0;
+        int count = intervalType == INTERVAL_STEPWISE ? Math.min(1, frameRates.length) : frameRates.length;
+        for (int i = 0; i < count; i++) {
+            max = Math.max(max, frameRates[i]);
+        }
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(getFourcc());
+        builder.append(' ');
+        if (sizeType == SIZE_STEPWISE) {
+            builder.append(minWidth).append('x').append(minHeight).append('~');
+        }
+        builder.append(width).append('x').append(height).append(" fps=");
+        if (intervalType == INTERVAL_STEPWISE && frameRates.length >= 2) {
+            builder.append(frameRates[1]).append('~').append(frameRates[0]);
+        } else {
+            for (int i = 0; i < frameRates.length; i++) {
+                builder.append(i == 0 ? "" : ",").append(frameRates[i]);
+            }
+        }
+        return builder.toString();
+    }
+}
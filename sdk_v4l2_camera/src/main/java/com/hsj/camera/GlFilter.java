@@ -0,0 +1,172 @@
+package com.hsj.camera;
+
+import android.content.res.AssetManager;
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+
+import java.nio.FloatBuffer;
+
+/**
+ * @Author:Hsj
+ * @Date:2026/10/18
+ * @Class:GlFilter
+ * @Desc:滤镜基类，通过 IRender.setFilters/addFilter 串联到渲染链中
+ *       片元着色器中输入纹理统一声明为 "uniform SAMPLER vTexture;"，
+ *       链中第一个滤镜直接采样相机的 OES 纹理，其余滤镜采样上一级的 FBO 纹理，
+ *       两种情况分别编译（SAMPLER = samplerExternalOES / sampler2D），因此 N 个滤镜只需 N 次绘制
+ *       多 pass 滤镜可重写 onDrawFrame，借助 GlFrameBuffer/getProgram/useProgram/drawQuad 实现
+ *       除 setXxx 参数外，所有回调均在 GL 线程执行
+ */
+public abstract class GlFilter {
+
+    private static final String EXTERNAL_HEADER =
+            "#extension GL_OES_EGL_image_external : require\n#define SAMPLER samplerExternalOES\n";
+    private static final String TEXTURE_2D_HEADER = "#define SAMPLER sampler2D\n";
+
+    /*
+     * FBO 纹理坐标: 不做旋转镜像（旋转镜像只在第一级采样 OES 纹理时做一次）
+     */
+    protected static final FloatBuffer FBO_TEXTURE_BUFFER = RenderBase.createBuffer(new float[]{
+            0.0f, 1.0f,  //top left
+            0.0f, 0.0f,  //bottom left
+            1.0f, 1.0f,  //top right
+            1.0f, 0.0f,  //bottom right
+    });
+
+    private GlProgram program2D;
+    private GlProgram programExternal;
+    private int boundTarget;
+    protected AssetManager assets;
+    protected int width;
+    protected int height;
+
+    /**
+     * 顶点着色器源码，默认使用 camera_vertex.glsl（vPosition/vTexCoord -> texCoord）
+     */
+    protected String getVertexShader(AssetManager assets) {
+        return GlProgramCache.getShader(assets, "camera_vertex.glsl");
+    }
+
+    /**
+     * 片元着色器源码（不含 #extension，输入纹理使用 SAMPLER 宏）
+     */
+    protected abstract String getFragmentShader(AssetManager assets);
+
+    /**
+     * 创建滤镜自身的 GL 资源（如 LUT 纹理），GL 上下文重建后会再次调用
+     */
+    protected void onInit() {
+    }
+
+    /**
+     * 输出尺寸变化
+     */
+    protected void onSizeChanged(int width, int height) {
+    }
+
+    /**
+     * 绘制前设置 uniform、绑定额外纹理（GL_TEXTURE0 已被输入纹理占用）
+     */
+    protected void onDraw(GlProgram program) {
+    }
+
+    /**
+     * 绘制一帧，调用前输出 FBO 已绑定、视口为 width x height
+     *
+     * @param output        输出 FBO，0 为屏幕；多 pass 滤镜最后一个 pass 前需重新绑定
+     * @param texture       输入纹理
+     * @param external      输入是否为 OES 纹理
+     * @param vertexBuffer  顶点坐标
+     * @param textureBuffer 输入纹理坐标
+     */
+    protected void onDrawFrame(int output, int texture, boolean external,
+                               FloatBuffer vertexBuffer, FloatBuffer textureBuffer) {
+        GlProgram program = getFilterProgram(external);
+        if (program == null) return;
+        useProgram(program, texture, external);
+        onDraw(program);
+        drawQuad(program, vertexBuffer, textureBuffer);
+    }
+
+    /**
+     * 释放滤镜自身的 GL 资源
+     */
+    protected void onRelease() {
+    }
+
+//==================================================================================================
+
+    /**
+     * getVertexShader/getFragmentShader 编译出的 program
+     */
+    protected final GlProgram getFilterProgram(boolean external) {
+        return external ? programExternal : program2D;
+    }
+
+    /**
+     * 获取使用 SAMPLER 宏的 program
+     */
+    protected final GlProgram getProgram(String vertexSource, String fragmentSource, boolean external) {
+        if (vertexSource == null || fragmentSource == null) return null;
+        return GlProgramCache.getProgram(vertexSource,
+                (external ? EXTERNAL_HEADER : TEXTURE_2D_HEADER) + fragmentSource);
+    }
+
+    /**
+     * 使用 program 并将输入纹理绑定到 GL_TEXTURE0 / vTexture
+     */
+    protected final void useProgram(GlProgram program, int texture, boolean external) {
+        boundTarget = external ? GLES11Ext.GL_TEXTURE_EXTERNAL_OES : GLES20.GL_TEXTURE_2D;
+        GLES20.glUseProgram(program.getId());
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(boundTarget, texture);
+        GLES20.glUniform1i(program.uniform("vTexture"), 0);
+    }
+
+    /**
+     * 绘制全屏四边形并解绑输入纹理（避免下一个 pass 读写同一纹理）
+     */
+    protected final void drawQuad(GlProgram program, FloatBuffer vertexBuffer, FloatBuffer textureBuffer) {
+        int vPosition = program.attribute("vPosition");
+        int vTexCoord = program.attribute("vTexCoord");
+        GLES20.glEnableVertexAttribArray(vPosition);
+        GLES20.glVertexAttribPointer(vPosition, 2, GLES20.GL_FLOAT, false, 8, vertexBuffer);
+        GLES20.glEnableVertexAttribArray(vTexCoord);
+        GLES20.glVertexAttribPointer(vTexCoord, 2, GLES20.GL_FLOAT, false, 8, textureBuffer);
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+        GLES20.glDisableVertexAttribArray(vPosition);
+        GLES20.glDisableVertexAttribArray(vTexCoord);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(boundTarget, GLES20.GL_NONE);
+    }
+
+//==================================================================================================
+
+    final boolean init(AssetManager assets) {
+        this.assets = assets;
+        String vertex = getVertexShader(assets);
+        String fragment = getFragmentShader(assets);
+        program2D = getProgram(vertex, fragment, false);
+        programExternal = getProgram(vertex, fragment, true);
+        if (program2D == null || programExternal == null) return false;
+        onInit();
+        return true;
+    }
+
+    final void sizeChanged(int width, int height) {
+        this.width = width;
+        this.height = height;
+        onSizeChanged(width, height);
+    }
+
+    final void draw(int output, int texture, boolean external, FloatBuffer vertexBuffer, FloatBuffer textureBuffer) {
+        onDrawFrame(output, texture, external, vertexBuffer, textureBuffer);
+    }
+
+    final void release() {
+        onRelease();
+        // program 由 GlProgramCache 管理，可能被其它滤镜共用，不在此删除
+        program2D = null;
+        programExternal = null;
+    }
+}
@@ -0,0 +1,137 @@
+package com.hsj.camera;
+
+import android.content.res.AssetManager;
+import android.opengl.GLES20;
+import android.util.Log;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @Author:Hsj
+ * @Date:2026/10/18
+ * @Class:GlFilterChain
+ * @Desc:滤镜链，两个 FBO 交替作为中间结果（ping-pong），最后一个滤镜直接绘制到屏幕
+ *       滤镜列表可在任意线程修改，下一帧绘制前在 GL 线程生效（初始化新滤镜、释放被移除的滤镜）
+ */
+final class GlFilterChain {
+
+    private static final String TAG = "GlFilterChain";
+
+    private final AssetManager assets;
+    //GL 线程使用的滤镜
+    private final List<GlFilter> filters = new ArrayList<>();
+    //待生效的滤镜列表，null: 无变化
+    private List<GlFilter> pending;
+    private final GlFrameBuffer[] frameBuffers = {new GlFrameBuffer(), new GlFrameBuffer()};
+    private int width, height;
+
+    GlFilterChain(AssetManager assets) {
+        this.assets = assets;
+    }
+
+//======================================Any thread==================================================
+
+    synchronized void setFilters(GlFilter... filters) {
+        this.pending = new ArrayList<>(Arrays.asList(filters));
+    }
+
+    synchronized void addFilter(GlFilter filter) {
+        if (this.pending == null) this.pending = new ArrayList<>(this.filters);
+        this.pending.add(filter);
+    }
+
+    synchronized void removeFilter(GlFilter filter) {
+        if (this.pending == null) this.pending = new ArrayList<>(this.filters);
+        this.pending.remove(filter);
+    }
+
+//======================================GL thread===================================================
+
+    /**
+     * GL 上下文（重新）创建：旧上下文中的 FBO、纹理、program 均已失效，只清空句柄
+     */
+    void onSurfaceCreated() {
+        for (GlFrameBuffer frameBuffer : frameBuffers) {
+            frameBuffer.reset();
+        }
+        width = height = 0;
+        for (GlFilter filter : filters) {
+            if (!filter.init(assets)) Log.e(TAG, "Init filter failed: " + filter);
+        }
+    }
+
+    void onSurfaceChanged(int width, int height) {
+        if (this.width == width && this.height == height) return;
+        this.width = width;
+        this.height = height;
+        for (GlFrameBuffer frameBuffer : frameBuffers) {
+            frameBuffer.release();
+        }
+        for (GlFilter filter : filters) {
+            filter.sizeChanged(width, height);
+        }
+    }
+
+    /**
+     * 使待生效的滤镜列表生效
+     *
+     * @return 是否有滤镜
+     */
+    boolean prepare() {
+        applyPending();
+        return !filters.isEmpty();
+    }
+
+    /**
+     * @param texture       输入纹理（相机 OES 纹理或 YUV 转换后的 FBO 纹理）
+     * @param external      输入是否为 OES 纹理
+     * @param vertexBuffer  顶点坐标
+     * @param texCoord      采样输入纹理时的纹理坐标
+     * @return false: 没有滤镜，由调用方直接绘制
+     */
+    boolean draw(int texture, boolean external, FloatBuffer vertexBuffer, FloatBuffer texCoord) {
+        applyPending();
+        int count = filters.size();
+        if (count == 0) return false;
+        if (count > 1 && !frameBuffers[0].isCreated()) {
+            frameBuffers[0].create(width, height);
+            frameBuffers[1].create(width, height);
+        }
+
+        int input = texture;
+        for (int i = 0; i < count; i++) {
+            boolean last = i == count - 1;
+            int output = last ? 0 : frameBuffers[i % 2].getFrameBuffer();
+            GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, output);
+            GLES20.glViewport(0, 0, width, height);
+            if (!last) GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+            filters.get(i).draw(output, input, i == 0 && external, vertexBuffer,
+                    i == 0 ? texCoord : GlFilter.FBO_TEXTURE_BUFFER);
+            input = frameBuffers[i % 2].getTexture();
+        }
+        return true;
+    }
+
+    private void applyPending() {
+        List<GlFilter> newFilters;
+        synchronized (this) {
+            newFilters = this.pending;
+            this.pending = null;
+        }
+        if (newFilters == null) return;
+        for (GlFilter filter : filters) {
+            if (!newFilters.contains(filter)) filter.release();
+        }
+        for (GlFilter filter : newFilters) {
+            if (!filters.contains(filter)) {
+                if (!filter.init(assets)) Log.e(TAG, "Init filter failed: " + filter);
+                filter.sizeChanged(width, height);
+            }
+        }
+        filters.clear();
+        filters.addAll(newFilters);
+    }
+}
@@ -0,0 +1,94 @@
+package com.hsj.camera;
+
+import android.opengl.GLES20;
+import android.util.Log;
+
+import javax.microedition.khronos.opengles.GL10;
+
+/**
+ * @Author:Hsj
+ * @Date:2026/10/18
+ * @Class:GlFrameBuffer
+ * @Desc:FBO + RGBA 纹理，用于滤镜链中间结果和多 pass 滤镜，只能在 GL 线程使用
+ */
+public final class GlFrameBuffer {
+
+    private static final String TAG = "GlFrameBuffer";
+    private final int[] frameBuffer = new int[1];
+    private final int[] texture = new int[1];
+    private int width, height;
+
+    public boolean create(int width, int height) {
+        release();
+        if (width <= 0 || height <= 0) return false;
+        this.width = width;
+        this.height = height;
+        GLES20.glGenFramebuffers(1, frameBuffer, 0);
+        GLES20.glGenTextures(1, texture, 0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture[0]);
+        GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, width, height, 0,
+                GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, null);
+        GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D, GL10.GL_TEXTURE_MIN_FILTER, GL10.GL_LINEAR);
+        GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D, GL10.GL_TEXTURE_MAG_FILTER, GL10.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_S, GL10.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_T, GL10.GL_CLAMP_TO_EDGE);
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, frameBuffer[0]);
+        GLES20.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_COLOR_ATTACHMENT0,
+                GLES20.GL_TEXTURE_2D, texture[0], 0);
+        int status = GLES20.glCheckFramebufferStatus(GLES20.GL_FRAMEBUFFER);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, GLES20.GL_NONE);
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        GlProgramCache.checkGlError("createFrameBuffer");
+        if (status != GLES20.GL_FRAMEBUFFER_COMPLETE) {
+            Log.e(TAG, "Framebuffer incomplete: " + status);
+            release();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 绑定为渲染目标并设置视口
+     */
+    public void bind() {
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, frameBuffer[0]);
+        GLES20.glViewport(0, 0, width, height);
+    }
+
+    public boolean isCreated() {
+        return frameBuffer[0] != 0;
+    }
+
+    public int getFrameBuffer() {
+        return frameBuffer[0];
+    }
+
+    public int getTexture() {
+        return texture[0];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void release() {
+        if (frameBuffer[0] != 0) {
+            GLES20.glDeleteFramebuffers(1, frameBuffer, 0);
+            GLES20.glDeleteTextures(1, texture, 0);
+        }
+        reset();
+    }
+
+    /**
+     * GL 上下文已销毁（GlFilter.onInit 再次调用时）：句柄随上下文失效，只清空不删除
+     */
+    public void reset() {
+        frameBuffer[0] = 0;
+        texture[0] = 0;
+        width = height = 0;
+    }
+}
@@ -0,0 +1,53 @@
+package com.hsj.camera;
+
+import android.opengl.GLES20;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @Author:Hsj
+ * @Date:2026/10/18
+ * @Class:GlProgram
+ * @Desc:已链接的 program，缓存 attribute/uniform 位置，避免每帧 glGet*Location
+ */
+public final class GlProgram {
+
+    private final int id;
+    private final String vertexSource;
+    private final String fragmentSource;
+    private final Map<String, Integer> attributes = new HashMap<>();
+    private final Map<String, Integer> uniforms = new HashMap<>();
+
+    GlProgram(int id, String vertexSource, String fragmentSource) {
+        this.id = id;
+        this.vertexSource = vertexSource;
+        this.fragmentSource = fragmentSource;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int attribute(String name) {
+        Integer location = attributes.get(name);
+        if (location == null) {
+            location = GLES20.glGetAttribLocation(id, name);
+            attributes.put(name, location);
+        }
+        return location;
+    }
+
+    public int uniform(String name) {
+        Integer location = uniforms.get(name);
+        if (location == null) {
+            location = GLES20.glGetUniformLocation(id, name);
+            uniforms.put(name, location);
+        }
+        return location;
+    }
+
+    boolean isSource(String vertexSource, String fragmentSource) {
+        return this.vertexSource.equals(vertexSource) && this.fragmentSource.equals(fragmentSource);
+    }
+}
@@ -0,0 +1,164 @@
+package com.hsj.camera;
+
+import android.content.res.AssetManager;
+import android.opengl.EGL14;
+import android.opengl.EGLContext;
+import android.opengl.GLES20;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @Author:Hsj
+ * @Date:2026/10/18
+ * @Class:GlProgramCache
+ * @Desc:着色器源码与 program 缓存
+ *       1、assets 中的着色器源码只读取一次（与 GL 上下文无关）
+ *       2、program 以顶点+片元源码的 hash 为 key，同一 GL 上下文内只编译链接一次
+ *       3、GL 上下文重建（GLSurfaceView onPause 后）时旧 program 随上下文失效，由 {@link #onContextCreated()} 清空；
+ *         重建的上下文可能复用同一个 native 句柄，不能只靠比较 EGLContext 判断
+ */
+final class GlProgramCache {
+
+    private static final String TAG = "GlProgramCache";
+
+    private static final Map<String, String> SOURCES = new HashMap<>();
+    private static final Map<Long, GlProgram> PROGRAMS = new HashMap<>();
+    private static EGLContext context;
+
+    private GlProgramCache() {
+    }
+
+    /**
+     * 读取 assets 中的着色器源码
+     */
+    static synchronized String getShader(AssetManager assets, String fileName) {
+        if (assets == null || TextUtils.isEmpty(fileName)) return null;
+        String source = SOURCES.get(fileName);
+        if (source != null) return source;
+        StringBuilder content = new StringBuilder();
+        InputStream is = null;
+        try {
+            int ch;
+            byte[] buffer = new byte[1024];
+            is = assets.open(fileName);
+            while (-1 != (ch = is.read(buffer))) {
+                content.append(new String(buffer, 0, ch));
+            }
+            source = content.toString();
+            SOURCES.put(fileName, source);
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            if (is != null) {
+                try {
+                    is.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        return source;
+    }
+
+    /**
+     * 新的 GL 上下文已创建（Renderer.onSurfaceCreated），清空旧上下文的 program，必须在 GL 线程调用
+     */
+    static synchronized void onContextCreated() {
+        PROGRAMS.clear();
+        context = EGL14.eglGetCurrentContext();
+    }
+
+    /**
+     * 获取 program，必须在 GL 线程调用
+     *
+     * @return 编译或链接失败返回 null
+     */
+    static synchronized GlProgram getProgram(String vertexSource, String fragmentSource) {
+        if (TextUtils.isEmpty(vertexSource) || TextUtils.isEmpty(fragmentSource)) return null;
+        //多个 GLSurfaceView 各自的上下文交替使用
+        EGLContext current = EGL14.eglGetCurrentContext();
+        if (!current.equals(context)) {
+            PROGRAMS.clear();
+            context = current;
+        }
+        long key = ((long) vertexSource.hashCode() << 32) | (fragmentSource.hashCode() & 0xFFFFFFFFL);
+        GlProgram program = PROGRAMS.get(key);
+        if (program != null) {
+            if (program.isSource(vertexSource, fragmentSource)) return program;
+            // hash 冲突：不缓存，直接创建
+            Log.w(TAG, "Program hash collision: " + key);
+            return createProgram(vertexSource, fragmentSource);
+        }
+        program = createProgram(vertexSource, fragmentSource);
+        if (program != null) PROGRAMS.put(key, program);
+        return program;
+    }
+
+    private static GlProgram createProgram(String vertexSource, String fragmentSource) {
+        //1-加载shader
+        int vertexId = loadShader(GLES20.GL_VERTEX_SHADER, vertexSource);
+        checkGlError("loadShaderVertex");
+        if (GLES20.GL_NONE == vertexId) return null;
+        int fragmentId = loadShader(GLES20.GL_FRAGMENT_SHADER, fragmentSource);
+        checkGlError("loadShaderFragment");
+        if (GLES20.GL_NONE == fragmentId) {
+            GLES20.glDeleteShader(vertexId);
+            return null;
+        }
+        //2-创建program
+        int program = GLES20.glCreateProgram();
+        checkGlError("glCreateProgram");
+        if (GLES20.GL_NONE == program) return null;
+        //3-添加program和shader
+        GLES20.glAttachShader(program, vertexId);
+        checkGlError("glAttachShaderVertex");
+        GLES20.glAttachShader(program, fragmentId);
+        checkGlError("glAttachShaderFragment");
+        //4-release
+        GLES20.glDeleteShader(vertexId);
+        checkGlError("glDeleteShaderVertex");
+        GLES20.glDeleteShader(fragmentId);
+        checkGlError("glDeleteShaderFragment");
+        //5-link program
+        GLES20.glLinkProgram(program);
+        checkGlError("glLinkProgram");
+        //6-checkLink
+        int[] linkStatus = new int[1];
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, linkStatus, 0);
+        if (linkStatus[0] == GLES20.GL_FALSE) {
+            Log.e(TAG, "GLES20 Error: glLinkProgram");
+            Log.e(TAG, GLES20.glGetProgramInfoLog(program));
+            GLES20.glDeleteProgram(program);
+            return null;
+        }
+        return new GlProgram(program, vertexSource, fragmentSource);
+    }
+
+    private static int loadShader(int shaderType, String shaderSource) {
+        int shader = GLES20.glCreateShader(shaderType);
+        if (shader > GLES20.GL_NONE) {
+            GLES20.glShaderSource(shader, shaderSource);
+            GLES20.glCompileShader(shader);
+            int[] compiled = new int[1];
+            GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, compiled, 0);
+            if (compiled[0] == GLES20.GL_FALSE) {
+                Log.e(TAG, "GLES20 Error: " + GLES20.glGetShaderInfoLog(shader));
+                GLES20.glDeleteShader(shader);
+                shader = GLES20.GL_NONE;
+            }
+        }
+        return shader;
+    }
+
+    static void checkGlError(String action) {
+        int error = GLES20.glGetError();
+        if (GLES20.GL_NO_ERROR != error) {
+            Log.e(TAG, action + " glError:" + error);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.hsj.camera;
+
+import android.content.res.AssetManager;
+import android.opengl.GLES20;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+import javax.microedition.khronos.opengles.GL10;
+
+/**
+ * @Author:Hsj
+ * @Date:2026/10/18
+ * @Class:GlYuvTexture
+ * @Desc:帧回调数据直接作为 YUV 纹理上传，由 yuv_fragment.glsl 在 GPU 上完成 YUV->RGB
+ *       采集线程 offer() 拷贝到写缓冲，GL 线程 update() 取最新一帧上传（三缓冲，互不等待）
+ */
+final class GlYuvTexture {
+
+    private static final String TAG = "GlYuvTexture";
+
+    private static final class Frame {
+        ByteBuffer data;
+        int pixelFormat;
+        int width;
+        int height;
+    }
+
+    //采集线程写入
+    private Frame write = new Frame();
+    //最新一帧，等待 GL 线程取走
+    private Frame pending = new Frame();
+    //GL 线程上传
+    private Frame read = new Frame();
+    private boolean hasPending;
+    private volatile boolean active;
+
+    //GL 线程
+    private final int[] textures = new int[3];
+    private int texFormat, texWidth, texHeight;
+    private boolean uploaded;
+    private GlProgram program;
+    private int programFormat;
+
+//======================================Capture thread==============================================
+
+    /**
+     * 拷贝一帧（frame 仅在帧回调内有效）
+     *
+     * @return false: 格式不支持或数据长度不足
+     */
+    boolean offer(ByteBuffer frame, int pixelFormat, int width, int height) {
+        int size = frameSize(pixelFormat, width, height);
+        if (frame == null || size <= 0 || frame.remaining() < size) return false;
+        Frame target = write;
+        if (target.data == null || target.data.capacity() < size) {
+            target.data = ByteBuffer.allocateDirect(size);
+        }
+        ByteBuffer src = frame.duplicate();
+        src.limit(src.position() + size);
+        target.data.clear();
+        target.data.put(src);
+        target.data.flip();
+        target.pixelFormat = pixelFormat;
+        target.width = width;
+        target.height = height;
+        synchronized (this) {
+            write = pending;
+            pending = target;
+            hasPending = true;
+        }
+        active = true;
+        return true;
+    }
+
+    /**
+     * 是否有帧输入（有则渲染器使用 YUV 纹理代替 OES 纹理）
+     */
+    boolean isActive() {
+        return active;
+    }
+
+//======================================GL thread===================================================
+
+    /**
+     * GL 上下文（重新）创建：旧纹理、program 已失效
+     */
+    void onSurfaceCreated() {
+        textures[0] = textures[1] = textures[2] = 0;
+        texFormat = texWidth = texHeight = 0;
+        uploaded = false;
+        program = null;
+        synchronized (this) {
+            //重新上传最后一帧
+            if (!hasPending && read.data != null) {
+                Frame temp = pending;
+                pending = read;
+                read = temp;
+                hasPending = true;
+            }
+        }
+    }
+
+    /**
+     * 上传最新一帧
+     *
+     * @return 是否有可绘制的纹理
+     */
+    boolean update() {
+        boolean changed = false;
+        synchronized (this) {
+            if (hasPending) {
+                Frame temp = read;
+                read = pending;
+                pending = temp;
+                hasPending = false;
+                changed = true;
+            }
+        }
+        if (changed) upload(read);
+        return uploaded;
+    }
+
+    /**
+     * 绘制到当前绑定的 FBO/屏幕
+     */
+    void draw(AssetManager assets, FloatBuffer vertexBuffer, FloatBuffer textureBuffer) {
+        if (program == null || programFormat != texFormat) {
+            String fragment = GlProgramCache.getShader(assets, "yuv_fragment.glsl");
+            if (fragment == null) return;
+            program = GlProgramCache.getProgram(GlProgramCache.getShader(assets, "camera_vertex.glsl"),
+                    "#define " + formatDefine(texFormat) + "\n" + fragment);
+            programFormat = texFormat;
+            if (program == null) return;
+        }
+        int vPosition = program.attribute("vPosition");
+        int vTexCoord = program.attribute("vTexCoord");
+        GLES20.glUseProgram(program.getId());
+        for (int i = 0; i < 3; i++) {
+            GLES20.glActiveTexture(GLES20.GL_TEXTURE0 + i);
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textures[i]);
+        }
+        GLES20.glUniform1i(program.uniform("yTexture"), 0);
+        GLES20.glUniform1i(program.uniform("uTexture"), 1);
+        GLES20.glUniform1i(program.uniform("vTexture"), 2);
+        GLES20.glUniform1f(program.uniform("frameWidth"), texWidth);
+        GLES20.glEnableVertexAttribArray(vPosition);
+        GLES20.glVertexAttribPointer(vPosition, 2, GLES20.GL_FLOAT, false, 8, vertexBuffer);
+        GLES20.glEnableVertexAttribArray(vTexCoord);
+        GLES20.glVertexAttribPointer(vTexCoord, 2, GLES20.GL_FLOAT, false, 8, textureBuffer);
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+        GLES20.glDisableVertexAttribArray(vPosition);
+        GLES20.glDisableVertexAttribArray(vTexCoord);
+        for (int i = 2; i >= 0; i--) {
+            GLES20.glActiveTexture(GLES20.GL_TEXTURE0 + i);
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, GLES20.GL_NONE);
+        }
+    }
+
+//==================================================================================================
+
+    private void upload(Frame frame) {
+        int w = frame.width;
+        int h = frame.height;
+        boolean realloc = frame.pixelFormat != texFormat || w != texWidth || h != texHeight;
+        if (textures[0] == 0) {
+            GLES20.glGenTextures(3, textures, 0);
+            for (int texture : textures) {
+                GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture);
+                GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_S, GL10.GL_CLAMP_TO_EDGE);
+                GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_T, GL10.GL_CLAMP_TO_EDGE);
+            }
+            realloc = true;
+        }
+        if (realloc) {
+            Logger.d(TAG, "upload: pixelFormat=" + frame.pixelFormat + ", " + w + "x" + h);
+            //YUYV、DEPTH、Y10/Y16 的纹素不能插值（一个纹素含两个像素/两个字节）
+            int filter = (frame.pixelFormat == CameraAPI.PIXEL_FORMAT_YUYV
+                    || frame.pixelFormat == CameraAPI.PIXEL_FORMAT_DEPTH
+                    || frame.pixelFormat == CameraAPI.PIXEL_FORMAT_Y10
+                    || frame.pixelFormat == CameraAPI.PIXEL_FORMAT_Y16) ? GL10.GL_NEAREST : GL10.GL_LINEAR;
+            for (int texture : textures) {
+                GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture);
+                GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GL10.GL_TEXTURE_MIN_FILTER, filter);
+                GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GL10.GL_TEXTURE_MAG_FILTER, filter);
+            }
+            texFormat = frame.pixelFormat;
+            texWidth = w;
+            texHeight = h;
+        }
+        GLES20.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, 1);
+        ByteBuffer data = frame.data;
+        switch (frame.pixelFormat) {
+            case CameraAPI.PIXEL_FORMAT_NV12:
+                uploadPlane(textures[0], GLES20.GL_LUMINANCE, w, h, data, 0, realloc);
+                uploadPlane(textures[1], GLES20.GL_LUMINANCE_ALPHA, w / 2, h / 2, data, w * h, realloc);
+                break;
+            case CameraAPI.PIXEL_FORMAT_NV16:
+                uploadPlane(textures[0], GLES20.GL_LUMINANCE, w, h, data, 0, realloc);
+                uploadPlane(textures[1], GLES20.GL_LUMINANCE_ALPHA, w / 2, h, data, w * h, realloc);
+                break;
+            case CameraAPI.PIXEL_FORMAT_YUV422:
+                uploadPlane(textures[0], GLES20.GL_LUMINANCE, w, h, data, 0, realloc);
+                uploadPlane(textures[1], GLES20.GL_LUMINANCE, w / 2, h, data, w * h, realloc);
+                uploadPlane(textures[2], GLES20.GL_LUMINANCE, w / 2, h, data, w * h * 3 / 2, realloc);
+                break;
+            case CameraAPI.PIXEL_FORMAT_YUYV:
+                uploadPlane(textures[0], GLES20.GL_RGBA, w / 2, h, data, 0, realloc);
+                break;
+            case CameraAPI.PIXEL_FORMAT_GREY:
+                uploadPlane(textures[0], GLES20.GL_LUMINANCE, w, h, data, 0, realloc);
+                break;
+            case CameraAPI.PIXEL_FORMAT_DEPTH:
+            case CameraAPI.PIXEL_FORMAT_Y10:
+            case CameraAPI.PIXEL_FORMAT_Y16:
+                uploadPlane(textures[0], GLES20.GL_LUMINANCE_ALPHA, w, h, data, 0, realloc);
+                break;
+            default:
+                break;
+        }
+        data.position(0);
+        GLES20.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, 4);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, GLES20.GL_NONE);
+        GlProgramCache.checkGlError("uploadYuv");
+        uploaded = true;
+    }
+
+    private static void uploadPlane(int texture, int format, int width, int height,
+                                    ByteBuffer data, int offset, boolean realloc) {
+        data.position(offset);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture);
+        if (realloc) {
+            GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, format, width, height, 0,
+                    format, GLES20.GL_UNSIGNED_BYTE, data);
+        } else {
+            GLES20.glTexSubImage2D(GLES20.GL_TEXTURE_2D, 0, 0, 0, width, height,
+                    format, GLES20.GL_UNSIGNED_BYTE, data);
+        }
+    }
+
+    private static int frameSize(int pixelFormat, int width, int height) {
+        switch (pixelFormat) {
+            case CameraAPI.PIXEL_FORMAT_NV12:
+                return width * height * 3 / 2;
+            case CameraAPI.PIXEL_FORMAT_GREY:
+                return width * height;
+            case CameraAPI.PIXEL_FORMAT_Y10:
+            case CameraAPI.PIXEL_FORMAT_Y16:
+            case CameraAPI.PIXEL_FORMAT_NV16:
+            case CameraAPI.PIXEL_FORMAT_YUV422:
+            case CameraAPI.PIXEL_FORMAT_YUYV:
+            case CameraAPI.PIXEL_FORMAT_DEPTH:
+                return width * height * 2;
+            default:
+                return 0;
+        }
+    }
+
+    private static String formatDefine(int pixelFormat) {
+        switch (pixelFormat) {
+            case CameraAPI.PIXEL_FORMAT_NV12:
+            case CameraAPI.PIXEL_FORMAT_NV16:
+                //UV 纹理坐标归一化，NV16 只是 UV 纹理高度加倍，着色器相同
+                return "FORMAT_NV12";
+            case CameraAPI.PIXEL_FORMAT_YUV422:
+                return "FORMAT_YUV422";
+            case CameraAPI.PIXEL_FORMAT_YUYV:
+                return "FORMAT_YUYV";
+            case CameraAPI.PIXEL_FORMAT_GREY:
+                return "FORMAT_GREY";
+            case CameraAPI.PIXEL_FORMAT_Y10:
+                return "FORMAT_Y10";
+            case CameraAPI.PIXEL_FORMAT_Y16:
+                return "FORMAT_Y16";
+            default:
+                return "FORMAT_DEPTH";
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.hsj.camera;
+
+/**
+ * @Author:Hsj
+ * @Date:2026/10/18
+ * @Class:IDeviceCallback
+ * @Desc:USB 相机插拔通知，在 native 设备监听线程回调，不要在回调内做耗时操作
+ *       devicePath 为 /dev/videoN，同一个 UVC 相机可能有多个节点（如元数据节点），会分别回调
+ */
+public interface IDeviceCallback {
+    void onDeviceAttached(String devicePath, int vendorId, int productId);
+
+    void onDeviceDetached(String devicePath, int vendorId, int productId);
+}
@@ -0,0 +1,14 @@
+package com.hsj.camera;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @Author:Hsj
+ * @Date:2026/10/18
+ * @Class:IFrameTimestampCallback
+ * @Desc:带采集时间戳的帧回调，实现该接口后只回调 onFrame(ByteBuffer, long)
+ *       timestampUs 为 V4L2 驱动给出的 CLOCK_MONOTONIC 时间（微秒），与 System.nanoTime() 同一时钟
+ */
+public interface IFrameTimestampCallback extends IFrameCallback {
+    void onFrame(ByteBuffer data, long timestampUs);
+}
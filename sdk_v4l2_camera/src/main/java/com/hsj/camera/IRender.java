@@ -3,6 +3,8 @@ package com.hsj.camera;
 import android.opengl.GLSurfaceView;
 import android.view.Surface;
 
+import java.nio.ByteBuffer;
+
 /**
  * @Author:Hsj
  * @Date:2021/5/10
@@ -12,4 +14,25 @@ import android.view.Surface;
 public interface IRender extends GLSurfaceView.Renderer {
      void onRender(boolean isResume);
      void setSurfaceCallback(ISurfaceCallback callback);
+
+     /**
+      * 替换滤镜链，按顺序在一次渲染中完成（不传参数即清空滤镜），默认不支持滤镜
+      */
+     default void setFilters(GlFilter... filters) {
+     }
+
+     default void addFilter(GlFilter filter) {
+     }
+
+     default void removeFilter(GlFilter filter) {
+     }
+
+     /**
+      * 输入一帧数据（在帧回调中调用），上传为 YUV 纹理由 GPU 转换颜色，
+      * 使用此方式时不需要再调用 CameraAPI.setPreview，默认忽略
+      *
+      * @param pixelFormat CameraAPI.getPixelFormat()
+      */
+     default void updateFrame(ByteBuffer frame, int pixelFormat, int width, int height) {
+     }
 }
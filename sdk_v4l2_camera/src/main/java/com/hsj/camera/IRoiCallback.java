@@ -0,0 +1,15 @@
+package com.hsj.camera;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @Author:Hsj
+ * @Date:2026/10/18
+ * @Class:IRoiCallback
+ * @Desc:MJPEG 感兴趣区域帧回调，与 IFrameCallback 在同一采集线程依次回调
+ *       data 为裁剪区域的 YUV422 planar（Y 紧密排列 width*height，U/V 各 ((width+1)/2)*height），仅回调期间有效
+ *       x/y/width/height 为实际解码区域：起点按 JPEG MCU 对齐，可能比请求区域略大，超出画面的部分被截掉
+ */
+public interface IRoiCallback {
+    void onRoiFrame(ByteBuffer data, int x, int y, int width, int height, long timestampUs);
+}
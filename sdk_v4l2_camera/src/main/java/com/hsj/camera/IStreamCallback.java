@@ -0,0 +1,18 @@
+package com.hsj.camera;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @Author:Hsj
+ * @Date:2026/10/18
+ * @Class:IStreamCallback
+ * @Desc:H.264/HEVC 码流回调，在采集线程回调，ByteBuffer 仅回调期间有效
+ *       onStreamFormat：首次收到参数集、参数集变化或刚设置回调时调用；csd0/csd1 为 Annex-B（带起始码），
+ *       H.264 为 SPS/PPS，HEVC 的 VPS+SPS+PPS 都在 csd0、csd1 为 null；可直接作为 MediaFormat 的 csd-0/csd-1
+ *       onStreamFrame：一个访问单元（Annex-B），收到 onStreamFormat 之后才会回调
+ */
+public interface IStreamCallback {
+    void onStreamFormat(int frameFormat, int width, int height, ByteBuffer csd0, ByteBuffer csd1);
+
+    void onStreamFrame(ByteBuffer data, long timestampUs, boolean keyFrame);
+}
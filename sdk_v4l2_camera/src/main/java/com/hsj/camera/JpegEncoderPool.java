@@ -0,0 +1,226 @@
+package com.hsj.camera;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Author:Hsj
+ * @Date:2026/10/18
+ * @Class:JpegEncoderPool
+ * @Desc:JPEG 编码池：native 复用 tjhandle，直接从帧回调的 YUV（NV12/YUV422/YUYV，见 {@link CameraAPI#getPixelFormat()}）压缩
+ *       输入/输出都是预分配的 direct ByteBuffer（输出按 tjBufSize 最坏大小），编码过程中不产生 Java 堆分配
+ *       1、{@link #encode} 在调用线程同步编码，可在 onFrame 内直接使用 native 帧缓冲区（零拷贝）
+ *       2、{@link #submit} 拷贝到池内输入缓冲区后交给编码线程，缓冲区用完时丢弃本帧（不阻塞采集线程）
+ *       native 编码器（数量 = 编码线程数）都在使用中时同样丢弃本帧，不等待
+ *       使用完的 {@link JpegBuffer} 必须 {@link JpegBuffer#release()} 归还
+ */
+public final class JpegEncoderPool implements Closeable {
+
+    private static final String TAG = "JpegEncoderPool";
+    //nativeEncode 返回值：native 编码器都在使用中
+    private static final int ENCODER_BUSY = -2;
+
+    static {
+        System.loadLibrary("camera");
+    }
+
+    /**
+     * 异步编码结果回调，在编码线程调用，jpeg 为 null 表示输出缓冲区用完或编码失败
+     */
+    public interface Callback {
+        void onJpeg(JpegBuffer jpeg, long timestampUs);
+    }
+
+    /**
+     * 池化的 JPEG 输出缓冲区
+     */
+    public static final class JpegBuffer {
+        private final JpegEncoderPool pool;
+        private final ByteBuffer buffer;
+
+        private JpegBuffer(JpegEncoderPool pool, int capacity) {
+            this.pool = pool;
+            this.buffer = ByteBuffer.allocateDirect(capacity);
+        }
+
+        /**
+         * JPEG 数据，position=0，limit=JPEG 字节数，release 之后不可再访问
+         */
+        public ByteBuffer getData() {
+            return buffer;
+        }
+
+        public void release() {
+            pool.outputs.offer(this);
+        }
+    }
+
+    private final class Task implements Runnable {
+        private final ByteBuffer input;
+        private int quality;
+        private long timestampUs;
+        private Callback callback;
+
+        private Task(int capacity) {
+            this.input = ByteBuffer.allocateDirect(capacity);
+        }
+
+        @Override
+        public void run() {
+            JpegBuffer jpeg = encode(input, quality);
+            Callback callback = this.callback;
+            long timestampUs = this.timestampUs;
+            this.callback = null;
+            tasks.offer(this);
+            callback.onJpeg(jpeg, timestampUs);
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final int pixelFormat;
+    private final int frameBytes;
+    private final ArrayBlockingQueue<JpegBuffer> outputs;
+    private final ArrayBlockingQueue<Task> tasks;
+    private final ExecutorService executor;
+    private final AtomicInteger droppedCount = new AtomicInteger();
+    private volatile boolean closed;
+    private volatile long nativeObj;
+
+    /**
+     * @param threads     编码线程数，也是 native 编码器数量上限
+     * @param width       帧宽
+     * @param height      帧高
+     * @param pixelFormat 帧格式 {@link CameraAPI#PIXEL_FORMAT_NV12}/{@link CameraAPI#PIXEL_FORMAT_NV16}/{@link CameraAPI#PIXEL_FORMAT_YUV422}/{@link CameraAPI#PIXEL_FORMAT_YUYV}
+     * @param buffers     输出缓冲区数量（同时未 release 的 JPEG 上限），异步输入缓冲区数量与之相同
+     */
+    public JpegEncoderPool(int threads, int width, int height, int pixelFormat, int buffers) {
+        int jpegBytes = nativeBufferSize(width, height, pixelFormat);
+        if (jpegBytes <= 0) {
+            throw new IllegalArgumentException("Unsupported frame: " + width + "x" + height + ", pixelFormat=" + pixelFormat);
+        }
+        this.width = width;
+        this.height = height;
+        this.pixelFormat = pixelFormat;
+        this.frameBytes = pixelFormat == CameraAPI.PIXEL_FORMAT_NV12 ? width * height * 3 / 2 : width * height * 2;
+        threads = Math.max(1, threads);
+        buffers = Math.max(1, buffers);
+        this.outputs = new ArrayBlockingQueue<>(buffers);
+        this.tasks = new ArrayBlockingQueue<>(buffers);
+        for (int i = 0; i < buffers; i++) {
+            outputs.offer(new JpegBuffer(this, jpegBytes));
+            tasks.offer(new Task(frameBytes));
+        }
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.nativeObj = nativeCreate(threads);
+    }
+
+    /**
+     * 同步编码，frame 必须是 direct ByteBuffer（帧回调的数据即是）
+     *
+     * @param quality 1~100
+     * @return 输出缓冲区或 native 编码器用完、已关闭或编码失败时返回 null
+     */
+    public JpegBuffer encode(ByteBuffer frame, int quality) {
+        if (!frame.isDirect() || frame.capacity() < frameBytes) {
+            throw new IllegalArgumentException("Frame must be a direct buffer of at least " + frameBytes + " bytes");
+        }
+        JpegBuffer jpeg = outputs.poll();
+        if (jpeg == null) {
+            droppedCount.incrementAndGet();
+            return null;
+        }
+        long nativeObj = this.nativeObj;
+        int size = nativeObj == 0 ? -1 : nativeEncode(nativeObj, frame, width, height, pixelFormat, quality, jpeg.buffer);
+        if (size == ENCODER_BUSY) {
+            droppedCount.incrementAndGet();
+        }
+        if (size <= 0) {
+            jpeg.release();
+            return null;
+        }
+        jpeg.buffer.clear();
+        jpeg.buffer.limit(size);
+        return jpeg;
+    }
+
+    /**
+     * 异步编码：拷贝 frame 后立即返回，编码在编码线程完成后回调
+     *
+     * @return 输入缓冲区用完或已关闭时丢弃本帧并返回 false
+     */
+    public boolean submit(ByteBuffer frame, int quality, long timestampUs, Callback callback) {
+        if (frame.remaining() < frameBytes) {
+            throw new IllegalArgumentException("Frame must have at least " + frameBytes + " bytes remaining");
+        }
+        if (closed) return false;
+        Task task = tasks.poll();
+        if (task == null) {
+            droppedCount.incrementAndGet();
+            return false;
+        }
+        ByteBuffer source = frame.duplicate();
+        source.limit(source.position() + frameBytes);
+        task.input.clear();
+        task.input.put(source);
+        task.quality = quality;
+        task.timestampUs = timestampUs;
+        task.callback = callback;
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            task.callback = null;
+            tasks.offer(task);
+            return false;
+        }
+    }
+
+    /**
+     * 因缓冲区或 native 编码器用完被丢弃的帧数
+     */
+    public int getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * 等待已提交的编码完成后释放 native 编码器，不能与同步 {@link #encode} 并发调用
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        executor.shutdown();
+        boolean terminated = false;
+        try {
+            terminated = executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!terminated) {
+            //仍有编码在进行，不释放 native 编码器，避免访问已释放内存
+            Logger.w(TAG, "close: encode tasks not finished, native encoders leaked");
+            return;
+        }
+        long nativeObj = this.nativeObj;
+        this.nativeObj = 0;
+        nativeDestroy(nativeObj);
+    }
+
+//=======================================Native API=================================================
+
+    private static native long nativeCreate(int maxCount);
+
+    private static native int nativeBufferSize(int width, int height, int pixelFormat);
+
+    private static native int nativeEncode(long nativeObj, ByteBuffer frame, int width, int height,
+                                           int pixelFormat, int quality, ByteBuffer jpeg);
+
+    private static native void nativeDestroy(long nativeObj);
+}
@@ -3,6 +3,10 @@ package com.hsj.camera;
 import android.util.Log;
 import com.hsj.sdk_v4l2_camera.BuildConfig;
 import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * @Author:Hsj
@@ -15,22 +19,58 @@ final class Logger {
     //////////////////////////////////////////////////////////////
     // Logger 功能如下：
     //      1、增加控制台日志打印长度
-    //      2、开关控制日志是否打印
+    //      2、运行时级别控制日志是否打印（默认 DEBUG 包全部输出，release 包只输出 warn/error）
     //      3、可添加自定义tag，默认：[Logger]
     //      4、收集错误日志;
     //      5、定时删除错误日志(错误日志删除工作交给TaskManager)
+    //      6、异步输出：调用线程只入队，toString/分段/打印在后台线程，队列满时丢弃并计数
+    //         msg 在后台线程才 toString，传入可变对象时以输出时的内容为准
     //////////////////////////////////////////////////////////////
 
     private static String TAG = "[Logger]";
 
     private static final int MAX_LENGTH = 5000;
 
-    private static final boolean OPEN = BuildConfig.DEBUG;
+    //最低输出级别（android.util.Log 优先级），运行时可由 CameraAPI.setLogLevel 调整
+    private static volatile int level = BuildConfig.DEBUG ? Log.VERBOSE : Log.WARN;
+
+    //队列上限，超过后丢弃（不阻塞调用线程）
+    private static final int MAX_PENDING = 4096;
+    //后台线程空闲等待
+    private static final long IDLE_PARK_NS = 50_000_000L;
+
+    private static final ConcurrentLinkedQueue<Entry> QUEUE = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger PENDING = new AtomicInteger();
+    private static final AtomicInteger DROPPED = new AtomicInteger();
+    private static final AtomicBoolean STARTED = new AtomicBoolean();
+    private static volatile Thread drainThread;
+
+    private static final class Entry {
+        final char level;
+        final String tag;
+        final Object msg;
+        final Throwable tr;
+
+        Entry(char level, String tag, Object msg, Throwable tr) {
+            this.level = level;
+            this.tag = tag;
+            this.msg = msg;
+            this.tr = tr;
+        }
+    }
 
     private Logger() {
 
     }
 
+    static void setLevel(int level) {
+        Logger.level = level;
+    }
+
+    static boolean isLoggable(int priority) {
+        return priority >= level;
+    }
+
     public static void e(Object msg) {
         e(TAG, msg);
     }
@@ -40,7 +80,7 @@ final class Logger {
     }
 
     public static void e(String tag, Object msg, Throwable tr) {
-        log(tag, msg.toString(), tr, 'e');
+        log(tag, msg, tr, 'e');
     }
 
     public static void w(Object msg) {
@@ -52,7 +92,7 @@ final class Logger {
     }
 
     public static void w(String tag, Object msg, Throwable tr) {
-        log(tag, msg.toString(), tr, 'w');
+        log(tag, msg, tr, 'w');
     }
 
     public static void d(Object msg) {
@@ -64,7 +104,7 @@ final class Logger {
     }
 
     public static void d(String tag, Object msg, Throwable tr) {
-        log(tag, msg.toString(), tr, 'd');
+        log(tag, msg, tr, 'd');
     }
 
     public static void i(Object msg) {
@@ -76,7 +116,7 @@ final class Logger {
     }
 
     public static void i(String tag, Object msg, Throwable tr) {
-        log(tag, msg.toString(), tr, 'i');
+        log(tag, msg, tr, 'i');
     }
 
     public static void v(Object msg) {
@@ -88,22 +128,74 @@ final class Logger {
     }
 
     public static void v(String tag, Object msg, Throwable tr) {
-        log(tag, msg.toString(), tr, 'v');
-    }
-
-    private static void log(String tag, String msg, Throwable tr, char level) {
-        if (OPEN) {
-            if ('e' == level) {
-                print("e", tag, msg, tr);
-            } else if ('w' == level) {
-                print("w", tag, msg, tr);
-            } else if ('d' == level) {
-                print("d", tag, msg);
-            } else if ('i' == level) {
-                print("i", tag, msg);
-            } else {
-                print("v", tag, msg);
+        log(tag, msg, tr, 'v');
+    }
+
+    private static void log(String tag, Object msg, Throwable tr, char level) {
+        if (isLoggable(priority(level))) {
+            if (PENDING.incrementAndGet() > MAX_PENDING) {
+                PENDING.decrementAndGet();
+                DROPPED.incrementAndGet();
+                return;
+            }
+            QUEUE.offer(new Entry(level, tag, msg, tr));
+            Thread thread = drainThread;
+            if (thread == null) {
+                startDrain();
+            } else if ('e' == level || 'w' == level) {
+                //错误尽快输出，其它级别等后台线程下次醒来
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    private static int priority(char level) {
+        switch (level) {
+            case 'e':
+                return Log.ERROR;
+            case 'w':
+                return Log.WARN;
+            case 'i':
+                return Log.INFO;
+            case 'd':
+                return Log.DEBUG;
+            default:
+                return Log.VERBOSE;
+        }
+    }
+
+    private static void startDrain() {
+        if (STARTED.compareAndSet(false, true)) {
+            Thread thread = new Thread(Logger::drain, "Logger");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            drainThread = thread;
+            thread.start();
+        }
+    }
+
+    private static void drain() {
+        while (true) {
+            Entry entry;
+            while ((entry = QUEUE.poll()) != null) {
+                PENDING.decrementAndGet();
+                output(entry);
+            }
+            int dropped = DROPPED.getAndSet(0);
+            if (dropped > 0) {
+                print("w", TAG, "dropped " + dropped + " log records");
             }
+            LockSupport.parkNanos(IDLE_PARK_NS);
+        }
+    }
+
+    private static void output(Entry entry) {
+        String msg = String.valueOf(entry.msg);
+        String method = String.valueOf(entry.level);
+        if (entry.tr != null && ('e' == entry.level || 'w' == entry.level)) {
+            print(method, entry.tag, msg, entry.tr);
+        } else {
+            print(method, entry.tag, msg);
         }
     }
 
@@ -0,0 +1,259 @@
+package com.hsj.camera;
+
+import android.content.res.AssetManager;
+import android.graphics.SurfaceTexture;
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+import android.opengl.GLSurfaceView;
+import android.view.Surface;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.opengles.GL10;
+
+/**
+ * @Author:Hsj
+ * @Date:2026/10/18
+ * @Class:RenderBase
+ * @Desc:渲染基类：OES 纹理 + SurfaceTexture + 滤镜链
+ *       没有滤镜时用 camera_*.glsl 直接绘制 OES 纹理，有滤镜时由 GlFilterChain 一次渲染完成
+ *       通过 updateFrame 输入帧数据时改为上传 YUV 纹理，在 GPU 上转换颜色（不再需要 native 预览 Surface）
+ */
+abstract class RenderBase implements IRender {
+
+    /*
+     * 顶点坐标
+     */
+    private static final float VERTEX_BUFFER[] = {
+            -1.0f, 1.0f,  //top left
+            -1.0f, -1.0f,  //bottom left
+            1.0f, 1.0f,  //top right
+            1.0f, -1.0f,  //bottom left
+    };
+
+    /*
+     * 纹理坐标: 旋转90°, 再竖直镜像
+     * Camera: 后置Sensor->Rotate90°, 前置使用->Mirror
+     */
+    private static final float TEXTURE_BUFFER[] = {
+            0.0f, 0.0f,  //top left
+            1.0f, 0.0f,  //bottom left
+            0.0f, 1.0f,  //top right
+            1.0f, 1.0f,  //bottom right
+    };
+
+    //顶点坐标
+    private final FloatBuffer vertexBuffer;
+    //纹理坐标
+    private final FloatBuffer textureBuffer;
+    //纹理
+    private final int[] textures = new int[1];
+    private final GlFilterChain filterChain;
+    private GlProgram program;
+    //YUV 输入
+    private final GlYuvTexture yuvTexture = new GlYuvTexture();
+    //有滤镜时 YUV 转换结果作为滤镜链输入
+    private final GlFrameBuffer yuvFrameBuffer = new GlFrameBuffer();
+    private int viewWidth, viewHeight;
+
+    protected RenderBase(GLSurfaceView glSurfaceView) {
+        this.glSurfaceView = glSurfaceView;
+        this.vertexBuffer = createBuffer(VERTEX_BUFFER);
+        this.textureBuffer = createBuffer(TEXTURE_BUFFER);
+        this.filterChain = new GlFilterChain(getAssets());
+    }
+
+    static FloatBuffer createBuffer(float[] data) {
+        ByteBuffer bb = ByteBuffer.allocateDirect(data.length * 4);
+        bb.order(ByteOrder.nativeOrder());
+        FloatBuffer buffer = bb.asFloatBuffer();
+        buffer.put(data);
+        buffer.position(0);
+        return buffer;
+    }
+
+    protected final AssetManager getAssets() {
+        return glSurfaceView.getContext().getResources().getAssets();
+    }
+
+    /**
+     * GL 上下文创建后设置渲染状态
+     */
+    protected void onGlStateCreated() {
+    }
+
+    /**
+     * 每帧绘制前调用
+     */
+    protected void onPreDraw() {
+    }
+
+//==================================================================================================
+
+    //GLSurfaceView
+    private final GLSurfaceView glSurfaceView;
+    private SurfaceTexture surfaceTexture;
+    private ISurfaceCallback callback;
+
+    @Override
+    public void setSurfaceCallback(ISurfaceCallback callback) {
+        this.callback = callback;
+        if (this.callback != null) {
+            if (this.surfaceTexture != null) {
+                this.callback.onSurface(new Surface(this.surfaceTexture));
+            } else if (this.textures[0] != 0) {
+                this.surfaceTexture = new SurfaceTexture(this.textures[0]);
+                this.surfaceTexture.setOnFrameAvailableListener(surfaceTexture -> glSurfaceView.requestRender());
+                this.callback.onSurface(new Surface(this.surfaceTexture));
+            }
+        }
+    }
+
+    @Override
+    public void onRender(boolean isResume) {
+        if (isResume) {
+            this.glSurfaceView.onResume();
+        } else {
+            if (this.callback != null) {
+                this.callback.onSurface(null);
+            }
+            this.glSurfaceView.onPause();
+            this.textures[0] = 0;
+            if (this.surfaceTexture != null) {
+                this.surfaceTexture.release();
+                this.surfaceTexture = null;
+            }
+        }
+    }
+
+    @Override
+    public void setFilters(GlFilter... filters) {
+        this.filterChain.setFilters(filters);
+        this.glSurfaceView.requestRender();
+    }
+
+    @Override
+    public void addFilter(GlFilter filter) {
+        this.filterChain.addFilter(filter);
+        this.glSurfaceView.requestRender();
+    }
+
+    @Override
+    public void removeFilter(GlFilter filter) {
+        this.filterChain.removeFilter(filter);
+        this.glSurfaceView.requestRender();
+    }
+
+    @Override
+    public void updateFrame(ByteBuffer frame, int pixelFormat, int width, int height) {
+        if (this.yuvTexture.offer(frame, pixelFormat, width, height)) {
+            this.glSurfaceView.requestRender();
+        }
+    }
+
+//==================================================================================================
+
+    @Override
+    public void onSurfaceCreated(GL10 gl, EGLConfig config) {
+        //1-create gl condition，新的上下文中旧 program 已失效
+        GlProgramCache.onContextCreated();
+        createGlCondition();
+    }
+
+    @Override
+    public void onSurfaceChanged(GL10 gl, int width, int height) {
+        //2-reset view port
+        GLES20.glViewport(0, 0, width, height);
+        this.viewWidth = width;
+        this.viewHeight = height;
+        this.yuvFrameBuffer.release();
+        this.filterChain.onSurfaceChanged(width, height);
+    }
+
+    @Override
+    public void onDrawFrame(GL10 gl) {
+        //3-render frame
+        if (this.yuvTexture.isActive()) {
+            if (this.program != null && this.yuvTexture.update()) renderYuvFrame();
+        } else if (this.textures[0] != 0 && this.surfaceTexture != null) {
+            this.surfaceTexture.updateTexImage();
+            renderFrame();
+        }
+    }
+
+//==================================================================================================
+
+    private void createGlCondition() {
+        onGlStateCreated();
+        //1.1-program（同一 GL 上下文内由 GlProgramCache 复用）
+        AssetManager assets = getAssets();
+        program = GlProgramCache.getProgram(GlProgramCache.getShader(assets, "camera_vertex.glsl"),
+                GlProgramCache.getShader(assets, "camera_fragment.glsl"));
+        if (program == null) return;
+        //1.2-滤镜、YUV 纹理
+        this.filterChain.onSurfaceCreated();
+        this.yuvTexture.onSurfaceCreated();
+        this.yuvFrameBuffer.reset();
+        //1.3-创建纹理
+        GLES20.glGenTextures(1, textures, 0);
+        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textures[0]);
+        GLES20.glTexParameterf(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GL10.GL_TEXTURE_MIN_FILTER, GL10.GL_LINEAR);
+        GLES20.glTexParameterf(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GL10.GL_TEXTURE_MAG_FILTER, GL10.GL_LINEAR);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GL10.GL_TEXTURE_WRAP_S, GL10.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GL10.GL_TEXTURE_WRAP_T, GL10.GL_CLAMP_TO_EDGE);
+        GlProgramCache.checkGlError("createTexture");
+        //1.4-create surfaceTexture
+        if (this.callback != null) {
+            this.surfaceTexture = new SurfaceTexture(this.textures[0]);
+            this.surfaceTexture.setOnFrameAvailableListener(surfaceTexture -> glSurfaceView.requestRender());
+            this.callback.onSurface(new Surface(this.surfaceTexture));
+        }
+    }
+
+    private void renderFrame() {
+        //3.1-清空画布
+        GLES20.glClearColor(0.0f, 0.0f, 0.0f, 1.0f);
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+        onPreDraw();
+        //3.2-滤镜链
+        if (this.filterChain.draw(textures[0], true, vertexBuffer, textureBuffer)) return;
+        //3.3-无滤镜：直接绘制
+        int vPosition = program.attribute("vPosition");
+        int vTexCoord = program.attribute("vTexCoord");
+        GLES20.glUseProgram(program.getId());
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textures[0]);
+        GLES20.glUniform1i(program.uniform("vTexture"), 0);
+        GLES20.glEnableVertexAttribArray(vPosition);
+        GLES20.glVertexAttribPointer(vPosition, 2, GLES20.GL_FLOAT, false, 8, vertexBuffer);
+        GLES20.glEnableVertexAttribArray(vTexCoord);
+        GLES20.glVertexAttribPointer(vTexCoord, 2, GLES20.GL_FLOAT, false, 8, textureBuffer);
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+        GLES20.glDisableVertexAttribArray(vPosition);
+        GLES20.glDisableVertexAttribArray(vTexCoord);
+        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_NONE);
+    }
+
+    private void renderYuvFrame() {
+        //4.1-清空画布
+        GLES20.glClearColor(0.0f, 0.0f, 0.0f, 1.0f);
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+        onPreDraw();
+        //4.2-无滤镜：YUV 直接转换绘制到屏幕
+        if (!this.filterChain.prepare()) {
+            this.yuvTexture.draw(getAssets(), vertexBuffer, textureBuffer);
+            return;
+        }
+        //4.3-有滤镜：YUV 转换到 FBO（旋转镜像在此完成），再作为滤镜链输入
+        if (!this.yuvFrameBuffer.isCreated() && !this.yuvFrameBuffer.create(viewWidth, viewHeight)) return;
+        this.yuvFrameBuffer.bind();
+        this.yuvTexture.draw(getAssets(), vertexBuffer, textureBuffer);
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        GLES20.glViewport(0, 0, viewWidth, viewHeight);
+        this.filterChain.draw(this.yuvFrameBuffer.getTexture(), false, vertexBuffer, GlFilter.FBO_TEXTURE_BUFFER);
+    }
+
+}
@@ -0,0 +1,295 @@
+package com.hsj.camera;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * @Author:Hsj
+ * @Date:2026/10/18
+ * @Class:StreamFileReader
+ * @Desc:流文件（{@link CameraAPI#startStreamCapture} 录制，格式见 native StreamFile.h）只读随机访问
+ *       文件按帧边界分段 mmap，帧数据以零拷贝 ByteBuffer 切片返回，不占用 Java 堆
+ *       有索引时读索引并逐项校验，没有索引（录制中断）或索引损坏时顺序扫描帧头
+ *       close 只关闭文件，映射在 ByteBuffer 被 GC 回收后才解除，已返回的 ByteBuffer 仍可读，长期持有会占用地址空间
+ */
+public final class StreamFileReader implements Closeable {
+
+    private static final byte[] MAGIC = {'V', '4', 'L', '2', 'S', 'T', 'R', 'M'};
+    private static final int SUPPORT_VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 32;
+    private static final int FRAME_HEADER_SIZE = 24;
+    private static final int INDEX_ENTRY_SIZE = 16;
+    private static final int FRAME_SYNC = 0x4D415246;
+    //单段映射上限（MappedByteBuffer 以 int 寻址）
+    private static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+    /**
+     * 帧访问回调，并行遍历时在多个线程同时调用
+     */
+    public interface FrameVisitor {
+        void onFrame(int index, long timestampUs, ByteBuffer frame);
+    }
+
+    private final RandomAccessFile file;
+    private final int frameFormat;
+    private final int width;
+    private final int height;
+    private final int fps;
+    //帧头在文件中的偏移、采集时间戳
+    private final long[] offsets;
+    private final long[] timestamps;
+    //帧所在分段及段内偏移
+    private final int[] segmentOf;
+    private final MappedByteBuffer[] segments;
+    private final long[] segmentStarts;
+
+    private StreamFileReader(File path) throws IOException {
+        this.file = new RandomAccessFile(path, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            ByteBuffer header = read(channel, 0, FILE_HEADER_SIZE);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (header.get(i) != MAGIC[i]) throw new IOException("Not a stream file: " + path);
+            }
+            int version = header.getShort(8) & 0xFFFF;
+            if (version > SUPPORT_VERSION) throw new IOException("Unsupported version: " + version);
+            this.frameFormat = header.getShort(10) & 0xFFFF;
+            this.width = header.getShort(12) & 0xFFFF;
+            this.height = header.getShort(14) & 0xFFFF;
+            this.fps = header.getShort(16) & 0xFFFF;
+            int frameCount = header.getInt(20);
+            long indexOffset = header.getLong(24);
+
+            //1-帧偏移与时间戳
+            long size = channel.size();
+            long dataEnd = indexOffset != 0 && indexOffset <= size ? indexOffset : size;
+            long[][] index = indexOffset != 0 && frameCount > 0
+                    && indexOffset + (long) frameCount * INDEX_ENTRY_SIZE <= size
+                    ? readIndex(channel, indexOffset, frameCount)
+                    : null;
+            if (index == null) index = scanFrames(channel, dataEnd);
+            this.offsets = index[0];
+            this.timestamps = index[1];
+
+            //2-按帧边界分段映射，保证每帧落在同一段内（帧连续存放，帧尾即下一帧帧头）
+            int count = offsets.length;
+            this.segmentOf = new int[count];
+            List<Long> starts = new ArrayList<>();
+            List<Long> ends = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                long frameEnd = i + 1 < count ? offsets[i + 1] : dataEnd;
+                int last = starts.size() - 1;
+                if (last < 0 || frameEnd - starts.get(last) > MAX_SEGMENT_SIZE) {
+                    starts.add(offsets[i]);
+                    ends.add(frameEnd);
+                } else {
+                    ends.set(last, Math.max(ends.get(last), frameEnd));
+                }
+                segmentOf[i] = starts.size() - 1;
+            }
+            this.segments = new MappedByteBuffer[starts.size()];
+            this.segmentStarts = new long[starts.size()];
+            for (int s = 0; s < segments.length; s++) {
+                segmentStarts[s] = starts.get(s);
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, segmentStarts[s], ends.get(s) - segmentStarts[s]);
+                segments[s].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 打开流文件并建立帧表
+     *
+     * @throws IOException 文件不可读或不是流文件
+     */
+    public static StreamFileReader open(File path) throws IOException {
+        return new StreamFileReader(path);
+    }
+
+    public int getFrameFormat() {
+        return frameFormat;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getFps() {
+        return fps;
+    }
+
+    public int getFrameCount() {
+        return offsets.length;
+    }
+
+    public long getTimestampUs(int index) {
+        return timestamps[index];
+    }
+
+    /**
+     * V4L2 帧序号，不连续说明驱动丢帧
+     */
+    public int getSequence(int index) {
+        return segments[segmentOf[index]].getInt(localOffset(index) + 4);
+    }
+
+    /**
+     * 第 index 帧的原始数据，格式见 {@link #getFrameFormat()}：MJPEG/YUYV/DEPTH/NV12/NV16/GREY/Y10/Y16/Z16 为一帧图像（未压缩格式行紧密排列），
+     * H.264/HEVC 为驱动输出的一段 Annex-B 码流；只读、小端、零拷贝，可跨线程并发调用
+     */
+    public ByteBuffer getFrame(int index) {
+        MappedByteBuffer segment = segments[segmentOf[index]];
+        int header = localOffset(index);
+        int bytes = segment.getInt(header + 8);
+        ByteBuffer frame = segment.duplicate();
+        frame.position(header + FRAME_HEADER_SIZE);
+        frame.limit(header + FRAME_HEADER_SIZE + bytes);
+        return frame.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * 二分查找采集时间不晚于 timestampUs 的最后一帧，录制时间戳单调递增
+     *
+     * @return 帧下标，timestampUs 早于第一帧时返回 -1
+     */
+    public int indexOfTimestamp(long timestampUs) {
+        int low = 0, high = timestamps.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] <= timestampUs) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * 采集时间不晚于 timestampUs 的最后一帧，没有时返回 null
+     */
+    public ByteBuffer getFrameAt(long timestampUs) {
+        int index = indexOfTimestamp(timestampUs);
+        return index < 0 ? null : getFrame(index);
+    }
+
+    /**
+     * 顺序遍历 [from, to)
+     */
+    public void forEach(int from, int to, FrameVisitor visitor) {
+        for (int i = from; i < to; i++) {
+            visitor.onFrame(i, timestamps[i], getFrame(i));
+        }
+    }
+
+    /**
+     * 并行遍历全部帧：按连续区间分给 parallelism 个线程（每个线程顺序读，利于预读），全部完成后返回
+     *
+     * @throws ExecutionException visitor 抛出的异常
+     */
+    public void forEachParallel(int parallelism, final FrameVisitor visitor)
+            throws InterruptedException, ExecutionException {
+        final int count = offsets.length;
+        int threads = Math.max(1, Math.min(parallelism, count));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                final int from = (int) ((long) count * t / threads);
+                final int to = (int) ((long) count * (t + 1) / threads);
+                futures.add(executor.submit(() -> forEach(from, to, visitor)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+//==================================================================================================
+
+    private int localOffset(int index) {
+        return (int) (offsets[index] - segmentStarts[segmentOf[index]]);
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new EOFException();
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 读索引并校验每一项：帧头同步字、帧数据不越过索引起点、偏移递增且帧不重叠（与 native ReplayFrameSource 相同）
+     *
+     * @return 索引损坏时返回 null，由调用方回退为扫描帧头
+     */
+    private static long[][] readIndex(FileChannel channel, long indexOffset, int frameCount) throws IOException {
+        ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, (long) frameCount * INDEX_ENTRY_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        long[] offsets = new long[frameCount];
+        long[] timestamps = new long[frameCount];
+        long frameEnd = FILE_HEADER_SIZE;
+        for (int i = 0; i < frameCount; i++) {
+            long offset = index.getLong(i * INDEX_ENTRY_SIZE);
+            if (offset < frameEnd || offset + FRAME_HEADER_SIZE > indexOffset) return null;
+            ByteBuffer frame = read(channel, offset, FRAME_HEADER_SIZE);
+            long bytes = frame.getInt(8) & 0xFFFFFFFFL;
+            if (frame.getInt(0) != FRAME_SYNC || offset + FRAME_HEADER_SIZE + bytes > indexOffset) return null;
+            frameEnd = offset + FRAME_HEADER_SIZE + bytes;
+            offsets[i] = offset;
+            timestamps[i] = index.getLong(i * INDEX_ENTRY_SIZE + 8);
+        }
+        return new long[][]{offsets, timestamps};
+    }
+
+    private static long[][] scanFrames(FileChannel channel, long end) throws IOException {
+        long[] offsets = new long[1024];
+        long[] timestamps = new long[1024];
+        int count = 0;
+        long offset = FILE_HEADER_SIZE;
+        while (offset + FRAME_HEADER_SIZE <= end) {
+            ByteBuffer frame = read(channel, offset, FRAME_HEADER_SIZE);
+            long bytes = frame.getInt(8) & 0xFFFFFFFFL;
+            if (frame.getInt(0) != FRAME_SYNC || offset + FRAME_HEADER_SIZE + bytes > end) break;
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+                timestamps = Arrays.copyOf(timestamps, count * 2);
+            }
+            offsets[count] = offset;
+            timestamps[count] = frame.getLong(16);
+            count++;
+            offset += FRAME_HEADER_SIZE + bytes;
+        }
+        return new long[][]{Arrays.copyOf(offsets, count), Arrays.copyOf(timestamps, count)};
+    }
+}
@@ -0,0 +1,119 @@
+package com.hsj.camera;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.os.Build;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * @Author:Hsj
+ * @Date:2026/10/18
+ * @Class:StreamMuxer
+ * @Desc:H.264/HEVC 码流直接写入 MP4（{@link CameraAPI#setStreamCallback}），不解码、不重新编码，CPU 开销只有一次拷贝
+ *       收到参数集后添加轨道，从第一个关键帧开始写入，时间戳以该帧为零点
+ *       录制中参数集变化（相机切换分辨率）时 MP4 无法追加新轨道，之后的帧丢弃，需要重新开始录制
+ *       HEVC 写入 MP4 需要 Android 7.0（API 24）
+ */
+public final class StreamMuxer implements IStreamCallback {
+
+    private static final String TAG = "StreamMuxer";
+
+    private final String outputPath;
+    private final MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+    private MediaMuxer muxer;
+    private MediaFormat format;
+    private int trackIndex = -1;
+    private long firstTimestampUs = -1;
+    private int frameCount;
+    private boolean formatChanged;
+    private boolean stopped;
+
+    public StreamMuxer(String outputPath) {
+        this.outputPath = outputPath;
+    }
+
+    @Override
+    public synchronized void onStreamFormat(int frameFormat, int width, int height, ByteBuffer csd0, ByteBuffer csd1) {
+        if (trackIndex >= 0) {
+            Logger.w(TAG, "onStreamFormat: config changed while recording, following frames dropped");
+            formatChanged = true;
+            return;
+        }
+        boolean hevc = frameFormat == CameraAPI.FRAME_FORMAT_HEVC;
+        if (hevc && Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            Logger.e(TAG, "onStreamFormat: HEVC muxing requires API 24");
+            return;
+        }
+        String mime = hevc ? MediaFormat.MIMETYPE_VIDEO_HEVC : MediaFormat.MIMETYPE_VIDEO_AVC;
+        MediaFormat mediaFormat = MediaFormat.createVideoFormat(mime, width, height);
+        //回调期间有效，拷贝一份
+        mediaFormat.setByteBuffer("csd-0", copy(csd0));
+        if (csd1 != null) mediaFormat.setByteBuffer("csd-1", copy(csd1));
+        format = mediaFormat;
+        Logger.d(TAG, "onStreamFormat: " + mime + " " + width + "x" + height);
+    }
+
+    @Override
+    public synchronized void onStreamFrame(ByteBuffer data, long timestampUs, boolean keyFrame) {
+        if (format == null || formatChanged || stopped) return;
+        if (trackIndex < 0) {
+            //从关键帧开始，之前的 P 帧无法解码
+            if (!keyFrame) return;
+            try {
+                muxer = new MediaMuxer(outputPath, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+                trackIndex = muxer.addTrack(format);
+                muxer.start();
+            } catch (IOException | RuntimeException e) {
+                Logger.e(TAG, "onStreamFrame: start muxer failed, " + e.getMessage());
+                releaseMuxer();
+                format = null;
+                return;
+            }
+            firstTimestampUs = timestampUs;
+            Logger.d(TAG, "onStreamFrame: start " + outputPath);
+        }
+        bufferInfo.set(data.position(), data.remaining(), Math.max(0, timestampUs - firstTimestampUs),
+                keyFrame ? MediaCodec.BUFFER_FLAG_KEY_FRAME : 0);
+        try {
+            muxer.writeSampleData(trackIndex, data, bufferInfo);
+            frameCount++;
+        } catch (RuntimeException e) {
+            Logger.w(TAG, "onStreamFrame: write failed, " + e.getMessage());
+        }
+    }
+
+    /**
+     * 结束录制，先调用 {@link CameraAPI#setStreamCallback}(null) 停止回调
+     *
+     * @return 写入的帧数，没有收到关键帧时为 0（不生成文件）
+     */
+    public synchronized int stop() {
+        stopped = true;
+        releaseMuxer();
+        Logger.d(TAG, "stop: " + frameCount + " frames");
+        return frameCount;
+    }
+
+    private void releaseMuxer() {
+        if (muxer != null) {
+            try {
+                if (trackIndex >= 0) muxer.stop();
+            } catch (RuntimeException e) {
+                Logger.w(TAG, "releaseMuxer: " + e.getMessage());
+            }
+            muxer.release();
+            muxer = null;
+        }
+        trackIndex = -1;
+    }
+
+    private static ByteBuffer copy(ByteBuffer source) {
+        ByteBuffer buffer = ByteBuffer.allocate(source.remaining());
+        buffer.put(source.duplicate());
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,266 @@
+package com.hsj.camera;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @Author:Hsj
+ * @Date:2026/10/18
+ * @Class:StreamFileReaderTest
+ * @Desc:按 native StreamFile.h 的布局写流文件（与 StreamWriter 相同：帧连续存放，close 时追加索引并回填文件头），
+ *       验证 StreamFileReader 的索引读取、无索引时的扫描回退、时间戳二分查找
+ */
+public class StreamFileReaderTest {
+
+    private static final int FILE_HEADER_SIZE = 32;
+    private static final int FRAME_HEADER_SIZE = 24;
+    private static final int FRAME_SYNC = 0x4D415246;
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final int FPS = 30;
+    private static final int FRAME_COUNT = 10;
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("stream", ".v4l2s");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void readsIndexedFile() throws IOException {
+        write(file, FRAME_COUNT, true, 0);
+        try (StreamFileReader reader = StreamFileReader.open(file)) {
+            assertHeader(reader);
+            assertEquals(FRAME_COUNT, reader.getFrameCount());
+            for (int i = 0; i < FRAME_COUNT; i++) {
+                assertFrame(reader, i);
+            }
+        }
+    }
+
+    @Test
+    public void scansFramesWithoutIndex() throws IOException {
+        //录制中断：文件头 frameCount/indexOffset 仍为 0
+        write(file, FRAME_COUNT, false, 0);
+        try (StreamFileReader reader = StreamFileReader.open(file)) {
+            assertHeader(reader);
+            assertEquals(FRAME_COUNT, reader.getFrameCount());
+            for (int i = 0; i < FRAME_COUNT; i++) {
+                assertFrame(reader, i);
+            }
+        }
+    }
+
+    @Test
+    public void scanStopsAtTruncatedFrame() throws IOException {
+        //最后一帧只写了一半
+        write(file, FRAME_COUNT, false, 5);
+        try (StreamFileReader reader = StreamFileReader.open(file)) {
+            assertEquals(FRAME_COUNT - 1, reader.getFrameCount());
+            assertFrame(reader, FRAME_COUNT - 2);
+        }
+    }
+
+    @Test
+    public void ignoresIndexPastEndOfFile() throws IOException {
+        write(file, FRAME_COUNT, true, 0);
+        //索引被截断：回退为扫描帧头
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 8);
+        }
+        try (StreamFileReader reader = StreamFileReader.open(file)) {
+            assertEquals(FRAME_COUNT, reader.getFrameCount());
+            assertFrame(reader, FRAME_COUNT - 1);
+        }
+    }
+
+    @Test
+    public void scansWhenIndexEntryIsCorrupt() throws IOException {
+        write(file, FRAME_COUNT, true, 0);
+        //第 3 项偏移指向帧数据中间：同步字不对
+        patchIndexOffset(3, indexEntryOffset(3) + 1);
+        try (StreamFileReader reader = StreamFileReader.open(file)) {
+            assertEquals(FRAME_COUNT, reader.getFrameCount());
+            for (int i = 0; i < FRAME_COUNT; i++) {
+                assertFrame(reader, i);
+            }
+        }
+    }
+
+    @Test
+    public void scansWhenIndexIsNotMonotonic() throws IOException {
+        write(file, FRAME_COUNT, true, 0);
+        //第 5 项重复指向第 4 帧
+        patchIndexOffset(5, indexEntryOffset(4));
+        try (StreamFileReader reader = StreamFileReader.open(file)) {
+            assertEquals(FRAME_COUNT, reader.getFrameCount());
+            assertFrame(reader, 4);
+            assertFrame(reader, 5);
+        }
+    }
+
+    @Test
+    public void scansWhenIndexPointsPastData() throws IOException {
+        write(file, FRAME_COUNT, true, 0);
+        patchIndexOffset(FRAME_COUNT - 1, Integer.MAX_VALUE);
+        try (StreamFileReader reader = StreamFileReader.open(file)) {
+            assertEquals(FRAME_COUNT, reader.getFrameCount());
+            assertFrame(reader, FRAME_COUNT - 1);
+        }
+    }
+
+    @Test
+    public void findsFrameByTimestamp() throws IOException {
+        write(file, FRAME_COUNT, true, 0);
+        try (StreamFileReader reader = StreamFileReader.open(file)) {
+            assertEquals(-1, reader.indexOfTimestamp(timestampOf(0) - 1));
+            assertNull(reader.getFrameAt(timestampOf(0) - 1));
+            for (int i = 0; i < FRAME_COUNT; i++) {
+                assertEquals(i, reader.indexOfTimestamp(timestampOf(i)));
+                //两帧之间取前一帧
+                assertEquals(i, reader.indexOfTimestamp(timestampOf(i) + 1));
+            }
+            assertEquals(FRAME_COUNT - 1, reader.indexOfTimestamp(Long.MAX_VALUE));
+            assertEquals(payloadSize(3), reader.getFrameAt(timestampOf(3) + 10).remaining());
+        }
+    }
+
+    @Test
+    public void visitsAllFramesInParallel() throws Exception {
+        write(file, FRAME_COUNT, true, 0);
+        try (StreamFileReader reader = StreamFileReader.open(file)) {
+            final AtomicInteger visited = new AtomicInteger();
+            reader.forEachParallel(3, (index, timestampUs, frame) -> {
+                assertEquals(timestampOf(index), timestampUs);
+                assertEquals(payloadSize(index), frame.remaining());
+                visited.incrementAndGet();
+            });
+            assertEquals(FRAME_COUNT, visited.get());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[FILE_HEADER_SIZE]);
+        }
+        StreamFileReader.open(file).close();
+    }
+
+//==================================================================================================
+
+    private static void assertHeader(StreamFileReader reader) {
+        assertEquals(CameraAPI.FRAME_FORMAT_MJPEG, reader.getFrameFormat());
+        assertEquals(WIDTH, reader.getWidth());
+        assertEquals(HEIGHT, reader.getHeight());
+        assertEquals(FPS, reader.getFps());
+    }
+
+    private static void assertFrame(StreamFileReader reader, int index) {
+        assertEquals(timestampOf(index), reader.getTimestampUs(index));
+        assertEquals(sequenceOf(index), reader.getSequence(index));
+        ByteBuffer frame = reader.getFrame(index);
+        assertEquals(payloadSize(index), frame.remaining());
+        for (int i = 0; i < frame.remaining(); i++) {
+            assertEquals(payloadByte(index, i), frame.get(i));
+        }
+    }
+
+    //帧大小各不相同，验证帧边界
+    private static int payloadSize(int index) {
+        return 100 + index * 37;
+    }
+
+    private static byte payloadByte(int index, int offset) {
+        return (byte) (index * 31 + offset);
+    }
+
+    private static long timestampOf(int index) {
+        return 1_000_000L + index * 33_333L;
+    }
+
+    private static int sequenceOf(int index) {
+        //跳号模拟驱动丢帧
+        return index < 5 ? index : index + 2;
+    }
+
+    //第 index 帧帧头在文件中的偏移（与 write 的布局一致）
+    private static long indexEntryOffset(int index) {
+        long offset = FILE_HEADER_SIZE;
+        for (int i = 0; i < index; i++) {
+            offset += FRAME_HEADER_SIZE + payloadSize(i);
+        }
+        return offset;
+    }
+
+    //改写索引第 index 项的帧偏移
+    private void patchIndexOffset(int index, long frameOffset) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            ByteBuffer value = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(frameOffset);
+            raf.seek(indexEntryOffset(FRAME_COUNT) + index * 16L);
+            raf.write(value.array());
+        }
+    }
+
+    /**
+     * @param indexed       是否追加索引并回填文件头
+     * @param truncateBytes 从文件尾截掉的字节数（不含索引）
+     */
+    private static void write(File file, int frameCount, boolean indexed, int truncateBytes) throws IOException {
+        int dataBytes = 0;
+        for (int i = 0; i < frameCount; i++) {
+            dataBytes += FRAME_HEADER_SIZE + payloadSize(i);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(FILE_HEADER_SIZE + dataBytes + frameCount * 16)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(new byte[]{'V', '4', 'L', '2', 'S', 'T', 'R', 'M'});
+        buffer.putShort((short) 1);
+        buffer.putShort((short) CameraAPI.FRAME_FORMAT_MJPEG);
+        buffer.putShort((short) WIDTH);
+        buffer.putShort((short) HEIGHT);
+        buffer.putShort((short) FPS);
+        buffer.putShort((short) 0);
+        buffer.putInt(indexed ? frameCount : 0);
+        buffer.putLong(indexed ? FILE_HEADER_SIZE + dataBytes : 0);
+
+        long[] offsets = new long[frameCount];
+        for (int i = 0; i < frameCount; i++) {
+            offsets[i] = buffer.position();
+            buffer.putInt(FRAME_SYNC);
+            buffer.putInt(sequenceOf(i));
+            buffer.putInt(payloadSize(i));
+            buffer.putInt(0);
+            buffer.putLong(timestampOf(i));
+            for (int j = 0; j < payloadSize(i); j++) {
+                buffer.put(payloadByte(i, j));
+            }
+        }
+        if (indexed) {
+            for (int i = 0; i < frameCount; i++) {
+                buffer.putLong(offsets[i]);
+                buffer.putLong(timestampOf(i));
+            }
+        }
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(buffer.array(), 0, buffer.position() - truncateBytes);
+        }
+    }
+}